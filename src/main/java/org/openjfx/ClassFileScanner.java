@@ -0,0 +1,373 @@
+/*
+ * Copyright 2020, Gluon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openjfx;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Reads what the plugin needs from a class file, without loading it, since the plugin runs on Java 8 and the
+ * classes may be compiled for a later release: the classes it references, the services it loads with
+ * <code>ServiceLoader</code>, and, for a <code>module-info.class</code>, the module declaration.
+ * Class names are binary names, like <code>java.util.List</code>.
+ */
+final class ClassFileScanner {
+
+    private static final int MAGIC = 0xCAFEBABE;
+
+    private static final int UTF8 = 1;
+    private static final int INTEGER = 3;
+    private static final int FLOAT = 4;
+    private static final int LONG = 5;
+    private static final int DOUBLE = 6;
+    private static final int CLASS = 7;
+    private static final int STRING = 8;
+    private static final int FIELD_REF = 9;
+    private static final int METHOD_REF = 10;
+    private static final int INTERFACE_METHOD_REF = 11;
+    private static final int NAME_AND_TYPE = 12;
+    private static final int METHOD_HANDLE = 15;
+    private static final int METHOD_TYPE = 16;
+    private static final int DYNAMIC = 17;
+    private static final int INVOKE_DYNAMIC = 18;
+    private static final int MODULE = 19;
+    private static final int PACKAGE = 20;
+
+    private static final int LDC = 0x12;
+    private static final int LDC_W = 0x13;
+    private static final int TABLESWITCH = 0xaa;
+    private static final int LOOKUPSWITCH = 0xab;
+    private static final int INVOKESTATIC = 0xb8;
+    private static final int WIDE = 0xc4;
+    private static final int IINC = 0x84;
+
+    private static final String SERVICE_LOADER = "java/util/ServiceLoader";
+
+    /**
+     * Length of the instructions by opcode, 0 for the ones with a variable length.
+     */
+    private static final int[] INSTRUCTION_LENGTHS = new int[256];
+    static {
+        for (int opcode = 0; opcode < 256; opcode++) {
+            INSTRUCTION_LENGTHS[opcode] = 1;
+        }
+        set(2, 0x10, LDC, 0xa9, 0xbc);
+        set(2, 0x15, 0x16, 0x17, 0x18, 0x19, 0x36, 0x37, 0x38, 0x39, 0x3a);
+        set(3, 0x11, LDC_W, 0x14, IINC, 0xbb, 0xbd, 0xc0, 0xc1, 0xc6, 0xc7);
+        for (int opcode = 0x99; opcode <= 0xa8; opcode++) {
+            INSTRUCTION_LENGTHS[opcode] = 3;
+        }
+        for (int opcode = 0xb2; opcode <= INVOKESTATIC; opcode++) {
+            INSTRUCTION_LENGTHS[opcode] = 3;
+        }
+        set(4, 0xc5);
+        set(5, 0xb9, 0xba, 0xc8, 0xc9);
+        set(0, TABLESWITCH, LOOKUPSWITCH, WIDE);
+    }
+
+    private static void set(int length, int... opcodes) {
+        for (int opcode : opcodes) {
+            INSTRUCTION_LENGTHS[opcode] = length;
+        }
+    }
+
+    private final int[] tags;
+    private final Object[] constants;
+    private final String className;
+    private final Set<String> referencedClasses = new TreeSet<>();
+    private final Set<String> loadedServices = new TreeSet<>();
+    private final Set<String> unresolvedServiceLoads = new TreeSet<>();
+    private String moduleName;
+    private final Set<String> moduleRequires = new TreeSet<>();
+    private final Set<String> moduleUses = new TreeSet<>();
+    private final Map<String, List<String>> moduleProvides = new LinkedHashMap<>();
+
+    /**
+     * @throws IOException if the bytes are not a valid class file
+     */
+    ClassFileScanner(byte[] bytes) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a class file");
+        }
+        in.readUnsignedShort();
+        in.readUnsignedShort();
+        int count = in.readUnsignedShort();
+        tags = new int[count];
+        constants = new Object[count];
+        for (int i = 1; i < count; i++) {
+            int tag = in.readUnsignedByte();
+            tags[i] = tag;
+            switch (tag) {
+                case UTF8: constants[i] = in.readUTF(); break;
+                case INTEGER: case FLOAT: in.readInt(); break;
+                case LONG: case DOUBLE: in.readLong(); i++; break;
+                case CLASS: case STRING: case METHOD_TYPE: case MODULE: case PACKAGE:
+                    constants[i] = new int[] {in.readUnsignedShort()};
+                    break;
+                case FIELD_REF: case METHOD_REF: case INTERFACE_METHOD_REF: case NAME_AND_TYPE:
+                case DYNAMIC: case INVOKE_DYNAMIC:
+                    constants[i] = new int[] {in.readUnsignedShort(), in.readUnsignedShort()};
+                    break;
+                case METHOD_HANDLE:
+                    constants[i] = new int[] {in.readUnsignedByte(), in.readUnsignedShort()};
+                    break;
+                default:
+                    throw new IOException("Invalid constant pool tag " + tag);
+            }
+        }
+        for (int i = 1; i < count; i++) {
+            if (tags[i] == CLASS) {
+                addInternalName(classAt(i));
+            } else if (tags[i] == NAME_AND_TYPE || tags[i] == METHOD_TYPE) {
+                int[] indexes = (int[]) constants[i];
+                addDescriptor(utf8At(indexes[indexes.length - 1]));
+            }
+        }
+
+        in.readUnsignedShort();
+        className = classAt(in.readUnsignedShort()).replace('/', '.');
+        in.readUnsignedShort();
+        skip(in, in.readUnsignedShort() * 2);
+        readMembers(in, false);
+        readMembers(in, true);
+        int attributes = in.readUnsignedShort();
+        for (int i = 0; i < attributes; i++) {
+            String name = utf8At(in.readUnsignedShort());
+            int length = in.readInt();
+            if ("Module".equals(name)) {
+                readModule(in);
+            } else {
+                skip(in, length);
+            }
+        }
+        referencedClasses.remove(className);
+    }
+
+    /**
+     * @return the binary name of the class, or <code>module-info</code>
+     */
+    String getClassName() {
+        return className;
+    }
+
+    /**
+     * @return the classes referenced by the class, in its constant pool and in the signatures of its members
+     */
+    Set<String> getReferencedClasses() {
+        return Collections.unmodifiableSet(referencedClasses);
+    }
+
+    /**
+     * @return the services the class loads with <code>ServiceLoader.load(Service.class)</code>
+     */
+    Set<String> getLoadedServices() {
+        return Collections.unmodifiableSet(loadedServices);
+    }
+
+    /**
+     * @return the methods that call <code>ServiceLoader.load</code> with a class that isn't a constant
+     */
+    Set<String> getUnresolvedServiceLoads() {
+        return Collections.unmodifiableSet(unresolvedServiceLoads);
+    }
+
+    /**
+     * @return the name of the module, or null if the class is not a module descriptor
+     */
+    String getModuleName() {
+        return moduleName;
+    }
+
+    Set<String> getModuleRequires() {
+        return Collections.unmodifiableSet(moduleRequires);
+    }
+
+    Set<String> getModuleUses() {
+        return Collections.unmodifiableSet(moduleUses);
+    }
+
+    /**
+     * @return the implementations of the services the module provides, by service
+     */
+    Map<String, List<String>> getModuleProvides() {
+        return Collections.unmodifiableMap(moduleProvides);
+    }
+
+    private void readMembers(DataInputStream in, boolean methods) throws IOException {
+        int count = in.readUnsignedShort();
+        for (int i = 0; i < count; i++) {
+            in.readUnsignedShort();
+            String name = utf8At(in.readUnsignedShort());
+            addDescriptor(utf8At(in.readUnsignedShort()));
+            int attributes = in.readUnsignedShort();
+            for (int j = 0; j < attributes; j++) {
+                String attribute = utf8At(in.readUnsignedShort());
+                int length = in.readInt();
+                if (methods && "Code".equals(attribute)) {
+                    byte[] code = new byte[length];
+                    in.readFully(code);
+                    readCode(code, name);
+                } else {
+                    skip(in, length);
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the calls to <code>ServiceLoader.load</code>, taking the last class constant loaded before
+     * the call in the method as the service.
+     */
+    private void readCode(byte[] attribute, String method) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(attribute));
+        in.readUnsignedShort();
+        in.readUnsignedShort();
+        byte[] code = new byte[in.readInt()];
+        in.readFully(code);
+        String lastClass = null;
+        int pc = 0;
+        while (pc < code.length) {
+            int opcode = code[pc] & 0xff;
+            if (opcode == LDC || opcode == LDC_W) {
+                int index = opcode == LDC ? code[pc + 1] & 0xff : u2(code, pc + 1);
+                if (tags[index] == CLASS) {
+                    lastClass = classAt(index);
+                }
+            } else if (opcode == INVOKESTATIC) {
+                int[] ref = (int[]) constants[u2(code, pc + 1)];
+                int[] nameAndType = (int[]) constants[ref[1]];
+                String name = utf8At(nameAndType[0]);
+                if (SERVICE_LOADER.equals(classAt(ref[0])) && (name.equals("load") || name.equals("loadInstalled"))) {
+                    if (lastClass != null && !lastClass.startsWith("[")) {
+                        loadedServices.add(lastClass.replace('/', '.'));
+                    } else {
+                        unresolvedServiceLoads.add(className + "." + method);
+                    }
+                    lastClass = null;
+                }
+            }
+            pc += instructionLength(code, pc);
+        }
+    }
+
+    private static int instructionLength(byte[] code, int pc) throws IOException {
+        int opcode = code[pc] & 0xff;
+        int length = INSTRUCTION_LENGTHS[opcode];
+        if (length > 0) {
+            return length;
+        }
+        if (opcode == WIDE) {
+            return (code[pc + 1] & 0xff) == IINC ? 6 : 4;
+        }
+        int padded = pc + 1 + (3 - pc % 4);
+        if (opcode == TABLESWITCH) {
+            int low = s4(code, padded + 4);
+            int high = s4(code, padded + 8);
+            return padded - pc + 12 + (high - low + 1) * 4;
+        }
+        if (opcode == LOOKUPSWITCH) {
+            return padded - pc + 8 + s4(code, padded + 4) * 8;
+        }
+        throw new IOException("Invalid opcode " + opcode);
+    }
+
+    private void readModule(DataInputStream in) throws IOException {
+        moduleName = utf8At(((int[]) constants[in.readUnsignedShort()])[0]);
+        in.readUnsignedShort();
+        in.readUnsignedShort();
+        int requires = in.readUnsignedShort();
+        for (int i = 0; i < requires; i++) {
+            moduleRequires.add(utf8At(((int[]) constants[in.readUnsignedShort()])[0]));
+            in.readUnsignedShort();
+            in.readUnsignedShort();
+        }
+        for (int exportsOrOpens = 0; exportsOrOpens < 2; exportsOrOpens++) {
+            int count = in.readUnsignedShort();
+            for (int i = 0; i < count; i++) {
+                in.readUnsignedShort();
+                in.readUnsignedShort();
+                skip(in, in.readUnsignedShort() * 2);
+            }
+        }
+        int uses = in.readUnsignedShort();
+        for (int i = 0; i < uses; i++) {
+            moduleUses.add(classAt(in.readUnsignedShort()).replace('/', '.'));
+        }
+        int provides = in.readUnsignedShort();
+        for (int i = 0; i < provides; i++) {
+            String service = classAt(in.readUnsignedShort()).replace('/', '.');
+            int count = in.readUnsignedShort();
+            List<String> implementations = new ArrayList<>();
+            for (int j = 0; j < count; j++) {
+                implementations.add(classAt(in.readUnsignedShort()).replace('/', '.'));
+            }
+            moduleProvides.put(service, implementations);
+        }
+    }
+
+    private void addInternalName(String name) {
+        if (name.startsWith("[")) {
+            addDescriptor(name);
+        } else if (!name.isEmpty()) {
+            referencedClasses.add(name.replace('/', '.'));
+        }
+    }
+
+    /**
+     * Adds the classes of a field or method descriptor, like <code>(Ljava/lang/String;[I)Ljava/util/List;</code>.
+     */
+    private void addDescriptor(String descriptor) {
+        int start = descriptor.indexOf('L');
+        while (start >= 0) {
+            int end = descriptor.indexOf(';', start);
+            if (end < 0) {
+                return;
+            }
+            referencedClasses.add(descriptor.substring(start + 1, end).replace('/', '.'));
+            start = descriptor.indexOf('L', end);
+        }
+    }
+
+    private String classAt(int index) {
+        return utf8At(((int[]) constants[index])[0]);
+    }
+
+    private String utf8At(int index) {
+        return (String) constants[index];
+    }
+
+    private static int u2(byte[] code, int offset) {
+        return ((code[offset] & 0xff) << 8) | (code[offset + 1] & 0xff);
+    }
+
+    private static int s4(byte[] code, int offset) {
+        return (code[offset] << 24) | ((code[offset + 1] & 0xff) << 16) | ((code[offset + 2] & 0xff) << 8)
+                | (code[offset + 3] & 0xff);
+    }
+
+    private static void skip(DataInputStream in, int length) throws IOException {
+        in.readFully(new byte[length]);
+    }
+}
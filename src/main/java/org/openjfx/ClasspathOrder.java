@@ -0,0 +1,206 @@
+/*
+ * Copyright 2020, Gluon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openjfx;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Orders a class path by the number of classes each element served in a training run, so the class loader
+ * finds the classes of the startup in the first elements it probes. An element is only moved before another one
+ * if they have no class or resource in common, so the class path still resolves every name to the same element,
+ * and the service loader still finds the providers in the same order.
+ * The hits are stored by file name, like <code>commons-lang3-3.9.jar</code>, so they still apply when the
+ * versions of other dependencies change.
+ */
+final class ClasspathOrder {
+
+    // -Xlog:class+load on Java 9 and later, -verbose:class on Java 8
+    private static final Pattern CLASS_LOAD = Pattern.compile("(?: source: | from )(file:[^\\s\\]]+)");
+
+    private static final Pattern SIGNATURE_FILE = Pattern.compile("(?i)(SIG-.*|.*\\.(SF|RSA|DSA|EC))");
+
+    private ClasspathOrder() {
+    }
+
+    /**
+     * Reads a class loading log and counts the classes loaded from each element of the class path.
+     * @return the number of classes by file name of the elements, for the elements that served a class
+     */
+    static Map<String, Integer> parseHits(Path classLoadLog, List<String> classpathElements) throws IOException {
+        Map<Path, String> names = new HashMap<>();
+        for (String element : classpathElements) {
+            Path path = Paths.get(element).toAbsolutePath().normalize();
+            names.put(path, path.getFileName().toString());
+        }
+        Map<String, Integer> hits = new TreeMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(classLoadLog, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Matcher matcher = CLASS_LOAD.matcher(line);
+                if (!matcher.find()) {
+                    continue;
+                }
+                Path source;
+                try {
+                    source = Paths.get(URI.create(matcher.group(1))).toAbsolutePath().normalize();
+                } catch (IllegalArgumentException e) {
+                    continue;
+                }
+                String name = names.get(source);
+                if (name != null) {
+                    hits.merge(name, 1, Integer::sum);
+                }
+            }
+        }
+        return hits;
+    }
+
+    static void write(Path file, Map<String, Integer> hits) throws IOException {
+        List<String> lines = hits.entrySet().stream()
+                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .map(entry -> entry.getValue() + "\t" + entry.getKey())
+                .collect(Collectors.toList());
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Files.write(file, lines, StandardCharsets.UTF_8);
+    }
+
+    static Map<String, Integer> read(Path file) throws IOException {
+        Map<String, Integer> hits = new HashMap<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            int tab = line.indexOf('\t');
+            if (tab > 0) {
+                try {
+                    hits.put(line.substring(tab + 1), Integer.parseInt(line.substring(0, tab)));
+                } catch (NumberFormatException e) {
+                    // not a line of hits
+                }
+            }
+        }
+        return hits;
+    }
+
+    /**
+     * Orders the elements by decreasing hits. The elements without hits keep their relative order, after the
+     * others, and an element never moves before an earlier element that has a class or resource with the same name:
+     * the earlier element moves forward with it instead.
+     */
+    static List<String> reorder(List<String> classpathElements, Map<String, Integer> hits) throws IOException {
+        int size = classpathElements.size();
+        List<Set<Integer>> predecessors = new ArrayList<>();
+        Map<String, Integer> owners = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            Set<Integer> elementPredecessors = new HashSet<>();
+            for (String entry : entries(Paths.get(classpathElements.get(i)))) {
+                Integer owner = owners.putIfAbsent(entry, i);
+                if (owner != null && owner != i) {
+                    elementPredecessors.add(owner);
+                }
+            }
+            predecessors.add(elementPredecessors);
+        }
+
+        // an element that shadows a hot element is as hot, to move them both forward
+        int[] priorities = new int[size];
+        for (int i = size - 1; i >= 0; i--) {
+            priorities[i] = Math.max(priorities[i], hits(classpathElements.get(i), hits));
+            for (int predecessor : predecessors.get(i)) {
+                priorities[predecessor] = Math.max(priorities[predecessor], priorities[i]);
+            }
+        }
+
+        List<String> ordered = new ArrayList<>();
+        boolean[] placed = new boolean[size];
+        for (int n = 0; n < size; n++) {
+            int next = -1;
+            for (int i = 0; i < size; i++) {
+                if (placed[i] || !predecessors.get(i).stream().allMatch(p -> placed[p])) {
+                    continue;
+                }
+                if (next < 0 || priorities[i] > priorities[next]) {
+                    next = i;
+                }
+            }
+            placed[next] = true;
+            ordered.add(classpathElements.get(next));
+        }
+        return ordered;
+    }
+
+    /**
+     * Every resource is looked up first-wins, like the provider files of <code>META-INF/services/</code>, except the
+     * manifest and the signature files that each jar reads for itself.
+     */
+    private static boolean isShadowable(String name) {
+        if (name.equals("module-info.class") || name.equals("META-INF/MANIFEST.MF")) {
+            return false;
+        }
+        if (name.startsWith("META-INF/") && name.indexOf('/', "META-INF/".length()) < 0) {
+            return !SIGNATURE_FILE.matcher(name.substring("META-INF/".length())).matches();
+        }
+        return true;
+    }
+
+    private static int hits(String element, Map<String, Integer> hits) {
+        return hits.getOrDefault(new File(element).getName(), 0);
+    }
+
+    /**
+     * @return the names of the classes and resources of a jar or directory that another element can shadow
+     */
+    private static Set<String> entries(Path element) throws IOException {
+        Set<String> entries = new HashSet<>();
+        if (Files.isDirectory(element)) {
+            try (Stream<Path> files = Files.walk(element)) {
+                files.filter(Files::isRegularFile)
+                        .map(file -> element.relativize(file).toString().replace('\\', '/'))
+                        .filter(ClasspathOrder::isShadowable)
+                        .forEach(entries::add);
+            }
+        } else if (Files.isRegularFile(element)) {
+            try (ZipFile zipFile = new ZipFile(element.toFile())) {
+                Enumeration<? extends ZipEntry> zipEntries = zipFile.entries();
+                while (zipEntries.hasMoreElements()) {
+                    ZipEntry entry = zipEntries.nextElement();
+                    if (!entry.isDirectory() && isShadowable(entry.getName())) {
+                        entries.add(entry.getName());
+                    }
+                }
+            }
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright 2020, Gluon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openjfx;
+
+import org.codehaus.plexus.languages.java.jpms.JavaModuleDescriptor;
+import org.openjfx.runtime.ImageHash;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Splits an application into container layers ordered by how often they change: the runtime image linked from
+ * the JDK and JavaFX modules, the third-party modules, and the application module with its launcher. Each layer
+ * is a tar that only depends on its content, so a layer that didn't change between two builds has the same
+ * digest, and registries don't upload it again. The layers are also written as an
+ * <a href="https://github.com/opencontainers/image-spec/blob/main/image-layout.md">OCI image layout</a>.
+ */
+final class ContainerImage {
+
+    static final String RUNTIME_LAYER = "runtime";
+    static final String DEPENDENCIES_LAYER = "dependencies";
+    static final String APPLICATION_LAYER = "application";
+    static final List<String> LAYERS = Arrays.asList(RUNTIME_LAYER, DEPENDENCIES_LAYER, APPLICATION_LAYER);
+
+    static final String LAYER_MEDIA_TYPE = "application/vnd.oci.image.layer.v1.tar+gzip";
+    static final String CONFIG_MEDIA_TYPE = "application/vnd.oci.image.config.v1+json";
+    static final String MANIFEST_MEDIA_TYPE = "application/vnd.oci.image.manifest.v1+json";
+
+    private static final String JAVA_SE = "java.se";
+
+    private ContainerImage() {
+    }
+
+    /**
+     * Finds the modules the runtime layer has to be linked with: the modules that the application and its
+     * third-party modules require, and that are not third-party modules themselves, so either JDK or JavaFX
+     * modules. Automatic modules don't declare what they require, so <code>java.se</code> is added for them.
+     * @param dependencies the third-party modules, by name
+     */
+    static Set<String> runtimeModules(JavaModuleDescriptor application, Map<String, JavaModuleDescriptor> dependencies) {
+        Set<String> modules = new TreeSet<>();
+        Set<String> visited = new HashSet<>();
+        Deque<JavaModuleDescriptor> queue = new ArrayDeque<>();
+        queue.add(application);
+        visited.add(application.name());
+        while (!queue.isEmpty()) {
+            JavaModuleDescriptor descriptor = queue.poll();
+            if (descriptor.isAutomatic()) {
+                modules.add(JAVA_SE);
+                continue;
+            }
+            for (JavaModuleDescriptor.JavaRequires requires : descriptor.requires()) {
+                if (requires.modifiers().contains(JavaModuleDescriptor.JavaRequires.JavaModifier.STATIC)
+                        || !visited.add(requires.name())) {
+                    continue;
+                }
+                JavaModuleDescriptor dependency = dependencies.get(requires.name());
+                if (dependency != null) {
+                    queue.add(dependency);
+                } else {
+                    modules.add(requires.name());
+                }
+            }
+        }
+        return modules;
+    }
+
+    /**
+     * @return the script that launches the main class of the application with the runtime of the image
+     * @param appDirectory the directory of the application in the container, with <code>runtime</code>,
+     *                     <code>lib</code> and <code>bin</code> directories
+     */
+    static List<String> launcherScript(String appDirectory, String vmOptions, String moduleMainClass, String arguments) {
+        return Arrays.asList(
+                "#!/bin/sh",
+                "JLINK_VM_OPTIONS=\"" + vmOptions + "\"",
+                "exec " + appDirectory + "/runtime/bin/java $JLINK_VM_OPTIONS -p " + appDirectory + "/lib -m "
+                        + moduleMainClass + (arguments.isEmpty() ? "" : " " + arguments) + " \"$@\"");
+    }
+
+    /**
+     * Writes an OCI image layout with the given layers, compressed with gzip, and the configuration of the image.
+     * @param layerTars the uncompressed layers, from the bottom one
+     * @param timestamp the creation time of the image in milliseconds since the epoch
+     * @return the digest of the manifest of the image
+     */
+    static String writeLayout(Path layout, List<Path> layerTars, List<String> entrypoint, String architecture,
+                              String tag, long timestamp) throws IOException {
+        Directories.delete(layout);
+        Path blobs = layout.resolve("blobs/sha256");
+        Files.createDirectories(blobs);
+
+        List<Object> layers = new ArrayList<>();
+        List<Object> diffIds = new ArrayList<>();
+        List<Object> history = new ArrayList<>();
+        String created = Instant.ofEpochMilli(timestamp).toString();
+        for (Path tar : layerTars) {
+            diffIds.add("sha256:" + ImageHash.hashFile(tar));
+            Path compressed = blobs.resolve(tar.getFileName() + ".gz");
+            try (OutputStream os = new GZIPOutputStream(Files.newOutputStream(compressed))) {
+                Files.copy(tar, os);
+            }
+            layers.add(descriptor(LAYER_MEDIA_TYPE, moveToBlob(blobs, compressed), null));
+            Map<String, Object> step = new LinkedHashMap<>();
+            step.put("created", created);
+            step.put("comment", tar.getFileName().toString());
+            history.add(step);
+        }
+
+        Map<String, Object> rootfs = new LinkedHashMap<>();
+        rootfs.put("type", "layers");
+        rootfs.put("diff_ids", diffIds);
+        Map<String, Object> config = new LinkedHashMap<>();
+        config.put("created", created);
+        config.put("architecture", architecture);
+        config.put("os", "linux");
+        config.put("config", Collections.singletonMap("Entrypoint", entrypoint));
+        config.put("rootfs", rootfs);
+        config.put("history", history);
+
+        Map<String, Object> manifest = new LinkedHashMap<>();
+        manifest.put("schemaVersion", 2);
+        manifest.put("mediaType", MANIFEST_MEDIA_TYPE);
+        manifest.put("config", descriptor(CONFIG_MEDIA_TYPE, writeBlob(blobs, Json.toJson(config)), null));
+        manifest.put("layers", layers);
+
+        Map<String, Object> manifestDescriptor = descriptor(MANIFEST_MEDIA_TYPE, writeBlob(blobs, Json.toJson(manifest)),
+                tag == null || tag.isEmpty() ? null : Collections.singletonMap("org.opencontainers.image.ref.name", tag));
+        Map<String, Object> index = new LinkedHashMap<>();
+        index.put("schemaVersion", 2);
+        index.put("manifests", Collections.singletonList(manifestDescriptor));
+        Files.write(layout.resolve("index.json"), Json.toJson(index).getBytes(StandardCharsets.UTF_8));
+        Files.write(layout.resolve("oci-layout"),
+                Json.toJson(Collections.singletonMap("imageLayoutVersion", "1.0.0")).getBytes(StandardCharsets.UTF_8));
+        return (String) manifestDescriptor.get("digest");
+    }
+
+    /**
+     * @return the OCI name of the architecture of the JVM, like <code>amd64</code>
+     */
+    static String architecture(String osArch) {
+        Map<String, String> architectures = new HashMap<>();
+        architectures.put("x86_64", "amd64");
+        architectures.put("aarch64", "arm64");
+        architectures.put("x86", "386");
+        architectures.put("i386", "386");
+        return architectures.getOrDefault(osArch, osArch);
+    }
+
+    private static Map<String, Object> descriptor(String mediaType, Path blob, Map<String, String> annotations)
+            throws IOException {
+        Map<String, Object> descriptor = new LinkedHashMap<>();
+        descriptor.put("mediaType", mediaType);
+        descriptor.put("digest", "sha256:" + blob.getFileName());
+        descriptor.put("size", Files.size(blob));
+        if (annotations != null) {
+            descriptor.put("annotations", annotations);
+        }
+        return descriptor;
+    }
+
+    private static Path writeBlob(Path blobs, String json) throws IOException {
+        Path tmp = blobs.resolve("blob.tmp");
+        Files.write(tmp, json.getBytes(StandardCharsets.UTF_8));
+        return moveToBlob(blobs, tmp);
+    }
+
+    private static Path moveToBlob(Path blobs, Path file) throws IOException {
+        return Files.move(file, blobs.resolve(ImageHash.hashFile(file)), StandardCopyOption.REPLACE_EXISTING);
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2020, Gluon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openjfx;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.languages.java.jpms.JavaModuleDescriptor;
+import org.openjfx.runtime.ImageHash;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Stages the files of the {@link ContainerImage} layers of an application in <code>staging</code>, archives each
+ * layer to <code>layers</code>, and writes the OCI image layout with them to <code>oci</code>, in the given directory.
+ */
+class ContainerLayers {
+
+    interface RuntimeLinker {
+        /**
+         * Links the given modules into a runtime image in the given directory.
+         */
+        void link(Set<String> modules, File runtime) throws MojoExecutionException, MojoFailureException;
+    }
+
+    private final Log log;
+    private final Path directory;
+    private final String appDirectory;
+    private final long timestamp;
+
+    /**
+     * @param appDirectory the directory of the application in the container
+     * @param timestamp the time of all the entries of the layers in milliseconds since the epoch
+     */
+    ContainerLayers(Log log, Path directory, String appDirectory, long timestamp) {
+        this.log = log;
+        this.directory = directory;
+        this.appDirectory = "/" + appDirectory.replaceAll("^/+|/+$", "");
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * @param application the module of the application
+     * @param classes the directory with the classes of the application module
+     * @param dependencies the third-party modules on the module path, by file or directory
+     * @param moduleMainClass the main class, prefixed by its module
+     * @return the digest of the manifest of the image
+     */
+    String create(JavaModuleDescriptor application, File classes, Map<File, JavaModuleDescriptor> dependencies,
+                  String launcherName, String moduleMainClass, String vmOptions, String arguments, String tag,
+                  RuntimeLinker linker) throws IOException, MojoExecutionException, MojoFailureException {
+        Path staging = directory.resolve("staging");
+        Path layersDirectory = directory.resolve("layers");
+        Directories.delete(staging);
+        Files.createDirectories(layersDirectory);
+
+        Map<String, JavaModuleDescriptor> dependencyModules = new LinkedHashMap<>();
+        Path lib = staging.resolve(ContainerImage.DEPENDENCIES_LAYER + appDirectory + "/lib");
+        Files.createDirectories(lib);
+        for (Map.Entry<File, JavaModuleDescriptor> dependency : dependencies.entrySet()) {
+            File file = dependency.getKey();
+            String name = dependency.getValue().name();
+            dependencyModules.put(name, dependency.getValue());
+            if (file.isDirectory()) {
+                ReproducibleArchive.zip(file.toPath(), lib.resolve(name + ".jar"), timestamp);
+            } else {
+                Files.copy(file.toPath(), lib.resolve(file.getName()));
+            }
+        }
+
+        Set<String> runtimeModules = ContainerImage.runtimeModules(application, dependencyModules);
+        log.info("Linking the runtime layer with " + runtimeModules);
+        Path runtime = staging.resolve(ContainerImage.RUNTIME_LAYER + appDirectory + "/runtime");
+        Files.createDirectories(runtime.getParent());
+        linker.link(runtimeModules, runtime.toFile());
+
+        Path applicationLayer = staging.resolve(ContainerImage.APPLICATION_LAYER + appDirectory);
+        Files.createDirectories(applicationLayer.resolve("lib"));
+        ReproducibleArchive.zip(classes.toPath(), applicationLayer.resolve("lib/" + application.name() + ".jar"),
+                timestamp);
+        Path script = applicationLayer.resolve("bin/" + launcherName);
+        Files.createDirectories(script.getParent());
+        Files.write(script, ContainerImage.launcherScript(appDirectory, vmOptions, moduleMainClass, arguments),
+                StandardCharsets.UTF_8);
+        script.toFile().setExecutable(true, false);
+
+        List<Path> tars = new ArrayList<>();
+        for (String layer : ContainerImage.LAYERS) {
+            Path tar = layersDirectory.resolve(layer + ".tar");
+            ReproducibleArchive.tar(staging.resolve(layer), tar, timestamp);
+            log.info(String.format("Layer %s: %s, sha256:%s", layer, NativeLibraryPruning.formatSize(Files.size(tar)),
+                    ImageHash.hashFile(tar)));
+            tars.add(tar);
+        }
+        String digest = ContainerImage.writeLayout(directory.resolve("oci"), tars,
+                Collections.singletonList(appDirectory + "/bin/" + launcherName),
+                ContainerImage.architecture(System.getProperty("os.arch")), tag, timestamp);
+        log.info("OCI image layout " + directory.resolve("oci") + ", manifest " + digest);
+        return digest;
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2020, Gluon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openjfx;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * A bounded, least recently used cache that lives as long as the plugin classes are loaded.
+ * In a long-lived Maven process, like a build daemon, it survives across builds, so values
+ * must be validated against the files they were computed from before they are reused.
+ * It can be used from concurrent builds.
+ */
+final class DaemonCache<K, V> {
+
+    static final DaemonCache<Object, ExecutableInfo> EXECUTABLES = new DaemonCache<>(64);
+    static final DaemonCache<Object, PathResolution> PATH_RESOLUTIONS = new DaemonCache<>(256);
+
+    private final Map<K, V> entries;
+    private long hits;
+    private long misses;
+
+    DaemonCache(int maxEntries) {
+        entries = new LinkedHashMap<K, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * @param valid checks that the cached value is still up to date
+     * @return the cached value, or null if there is none or it is no longer valid
+     */
+    synchronized V get(K key, Predicate<? super V> valid) {
+        V value = entries.get(key);
+        if (value != null && !valid.test(value)) {
+            entries.remove(key);
+            value = null;
+        }
+        if (value == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return value;
+    }
+
+    synchronized void put(K key, V value) {
+        entries.put(key, value);
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "entries: " + entries.size() + ", hits: " + hits + ", misses: " + misses;
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2020, Gluon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openjfx;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Creates cache directories that several builds may fill at the same time: each build fills a temporary
+ * sibling and moves it into place, so a directory is seen either complete or not at all.
+ */
+final class Directories {
+
+    interface Filler {
+        void fill(Path directory) throws IOException;
+    }
+
+    private Directories() {
+    }
+
+    /**
+     * Creates the directory with the given filler, unless it already exists.
+     * @return the directory
+     */
+    static Path createAtomically(Path directory, Filler filler) throws IOException {
+        if (Files.isDirectory(directory)) {
+            return directory;
+        }
+        Files.createDirectories(directory.getParent());
+        Path tmp = Files.createTempDirectory(directory.getParent(), directory.getFileName() + ".");
+        try {
+            filler.fill(tmp);
+            try {
+                move(tmp, directory);
+            } catch (IOException e) {
+                // a concurrent build may have created it in the meantime, the exception depends on the platform,
+                // like a FileSystemException "Directory not empty" on Linux
+                if (!Files.isDirectory(directory)) {
+                    throw e;
+                }
+            }
+        } finally {
+            delete(tmp);
+        }
+        return directory;
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target);
+        }
+    }
+
+    static void delete(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        List<Path> paths = new ArrayList<>();
+        try (Stream<Path> files = Files.walk(path)) {
+            files.sorted(Comparator.reverseOrder()).forEach(paths::add);
+        }
+        for (Path p : paths) {
+            Files.deleteIfExists(p);
+        }
+    }
+}
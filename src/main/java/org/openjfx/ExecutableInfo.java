@@ -0,0 +1,112 @@
+/*
+ * Copyright 2020, Gluon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openjfx;
+
+import org.apache.commons.exec.CommandLine;
+import org.apache.commons.exec.DefaultExecutor;
+import org.apache.commons.exec.PumpStreamHandler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * A resolved JDK executable, like <code>java</code> or <code>jlink</code>, and the facts derived from it.
+ * Instances are shared through the {@link SessionCache} and the {@link DaemonCache}.
+ */
+final class ExecutableInfo {
+
+    private final String executable;
+    private final Path jdkHome;
+    private final boolean java8;
+    private final long size;
+    private final long lastModified;
+
+    private volatile String version;
+
+    /**
+     * @param executable the absolute path of the executable, or its name if it wasn't found
+     */
+    ExecutableInfo(String executable) {
+        this.executable = executable;
+        Path path = Paths.get(executable);
+        this.jdkHome = path.isAbsolute() && path.getNameCount() > 2 ? JavaFXProjectMojo.getParent(path, 2) : null;
+        this.java8 = path.isAbsolute() && Files.exists(path.resolve("../../jre/lib/rt.jar").normalize());
+        this.size = path.toFile().length();
+        this.lastModified = path.toFile().lastModified();
+    }
+
+    /**
+     * @return true if the executable hasn't changed since this instance was created, e.g. by a JDK update
+     */
+    boolean isUpToDate() {
+        File file = new File(executable);
+        return file.length() == size && file.lastModified() == lastModified;
+    }
+
+    String getExecutable() {
+        return executable;
+    }
+
+    /**
+     * @return the home of the JDK the executable belongs to, or null if it wasn't resolved
+     */
+    Path getJdkHome() {
+        return jdkHome;
+    }
+
+    boolean isJava8() {
+        return java8;
+    }
+
+    /**
+     * Runs the executable with the version option the first time it is called.
+     * @return the output of the version option, or null if it failed
+     */
+    String getVersion() {
+        String result = version;
+        if (result == null) {
+            synchronized (this) {
+                result = version;
+                if (result == null) {
+                    result = version = readVersion();
+                }
+            }
+        }
+        return result.isEmpty() ? null : result;
+    }
+
+    private String readVersion() {
+        CommandLine commandLine = new CommandLine(executable).addArgument(java8 ? "-version" : "--version");
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        DefaultExecutor exec = new DefaultExecutor();
+        exec.setStreamHandler(new PumpStreamHandler(baos));
+        try {
+            exec.execute(commandLine);
+            return baos.toString().trim();
+        } catch (IOException e) {
+            return "";
+        }
+    }
+
+    @Override
+    public String toString() {
+        return executable;
+    }
+}
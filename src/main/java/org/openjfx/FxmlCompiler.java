@@ -0,0 +1,1136 @@
+/*
+ * Copyright 2020, Gluon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openjfx;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.w3c.dom.ProcessingInstruction;
+import org.xml.sax.SAXException;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Parameter;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Generates a Java class that builds the object graph of an FXML file, so it doesn't have to be parsed
+ * and resolved with reflection by <code>FXMLLoader</code> at runtime. The generated class has the same
+ * API whether the FXML file is compiled or not:
+ * <pre>
+ * MainFxml fxml = new MainFxml();
+ * Parent root = fxml.load();
+ * MainController controller = fxml.getController();
+ * </pre>
+ * Classes are resolved with the project class loader, as <code>FXMLLoader</code> would. Constructs that
+ * can't be compiled, like <code>fx:include</code>, scripts, resource bundles or expression bindings,
+ * throw {@link UnsupportedFxmlException}, and {@link #generateFallback} creates a class that loads the
+ * FXML file with <code>FXMLLoader</code> instead.
+ */
+class FxmlCompiler {
+
+    static final String CLASS_SUFFIX = "Fxml";
+
+    private static final String FXML_NAMESPACE_PREFIX = "http://javafx.com/fxml";
+    private static final String XMLNS_NAMESPACE = "http://www.w3.org/2000/xmlns/";
+    private static final String DEFAULT_PROPERTY = "javafx.beans.DefaultProperty";
+    private static final String ID_PROPERTY = "com.sun.javafx.beans.IDProperty";
+    private static final String NAMED_ARG = "javafx.beans.NamedArg";
+    private static final String FXML_ANNOTATION = "javafx.fxml.FXML";
+    private static final String INDENT = "        ";
+
+    private final ClassLoader classLoader;
+
+    // state of the FXML file being generated
+    private String packageName;
+    private Map<String, String> imports;
+    private List<String> importedPackages;
+    private StringBuilder body;
+    private Map<String, Class<?>> variables;
+    private Class<?> controllerType;
+    private boolean directControllerAccess;
+    private int handlers;
+
+    FxmlCompiler(ClassLoader classLoader) {
+        this.classLoader = classLoader;
+    }
+
+    /**
+     * Thrown when an FXML file uses a construct that can only be handled by <code>FXMLLoader</code>.
+     */
+    static class UnsupportedFxmlException extends Exception {
+        UnsupportedFxmlException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * @return the name of the class generated for an FXML file, like <code>MainViewFxml</code> for
+     * <code>main-view.fxml</code>, or null if the file name can't be turned into a Java identifier
+     */
+    static String toClassName(String fxmlName) {
+        String baseName = fxmlName.substring(0, fxmlName.lastIndexOf('.'));
+        StringBuilder name = new StringBuilder();
+        boolean upper = true;
+        for (char c : baseName.toCharArray()) {
+            if (c == '-' || c == '_' || c == '.' || c == ' ') {
+                upper = true;
+            } else if (!Character.isJavaIdentifierPart(c)) {
+                return null;
+            } else {
+                name.append(upper ? Character.toUpperCase(c) : c);
+                upper = false;
+            }
+        }
+        if (name.length() == 0 || !Character.isJavaIdentifierStart(name.charAt(0))) {
+            return null;
+        }
+        return name + CLASS_SUFFIX;
+    }
+
+    String generate(String packageName, String className, String fxmlName, InputStream fxml)
+            throws UnsupportedFxmlException, IOException {
+        Document document = parse(fxml);
+        this.packageName = packageName;
+        this.imports = new HashMap<>();
+        this.importedPackages = new ArrayList<>(Arrays.asList("java.lang"));
+        this.body = new StringBuilder();
+        this.variables = new LinkedHashMap<>();
+        this.controllerType = null;
+        this.directControllerAccess = false;
+        this.handlers = 0;
+
+        NodeList nodes = document.getChildNodes();
+        for (int i = 0; i < nodes.getLength(); i++) {
+            Node node = nodes.item(i);
+            if (node instanceof ProcessingInstruction) {
+                processInstruction((ProcessingInstruction) node);
+            }
+        }
+
+        Element root = document.getDocumentElement();
+        if (isFxNamespace(root)) {
+            throw new UnsupportedFxmlException("<fx:" + root.getLocalName() + "> as root element");
+        }
+        String controllerClassName = fxAttribute(root, "controller");
+        if (controllerClassName != null) {
+            controllerType = loadClass(controllerClassName);
+            if (controllerType == null) {
+                throw new UnsupportedFxmlException("controller class " + controllerClassName + " not found");
+            }
+            directControllerAccess = isAccessible(controllerType);
+        }
+        String rootVariable = processInstance(root, true);
+
+        StringBuilder source = new StringBuilder();
+        appendHeader(source, packageName, className, fxmlName);
+        source.append("    @SuppressWarnings({\"unchecked\", \"rawtypes\"})\n");
+        source.append("    public <T> T load() throws IOException {\n");
+        source.append(INDENT).append("URL location = ").append(className).append(".class.getResource(FXML);\n");
+        if (controllerType != null) {
+            source.append(INDENT).append("if (this.controller == null) {\n");
+            source.append(INDENT).append("    this.controller = ").append(newControllerExpression()).append(";\n");
+            source.append(INDENT).append("}\n");
+        }
+        source.append(INDENT).append("Object controller = this.controller;\n");
+        if (directControllerAccess) {
+            source.append(INDENT).append(typeName(controllerType)).append(" c = (").append(typeName(controllerType))
+                    .append(") controller;\n");
+        }
+        source.append(body);
+        source.append(INDENT).append("if (controller != null) {\n");
+        source.append(INDENT).append("    initialize(controller, location);\n");
+        source.append(INDENT).append("}\n");
+        source.append(INDENT).append("return (T) ").append(rootVariable).append(";\n");
+        source.append("    }\n\n");
+        appendHelpers(source, className);
+        source.append("}\n");
+        return source.toString();
+    }
+
+    /**
+     * @return a class with the same API as the compiled one, that loads the FXML file with <code>FXMLLoader</code>
+     */
+    static String generateFallback(String packageName, String className, String fxmlName) {
+        StringBuilder source = new StringBuilder();
+        appendHeader(source, packageName, className, fxmlName);
+        source.append("    public <T> T load() throws IOException {\n");
+        source.append(INDENT).append("javafx.fxml.FXMLLoader loader = new javafx.fxml.FXMLLoader(")
+                .append(className).append(".class.getResource(FXML));\n");
+        source.append(INDENT).append("if (controller != null) {\n");
+        source.append(INDENT).append("    loader.setController(controller);\n");
+        source.append(INDENT).append("}\n");
+        source.append(INDENT).append("T root = loader.load();\n");
+        source.append(INDENT).append("controller = loader.getController();\n");
+        source.append(INDENT).append("return root;\n");
+        source.append("    }\n");
+        source.append("}\n");
+        return source.toString();
+    }
+
+    private static void appendHeader(StringBuilder source, String packageName, String className, String fxmlName) {
+        source.append("// Generated by javafx-maven-plugin from ").append(fxmlName).append(", do not edit\n");
+        if (!packageName.isEmpty()) {
+            source.append("package ").append(packageName).append(";\n");
+        }
+        source.append("\n");
+        source.append("import java.io.IOException;\n");
+        source.append("import java.lang.reflect.Field;\n");
+        source.append("import java.lang.reflect.Method;\n");
+        source.append("import java.lang.reflect.Modifier;\n");
+        source.append("import java.net.URL;\n");
+        source.append("import java.util.ResourceBundle;\n\n");
+        source.append("public final class ").append(className).append(" {\n\n");
+        source.append("    private static final String FXML = ").append(literal(fxmlName)).append(";\n\n");
+        source.append("    private Object controller;\n\n");
+        source.append("    public ").append(className).append(" setController(Object controller) {\n");
+        source.append(INDENT).append("this.controller = controller;\n");
+        source.append(INDENT).append("return this;\n");
+        source.append("    }\n\n");
+        source.append("    @SuppressWarnings(\"unchecked\")\n");
+        source.append("    public <C> C getController() {\n");
+        source.append(INDENT).append("return (C) controller;\n");
+        source.append("    }\n\n");
+    }
+
+    /**
+     * Appends the reflective helpers, used for members of the controller the generated class can't access,
+     * and to call the <code>initialize</code> method of the controller like <code>FXMLLoader</code> does.
+     */
+    private static void appendHelpers(StringBuilder source, String className) {
+        source.append(
+                "    private static URL resource(String name) throws IOException {\n" +
+                "        URL url = " + className + ".class.getResource(name);\n" +
+                "        if (url == null) {\n" +
+                "            throw new IOException(\"Resource not found: \" + name);\n" +
+                "        }\n" +
+                "        return url;\n" +
+                "    }\n\n" +
+                "    private static Object newController(String name) throws IOException {\n" +
+                "        try {\n" +
+                "            java.lang.reflect.Constructor<?> constructor = Class.forName(name, true,\n" +
+                "                    " + className + ".class.getClassLoader()).getDeclaredConstructor();\n" +
+                "            constructor.setAccessible(true);\n" +
+                "            return constructor.newInstance();\n" +
+                "        } catch (ReflectiveOperationException e) {\n" +
+                "            throw new IOException(\"Error creating the controller \" + name, e);\n" +
+                "        }\n" +
+                "    }\n\n" +
+                "    private static boolean isInjectable(java.lang.reflect.AccessibleObject member, int modifiers) {\n" +
+                "        if (Modifier.isPublic(modifiers)) {\n" +
+                "            return true;\n" +
+                "        }\n" +
+                "        for (java.lang.annotation.Annotation annotation : member.getAnnotations()) {\n" +
+                "            if (\"" + FXML_ANNOTATION + "\".equals(annotation.annotationType().getName())) {\n" +
+                "                return true;\n" +
+                "            }\n" +
+                "        }\n" +
+                "        return false;\n" +
+                "    }\n\n" +
+                "    private static void inject(Object controller, String name, Object value) throws IOException {\n" +
+                "        for (Class<?> type = controller.getClass(); type != null; type = type.getSuperclass()) {\n" +
+                "            for (Field field : type.getDeclaredFields()) {\n" +
+                "                if (field.getName().equals(name) && isInjectable(field, field.getModifiers())\n" +
+                "                        && field.getType().isInstance(value)) {\n" +
+                "                    try {\n" +
+                "                        field.setAccessible(true);\n" +
+                "                        field.set(controller, value);\n" +
+                "                    } catch (ReflectiveOperationException | RuntimeException e) {\n" +
+                "                        throw new IOException(\"Error injecting \" + name, e);\n" +
+                "                    }\n" +
+                "                    return;\n" +
+                "                }\n" +
+                "            }\n" +
+                "        }\n" +
+                "    }\n\n" +
+                "    private static Method method(Object controller, String name, int parameters) throws IOException {\n" +
+                "        for (Class<?> type = controller.getClass(); type != null; type = type.getSuperclass()) {\n" +
+                "            for (Method method : type.getDeclaredMethods()) {\n" +
+                "                if (method.getName().equals(name) && method.getParameterCount() == parameters\n" +
+                "                        && isInjectable(method, method.getModifiers())) {\n" +
+                "                    method.setAccessible(true);\n" +
+                "                    return method;\n" +
+                "                }\n" +
+                "            }\n" +
+                "        }\n" +
+                "        throw new IOException(\"Controller method not found: \" + name);\n" +
+                "    }\n\n" +
+                "    private static void invoke(Method method, Object controller, Object... args) {\n" +
+                "        try {\n" +
+                "            method.invoke(controller, args);\n" +
+                "        } catch (java.lang.reflect.InvocationTargetException e) {\n" +
+                "            throw new RuntimeException(e.getCause());\n" +
+                "        } catch (IllegalAccessException e) {\n" +
+                "            throw new RuntimeException(e);\n" +
+                "        }\n" +
+                "    }\n\n" +
+                "    private static boolean isInitializable(Class<?> type) {\n" +
+                "        for (Class<?> i : type.getInterfaces()) {\n" +
+                "            if (\"javafx.fxml.Initializable\".equals(i.getName()) || isInitializable(i)) {\n" +
+                "                return true;\n" +
+                "            }\n" +
+                "        }\n" +
+                "        return type.getSuperclass() != null && isInitializable(type.getSuperclass());\n" +
+                "    }\n\n" +
+                "    private static void initialize(Object controller, URL location) throws IOException {\n" +
+                "        try {\n" +
+                "            if (isInitializable(controller.getClass())) {\n" +
+                "                Class.forName(\"javafx.fxml.Initializable\", false, controller.getClass().getClassLoader())\n" +
+                "                        .getMethod(\"initialize\", URL.class, ResourceBundle.class)\n" +
+                "                        .invoke(controller, location, null);\n" +
+                "                return;\n" +
+                "            }\n" +
+                "            for (Class<?> type = controller.getClass(); type != null; type = type.getSuperclass()) {\n" +
+                "                for (Method method : type.getDeclaredMethods()) {\n" +
+                "                    if (method.getName().equals(\"initialize\") && method.getParameterCount() == 0\n" +
+                "                            && isInjectable(method, method.getModifiers())) {\n" +
+                "                        method.setAccessible(true);\n" +
+                "                        method.invoke(controller);\n" +
+                "                        return;\n" +
+                "                    }\n" +
+                "                }\n" +
+                "            }\n" +
+                "        } catch (java.lang.reflect.InvocationTargetException e) {\n" +
+                "            throw new IOException(\"Error initializing the controller\", e.getCause());\n" +
+                "        } catch (ReflectiveOperationException e) {\n" +
+                "            throw new IOException(\"Error initializing the controller\", e);\n" +
+                "        }\n" +
+                "    }\n");
+    }
+
+    private static Document parse(InputStream fxml) throws IOException, UnsupportedFxmlException {
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setNamespaceAware(true);
+            factory.setExpandEntityReferences(false);
+            return factory.newDocumentBuilder().parse(fxml);
+        } catch (SAXException e) {
+            throw new UnsupportedFxmlException("invalid XML: " + e.getMessage());
+        } catch (ParserConfigurationException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private void processInstruction(ProcessingInstruction instruction) throws UnsupportedFxmlException {
+        String data = instruction.getData().trim();
+        if ("import".equals(instruction.getTarget())) {
+            if (data.endsWith(".*")) {
+                importedPackages.add(data.substring(0, data.length() - 2));
+            } else {
+                imports.put(data.substring(data.lastIndexOf('.') + 1), data);
+            }
+        } else if ("language".equals(instruction.getTarget()) || "compile".equals(instruction.getTarget())) {
+            throw new UnsupportedFxmlException("<?" + instruction.getTarget() + "?> processing instruction");
+        }
+    }
+
+    /**
+     * Generates the code that creates the object of an instance element, sets its properties and adds its children.
+     * @return the variable that holds the object
+     */
+    private String processInstance(Element element, boolean root) throws UnsupportedFxmlException {
+        if (isFxNamespace(element)) {
+            throw new UnsupportedFxmlException("<fx:" + element.getLocalName() + ">");
+        }
+        String tagName = element.getTagName();
+        Class<?> type = resolveType(tagName);
+        if (type == null) {
+            throw new UnsupportedFxmlException("class " + tagName + " not found");
+        }
+        if (!isAccessible(type)) {
+            throw new UnsupportedFxmlException("class " + type.getName() + " is not accessible");
+        }
+
+        String id = null;
+        String value = null;
+        String constant = null;
+        Map<String, String> properties = new LinkedHashMap<>();
+        Map<String, String> staticProperties = new LinkedHashMap<>();
+        Map<String, String> eventHandlers = new LinkedHashMap<>();
+        NamedNodeMap attributes = element.getAttributes();
+        for (int i = 0; i < attributes.getLength(); i++) {
+            Attr attribute = (Attr) attributes.item(i);
+            String name = attribute.getLocalName() != null ? attribute.getLocalName() : attribute.getName();
+            if (XMLNS_NAMESPACE.equals(attribute.getNamespaceURI()) || "xmlns".equals(attribute.getName())) {
+                continue;
+            }
+            if (isFxNamespace(attribute)) {
+                if ("id".equals(name)) {
+                    id = attribute.getValue();
+                } else if ("value".equals(name)) {
+                    value = attribute.getValue();
+                } else if ("constant".equals(name)) {
+                    constant = attribute.getValue();
+                } else if (!"controller".equals(name) || !root) {
+                    throw new UnsupportedFxmlException("fx:" + name + " attribute");
+                }
+            } else if (isStaticPropertyName(name)) {
+                staticProperties.put(name, attribute.getValue());
+            } else if (name.startsWith("on") && name.length() > 2 && Character.isUpperCase(name.charAt(2))) {
+                eventHandlers.put(name, attribute.getValue());
+            } else {
+                properties.put(name, attribute.getValue());
+            }
+        }
+
+        String expression;
+        if (value != null) {
+            expression = coerce(value, type);
+        } else if (constant != null) {
+            expression = constant(type, constant);
+        } else if (type == java.net.URL.class && properties.size() == 1 && properties.containsKey("value")) {
+            expression = location(properties.remove("value"), java.net.URL.class);
+        } else {
+            expression = construct(type, properties);
+        }
+        String variable = declare(type, expression);
+
+        if (id != null) {
+            String idProperty = annotationValue(type, ID_PROPERTY);
+            if (idProperty != null && !properties.containsKey(idProperty)) {
+                properties.put(idProperty, "\\" + id);
+            }
+        }
+        for (Map.Entry<String, String> property : properties.entrySet()) {
+            setProperty(variable, type, property.getKey(), property.getValue());
+        }
+        for (Map.Entry<String, String> property : staticProperties.entrySet()) {
+            setStaticProperty(variable, property.getKey(), coerceFunction(property.getValue()));
+        }
+        for (Map.Entry<String, String> handler : eventHandlers.entrySet()) {
+            setEventHandler(variable, type, handler.getKey(), handler.getValue());
+        }
+
+        List<String> defaultPropertyValues = new ArrayList<>();
+        NodeList children = element.getChildNodes();
+        for (int i = 0; i < children.getLength(); i++) {
+            Node child = children.item(i);
+            if (child.getNodeType() == Node.TEXT_NODE || child.getNodeType() == Node.CDATA_SECTION_NODE) {
+                if (!child.getTextContent().trim().isEmpty()) {
+                    throw new UnsupportedFxmlException("text content in <" + tagName + ">");
+                }
+            } else if (child instanceof Element) {
+                Element childElement = (Element) child;
+                String childName = childElement.getTagName();
+                if (isFxNamespace(childElement)) {
+                    throw new UnsupportedFxmlException("<fx:" + childElement.getLocalName() + ">");
+                } else if (isStaticPropertyName(childName)) {
+                    processStaticPropertyElement(variable, childElement);
+                } else if (isPropertyName(childName)) {
+                    processPropertyElement(variable, type, childElement);
+                } else {
+                    defaultPropertyValues.add(processInstance(childElement, false));
+                }
+            }
+        }
+        if (!defaultPropertyValues.isEmpty()) {
+            String defaultProperty = annotationValue(type, DEFAULT_PROPERTY);
+            if (defaultProperty == null) {
+                throw new UnsupportedFxmlException(type.getName() + " has no default property");
+            }
+            addValues(variable, type, defaultProperty, defaultPropertyValues);
+        }
+
+        if (id != null) {
+            inject(id, variable);
+        }
+        return variable;
+    }
+
+    private void processPropertyElement(String variable, Class<?> type, Element element) throws UnsupportedFxmlException {
+        String name = element.getTagName();
+        if (element.getAttributes().getLength() > 0) {
+            throw new UnsupportedFxmlException("attributes in property element <" + name + ">");
+        }
+        List<String> values = childInstances(element);
+        if (values == null) {
+            setProperty(variable, type, name, "\\" + element.getTextContent().trim());
+        } else {
+            addValues(variable, type, name, values);
+        }
+    }
+
+    private void processStaticPropertyElement(String variable, Element element) throws UnsupportedFxmlException {
+        List<String> values = childInstances(element);
+        if (values == null) {
+            setStaticProperty(variable, element.getTagName(), coerceFunction("\\" + element.getTextContent().trim()));
+        } else if (values.size() == 1) {
+            setStaticProperty(variable, element.getTagName(), target -> values.get(0));
+        } else {
+            throw new UnsupportedFxmlException("several values in <" + element.getTagName() + ">");
+        }
+    }
+
+    /**
+     * @return the variables of the instances in a property element, or null if it only has text
+     */
+    private List<String> childInstances(Element element) throws UnsupportedFxmlException {
+        List<Element> elements = new ArrayList<>();
+        NodeList children = element.getChildNodes();
+        for (int i = 0; i < children.getLength(); i++) {
+            if (children.item(i) instanceof Element) {
+                elements.add((Element) children.item(i));
+            }
+        }
+        if (elements.isEmpty()) {
+            return null;
+        }
+        List<String> values = new ArrayList<>();
+        for (Element child : elements) {
+            if (!isFxNamespace(child) && (isPropertyName(child.getTagName()) || isStaticPropertyName(child.getTagName()))) {
+                throw new UnsupportedFxmlException("property element <" + child.getTagName() + "> in <"
+                        + element.getTagName() + ">");
+            }
+            values.add(processInstance(child, false));
+        }
+        return values;
+    }
+
+    private String declare(Class<?> type, String expression) {
+        String variable = "v" + (variables.size() + 1);
+        variables.put(variable, type);
+        body.append(INDENT).append(typeName(type)).append(' ').append(variable).append(" = ").append(expression).append(";\n");
+        return variable;
+    }
+
+    /**
+     * @return the expression that creates the object, with the no-arg constructor or with a constructor
+     * with <code>@NamedArg</code> parameters. Properties passed to the constructor are removed from the map.
+     */
+    private String construct(Class<?> type, Map<String, String> properties) throws UnsupportedFxmlException {
+        if (Modifier.isAbstract(type.getModifiers()) || type.isInterface()) {
+            throw new UnsupportedFxmlException("class " + type.getName() + " is abstract");
+        }
+        Constructor<?> best = null;
+        int bestUnmatched = Integer.MAX_VALUE;
+        for (Constructor<?> constructor : type.getConstructors()) {
+            if (constructor.getParameterCount() == 0) {
+                // properties are set after creating the object
+                best = constructor;
+                break;
+            }
+            // otherwise, the constructor that takes all the properties with the fewest default arguments
+            List<String> names = namedArguments(constructor);
+            if (names != null && names.containsAll(properties.keySet())
+                    && names.size() - properties.size() < bestUnmatched) {
+                best = constructor;
+                bestUnmatched = names.size() - properties.size();
+            }
+        }
+        if (best == null) {
+            throw new UnsupportedFxmlException("class " + type.getName() + " has no usable constructor");
+        }
+        List<String> arguments = new ArrayList<>();
+        Parameter[] parameters = best.getParameters();
+        for (int i = 0; i < parameters.length; i++) {
+            String name = namedArgument(parameters[i], "value");
+            String value = properties.remove(name);
+            if (value == null) {
+                value = namedArgument(parameters[i], "defaultValue");
+            }
+            arguments.add(value == null || value.isEmpty() ? defaultValue(parameters[i].getType())
+                    : coerce(value, parameters[i].getType()));
+        }
+        return "new " + typeName(type) + "(" + String.join(", ", arguments) + ")";
+    }
+
+    private static List<String> namedArguments(Constructor<?> constructor) {
+        List<String> names = new ArrayList<>();
+        for (Parameter parameter : constructor.getParameters()) {
+            String name = namedArgument(parameter, "value");
+            if (name == null) {
+                return null;
+            }
+            names.add(name);
+        }
+        return names;
+    }
+
+    private static String namedArgument(Parameter parameter, String attribute) {
+        for (Annotation annotation : parameter.getAnnotations()) {
+            if (NAMED_ARG.equals(annotation.annotationType().getName())) {
+                try {
+                    return (String) annotation.annotationType().getMethod(attribute).invoke(annotation);
+                } catch (ReflectiveOperationException e) {
+                    return null;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static String defaultValue(Class<?> type) {
+        if (type == boolean.class) {
+            return "false";
+        } else if (type == char.class) {
+            return "'\\0'";
+        } else if (type.isPrimitive()) {
+            return "(" + type.getName() + ") 0";
+        }
+        return "null";
+    }
+
+    private void setProperty(String variable, Class<?> type, String name, String value) throws UnsupportedFxmlException {
+        Method setter = findSetter(type, name);
+        if (setter != null) {
+            body.append(INDENT).append(variable).append('.').append(setter.getName()).append('(')
+                    .append(coerce(value, setter.getParameterTypes()[0])).append(");\n");
+            return;
+        }
+        Method getter = findGetter(type, name);
+        if (getter != null && java.util.List.class.isAssignableFrom(getter.getReturnType())) {
+            // a list property set with an attribute takes a comma separated list of values
+            Class<?> elementType = elementType(getter);
+            for (String item : value.split(",")) {
+                body.append(INDENT).append(variable).append('.').append(getter.getName()).append("().add(")
+                        .append(coerce(item.trim(), elementType)).append(");\n");
+            }
+            return;
+        }
+        throw new UnsupportedFxmlException("property " + name + " of " + type.getName());
+    }
+
+    private void addValues(String variable, Class<?> type, String name, List<String> values) throws UnsupportedFxmlException {
+        Method getter = findGetter(type, name);
+        if (getter != null && java.util.List.class.isAssignableFrom(getter.getReturnType())) {
+            Class<?> elementType = elementType(getter);
+            for (String value : values) {
+                String argument = elementType == String.class && variables.get(value) != String.class
+                        ? "String.valueOf(" + value + ")" : value;
+                body.append(INDENT).append(variable).append('.').append(getter.getName()).append("().add(")
+                        .append(argument).append(");\n");
+            }
+            return;
+        }
+        Method setter = findSetter(type, name);
+        if (setter != null && values.size() == 1) {
+            body.append(INDENT).append(variable).append('.').append(setter.getName()).append('(')
+                    .append(values.get(0)).append(");\n");
+            return;
+        }
+        throw new UnsupportedFxmlException("property " + name + " of " + type.getName());
+    }
+
+    private interface ValueFunction {
+        String apply(Class<?> target) throws UnsupportedFxmlException;
+    }
+
+    private ValueFunction coerceFunction(String value) {
+        return target -> coerce(value, target);
+    }
+
+    private void setStaticProperty(String variable, String name, ValueFunction value) throws UnsupportedFxmlException {
+        int dot = name.lastIndexOf('.');
+        Class<?> type = resolveType(name.substring(0, dot));
+        String setterName = "set" + capitalize(name.substring(dot + 1));
+        if (type != null && isAccessible(type)) {
+            for (Method method : type.getMethods()) {
+                if (method.getName().equals(setterName) && Modifier.isStatic(method.getModifiers())
+                        && method.getParameterCount() == 2
+                        && method.getParameterTypes()[0].isAssignableFrom(variables.get(variable))) {
+                    body.append(INDENT).append(typeName(type)).append('.').append(setterName).append('(').append(variable)
+                            .append(", ").append(value.apply(method.getParameterTypes()[1])).append(");\n");
+                    return;
+                }
+            }
+        }
+        throw new UnsupportedFxmlException("static property " + name);
+    }
+
+    private void setEventHandler(String variable, Class<?> type, String name, String value) throws UnsupportedFxmlException {
+        if (!value.startsWith("#")) {
+            throw new UnsupportedFxmlException("script event handler " + name + "=\"" + value + "\"");
+        }
+        if (controllerType == null) {
+            throw new UnsupportedFxmlException("event handler " + value + " without fx:controller");
+        }
+        Method setter = findSetter(type, name);
+        if (setter == null) {
+            throw new UnsupportedFxmlException("event handler property " + name + " of " + type.getName());
+        }
+        String methodName = value.substring(1);
+        Method handler = findControllerMethod(methodName);
+        if (handler == null) {
+            throw new UnsupportedFxmlException("controller method " + methodName);
+        }
+        String argument = handler.getParameterCount() == 0 ? ""
+                : "(" + typeName(handler.getParameterTypes()[0]) + ") event";
+        String call;
+        if (directControllerAccess && isAccessible(handler.getModifiers(), handler.getDeclaringClass())) {
+            call = "c." + methodName + "(" + argument + ")";
+        } else {
+            String method = "m" + (++handlers);
+            body.append(INDENT).append("Method ").append(method).append(" = method(controller, ").append(literal(methodName))
+                    .append(", ").append(handler.getParameterCount()).append(");\n");
+            call = "invoke(" + method + ", controller" + (handler.getParameterCount() == 0 ? "" : ", event") + ")";
+        }
+        body.append(INDENT).append(variable).append('.').append(setter.getName()).append("(event -> ").append(call)
+                .append(");\n");
+    }
+
+    private Method findControllerMethod(String name) {
+        Method noArgument = null;
+        for (Class<?> type = controllerType; type != null; type = type.getSuperclass()) {
+            for (Method method : type.getDeclaredMethods()) {
+                if (!method.getName().equals(name) || !isInjectable(method, method.getModifiers())) {
+                    continue;
+                }
+                if (method.getParameterCount() == 1) {
+                    return method;
+                } else if (method.getParameterCount() == 0 && noArgument == null) {
+                    noArgument = method;
+                }
+            }
+        }
+        return noArgument;
+    }
+
+    private void inject(String id, String variable) {
+        if (controllerType == null) {
+            // the controller can still be set with setController
+            body.append(INDENT).append("if (controller != null) {\n");
+            body.append(INDENT).append("    inject(controller, ").append(literal(id)).append(", ").append(variable).append(");\n");
+            body.append(INDENT).append("}\n");
+            return;
+        }
+        for (Class<?> type = controllerType; type != null; type = type.getSuperclass()) {
+            for (Field field : type.getDeclaredFields()) {
+                if (!field.getName().equals(id) || Modifier.isStatic(field.getModifiers())) {
+                    continue;
+                }
+                if (!isInjectable(field, field.getModifiers())) {
+                    return;
+                }
+                if (directControllerAccess && isAccessible(field.getModifiers(), field.getDeclaringClass())
+                        && !Modifier.isFinal(field.getModifiers())) {
+                    body.append(INDENT).append("c.").append(id).append(" = ").append(variable).append(";\n");
+                } else {
+                    body.append(INDENT).append("inject(controller, ").append(literal(id)).append(", ")
+                            .append(variable).append(");\n");
+                }
+                return;
+            }
+        }
+    }
+
+    private String newControllerExpression() {
+        try {
+            Constructor<?> constructor = controllerType.getDeclaredConstructor();
+            if (directControllerAccess && isAccessible(constructor.getModifiers(), controllerType)) {
+                return "new " + typeName(controllerType) + "()";
+            }
+        } catch (NoSuchMethodException e) {
+            // fails at runtime, like FXMLLoader
+        }
+        return "newController(" + literal(controllerType.getName()) + ")";
+    }
+
+    /**
+     * @return the Java expression of the given FXML attribute value, converted to the target type
+     * like <code>FXMLLoader</code> does
+     */
+    String coerce(String value, Class<?> target) throws UnsupportedFxmlException {
+        if (value.startsWith("@")) {
+            return location(value, target);
+        } else if (value.startsWith("%")) {
+            throw new UnsupportedFxmlException("resource key " + value);
+        } else if (value.startsWith("$")) {
+            throw new UnsupportedFxmlException("expression " + value);
+        } else if (value.startsWith("\\")) {
+            value = value.substring(1);
+        }
+
+        Class<?> type = box(target);
+        try {
+            if (type == String.class || type == Object.class || type == CharSequence.class) {
+                return literal(value);
+            } else if (type == Boolean.class) {
+                return Boolean.toString(Boolean.parseBoolean(value));
+            } else if (type == Character.class && value.length() == 1) {
+                return "'" + escape(value, '\'') + "'";
+            } else if (type == Integer.class) {
+                return Integer.toString(Integer.parseInt(value.trim()));
+            } else if (type == Long.class) {
+                return Long.parseLong(value.trim()) + "L";
+            } else if (type == Short.class || type == Byte.class) {
+                return "(" + (type == Short.class ? "short" : "byte") + ") " + Integer.parseInt(value.trim());
+            } else if (type == Float.class) {
+                return floatingPoint(Float.parseFloat(value.trim()), "Float", "f");
+            } else if (type == Double.class || type == Number.class) {
+                return floatingPoint(Double.parseDouble(value.trim()), "Double", "");
+            }
+        } catch (NumberFormatException e) {
+            throw new UnsupportedFxmlException("invalid " + target.getSimpleName() + " value " + value);
+        }
+        if (type.isEnum()) {
+            return typeName(type) + "." + enumConstant(type, value);
+        }
+        try {
+            Method valueOf = type.getMethod("valueOf", String.class);
+            if (Modifier.isStatic(valueOf.getModifiers()) && type.isAssignableFrom(valueOf.getReturnType())
+                    && isAccessible(type)) {
+                return typeName(type) + ".valueOf(" + literal(value) + ")";
+            }
+        } catch (NoSuchMethodException e) {
+            // not convertible from a String
+        }
+        throw new UnsupportedFxmlException("conversion of \"" + value + "\" to " + target.getName());
+    }
+
+    private String location(String value, Class<?> target) throws UnsupportedFxmlException {
+        String path = value.substring(1);
+        String url = path.startsWith("/") ? "resource(" + literal(path) + ")"
+                : "new URL(location, " + literal(path) + ")";
+        if (target == java.net.URL.class) {
+            return url;
+        } else if (target == String.class || target == Object.class) {
+            return url + ".toExternalForm()";
+        }
+        throw new UnsupportedFxmlException("location " + value + " for " + target.getName());
+    }
+
+    private String constant(Class<?> type, String name) throws UnsupportedFxmlException {
+        try {
+            Field field = type.getField(name);
+            if (Modifier.isStatic(field.getModifiers())) {
+                return typeName(type) + "." + name;
+            }
+        } catch (NoSuchFieldException e) {
+            // reported below
+        }
+        throw new UnsupportedFxmlException("constant " + type.getName() + "." + name);
+    }
+
+    private static String enumConstant(Class<?> type, String value) throws UnsupportedFxmlException {
+        List<String> names = new ArrayList<>();
+        for (Object constant : type.getEnumConstants()) {
+            names.add(((Enum<?>) constant).name());
+        }
+        if (names.contains(value)) {
+            return value;
+        }
+        // FXMLLoader also accepts camel case names, like centerLeft for CENTER_LEFT
+        String upper = value.replaceAll("([a-z])([A-Z])", "$1_$2").toUpperCase(Locale.ROOT);
+        if (names.contains(upper)) {
+            return upper;
+        }
+        throw new UnsupportedFxmlException("constant " + value + " of " + type.getName());
+    }
+
+    private static String floatingPoint(double value, String type, String suffix) {
+        if (Double.isNaN(value)) {
+            return type + ".NaN";
+        } else if (Double.isInfinite(value)) {
+            return type + (value > 0 ? ".POSITIVE_INFINITY" : ".NEGATIVE_INFINITY");
+        }
+        String literal = "Float".equals(type) ? Float.toString((float) value) : Double.toString(value);
+        return literal + suffix;
+    }
+
+    private static Class<?> box(Class<?> type) {
+        if (!type.isPrimitive()) {
+            return type;
+        }
+        if (type == boolean.class) {
+            return Boolean.class;
+        } else if (type == char.class) {
+            return Character.class;
+        } else if (type == int.class) {
+            return Integer.class;
+        } else if (type == long.class) {
+            return Long.class;
+        } else if (type == short.class) {
+            return Short.class;
+        } else if (type == byte.class) {
+            return Byte.class;
+        } else if (type == float.class) {
+            return Float.class;
+        }
+        return Double.class;
+    }
+
+    private static Method findSetter(Class<?> type, String name) {
+        String setterName = "set" + capitalize(name);
+        Method getter = findGetter(type, name);
+        Method setter = null;
+        for (Method method : type.getMethods()) {
+            if (method.getName().equals(setterName) && method.getParameterCount() == 1
+                    && !Modifier.isStatic(method.getModifiers())) {
+                if (getter != null && method.getParameterTypes()[0] == getter.getReturnType()) {
+                    return method;
+                }
+                if (setter == null) {
+                    setter = method;
+                }
+            }
+        }
+        return setter;
+    }
+
+    private static Method findGetter(Class<?> type, String name) {
+        for (String prefix : new String[] {"get", "is"}) {
+            try {
+                Method getter = type.getMethod(prefix + capitalize(name));
+                if (!Modifier.isStatic(getter.getModifiers())) {
+                    return getter;
+                }
+            } catch (NoSuchMethodException e) {
+                // try the next prefix
+            }
+        }
+        return null;
+    }
+
+    private static Class<?> elementType(Method listGetter) {
+        Type type = listGetter.getGenericReturnType();
+        if (type instanceof ParameterizedType) {
+            Type argument = ((ParameterizedType) type).getActualTypeArguments()[0];
+            if (argument instanceof Class) {
+                return (Class<?>) argument;
+            } else if (argument instanceof ParameterizedType) {
+                return (Class<?>) ((ParameterizedType) argument).getRawType();
+            }
+        }
+        return Object.class;
+    }
+
+    private static String annotationValue(Class<?> type, String annotationName) {
+        for (Class<?> t = type; t != null; t = t.getSuperclass()) {
+            for (Annotation annotation : t.getDeclaredAnnotations()) {
+                if (annotationName.equals(annotation.annotationType().getName())) {
+                    try {
+                        return (String) annotation.annotationType().getMethod("value").invoke(annotation);
+                    } catch (ReflectiveOperationException e) {
+                        return null;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    private static boolean isInjectable(java.lang.reflect.AnnotatedElement member, int modifiers) {
+        if (Modifier.isPublic(modifiers)) {
+            return true;
+        }
+        for (Annotation annotation : member.getAnnotations()) {
+            if (FXML_ANNOTATION.equals(annotation.annotationType().getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isAccessible(Class<?> type) {
+        for (Class<?> t = type; t != null; t = t.getEnclosingClass()) {
+            if (!isAccessible(t.getModifiers(), t)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true if a member with the given modifiers of the given class can be used from the generated class
+     */
+    private boolean isAccessible(int modifiers, Class<?> declaringClass) {
+        if (Modifier.isPublic(modifiers)) {
+            return true;
+        }
+        return !Modifier.isPrivate(modifiers) && packageName.equals(packageOf(declaringClass));
+    }
+
+    private static String packageOf(Class<?> type) {
+        String name = type.getName();
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? "" : name.substring(0, dot);
+    }
+
+    private Class<?> resolveType(String name) {
+        if (name.contains(".") && Character.isLowerCase(name.charAt(0))) {
+            return loadClass(name);
+        }
+        String outer = name.contains(".") ? name.substring(0, name.indexOf('.')) : name;
+        String nested = name.substring(outer.length());
+        if (imports.containsKey(outer)) {
+            return loadClass(imports.get(outer) + nested);
+        }
+        Set<String> packages = new LinkedHashSet<>(importedPackages);
+        for (String importedPackage : packages) {
+            Class<?> type = loadClass(importedPackage + "." + name);
+            if (type != null) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param name a fully qualified name, where nested classes may be separated with a dot
+     */
+    private Class<?> loadClass(String name) {
+        String binaryName = name;
+        while (true) {
+            try {
+                return Class.forName(binaryName, false, classLoader);
+            } catch (ClassNotFoundException | LinkageError e) {
+                int dot = binaryName.lastIndexOf('.');
+                if (dot < 0) {
+                    return null;
+                }
+                binaryName = binaryName.substring(0, dot) + "$" + binaryName.substring(dot + 1);
+            }
+        }
+    }
+
+    private static boolean isFxNamespace(Node node) {
+        return node.getNamespaceURI() != null && node.getNamespaceURI().startsWith(FXML_NAMESPACE_PREFIX);
+    }
+
+    private static String fxAttribute(Element element, String name) {
+        NamedNodeMap attributes = element.getAttributes();
+        for (int i = 0; i < attributes.getLength(); i++) {
+            Node attribute = attributes.item(i);
+            if (isFxNamespace(attribute) && name.equals(attribute.getLocalName())) {
+                return attribute.getNodeValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return true for names like <code>GridPane.rowIndex</code>
+     */
+    private static boolean isStaticPropertyName(String name) {
+        int dot = name.lastIndexOf('.');
+        return dot > 0 && Character.isLowerCase(name.charAt(dot + 1))
+                && Character.isUpperCase(name.charAt(name.lastIndexOf('.', dot - 1) + 1));
+    }
+
+    private static boolean isPropertyName(String name) {
+        return Character.isLowerCase(name.charAt(0)) && !name.contains(".");
+    }
+
+    private static String typeName(Class<?> type) {
+        return type.getCanonicalName();
+    }
+
+    private static String capitalize(String name) {
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+
+    static String literal(String value) {
+        return "\"" + escape(value, '"') + "\"";
+    }
+
+    private static String escape(String value, char quote) {
+        StringBuilder escaped = new StringBuilder();
+        for (char c : value.toCharArray()) {
+            if (c == quote || c == '\\') {
+                escaped.append('\\').append(c);
+            } else if (c == '\n') {
+                escaped.append("\\n");
+            } else if (c == '\r') {
+                escaped.append("\\r");
+            } else if (c == '\t') {
+                escaped.append("\\t");
+            } else if (c < 0x20 || c > 0x7e) {
+                escaped.append(String.format("\\u%04x", (int) c));
+            } else {
+                escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    /**
+     * Compiles the generated sources into the output directory.
+     * @return the compilation errors of each source file that failed, empty if all of them compiled
+     */
+    static Map<File, String> compile(List<File> sources, List<String> classpath, File outputDirectory,
+                                     List<String> options) throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new IOException("No Java compiler available, Maven has to run with a JDK");
+        }
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        Map<File, String> errors = new LinkedHashMap<>();
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, StandardCharsets.UTF_8)) {
+            List<String> arguments = new ArrayList<>(options);
+            arguments.addAll(Arrays.asList("-classpath", String.join(File.pathSeparator, classpath),
+                    "-d", outputDirectory.getAbsolutePath(), "-proc:none", "-nowarn", "-encoding", "UTF-8"));
+            boolean success = compiler.getTask(null, fileManager, diagnostics, arguments, null,
+                    fileManager.getJavaFileObjectsFromFiles(sources)).call();
+            for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+                if (diagnostic.getKind() != Diagnostic.Kind.ERROR) {
+                    continue;
+                }
+                File source = diagnostic.getSource() == null ? null : new File(diagnostic.getSource().toUri());
+                String message = "line " + diagnostic.getLineNumber() + ": " + diagnostic.getMessage(Locale.ROOT);
+                errors.merge(source, message, (a, b) -> a + "\n" + b);
+            }
+            if (!success && errors.isEmpty()) {
+                errors.put(null, "compilation failed");
+            }
+        }
+        return errors;
+    }
+
+    static String packageName(Path relativeDirectory) {
+        if (relativeDirectory == null) {
+            return "";
+        }
+        List<String> segments = new ArrayList<>();
+        for (Path segment : relativeDirectory) {
+            String name = segment.toString();
+            if (name.isEmpty() || !Character.isJavaIdentifierStart(name.charAt(0))
+                    || !name.chars().allMatch(Character::isJavaIdentifierPart)) {
+                return null;
+            }
+            segments.add(name);
+        }
+        return String.join(".", segments);
+    }
+}
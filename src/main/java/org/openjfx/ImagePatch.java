@@ -0,0 +1,214 @@
+/*
+ * Copyright 2020, Gluon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openjfx;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.openjfx.runtime.BinaryDelta;
+import org.openjfx.runtime.ImageHash;
+import org.openjfx.runtime.ImagePatcher;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Creates the patch that transforms a runtime image into a newer one, to be applied with the {@link ImagePatcher}
+ * shipped in the image. Only the files that changed are included: the jimage <code>lib/modules</code> and the native
+ * libraries as binary deltas when these are smaller, the other files whole.
+ */
+final class ImagePatch {
+
+    static final String PATCHER_JAR = "lib/image-patcher.jar";
+    private static final String PATCHER_SCRIPT = "bin/patch-image";
+
+    private ImagePatch() {
+    }
+
+    /**
+     * Writes the patch from the previous image to the current one.
+     * @return a summary of the patch, for the build log
+     */
+    static String create(Path previous, Path current, Path patch) throws IOException {
+        Map<String, Path> previousFiles = listFiles(previous);
+        Map<String, Path> currentFiles = listFiles(current);
+        List<String> operations = new ArrayList<>();
+        operations.add(ImagePatcher.HEADER);
+        operations.add("from " + ImageHash.hashDirectory(previous));
+        operations.add("to " + ImageHash.hashDirectory(current));
+
+        int added = 0;
+        int changed = 0;
+        int deltas = 0;
+        int deleted = 0;
+        Path tmp = patch.resolveSibling(patch.getFileName() + ".tmp");
+        try {
+            try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(tmp))) {
+                for (Map.Entry<String, Path> entry : currentFiles.entrySet()) {
+                    String path = entry.getKey();
+                    Path file = entry.getValue();
+                    String mode = Files.isExecutable(file) ? "x" : "-";
+                    Path previousFile = previousFiles.get(path);
+                    if (previousFile == null) {
+                        operations.add("add " + mode + " " + ImageHash.hashFile(file) + " " + path);
+                        writeEntry(zos, ImagePatcher.FILES + path, Files.readAllBytes(file));
+                        added++;
+                        continue;
+                    }
+                    String hash = ImageHash.hashFile(file);
+                    if (hash.equals(ImageHash.hashFile(previousFile))) {
+                        if (Files.isExecutable(previousFile) != Files.isExecutable(file)) {
+                            operations.add("mode " + mode + " " + path);
+                        }
+                        continue;
+                    }
+                    changed++;
+                    byte[] content = Files.readAllBytes(file);
+                    byte[] delta = isDeltaCandidate(path) ? BinaryDelta.diff(Files.readAllBytes(previousFile), content) : null;
+                    if (delta != null && delta.length < content.length) {
+                        operations.add("delta " + mode + " " + hash + " " + path);
+                        writeEntry(zos, ImagePatcher.DELTAS + path, delta);
+                        deltas++;
+                    } else {
+                        operations.add("add " + mode + " " + hash + " " + path);
+                        writeEntry(zos, ImagePatcher.FILES + path, content);
+                    }
+                }
+                for (String path : previousFiles.keySet()) {
+                    if (!currentFiles.containsKey(path)) {
+                        operations.add("delete " + path);
+                        deleted++;
+                    }
+                }
+                writeEntry(zos, ImagePatcher.MANIFEST,
+                        (String.join("\n", operations) + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+            Files.move(tmp, patch, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        return String.format("%d files changed (%d as binary deltas), %d added, %d deleted", changed, deltas, added, deleted);
+    }
+
+    /**
+     * Adds the patcher to the image: its classes in {@link #PATCHER_JAR}, and scripts that run it with the
+     * <code>java</code> launcher of the image.
+     */
+    static void installPatcher(Path image, Map<String, byte[]> patcherClasses) throws IOException {
+        Path jar = image.resolve(PATCHER_JAR);
+        Files.createDirectories(jar.getParent());
+        try (OutputStream os = Files.newOutputStream(jar)) {
+            RuntimeJar.write(os, patcherClasses, ImagePatcher.class.getName());
+        }
+        Path script = image.resolve(PATCHER_SCRIPT);
+        Files.createDirectories(script.getParent());
+        Files.write(script, Arrays.asList(
+                "#!/bin/sh",
+                "DIR=`dirname \"$0\"`",
+                "exec \"$DIR/java\" -cp \"$DIR/../" + PATCHER_JAR + "\" " + ImagePatcher.class.getName() + " \"$DIR/..\" \"$@\""),
+                StandardCharsets.UTF_8);
+        script.toFile().setExecutable(true, false);
+        Files.write(image.resolve(PATCHER_SCRIPT + ".bat"), Arrays.asList(
+                "@echo off",
+                "set DIR=%~dp0",
+                "\"%DIR%java\" -cp \"%DIR%..\\" + PATCHER_JAR.replace('/', '\\') + "\" " + ImagePatcher.class.getName()
+                        + " \"%DIR%..\" %*"),
+                StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Extracts a zip of an image, keeping the executable bits and the symbolic links. If the zip has a single top level directory,
+     * it is the image.
+     * @return the image directory
+     */
+    static Path extract(Path zip, Path directory) throws IOException {
+        Directories.delete(directory);
+        Files.createDirectories(directory);
+        try (ZipFile zipFile = new ZipFile(zip.toFile())) {
+            for (ZipArchiveEntry entry : Collections.list(zipFile.getEntries())) {
+                Path file = directory.resolve(entry.getName()).normalize();
+                if (!file.startsWith(directory)) {
+                    throw new IOException("Invalid entry " + entry.getName() + " in " + zip);
+                }
+                if (entry.isDirectory()) {
+                    Files.createDirectories(file);
+                    continue;
+                }
+                Files.createDirectories(file.getParent());
+                if (entry.isUnixSymlink()) {
+                    // the links jlink creates between the legal notices
+                    String target = zipFile.getUnixSymlink(entry);
+                    if (!file.getParent().resolve(target).normalize().startsWith(directory)) {
+                        throw new IOException("Invalid link " + entry.getName() + " to " + target + " in " + zip);
+                    }
+                    Files.createSymbolicLink(file, Paths.get(target));
+                    continue;
+                }
+                try (InputStream is = zipFile.getInputStream(entry)) {
+                    Files.copy(is, file);
+                }
+                if ((entry.getUnixMode() & 0100) != 0) {
+                    file.toFile().setExecutable(true, false);
+                }
+            }
+        }
+        try (Stream<Path> children = Files.list(directory)) {
+            List<Path> list = new ArrayList<>();
+            children.forEach(list::add);
+            if (list.size() == 1 && Files.isDirectory(list.get(0))) {
+                return list.get(0);
+            }
+        }
+        return directory;
+    }
+
+    static boolean isDeltaCandidate(String path) {
+        return path.equals("lib/modules") || path.endsWith(".so") || path.endsWith(".dll")
+                || path.endsWith(".dylib") || path.endsWith(".jnilib");
+    }
+
+    private static Map<String, Path> listFiles(Path image) throws IOException {
+        Map<String, Path> files = new TreeMap<>();
+        for (Path path : ImageHash.sortedPaths(image)) {
+            if (!Files.isDirectory(path)) {
+                files.put(ImageHash.relativePath(image, path), path);
+            }
+        }
+        return files;
+    }
+
+    private static void writeEntry(ZipOutputStream zos, String name, byte[] content) throws IOException {
+        ZipEntry entry = new ZipEntry(name);
+        entry.setTime(ReproducibleArchive.DEFAULT_TIMESTAMP);
+        zos.putNextEntry(entry);
+        zos.write(content);
+        zos.closeEntry();
+    }
+}
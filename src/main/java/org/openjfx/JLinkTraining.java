@@ -0,0 +1,312 @@
+/*
+ * Copyright 2020, Gluon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openjfx;
+
+import org.apache.commons.exec.CommandLine;
+import org.apache.commons.exec.DefaultExecuteResultHandler;
+import org.apache.commons.exec.PumpStreamHandler;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Runs an application from its runtime image to train a second link of the image: the order in which
+ * the classes are loaded is recorded to order the resources of the image, with <code>--order-resources</code>,
+ * and the lambda forms being resolved are recorded to pre-generate them, with <code>--generate-jli-classes</code>.
+ * It also measures the time it takes for the application to load the class of the first frame, to compare
+ * the images before and after the training, and verifies that the application starts from an image.
+ */
+class JLinkTraining {
+
+    static final String CLASS_ORDER_FILE = "class-order.txt";
+    static final String JLI_CLASSES_FILE = "jli-classes.txt";
+    private static final String CLASS_LOAD_LOG = "class-load.log";
+    private static final String TRAINING_OUTPUT = "training.log";
+    private static final String TIMING_OUTPUT = "timing.log";
+    static final String VERIFICATION_OUTPUT = "verification.log";
+
+    private static final Pattern CLASS_LOAD = Pattern.compile("\\]\\s*(\\S+) source: jrt:/([^/\\s]+)");
+    private static final Pattern UPTIME_MILLIS = Pattern.compile("^\\[(\\d+)ms\\]");
+    private static final List<String> JLI_TRACE_PREFIXES = Arrays.asList("[LF_RESOLVE]", "[SPECIES_RESOLVE]");
+    private static final Pattern LAUNCH_ERROR = Pattern.compile("^(Exception in |Error: )|"
+            + "(UnsatisfiedLinkError|MissingResourceException|ClassNotFoundException|NoClassDefFoundError"
+            + "|ServiceConfigurationError|ExceptionInInitializerError)");
+
+    private final Log log;
+    private final Map<String, String> enviro;
+    private final File workingDirectory;
+    private final File directory;
+
+    /**
+     * @param directory the directory with the recorded files and the output of the runs
+     */
+    JLinkTraining(Log log, Map<String, String> enviro, File workingDirectory, File directory) {
+        this.log = log;
+        this.enviro = enviro;
+        this.workingDirectory = workingDirectory;
+        this.directory = directory;
+    }
+
+    /**
+     * Runs the application until it exits or for the given duration, with class sharing disabled, so all
+     * the classes are loaded from the image, and with the lambda form resolution trace enabled.
+     * @param java the <code>java</code> launcher of the image
+     * @param vmArguments the options of the application, before the main module
+     * @param mainModule the main module and class, as in <code>module/class</code>
+     * @param arguments the arguments of the application
+     * @return the file with the resource order, for <code>--order-resources=@file</code>, the JLI classes
+     * file being next to it
+     */
+    File train(File java, List<String> vmArguments, String mainModule, List<String> arguments, long durationSeconds)
+            throws MojoExecutionException {
+        File classLoadLog = new File(directory, CLASS_LOAD_LOG);
+        File output = new File(directory, TRAINING_OUTPUT);
+        List<String> trainingArguments = new ArrayList<>(Arrays.asList("-Xshare:off",
+                "-Xlog:class+load=info:file=" + classLoadLog.getAbsolutePath(),
+                "-Djava.lang.invoke.MethodHandle.TRACE_RESOLVE=true"));
+        trainingArguments.addAll(vmArguments);
+        CommandLine commandLine = createCommandLine(java, trainingArguments, mainModule, arguments);
+
+        log.info("Training run of the image" + (durationSeconds > 0 ? " for " + durationSeconds + " seconds" : ""));
+        try (OutputStream outputStream = new FileOutputStream(output)) {
+            run(commandLine, outputStream, null, durationSeconds > 0 ? TimeUnit.SECONDS.toMillis(durationSeconds) : 0);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Error running the training of the image", e);
+        }
+
+        File classOrder = new File(directory, CLASS_ORDER_FILE);
+        File jliClasses = new File(directory, JLI_CLASSES_FILE);
+        try {
+            List<String> order = classLoadLog.exists() ? parseClassLoadOrder(classLoadLog) : new ArrayList<>();
+            if (order.isEmpty()) {
+                throw new MojoExecutionException("The training run didn't load any class from the image, see " + output);
+            }
+            Files.write(classOrder.toPath(), order, StandardCharsets.UTF_8);
+            List<String> trace = parseJliTrace(output);
+            Files.write(jliClasses.toPath(), trace, StandardCharsets.UTF_8);
+            log.info("Recorded " + order.size() + " classes and " + trace.size() + " lambda forms");
+        } catch (IOException e) {
+            throw new MojoExecutionException("Error reading the training logs in " + directory, e);
+        }
+        return classOrder;
+    }
+
+    /**
+     * Launches the application the given number of times, and stops each run as soon as the startup class
+     * has been loaded.
+     * @return the uptime of the JVM in milliseconds when the startup class was loaded, of each run
+     */
+    List<Long> measureStartup(File java, List<String> vmArguments, String mainModule, List<String> arguments,
+                              String startupClass, int runs, long timeoutSeconds) throws MojoExecutionException {
+        List<String> timingArguments = new ArrayList<>();
+        timingArguments.add("-Xlog:class+load=info:stdout:uptimemillis");
+        timingArguments.addAll(vmArguments);
+        CommandLine commandLine = createCommandLine(java, timingArguments, mainModule, arguments);
+        File output = new File(directory, TIMING_OUTPUT);
+
+        List<Long> startupTimes = new ArrayList<>();
+        for (int i = 0; i < runs; i++) {
+            ReadinessProbe probe = new ReadinessProbe(Pattern.quote(startupClass) + " source:", null, 0, null);
+            try (OutputStream outputStream = new FileOutputStream(output)) {
+                run(commandLine, probe.wrap(outputStream), probe, TimeUnit.SECONDS.toMillis(timeoutSeconds));
+            } catch (IOException e) {
+                throw new MojoExecutionException("Error measuring the startup time of the image", e);
+            } catch (MojoExecutionException e) {
+                throw new MojoExecutionException("Error measuring the startup time of the image: " + e.getMessage()
+                        + ". See " + output + ", or change 'trainingStartupClass'", e);
+            }
+            try {
+                startupTimes.add(parseStartupMillis(output, startupClass));
+            } catch (IOException e) {
+                throw new MojoExecutionException("Error reading the startup time in " + output, e);
+            }
+        }
+        return startupTimes;
+    }
+
+    /**
+     * Runs the application for the given duration, or until it exits, and checks that it didn't fail: it has
+     * to be still running, or to have exited normally, and its output must not have errors like a class or
+     * a native library that is missing.
+     */
+    void verify(File java, List<String> vmArguments, String mainModule, List<String> arguments, long durationSeconds)
+            throws MojoExecutionException {
+        File output = new File(directory, VERIFICATION_OUTPUT);
+        CommandLine commandLine = createCommandLine(java, vmArguments, mainModule, arguments);
+        log.info("Verifying the image, running it for " + durationSeconds + " seconds");
+        Integer exitValue;
+        try (OutputStream outputStream = new FileOutputStream(output)) {
+            exitValue = run(commandLine, outputStream, null, TimeUnit.SECONDS.toMillis(durationSeconds));
+        } catch (IOException e) {
+            throw new MojoExecutionException("Error running the verification of the image", e);
+        }
+        String error;
+        try {
+            error = findLaunchError(output);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Error reading the output of the verification " + output, e);
+        }
+        if (error != null) {
+            throw new MojoExecutionException("The image failed to run: " + error + ". See " + output);
+        }
+        if (exitValue != null && exitValue != 0) {
+            throw new MojoExecutionException("The image exited with " + exitValue + ". See " + output);
+        }
+    }
+
+    /**
+     * Runs the command line, until the probe succeeds if there is one, or until the process exits or the
+     * timeout expires otherwise.
+     * @return the exit value of the process, or null if it was stopped
+     */
+    private Integer run(CommandLine commandLine, OutputStream outputStream, ReadinessProbe probe, long timeoutMillis)
+            throws IOException, MojoExecutionException {
+        ProcessTrackingExecutor exec = new ProcessTrackingExecutor();
+        exec.setWorkingDirectory(workingDirectory);
+        exec.setExitValues(null);
+        exec.setStreamHandler(new PumpStreamHandler(outputStream));
+        DefaultExecuteResultHandler resultHandler = new DefaultExecuteResultHandler();
+
+        log.debug("Executing command line: " + commandLine);
+        exec.execute(commandLine, enviro, resultHandler);
+        Process process;
+        try {
+            process = exec.awaitProcess(10, TimeUnit.SECONDS);
+            if (process == null) {
+                resultHandler.waitFor();
+                throw new IOException("The image could not be started", resultHandler.getException());
+            }
+            if (probe != null) {
+                try {
+                    probe.await(process, timeoutMillis, TimeUnit.MILLISECONDS);
+                } finally {
+                    process.destroy();
+                    resultHandler.waitFor();
+                }
+                return null;
+            }
+            if (timeoutMillis > 0) {
+                resultHandler.waitFor(timeoutMillis);
+            }
+            if (!resultHandler.hasResult()) {
+                process.destroy();
+                resultHandler.waitFor();
+                return null;
+            }
+            return resultHandler.getExitValue();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while running the image", e);
+        }
+    }
+
+    private static CommandLine createCommandLine(File java, List<String> vmArguments, String mainModule,
+                                                 List<String> arguments) {
+        CommandLine commandLine = new CommandLine(java);
+        commandLine.addArguments(vmArguments.toArray(new String[0]), false);
+        commandLine.addArgument("-m", false);
+        commandLine.addArgument(mainModule, false);
+        commandLine.addArguments(arguments.toArray(new String[0]), false);
+        return commandLine;
+    }
+
+    /**
+     * Reads a log of <code>-Xlog:class+load</code> and returns the classes that were loaded from the image,
+     * in the order they were loaded, as resource paths without extension like <code>/java.base/java/lang/Object</code>,
+     * which is the format of the files given to <code>--order-resources</code>.
+     */
+    static List<String> parseClassLoadOrder(File classLoadLog) throws IOException {
+        Set<String> order = new LinkedHashSet<>();
+        try (BufferedReader reader = Files.newBufferedReader(classLoadLog.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Matcher matcher = CLASS_LOAD.matcher(line);
+                if (matcher.find()) {
+                    order.add("/" + matcher.group(2) + "/" + matcher.group(1).replace('.', '/'));
+                }
+            }
+        }
+        return new ArrayList<>(order);
+    }
+
+    /**
+     * Reads a log of <code>-Xlog:class+load::uptimemillis</code> and returns the uptime when the given class was loaded.
+     * @throws IOException if the class wasn't loaded
+     */
+    static long parseStartupMillis(File classLoadLog, String startupClass) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(classLoadLog.toPath(), StandardCharsets.ISO_8859_1)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Matcher matcher = UPTIME_MILLIS.matcher(line);
+                if (matcher.find() && line.contains(" " + startupClass + " source:")) {
+                    return Long.parseLong(matcher.group(1));
+                }
+            }
+        }
+        throw new IOException(startupClass + " was not loaded");
+    }
+
+    /**
+     * Reads the output of an application and returns the first line that reports an error that prevents it
+     * from running, like an uncaught exception or a missing class, resource bundle or native library.
+     * @return the line, or null if there is none
+     */
+    static String findLaunchError(File output) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(output.toPath(), StandardCharsets.ISO_8859_1)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (LAUNCH_ERROR.matcher(line).find()) {
+                    return line.trim();
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads the output of an application run with <code>-Djava.lang.invoke.MethodHandle.TRACE_RESOLVE=true</code>
+     * and returns the distinct trace lines, which is the format of the files given to <code>--generate-jli-classes</code>.
+     */
+    static List<String> parseJliTrace(File output) throws IOException {
+        Set<String> trace = new LinkedHashSet<>();
+        try (BufferedReader reader = Files.newBufferedReader(output.toPath(), StandardCharsets.ISO_8859_1)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String trimmed = line.trim();
+                if (JLI_TRACE_PREFIXES.stream().anyMatch(trimmed::startsWith)) {
+                    trace.add(trimmed);
+                }
+            }
+        }
+        return new ArrayList<>(trace);
+    }
+}
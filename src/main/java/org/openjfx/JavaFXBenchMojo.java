@@ -0,0 +1,357 @@
+/*
+ * Copyright 2020, Gluon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openjfx;
+
+import org.apache.commons.exec.CommandLine;
+import org.apache.commons.exec.DefaultExecuteResultHandler;
+import org.apache.commons.exec.OS;
+import org.apache.commons.exec.PumpStreamHandler;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Execute;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.openjfx.runtime.JavaFXAgent;
+import org.openjfx.runtime.ProcessMemory;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Launches the application several times, from the command line of <code>javafx:run</code> or from the
+ * launcher of a runtime image, and reports its time to the first frame and its peak resident set size.
+ * By default an agent is injected that exits the application as soon as its first window is shown.
+ */
+@Mojo(name = "bench", requiresDependencyResolution = ResolutionScope.RUNTIME, threadSafe = true)
+@Execute(phase = LifecyclePhase.PROCESS_CLASSES)
+public class JavaFXBenchMojo extends JavaFXRunMojo {
+
+    static final String REPORT_FILE = "report.json";
+    private static final String OUTPUT_FILE = "output.log";
+    private static final String BENCHMARK_FILE = "first-frame.properties";
+    private static final String JDK_JAVA_OPTIONS = "JDK_JAVA_OPTIONS";
+
+    /**
+     * Number of measured launches, default 10.
+     */
+    @Parameter(property = "javafx.benchIterations", defaultValue = "10")
+    private int benchIterations;
+
+    /**
+     * Number of launches before the measured ones, which warm up the file system caches, default 2.
+     */
+    @Parameter(property = "javafx.benchWarmup", defaultValue = "2")
+    private int benchWarmup;
+
+    /**
+     * The CPUs the application is pinned to with <code>taskset -c</code>, like <code>0-1</code>. Linux only.
+     */
+    @Parameter(property = "javafx.benchCpus")
+    private String benchCpus;
+
+    /**
+     * The launcher of a runtime image, like <code>${project.build.directory}/image/bin/app</code>. If set, the
+     * application is launched with it instead of the command line of <code>javafx:run</code>, and the agent
+     * is injected with the <code>JDK_JAVA_OPTIONS</code> environment variable, so the image must include the
+     * <code>java.instrument</code> module, or <code>benchReadyPattern</code> must be set. As the launcher runs
+     * java as a child process, <code>benchReadyPattern</code> requires Maven to run on Java 9 or later.
+     */
+    @Parameter(property = "javafx.benchLauncher")
+    private File benchLauncher;
+
+    /**
+     * Regular expression matched against the output of the application. If set, no agent is injected: the first
+     * frame is the first line that matches it, and the application is stopped then.
+     */
+    @Parameter(property = "javafx.benchReadyPattern")
+    private String benchReadyPattern;
+
+    /**
+     * Time in seconds to wait for the first frame of each launch, default 60.
+     */
+    @Parameter(property = "javafx.benchTimeout", defaultValue = "60")
+    private int benchTimeout;
+
+    /**
+     * Runs the application with the headless Monocle platform and the software pipeline, default false.
+     * Monocle has to be available to the application.
+     */
+    @Parameter(property = "javafx.benchHeadless", defaultValue = "false")
+    private boolean benchHeadless;
+
+    /**
+     * The directory with the output of the launches and the JSON report.
+     */
+    @Parameter(property = "javafx.benchDirectory", defaultValue = "${project.build.directory}/javafx-bench")
+    private File benchDirectory;
+
+    /**
+     * Fails the build if the 95th percentile of the time to the first frame, in milliseconds, exceeds this value.
+     * Disabled if 0.
+     */
+    @Parameter(property = "javafx.startupBudget", defaultValue = "0")
+    private double startupBudget;
+
+    /**
+     * Fails the build if the 95th percentile of the peak resident set size, in megabytes, exceeds this value.
+     * Disabled if 0.
+     */
+    @Parameter(property = "javafx.peakRssBudget", defaultValue = "0")
+    private double peakRssBudget;
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        if (skip) {
+            getLog().info( "skipping execute as per configuration" );
+            return;
+        }
+
+        if (basedir == null) {
+            throw new IllegalStateException( "basedir is null. Should not be possible." );
+        }
+
+        warnIgnoredParameters("bench");
+
+        if (benchIterations < 1) {
+            throw new MojoExecutionException("The parameter 'benchIterations' must be at least 1");
+        }
+
+        if (!benchDirectory.exists() && !benchDirectory.mkdirs()) {
+            throw new MojoExecutionException("Could not make bench directory: '" + benchDirectory + "'");
+        }
+        File benchmarkFile = new File(benchDirectory, BENCHMARK_FILE);
+        File outputFile = new File(benchDirectory, OUTPUT_FILE);
+
+        handleWorkingDirectory();
+        Map<String, String> enviro = new HashMap<>(handleSystemEnvVariables());
+
+        List<String> vmArguments = new ArrayList<>();
+        if (benchHeadless) {
+            vmArguments.addAll(JavaFXProfileMojo.HEADLESS_OPTIONS);
+        }
+        if (benchReadyPattern == null || benchReadyPattern.isEmpty()) {
+            Properties agentOptions = new Properties();
+            agentOptions.setProperty(JavaFXAgent.BENCHMARK_FILE, benchmarkFile.getAbsolutePath());
+            vmArguments.add(RuntimeJar.createAgentOption(builddir, "agent-bench", agentOptions));
+        }
+
+        CommandLine commandLine;
+        if (benchLauncher != null) {
+            if (!benchLauncher.isFile()) {
+                throw new MojoExecutionException("The launcher " + benchLauncher + " doesn't exist, run javafx:jlink first");
+            }
+            if (benchReadyPattern != null && !benchReadyPattern.isEmpty() && !ProcessRegistry.canListDescendants()) {
+                throw new MojoExecutionException("The launcher runs java as a child process, which can only be "
+                        + "measured and stopped with 'benchReadyPattern' when Maven runs on Java 9 or later");
+            }
+            commandLine = new CommandLine(benchLauncher);
+            if (!vmArguments.isEmpty()) {
+                enviro.put(JDK_JAVA_OPTIONS, createJdkJavaOptions(vmArguments, enviro.get(JDK_JAVA_OPTIONS)));
+            }
+        } else {
+            ExecutableInfo executableInfo = getExecutableInfo(executable, enviro, workingDirectory);
+            commandLine = getExecutablePath(executableInfo);
+            commandLine.addArguments(vmArguments.toArray(new String[0]), false);
+            commandLine.addArguments(createCommandArguments(executableInfo).toArray(new String[0]), false);
+        }
+        if (benchCpus != null && !benchCpus.isEmpty()) {
+            if (OS.isFamilyUnix() && !OS.isFamilyMac()) {
+                commandLine = new CommandLine("taskset")
+                        .addArgument("-c", false)
+                        .addArgument(benchCpus, false)
+                        .addArguments(commandLine.toStrings(), false);
+            } else {
+                getLog().warn("CPU pinning with taskset is only supported on Linux, ignoring 'benchCpus'");
+            }
+        }
+        getLog().debug("Executing command line: " + commandLine);
+
+        getLog().info("Launching the application " + (benchWarmup + benchIterations) + " times, "
+                + benchWarmup + " of them to warm up");
+        List<Long> startupTimes = new ArrayList<>();
+        List<Long> peakRss = new ArrayList<>();
+        try (OutputStream outputStream = new FileOutputStream(outputFile)) {
+            for (int i = 0; i < benchWarmup + benchIterations; i++) {
+                long[] result = launch(commandLine, enviro, outputStream, benchmarkFile);
+                boolean warmup = i < benchWarmup;
+                getLog().info(String.format("%s %d: first frame %d ms%s", warmup ? "Warmup" : "Iteration",
+                        warmup ? i + 1 : i - benchWarmup + 1, result[0],
+                        result[1] >= 0 ? ", peak RSS " + result[1] / 1024 + " MB" : ""));
+                if (!warmup) {
+                    startupTimes.add(result[0]);
+                    if (result[1] >= 0) {
+                        peakRss.add(result[1]);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new MojoExecutionException("Command execution failed, see " + outputFile, e);
+        }
+
+        Statistics startup = new Statistics(startupTimes);
+        Statistics rss = new Statistics(peakRss.stream().map(kb -> kb / 1024.0).collect(Collectors.toList()));
+        writeReport(startup, rss);
+        checkBudgets(startup, rss);
+    }
+
+    /**
+     * Launches the application once, and waits for its first frame.
+     * @return the time to the first frame in milliseconds, and the peak resident set size in kilobytes or -1
+     */
+    private long[] launch(CommandLine commandLine, Map<String, String> enviro, OutputStream outputStream,
+                          File benchmarkFile) throws IOException, MojoExecutionException {
+        Files.deleteIfExists(benchmarkFile.toPath());
+        ReadinessProbe probe = new ReadinessProbe(benchReadyPattern, null, 0, null);
+
+        ProcessTrackingExecutor exec = new ProcessTrackingExecutor();
+        exec.setWorkingDirectory(workingDirectory);
+        exec.setExitValues(null);
+        exec.setStreamHandler(new PumpStreamHandler(probe.wrap(outputStream)));
+        DefaultExecuteResultHandler resultHandler = new DefaultExecuteResultHandler();
+
+        long launchedNanos = System.nanoTime();
+        long launchedMillis = System.currentTimeMillis();
+        exec.execute(commandLine, enviro, resultHandler);
+        try {
+            Process process = exec.awaitProcess(10, TimeUnit.SECONDS);
+            if (process == null) {
+                resultHandler.waitFor();
+                throw new IOException("The application could not be started", resultHandler.getException());
+            }
+            if (probe.isEnabled()) {
+                long pid = ProcessRegistry.pidOf(process);
+                try {
+                    probe.await(process, benchTimeout, TimeUnit.SECONDS);
+                    // the launcher of an image is a script that runs java as a child process, the largest
+                    // process of the tree is the JVM
+                    long peakRss = ProcessMemory.peakResidentSetSize(Long.toString(pid));
+                    for (long descendant : ProcessRegistry.descendantsOf(pid)) {
+                        peakRss = Math.max(peakRss, ProcessMemory.peakResidentSetSize(Long.toString(descendant)));
+                    }
+                    return new long[] {TimeUnit.NANOSECONDS.toMillis(probe.getLogPatternMatchedNanos() - launchedNanos), peakRss};
+                } finally {
+                    destroy(process);
+                    resultHandler.waitFor();
+                }
+            }
+
+            resultHandler.waitFor(TimeUnit.SECONDS.toMillis(benchTimeout));
+            if (!resultHandler.hasResult()) {
+                destroy(process);
+                resultHandler.waitFor();
+                throw new MojoExecutionException("The application didn't show its first window after " + benchTimeout
+                        + " seconds");
+            }
+            if (!benchmarkFile.exists()) {
+                throw new MojoExecutionException("The application exited with code " + resultHandler.getExitValue()
+                        + " before showing its first window");
+            }
+            Properties benchmark = new Properties();
+            try (InputStream is = Files.newInputStream(benchmarkFile.toPath())) {
+                benchmark.load(is);
+            }
+            return new long[] {Long.parseLong(benchmark.getProperty(JavaFXAgent.FIRST_FRAME_TIME)) - launchedMillis,
+                    Long.parseLong(benchmark.getProperty(JavaFXAgent.PEAK_RSS, "-1"))};
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while benchmarking the application", e);
+        }
+    }
+
+    /**
+     * Stops the process with its descendants, like the JVM that the launcher script of an image starts.
+     */
+    private static void destroy(Process process) {
+        long pid = ProcessRegistry.pidOf(process);
+        if (pid < 0 || !ProcessRegistry.destroy(pid, 10, TimeUnit.SECONDS)) {
+            process.destroy();
+        }
+    }
+
+    /**
+     * @return the value of <code>JDK_JAVA_OPTIONS</code> with the given arguments, quoted if needed,
+     * followed by the existing options
+     */
+    static String createJdkJavaOptions(List<String> arguments, String existing) {
+        StringBuilder options = new StringBuilder();
+        for (String argument : arguments) {
+            if (options.length() > 0) {
+                options.append(' ');
+            }
+            options.append(argument.contains(" ") ? "\"" + argument + "\"" : argument);
+        }
+        if (existing != null && !existing.trim().isEmpty()) {
+            options.append(' ').append(existing.trim());
+        }
+        return options.toString();
+    }
+
+    private void writeReport(Statistics startup, Statistics rss) throws MojoExecutionException {
+        getLog().info(String.format("Time to first frame (ms): mean %.1f, p50 %.0f, p95 %.0f, stddev %.1f, min %.0f, max %.0f",
+                startup.mean(), startup.percentile(50), startup.percentile(95), startup.stddev(), startup.min(),
+                startup.max()));
+        if (rss.count() > 0) {
+            getLog().info(String.format("Peak RSS (MB): mean %.1f, p50 %.1f, p95 %.1f, stddev %.1f, min %.1f, max %.1f",
+                    rss.mean(), rss.percentile(50), rss.percentile(95), rss.stddev(), rss.min(), rss.max()));
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("mainClass", mainClass);
+        report.put("launcher", benchLauncher == null ? null : benchLauncher.getAbsolutePath());
+        report.put("cpus", benchCpus);
+        report.put("warmup", benchWarmup);
+        report.put("iterations", benchIterations);
+        report.put("firstFrameMillis", startup.toMap());
+        if (rss.count() > 0) {
+            report.put("peakRssMegabytes", rss.toMap());
+        }
+        File reportFile = new File(benchDirectory, REPORT_FILE);
+        try {
+            Files.write(reportFile.toPath(), Json.toJson(report).getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new MojoExecutionException("Error writing the bench report " + reportFile, e);
+        }
+        getLog().info("Bench report: " + reportFile);
+    }
+
+    private void checkBudgets(Statistics startup, Statistics rss) throws MojoFailureException {
+        List<String> exceeded = new ArrayList<>();
+        if (startupBudget > 0 && startup.percentile(95) > startupBudget) {
+            exceeded.add("p95 time to first frame " + startup.percentile(95) + " ms exceeds " + startupBudget + " ms");
+        }
+        if (peakRssBudget > 0 && rss.count() > 0 && rss.percentile(95) > peakRssBudget) {
+            exceeded.add("p95 peak RSS " + Statistics.round(rss.percentile(95)) + " MB exceeds " + peakRssBudget + " MB");
+        }
+        if (!exceeded.isEmpty()) {
+            throw new MojoFailureException("Startup budget exceeded: " + String.join(", ", exceeded));
+        }
+    }
+}
@@ -0,0 +1,312 @@
+/*
+ * Copyright 2020, Gluon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openjfx;
+
+import org.apache.commons.exec.CommandLine;
+import org.apache.commons.exec.DefaultExecutor;
+import org.apache.commons.exec.PumpStreamHandler;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.codehaus.plexus.util.StringUtils;
+import org.openjfx.runtime.Css2Bss;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Converts the stylesheets of the project output directory to the binary format of JavaFX, so they don't
+ * have to be parsed when the application starts. Only stylesheets without an up to date <code>.bss</code>
+ * file are converted, split among several JVMs that run in parallel.
+ * <p>
+ * The goal is bound to <code>process-classes</code>, the phase <code>javafx:run</code> and
+ * <code>javafx:jlink</code> fork to, so the binary stylesheets are in place for both.
+ */
+@Mojo(name = "css2bss", defaultPhase = LifecyclePhase.PROCESS_CLASSES,
+        requiresDependencyResolution = ResolutionScope.RUNTIME, threadSafe = true)
+public class JavaFXCss2BssMojo extends JavaFXProjectMojo {
+
+    static final String CSS_EXTENSION = ".css";
+    static final String BSS_EXTENSION = ".bss";
+    static final String LIST_DIRECTORY = "javafx-css2bss";
+
+    // starting a JVM costs more than converting a few stylesheets, so small projects use a single one
+    static final int MIN_STYLESHEETS_PER_FORK = 16;
+
+    // @style.css in FXML, which is resolved relative to the FXML file
+    private static final Pattern FXML_REFERENCE_PATTERN = Pattern.compile("@([^\"'<>\\s]+)\\.css(?=[\"'<\\s])");
+
+    /**
+     * The executable used to convert the stylesheets. Can be a full path or the name of the executable.
+     */
+    @Parameter(property = "javafx.executable", defaultValue = "java")
+    String executable;
+
+    /**
+     * The directory with the stylesheets to convert. Each <code>.bss</code> file is written next to its
+     * <code>.css</code> file.
+     */
+    @Parameter(property = "javafx.stylesheetsDirectory", defaultValue = "${project.build.outputDirectory}")
+    File stylesheetsDirectory;
+
+    /**
+     * Number of JVMs that convert the stylesheets in parallel. If 0, it depends on the number of
+     * processors and of stylesheets to convert.
+     */
+    @Parameter(property = "javafx.css2bssForks", defaultValue = "0")
+    int css2bssForks;
+
+    /**
+     * If set to true, references to stylesheets in the FXML files of <code>stylesheetsDirectory</code>,
+     * like <code>@style.css</code>, are rewritten to the <code>.bss</code> file when it exists.
+     * Stylesheets referenced from code with a <code>.css</code> extension are not rewritten, but JavaFX
+     * already loads the <code>.bss</code> file found next to them.
+     */
+    @Parameter(property = "javafx.rewriteStylesheetReferences", defaultValue = "false")
+    boolean rewriteStylesheetReferences;
+
+    @Override
+    public void execute() throws MojoExecutionException {
+        if (skip) {
+            getLog().info( "skipping execute as per configuration" );
+            return;
+        }
+
+        if (basedir == null) {
+            throw new IllegalStateException( "basedir is null. Should not be possible." );
+        }
+
+        if (!stylesheetsDirectory.isDirectory()) {
+            getLog().info("No stylesheets to convert, " + stylesheetsDirectory + " doesn't exist");
+            return;
+        }
+
+        List<Path> stylesheets;
+        try {
+            stylesheets = findStylesheets(stylesheetsDirectory.toPath());
+        } catch (IOException e) {
+            throw new MojoExecutionException("Error looking for stylesheets in " + stylesheetsDirectory, e);
+        }
+        List<Path> stale = stylesheets.stream()
+                .filter(JavaFXCss2BssMojo::isStale)
+                .collect(Collectors.toList());
+        getLog().info("Converting " + stale.size() + " of " + stylesheets.size() + " stylesheets to binary, "
+                + (stylesheets.size() - stale.size()) + " up to date");
+
+        if (!stale.isEmpty()) {
+            convert(stale);
+        }
+
+        if (rewriteStylesheetReferences) {
+            try {
+                int count = rewriteFxmlReferences(stylesheetsDirectory.toPath());
+                getLog().info("Rewrote stylesheet references in " + count + " FXML files");
+            } catch (IOException e) {
+                throw new MojoExecutionException("Error rewriting stylesheet references in " + stylesheetsDirectory, e);
+            }
+        }
+    }
+
+    private void convert(List<Path> stylesheets) throws MojoExecutionException {
+        handleWorkingDirectory();
+        Map<String, String> enviro = handleSystemEnvVariables();
+        ExecutableInfo executableInfo = getExecutableInfo(executable, enviro, workingDirectory);
+        List<String> arguments = createCss2BssArguments(executableInfo);
+
+        List<List<Path>> chunks = split(stylesheets, css2bssForks > 0 ? css2bssForks
+                : defaultForks(stylesheets.size(), Runtime.getRuntime().availableProcessors()));
+        File listDirectory = new File(builddir, LIST_DIRECTORY);
+        if (!listDirectory.exists() && !listDirectory.mkdirs()) {
+            throw new MojoExecutionException("Could not make directory: '" + listDirectory + "'");
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(chunks.size());
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < chunks.size(); i++) {
+                File list = new File(listDirectory, "stylesheets-" + (i + 1) + ".txt");
+                writeList(list, chunks.get(i));
+                CommandLine commandLine = getExecutablePath(executableInfo);
+                commandLine.addArguments(arguments.toArray(new String[0]), false);
+                commandLine.addArgument(list.getAbsolutePath(), false);
+                getLog().debug("Executing command line: " + commandLine);
+                results.add(pool.submit(() -> runConversion(commandLine, enviro)));
+            }
+            List<String> failures = new ArrayList<>();
+            for (Future<String> result : results) {
+                String failure = result.get();
+                if (failure != null) {
+                    failures.add(failure);
+                }
+            }
+            if (!failures.isEmpty()) {
+                throw new MojoExecutionException("Error converting stylesheets to binary:\n" + String.join("\n", failures));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted converting stylesheets to binary", e);
+        } catch (ExecutionException e) {
+            throw new MojoExecutionException("Error converting stylesheets to binary", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * @return null if the command succeeds, or its output otherwise
+     */
+    private String runConversion(CommandLine commandLine, Map<String, String> enviro) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        DefaultExecutor exec = new DefaultExecutor();
+        exec.setWorkingDirectory(workingDirectory);
+        exec.setStreamHandler(new PumpStreamHandler(output));
+        exec.setExitValues(null);
+        int resultCode = exec.execute(commandLine, enviro);
+        return resultCode == 0 ? null : output.toString().trim();
+    }
+
+    private List<String> createCss2BssArguments(ExecutableInfo executableInfo) throws MojoExecutionException {
+        preparePaths(executableInfo.getJdkHome());
+        List<String> arguments = new ArrayList<>();
+        if (!executableInfo.isJava8() && modulepathElements != null && !modulepathElements.isEmpty()) {
+            arguments.add("--module-path");
+            arguments.add(StringUtils.join(modulepathElements.iterator(), File.pathSeparator));
+            arguments.add("--add-modules");
+            arguments.add("javafx.graphics");
+            arguments.add("--add-exports");
+            arguments.add("javafx.graphics/com.sun.javafx.css.parser=ALL-UNNAMED");
+        }
+        String classpath = RuntimeJar.get(builddir).getAbsolutePath();
+        if (classpathElements != null && !classpathElements.isEmpty()) {
+            classpath += File.pathSeparator + StringUtils.join(classpathElements.iterator(), File.pathSeparator);
+        }
+        arguments.add("-classpath");
+        arguments.add(classpath);
+        arguments.add(Css2Bss.class.getName());
+        return arguments;
+    }
+
+    private static void writeList(File list, List<Path> stylesheets) throws MojoExecutionException {
+        List<String> lines = stylesheets.stream()
+                .map(css -> css.toAbsolutePath() + "\t" + toBss(css).toAbsolutePath())
+                .collect(Collectors.toList());
+        try {
+            Files.write(list.toPath(), lines, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Error writing " + list, e);
+        }
+    }
+
+    static List<Path> findStylesheets(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(CSS_EXTENSION))
+                    .filter(Files::isRegularFile)
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * @return true if the stylesheet has no binary version, or if it is older than the stylesheet
+     */
+    static boolean isStale(Path css) {
+        Path bss = toBss(css);
+        try {
+            return !Files.exists(bss) || Files.getLastModifiedTime(bss).compareTo(Files.getLastModifiedTime(css)) < 0;
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
+    static Path toBss(Path css) {
+        String name = css.getFileName().toString();
+        return css.resolveSibling(name.substring(0, name.length() - CSS_EXTENSION.length()) + BSS_EXTENSION);
+    }
+
+    static int defaultForks(int stylesheets, int processors) {
+        return Math.max(1, Math.min(processors, stylesheets / MIN_STYLESHEETS_PER_FORK));
+    }
+
+    /**
+     * Splits the stylesheets in at most <code>forks</code> lists of similar size.
+     */
+    static List<List<Path>> split(List<Path> stylesheets, int forks) {
+        int count = Math.max(1, Math.min(forks, stylesheets.size()));
+        List<List<Path>> chunks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            chunks.add(new ArrayList<>());
+        }
+        for (int i = 0; i < stylesheets.size(); i++) {
+            chunks.get(i % count).add(stylesheets.get(i));
+        }
+        return chunks;
+    }
+
+    /**
+     * Rewrites <code>@name.css</code> references in the FXML files under the directory to
+     * <code>@name.bss</code>, for the binary stylesheets that exist.
+     * @return the number of FXML files changed
+     */
+    static int rewriteFxmlReferences(Path directory) throws IOException {
+        List<Path> fxmlFiles;
+        try (Stream<Path> files = Files.walk(directory)) {
+            fxmlFiles = files.filter(path -> path.getFileName().toString().endsWith(".fxml"))
+                    .filter(Files::isRegularFile)
+                    .collect(Collectors.toList());
+        }
+        int count = 0;
+        for (Path fxml : fxmlFiles) {
+            String content = new String(Files.readAllBytes(fxml), StandardCharsets.UTF_8);
+            Matcher matcher = FXML_REFERENCE_PATTERN.matcher(content);
+            StringBuffer rewritten = new StringBuffer();
+            boolean changed = false;
+            while (matcher.find()) {
+                String name = matcher.group(1);
+                Path bss = name.startsWith("/") ? directory.resolve(name.substring(1) + BSS_EXTENSION)
+                        : fxml.resolveSibling(name + BSS_EXTENSION);
+                String replacement = matcher.group();
+                if (Files.exists(bss)) {
+                    replacement = "@" + name + BSS_EXTENSION;
+                    changed = true;
+                }
+                matcher.appendReplacement(rewritten, Matcher.quoteReplacement(replacement));
+            }
+            matcher.appendTail(rewritten);
+            if (changed) {
+                Files.write(fxml, rewritten.toString().getBytes(StandardCharsets.UTF_8));
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,335 @@
+/*
+ * Copyright 2020, Gluon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openjfx;
+
+import org.apache.maven.artifact.DependencyResolutionRequiredException;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Compiles the FXML files of the project output directory into Java classes that build the same scene graph
+ * without <code>FXMLLoader</code>. For <code>main.fxml</code>, the class <code>MainFxml</code> is generated in
+ * the package of the FXML file, and compiled into the output directory, so it is available to
+ * <code>javafx:run</code> and is part of the module linked by <code>javafx:jlink</code>.
+ * <p>
+ * FXML files with constructs that can't be compiled get a class with the same API that loads them with
+ * <code>FXMLLoader</code>, unless <code>fxmlFallback</code> is false.
+ */
+@Mojo(name = "fxml2java", defaultPhase = LifecyclePhase.PROCESS_CLASSES,
+        requiresDependencyResolution = ResolutionScope.COMPILE, threadSafe = true)
+public class JavaFXFxml2JavaMojo extends JavaFXProjectMojo {
+
+    private static final String FXML_EXTENSION = ".fxml";
+
+    /**
+     * The directory with the FXML files to compile. The classes are compiled into the project output directory.
+     */
+    @Parameter(property = "javafx.fxmlDirectory", defaultValue = "${project.build.outputDirectory}")
+    File fxmlDirectory;
+
+    /**
+     * The directory where the Java sources are generated.
+     */
+    @Parameter(property = "javafx.fxmlGeneratedSourcesDirectory", defaultValue = "${project.build.directory}/generated-sources/fxml")
+    File fxmlGeneratedSourcesDirectory;
+
+    /**
+     * If set to true, FXML files that can't be compiled are loaded at runtime with <code>FXMLLoader</code>.
+     * If set to false, the build fails.
+     */
+    @Parameter(property = "javafx.fxmlFallback", defaultValue = "true")
+    boolean fxmlFallback;
+
+    /**
+     * The Java release the generated classes are compiled for. By default, the release of the classes
+     * in the output directory.
+     */
+    @Parameter(property = "javafx.fxmlRelease")
+    String fxmlRelease;
+
+    @Override
+    public void execute() throws MojoExecutionException {
+        if (skip) {
+            getLog().info( "skipping execute as per configuration" );
+            return;
+        }
+
+        if (basedir == null) {
+            throw new IllegalStateException( "basedir is null. Should not be possible." );
+        }
+
+        if (!fxmlDirectory.isDirectory()) {
+            getLog().info("No FXML files to compile, " + fxmlDirectory + " doesn't exist");
+            return;
+        }
+
+        File outputDirectory = new File(project.getBuild().getOutputDirectory());
+        List<FxmlSource> fxmlSources;
+        FileTime newestClass;
+        try {
+            fxmlSources = findFxmlSources(outputDirectory);
+            newestClass = newestClass(outputDirectory, fxmlSources);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Error looking for FXML files in " + fxmlDirectory, e);
+        }
+
+        List<String> classpath;
+        try {
+            classpath = project.getCompileClasspathElements();
+        } catch (DependencyResolutionRequiredException e) {
+            throw new MojoExecutionException("Error resolving the compile classpath", e);
+        }
+
+        List<FxmlSource> toCompile = new ArrayList<>();
+        int compiled = 0;
+        int fallbacks = 0;
+        try (URLClassLoader classLoader = createClassLoader(classpath)) {
+            FxmlCompiler compiler = new FxmlCompiler(classLoader);
+            for (FxmlSource source : fxmlSources) {
+                // the generated code depends on the controllers and the other project classes, not only on the FXML file
+                if (source.isGenerated(newestClass)) {
+                    if (!source.isCompiled()) {
+                        toCompile.add(source);
+                    }
+                    continue;
+                }
+                toCompile.add(source);
+                try (InputStream is = Files.newInputStream(source.fxml)) {
+                    source.write(compiler.generate(source.packageName, source.className,
+                            source.fxml.getFileName().toString(), is));
+                    compiled++;
+                } catch (FxmlCompiler.UnsupportedFxmlException e) {
+                    fallback(source, e.getMessage());
+                    fallbacks++;
+                }
+            }
+        } catch (IOException e) {
+            throw new MojoExecutionException("Error generating the FXML classes", e);
+        }
+
+        if (!toCompile.isEmpty()) {
+            fallbacks += compile(toCompile, classpath, outputDirectory);
+            compiled = Math.max(0, compiled - fallbacks);
+        }
+        getLog().info("FXML files: " + compiled + " compiled, " + fallbacks + " loaded at runtime, "
+                + (fxmlSources.size() - toCompile.size()) + " up to date");
+    }
+
+    /**
+     * Compiles the generated sources, replacing the ones that fail to compile with a fallback.
+     * @return the number of sources replaced
+     */
+    private int compile(List<FxmlSource> sources, List<String> classpath, File outputDirectory)
+            throws MojoExecutionException {
+        List<String> options = compilerOptions(outputDirectory);
+        try {
+            Map<File, String> errors = FxmlCompiler.compile(sources.stream().map(FxmlSource::javaFile)
+                    .collect(Collectors.toList()), classpath, outputDirectory, options);
+            if (errors.isEmpty()) {
+                return 0;
+            }
+            List<FxmlSource> failed = new ArrayList<>();
+            for (FxmlSource source : sources) {
+                String error = errors.remove(source.javaFile().getAbsoluteFile());
+                if (error != null) {
+                    fallback(source, error);
+                    failed.add(source);
+                }
+            }
+            if (!errors.isEmpty()) {
+                throw new MojoExecutionException("Error compiling the FXML classes: " + errors.values());
+            }
+            // javac may not write any class when a source fails, so all of them are compiled again
+            errors = FxmlCompiler.compile(sources.stream().map(FxmlSource::javaFile).collect(Collectors.toList()),
+                    classpath, outputDirectory, options);
+            if (!errors.isEmpty()) {
+                throw new MojoExecutionException("Error compiling the FXML classes: " + errors.values());
+            }
+            return failed.size();
+        } catch (IOException e) {
+            throw new MojoExecutionException("Error compiling the FXML classes", e);
+        }
+    }
+
+    private void fallback(FxmlSource source, String reason) throws MojoExecutionException {
+        if (!fxmlFallback) {
+            throw new MojoExecutionException("Unable to compile " + source.fxml + ": " + reason);
+        }
+        getLog().info(fxmlDirectory.toPath().relativize(source.fxml) + " is loaded at runtime with FXMLLoader: " + reason);
+        try {
+            source.write(FxmlCompiler.generateFallback(source.packageName, source.className,
+                    source.fxml.getFileName().toString()));
+        } catch (IOException e) {
+            throw new MojoExecutionException("Error writing " + source.javaFile(), e);
+        }
+    }
+
+    private List<String> compilerOptions(File outputDirectory) throws MojoExecutionException {
+        String release = fxmlRelease;
+        if (release == null) {
+            try {
+                release = classFileRelease(outputDirectory.toPath());
+            } catch (IOException e) {
+                throw new MojoExecutionException("Error reading the classes in " + outputDirectory, e);
+            }
+        }
+        if (release == null) {
+            return Collections.emptyList();
+        }
+        if (isMavenUsingJava8()) {
+            return Arrays.asList("-source", release, "-target", release);
+        }
+        return Arrays.asList("--release", release);
+    }
+
+    /**
+     * @return the Java release of a class in the directory, or null if there are no classes
+     */
+    static String classFileRelease(Path directory) throws IOException {
+        Optional<Path> classFile;
+        try (Stream<Path> files = Files.walk(directory)) {
+            classFile = files.filter(path -> path.toString().endsWith(".class")).findFirst();
+        }
+        if (!classFile.isPresent()) {
+            return null;
+        }
+        try (DataInputStream dis = new DataInputStream(Files.newInputStream(classFile.get()))) {
+            dis.readInt();
+            dis.readUnsignedShort();
+            int major = dis.readUnsignedShort();
+            return Integer.toString(Math.max(8, major - 44));
+        }
+    }
+
+    private List<FxmlSource> findFxmlSources(File outputDirectory) throws IOException {
+        Path directory = fxmlDirectory.toPath();
+        boolean modular = new File(outputDirectory, "module-info.class").exists();
+        List<Path> fxmlFiles;
+        try (Stream<Path> files = Files.walk(directory)) {
+            fxmlFiles = files.filter(path -> path.getFileName().toString().endsWith(FXML_EXTENSION))
+                    .filter(Files::isRegularFile)
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+        List<FxmlSource> sources = new ArrayList<>();
+        for (Path fxml : fxmlFiles) {
+            String packageName = FxmlCompiler.packageName(directory.relativize(fxml).getParent());
+            String className = FxmlCompiler.toClassName(fxml.getFileName().toString());
+            if (packageName == null || className == null) {
+                getLog().info("Skipping " + fxml + ", its path is not a valid Java class name");
+            } else if (packageName.isEmpty() && modular) {
+                getLog().info("Skipping " + fxml + ", a module can't have classes in the unnamed package");
+            } else {
+                sources.add(new FxmlSource(fxml, packageName, className, outputDirectory.toPath()));
+            }
+        }
+        return sources;
+    }
+
+    private FileTime newestClass(File outputDirectory, List<FxmlSource> sources) throws IOException {
+        Set<Path> generated = sources.stream().map(FxmlSource::classFile).collect(Collectors.toSet());
+        try (Stream<Path> files = Files.walk(outputDirectory.toPath())) {
+            return files.filter(path -> path.toString().endsWith(".class"))
+                    .filter(path -> !generated.contains(path))
+                    .map(path -> {
+                        try {
+                            return Files.getLastModifiedTime(path);
+                        } catch (IOException e) {
+                            return FileTime.fromMillis(Long.MAX_VALUE);
+                        }
+                    })
+                    .max(FileTime::compareTo)
+                    .orElse(FileTime.fromMillis(0));
+        }
+    }
+
+    private static URLClassLoader createClassLoader(List<String> classpath) throws IOException {
+        List<URL> urls = new ArrayList<>();
+        for (String element : classpath) {
+            urls.add(new File(element).toURI().toURL());
+        }
+        // the platform class loader, so the classes of the plugin and of Maven are not visible
+        return new URLClassLoader(urls.toArray(new URL[0]), ClassLoader.getSystemClassLoader().getParent());
+    }
+
+    private class FxmlSource {
+
+        private final Path fxml;
+        private final String packageName;
+        private final String className;
+        private final Path javaFile;
+        private final Path classFile;
+
+        FxmlSource(Path fxml, String packageName, String className, Path outputDirectory) {
+            this.fxml = fxml;
+            this.packageName = packageName;
+            this.className = className;
+            String path = packageName.isEmpty() ? className : packageName.replace('.', File.separatorChar)
+                    + File.separator + className;
+            this.javaFile = fxmlGeneratedSourcesDirectory.toPath().resolve(path + ".java");
+            this.classFile = outputDirectory.resolve(path + ".class");
+        }
+
+        File javaFile() {
+            return javaFile.toFile();
+        }
+
+        Path classFile() {
+            return classFile;
+        }
+
+        boolean isGenerated(FileTime newestClass) throws IOException {
+            if (!Files.exists(javaFile)) {
+                return false;
+            }
+            FileTime generated = Files.getLastModifiedTime(javaFile);
+            return generated.compareTo(Files.getLastModifiedTime(fxml)) >= 0 && generated.compareTo(newestClass) >= 0;
+        }
+
+        boolean isCompiled() throws IOException {
+            return Files.exists(classFile)
+                    && Files.getLastModifiedTime(classFile).compareTo(Files.getLastModifiedTime(javaFile)) >= 0;
+        }
+
+        void write(String source) throws IOException {
+            Files.createDirectories(javaFile.getParent());
+            Files.write(javaFile, source.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,1048 @@
+/*
+ * Copyright 2019 Gluon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openjfx;
+
+import org.apache.commons.exec.CommandLine;
+import org.apache.commons.exec.DefaultExecutor;
+import org.apache.commons.exec.ExecuteException;
+import org.apache.commons.exec.Executor;
+import org.apache.commons.exec.OS;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Component;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.codehaus.plexus.archiver.Archiver;
+import org.codehaus.plexus.archiver.ArchiverException;
+import org.codehaus.plexus.archiver.manager.ArchiverManager;
+import org.codehaus.plexus.archiver.manager.NoSuchArchiverException;
+import org.codehaus.plexus.archiver.util.DefaultFileSet;
+import org.codehaus.plexus.languages.java.jpms.JavaModuleDescriptor;
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.StringUtils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Same as the <code>jlink</code> goal, but it doesn't fork the lifecycle to compile the project first.
+ * Use it when the goal is bound to a phase after <code>process-classes</code>, or chained after
+ * other goals that already compiled the project in the same session.
+ */
+@Mojo(name = "jlink-no-fork", requiresDependencyResolution = ResolutionScope.RUNTIME, threadSafe = true)
+public class JavaFXJLinkNoForkMojo extends JavaFXBaseMojo {
+
+    private static final Pattern JLINK_VERSION_PATTERN = Pattern.compile("(1[3-9]|[2-9][0-9]|\\d{3,})");
+    private static final String TRAINING_REPORT_FILE = "report.json";
+    private static final long TRAINING_TIMING_TIMEOUT_SECONDS = 60;
+    private static final String PREVIOUS_IMAGE_DIRECTORY = "javafx-previous-image";
+    private static final String LOCALE_DATA_MODULE = "jdk.localedata";
+
+    /**
+     * Strips debug information out, equivalent to <code>-G, --strip-debug</code>,
+     * default false
+     */
+    @Parameter(property = "javafx.stripDebug", defaultValue = "false")
+    private boolean stripDebug;
+
+    /**
+     * Strip Java debug attributes out, equivalent to <code>--strip-java-debug-attributes</code>,
+     * default false
+     */
+    @Parameter(property = "javafx.stripJavaDebugAttributes", defaultValue = "false")
+    private boolean stripJavaDebugAttributes;
+
+    /**
+     * Strips debug symbols out of the native libraries, equivalent to
+     * <code>--strip-native-debug-symbols=exclude-debuginfo-files</code>, default false.
+     * Requires jlink 13 or higher on Linux, and <code>objcopy</code>.
+     */
+    @Parameter(property = "javafx.stripNativeDebugSymbols", defaultValue = "false")
+    private boolean stripNativeDebugSymbols;
+
+    /**
+     * Comma-separated language tags of the locales to include, equivalent to <code>--include-locales</code>,
+     * like <code>en,fr</code>. The module <code>jdk.localedata</code> is linked with them.
+     */
+    @Parameter(property = "javafx.includeLocales")
+    private String includeLocales;
+
+    /**
+     * Includes the locales of the languages of the resource bundles of the project, like <code>fr</code>
+     * for <code>messages_fr.properties</code>, as well as <code>includeLocales</code>, default false.
+     */
+    @Parameter(property = "javafx.detectLocales", defaultValue = "false")
+    private boolean detectLocales;
+
+    /**
+     * Patterns of the resources to exclude, equivalent to <code>--exclude-resources</code>,
+     * like <code>**.jcov</code> or <code>glob:/java.base/META-INF/**</code>.
+     */
+    @Parameter(property = "javafx.excludeResources")
+    private List<String> excludeResources;
+
+    /**
+     * Fails if legal notices with the same name have a different content, and links the duplicated ones
+     * to a single file where the platform allows it, equivalent to
+     * <code>--dedup-legal-notices=error-if-not-same-content</code>, default false.
+     */
+    @Parameter(property = "javafx.dedupLegalNotices", defaultValue = "false")
+    private boolean dedupLegalNotices;
+
+    /**
+     * Runs the application from the image once it is created, to verify that it starts and nothing it needs
+     * was left out, default false. Requires a <code>java</code> launcher in the image.
+     */
+    @Parameter(property = "javafx.verifyImage", defaultValue = "false")
+    private boolean verifyImage;
+
+    /**
+     * Time in seconds the application runs to verify the image, default 5. The image passes if the application
+     * is still running or exited normally, without errors in its output.
+     */
+    @Parameter(property = "javafx.verifyDuration", defaultValue = "5")
+    private int verifyDuration;
+
+    /**
+     * Runs the verification with the headless Monocle platform and the software pipeline, default false.
+     * Monocle has to be included in the image.
+     */
+    @Parameter(property = "javafx.verifyHeadless", defaultValue = "false")
+    private boolean verifyHeadless;
+
+    /**
+     * Removes the JavaFX native libraries that the image can't load: the ones of modules that are not linked,
+     * and the glass and prism implementations excluded by the <code>jdk.gtk.version</code> and
+     * <code>prism.order</code> system properties of the <code>options</code>, default false.
+     */
+    @Parameter(property = "javafx.pruneNativeLibraries", defaultValue = "false")
+    private boolean pruneNativeLibraries;
+
+    /**
+     * Compression level of the resources being used, equivalent to:
+     * <code>-c, --compress=level</code>. Valid values: <code>0, 1, 2</code>,
+     * default 0
+     */
+    @Parameter(property = "javafx.compress", defaultValue = "0")
+    private Integer compress;
+
+    /**
+     * Remove the <code>includes</code> directory in the resulting runtime image,
+     * equivalent to: <code>--no-header-files</code>, default false
+     */
+    @Parameter(property = "javafx.noHeaderFiles", defaultValue = "false")
+    private boolean noHeaderFiles;
+
+    /**
+     * Remove the <code>man</code> directory in the resulting Java runtime image,
+     * equivalent to: <code>--no-man-pages</code>, default false
+     */
+    @Parameter(property = "javafx.noManPages", defaultValue = "false")
+    private boolean noManPages;
+
+    /**
+     * Add the option <code>--bind-services</code> or not, default false.
+     */
+    @Parameter(property = "javafx.bindServices", defaultValue = "false")
+    private boolean bindServices;
+
+    /**
+     * Links only the modules that provide the services the application uses, instead of binding all the service
+     * providers like <code>bindServices</code> does, default false. The services are the ones declared with
+     * <code>uses</code> by the application and its dependencies, and the ones loaded with
+     * <code>ServiceLoader.load(Service.class)</code> in their classes.
+     */
+    @Parameter(property = "javafx.minimizeServiceBindings", defaultValue = "false")
+    private boolean minimizeServiceBindings;
+
+    /**
+     * <code>--ignore-signing-information</code>, default false
+     */
+    @Parameter(property = "javafx.ignoreSigningInformation", defaultValue = "false")
+    private boolean ignoreSigningInformation;
+
+    /**
+     * Turn on verbose mode, equivalent to: <code>--verbose</code>, default false
+     */
+    @Parameter(property = "javafx.jlinkVerbose", defaultValue = "false")
+    private boolean jlinkVerbose;
+
+    /**
+     * Add a launcher script, equivalent to:
+     * <code>--launcher &lt;name&gt;=&lt;module&gt;[/&lt;mainclass&gt;]</code>.
+     */
+    @Parameter(property = "javafx.launcher")
+    private String launcher;
+
+    /**
+     * The name of the folder with the resulting runtime image,
+     * equivalent to <code>--output &lt;path&gt;</code>
+     */
+    @Parameter(property = "javafx.jlinkImageName", defaultValue = "image")
+    private String jlinkImageName;
+
+    /**
+     * When set, creates a zip of the resulting runtime image.
+     */
+    @Parameter(property = "javafx.jlinkZipName")
+    private String jlinkZipName;
+
+    /**
+     * Creates the zip of the runtime image with sorted entries, the same timestamp for all of them, taken from
+     * <code>project.build.outputTimestamp</code>, and normalized permissions, so identical images give identical
+     * zips. It also writes the SHA-256 hash of the content of the image and of the zip to <code>.sha256</code> files,
+     * and sets them as the <code>javafx.imageSha256</code> and <code>javafx.zipSha256</code> project properties.
+     * Enabled by default when <code>project.build.outputTimestamp</code> is set.
+     */
+    @Parameter(property = "javafx.reproducibleZip", defaultValue = "false")
+    private boolean reproducibleZip;
+
+    @Parameter(defaultValue = "${project.build.outputTimestamp}", readonly = true)
+    private String outputTimestamp;
+
+    /**
+     * A previous runtime image, or a zip of it. If set, a patch that transforms it into the new image is created,
+     * with the files that changed, and binary deltas of <code>lib/modules</code> and the native libraries.
+     * Implies <code>includeImagePatcher</code>.
+     */
+    @Parameter(property = "javafx.previousImage")
+    private File previousImage;
+
+    /**
+     * The name of the patch from the <code>previousImage</code>, created as a zip in the build directory.
+     */
+    @Parameter(property = "javafx.patchName", defaultValue = "image-patch")
+    private String patchName;
+
+    /**
+     * Adds a tool that applies patches to the image, <code>bin/patch-image</code>, default false.
+     */
+    @Parameter(property = "javafx.includeImagePatcher", defaultValue = "false")
+    private boolean includeImagePatcher;
+
+    /**
+     * Splits the application into container layers, in <code>containerDirectory</code>: a runtime image linked
+     * from the JDK and JavaFX modules only, the third-party modules, and the application module with a launcher.
+     * The layers are deterministic tars, also written as an OCI image layout, default false.
+     */
+    @Parameter(property = "javafx.containerLayers", defaultValue = "false")
+    private boolean containerLayers;
+
+    /**
+     * The directory with the layers, in <code>layers</code>, and the OCI image layout, in <code>oci</code>.
+     */
+    @Parameter(property = "javafx.containerDirectory", defaultValue = "${project.build.directory}/javafx-container")
+    private File containerDirectory;
+
+    /**
+     * The directory of the application in the container.
+     */
+    @Parameter(property = "javafx.containerAppDirectory", defaultValue = "/opt/app")
+    private String containerAppDirectory;
+
+    /**
+     * The tag of the image in the OCI image layout.
+     */
+    @Parameter(property = "javafx.containerImageTag", defaultValue = "${project.version}")
+    private String containerImageTag;
+
+    /**
+     * <p>
+     * The executable. Can be a full path or the name of the executable.
+     * In the latter case, the executable must be in the PATH for the execution to work.
+     * </p>
+     */
+    @Parameter(property = "javafx.jlinkExecutable", defaultValue = "jlink")
+    private String jlinkExecutable;
+
+    /**
+     * Optional jmodsPath path for local builds.
+     */
+    @Parameter(property = "javafx.jmodsPath")
+    private String jmodsPath;
+
+    /**
+     * If set to true and <code>jmodsPath</code> is not set, the JavaFX jmods that match the version and platform
+     * of the JavaFX jars are looked up in <code>jmodsDirectory</code> and in the local repository, unpacked once
+     * into <code>jmodsCacheDirectory</code>, and put first on the module path.
+     */
+    @Parameter(property = "javafx.resolveJmods", defaultValue = "false")
+    private boolean resolveJmods;
+
+    /**
+     * Optional directory with JavaFX jmods bundles, like <code>openjfx-17.0.2_linux-x64_bin-jmods.zip</code>.
+     */
+    @Parameter(property = "javafx.jmodsDirectory")
+    private File jmodsDirectory;
+
+    /**
+     * The directory the JavaFX jmods bundles are unpacked to, under <code>javafx-jmods/version-classifier</code>.
+     * The default is next to the local repository, so the bundles are unpacked once for all the projects and
+     * survive <code>mvn clean</code>.
+     */
+    @Parameter(property = "javafx.jmodsCacheDirectory", defaultValue = "${settings.localRepository}/.cache/javafx-maven-plugin")
+    private File jmodsCacheDirectory;
+
+    @Parameter(defaultValue = "${settings.localRepository}", readonly = true)
+    private File localRepository;
+
+    /**
+     * Trains the image to start faster: once linked, the image runs the application to record the classes it
+     * loads and the lambda forms it uses, and it is linked again with its resources in that order,
+     * with <code>--order-resources</code>, and with those lambda forms pre-generated, with
+     * <code>--generate-jli-classes</code>. Requires a <code>java</code> launcher in the image, default false.
+     */
+    @Parameter(property = "javafx.jlinkTraining", defaultValue = "false")
+    private boolean jlinkTraining;
+
+    /**
+     * Time in seconds the application runs to train the image, default 10.
+     * If set to 0, the application runs until it exits.
+     */
+    @Parameter(property = "javafx.trainingDuration", defaultValue = "10")
+    private int trainingDuration;
+
+    /**
+     * Runs the training with the headless Monocle platform and the software pipeline, default false.
+     * Monocle has to be included in the image.
+     */
+    @Parameter(property = "javafx.trainingHeadless", defaultValue = "false")
+    private boolean trainingHeadless;
+
+    /**
+     * Number of times the images before and after the training are launched to compare their startup time,
+     * default 3. If set to 0, the startup time isn't measured.
+     */
+    @Parameter(property = "javafx.trainingTimingRuns", defaultValue = "3")
+    private int trainingTimingRuns;
+
+    /**
+     * The class whose loading marks the end of the startup, when measuring the startup time.
+     * Defaults to the painter of the JavaFX windows, which is loaded to render the first frame.
+     */
+    @Parameter(property = "javafx.trainingStartupClass", defaultValue = "com.sun.javafx.tk.quantum.ViewPainter")
+    private String trainingStartupClass;
+
+    /**
+     * The directory with the recorded class order, the lambda forms, the output of the runs and the report.
+     */
+    @Parameter(property = "javafx.trainingDirectory", defaultValue = "${project.build.directory}/javafx-jlink-training")
+    private File trainingDirectory;
+
+    /**
+     * Provides a new zip archiver for every archive, since archivers keep the files being added as state
+     * and executions may run concurrently in a parallel build.
+     */
+    @Component
+    private ArchiverManager archiverManager;
+
+    /**
+     * The JavaFX jmods on the module path of the last link, if any.
+     */
+    private Path linkedJmods;
+
+    /**
+     * The native libraries excluded from the JavaFX jars in the last link, as resource paths,
+     * with the reason and size of each one.
+     */
+    private Map<String, Map.Entry<String, Long>> excludedLibraries = new TreeMap<>();
+
+    /**
+     * The modules that provide the services of the application, found once for all the links.
+     */
+    private Map<String, Set<String>> serviceProviders;
+
+    public void execute() throws MojoExecutionException {
+        if (skip) {
+            getLog().info( "skipping execute as per configuration" );
+            return;
+        }
+
+        if (jlinkExecutable == null) {
+            throw new MojoExecutionException("The parameter 'jlinkExecutable' is missing or invalid");
+        }
+
+        if (basedir == null) {
+            throw new IllegalStateException( "basedir is null. Should not be possible." );
+        }
+
+        handleWorkingDirectory();
+        
+        Map<String, String> enviro = handleSystemEnvVariables();
+        ExecutableInfo executableInfo = getExecutableInfo(jlinkExecutable, enviro, workingDirectory);
+
+        if (executableInfo.isJava8()) {
+            getLog().info("Jlink not supported with Java 1.8");
+            return;
+        }
+
+        if (stripJavaDebugAttributes && !isJLinkVersion13orHigher(executableInfo)) {
+            stripJavaDebugAttributes = false;
+            getLog().warn("JLink parameter --strip-java-debug-attributes only supported for version 13 and higher");
+            getLog().warn("The option 'stripJavaDebugAttributes' was skipped");
+        }
+
+        if (stripNativeDebugSymbols && (!isJLinkVersion13orHigher(executableInfo) || !OS.isFamilyUnix() || OS.isFamilyMac())) {
+            stripNativeDebugSymbols = false;
+            getLog().warn("JLink parameter --strip-native-debug-symbols only supported for version 13 and higher on Linux");
+            getLog().warn("The option 'stripNativeDebugSymbols' was skipped");
+        }
+
+        try {
+            OptionalLong timestamp = ReproducibleArchive.parseOutputTimestamp(outputTimestamp);
+            boolean reproducible = reproducibleZip || timestamp.isPresent();
+
+            link(executableInfo, enviro, new ArrayList<>());
+
+            if (jlinkTraining) {
+                trainImage(executableInfo, enviro);
+            }
+
+            reportNativeLibraries(executableInfo, new File(builddir, jlinkImageName));
+
+            if (verifyImage) {
+                verifyImage(enviro);
+            }
+
+            if (launcher != null && ! launcher.isEmpty()) {
+                patchLauncherScript(launcher);
+
+                if (OS.isFamilyWindows()) {
+                    patchLauncherScript(launcher + ".bat");
+                }
+            }
+
+            if (includeImagePatcher || previousImage != null) {
+                ImagePatch.installPatcher(new File(builddir, jlinkImageName).toPath(), RuntimeJar.readPatcherClasses());
+            }
+
+            if (reproducible) {
+                publishHash(new File(builddir, jlinkImageName), "javafx.imageSha256");
+            }
+
+            if (jlinkZipName != null && ! jlinkZipName.isEmpty()) {
+                getLog().debug("Creating zip of runtime image");
+                File createZipArchiveFromImage = reproducible ?
+                        createReproducibleZipArchiveFromImage(timestamp.orElse(ReproducibleArchive.DEFAULT_TIMESTAMP)) :
+                        createZipArchiveFromImage();
+                project.getArtifact().setFile(createZipArchiveFromImage);
+            }
+
+            if (previousImage != null) {
+                createImagePatch();
+            }
+
+            if (containerLayers) {
+                createContainerLayers(executableInfo, enviro, timestamp.orElse(ReproducibleArchive.DEFAULT_TIMESTAMP));
+            }
+        } catch (Exception e) {
+            throw new MojoExecutionException("Error", e);
+        }
+    }
+
+    private void link(ExecutableInfo executableInfo, Map<String, String> enviro, List<String> extraArguments)
+            throws MojoExecutionException, MojoFailureException {
+        link(executableInfo, enviro, new File(builddir, jlinkImageName), null, extraArguments);
+    }
+
+    /**
+     * @param rootModules the modules to link, or null to link the module of the project with its launcher
+     */
+    private void link(ExecutableInfo executableInfo, Map<String, String> enviro, File image,
+                      Collection<String> rootModules, List<String> extraArguments)
+            throws MojoExecutionException, MojoFailureException {
+        CommandLine commandLine = getExecutablePath(executableInfo);
+        List<String> commandArguments = createCommandArguments(executableInfo, image, rootModules);
+        commandArguments.addAll(extraArguments);
+        String[] args = commandArguments.toArray(new String[commandArguments.size()]);
+        commandLine.addArguments(args, false);
+        getLog().debug("Executing command line: " + commandLine);
+
+        Executor exec = new DefaultExecutor();
+        exec.setWorkingDirectory(workingDirectory);
+
+        try {
+            int resultCode;
+            if (outputFile != null) {
+                if ( !outputFile.getParentFile().exists() && !outputFile.getParentFile().mkdirs()) {
+                    getLog().warn( "Could not create non existing parent directories for log file: " + outputFile );
+                }
+
+                FileOutputStream outputStream = null;
+                try {
+                    outputStream = new FileOutputStream(outputFile);
+                    resultCode = executeCommandLine(exec, commandLine, enviro, outputStream);
+                } finally {
+                    IOUtil.close(outputStream);
+                }
+            } else {
+                resultCode = executeCommandLine(exec, commandLine, enviro, System.out, System.err);
+            }
+
+            if (resultCode != 0) {
+                String message = "Result of " + commandLine.toString() + " execution is: '" + resultCode + "'.";
+                getLog().error(message);
+                throw new MojoExecutionException(message);
+            }
+        } catch (ExecuteException e) {
+            getLog().error("Command execution failed.", e);
+            e.printStackTrace();
+            throw new MojoExecutionException("Command execution failed.", e);
+        } catch (IOException e) {
+            getLog().error("Command execution failed.", e);
+            throw new MojoExecutionException("Command execution failed.", e);
+        }
+    }
+
+    /**
+     * Runs the image to record the classes it loads and the lambda forms it resolves, links it again with
+     * its resources in that order and with those lambda forms pre-generated, and reports the startup time
+     * of both images.
+     */
+    private void trainImage(ExecutableInfo executableInfo, Map<String, String> enviro)
+            throws MojoExecutionException, MojoFailureException {
+        if (moduleDescriptor == null) {
+            throw new MojoExecutionException("The jlink training requires a module descriptor");
+        }
+        if (!trainingDirectory.exists() && !trainingDirectory.mkdirs()) {
+            throw new MojoExecutionException("Could not make training directory: '" + trainingDirectory + "'");
+        }
+        File java = getImageJava();
+        String mainModule = getModuleMainClass();
+        List<String> vmArguments = getRunVmArguments(trainingHeadless);
+        List<String> arguments = getRunArguments();
+
+        JLinkTraining training = new JLinkTraining(getLog(), enviro, workingDirectory, trainingDirectory);
+        List<Long> before = new ArrayList<>();
+        if (trainingTimingRuns > 0) {
+            before = training.measureStartup(java, vmArguments, mainModule, arguments, trainingStartupClass,
+                    trainingTimingRuns, TRAINING_TIMING_TIMEOUT_SECONDS);
+        }
+        File classOrder = training.train(java, vmArguments, mainModule, arguments, trainingDuration);
+
+        getLog().info("Linking the trained image");
+        File jliClasses = new File(classOrder.getParentFile(), JLinkTraining.JLI_CLASSES_FILE);
+        List<String> trainedArguments = new ArrayList<>();
+        trainedArguments.add(" --order-resources=**/module-info.class,@" + classOrder.getAbsolutePath());
+        if (jliClasses.length() > 0) {
+            trainedArguments.add(" --generate-jli-classes=@" + jliClasses.getAbsolutePath());
+        }
+        link(executableInfo, enviro, trainedArguments);
+
+        if (trainingTimingRuns > 0) {
+            List<Long> after = training.measureStartup(java, vmArguments, mainModule, arguments, trainingStartupClass,
+                    trainingTimingRuns, TRAINING_TIMING_TIMEOUT_SECONDS);
+            reportStartup(new Statistics(before), new Statistics(after));
+        }
+    }
+
+    /**
+     * Runs the application from the image, and fails if it doesn't start.
+     */
+    private void verifyImage(Map<String, String> enviro) throws MojoExecutionException {
+        if (moduleDescriptor == null) {
+            throw new MojoExecutionException("The verification of the image requires a module descriptor");
+        }
+        new JLinkTraining(getLog(), enviro, workingDirectory, builddir)
+                .verify(getImageJava(), getRunVmArguments(verifyHeadless), getModuleMainClass(), getRunArguments(),
+                        verifyDuration);
+        getLog().info("The image runs");
+    }
+
+    private File getImageJava() {
+        return new File(new File(builddir, jlinkImageName), "bin/" + (OS.isFamilyWindows() ? "java.exe" : "java"));
+    }
+
+    private String getModuleMainClass() {
+        return mainClass.contains("/") ? mainClass : moduleDescriptor.name() + "/" + mainClass;
+    }
+
+    private List<String> getRunVmArguments(boolean headless) {
+        List<String> vmArguments = new ArrayList<>();
+        if (headless) {
+            vmArguments.addAll(JavaFXProfileMojo.HEADLESS_OPTIONS);
+        }
+        vmArguments.addAll(getVmOptions());
+        return vmArguments;
+    }
+
+    private List<String> getRunArguments() {
+        return commandlineArgs == null ? new ArrayList<>() :
+                Arrays.asList(CommandLine.parse("java " + commandlineArgs).getArguments());
+    }
+
+    private void reportStartup(Statistics before, Statistics after) throws MojoExecutionException {
+        double change = before.percentile(50) == 0 ? 0 :
+                (before.percentile(50) - after.percentile(50)) * 100 / before.percentile(50);
+        getLog().info(String.format("Startup time (ms) until %s is loaded, median of %d runs: before %.0f (min %.0f, max %.0f), "
+                        + "after %.0f (min %.0f, max %.0f), %.1f%% %s", trainingStartupClass, before.count(),
+                before.percentile(50), before.min(), before.max(), after.percentile(50), after.min(), after.max(),
+                Math.abs(change), change >= 0 ? "faster" : "slower"));
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("startupClass", trainingStartupClass);
+        report.put("before", before.toMap());
+        report.put("after", after.toMap());
+        File reportFile = new File(trainingDirectory, TRAINING_REPORT_FILE);
+        try {
+            Files.write(reportFile.toPath(), Json.toJson(report).getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new MojoExecutionException("Error writing the training report " + reportFile, e);
+        }
+    }
+
+    private void patchLauncherScript(String launcherFilename) throws IOException {
+        Path launcherPath = Paths.get(builddir.getAbsolutePath(), jlinkImageName, "bin", launcherFilename);
+
+        if (!Files.exists(launcherPath)) {
+            getLog().debug("Launcher file not exist: " + launcherPath);
+            return;
+        }
+
+        if (options != null) {
+            String optionsString = options.stream()
+                    .filter(Objects::nonNull)
+                    .filter(String.class::isInstance)
+                    .map(String.class::cast)
+                    .collect(Collectors.joining(" "));
+
+            // Add vm options to launcher script
+            List<String> lines = Files.lines(launcherPath)
+                    .map(line -> {
+                        boolean unixOptionsLine = "JLINK_VM_OPTIONS=".equals(line);
+                        boolean winOptionsLine = "set JLINK_VM_OPTIONS=".equals(line);
+
+                        if (unixOptionsLine || winOptionsLine) {
+                            String lineWrapper = unixOptionsLine ? "\"" : "";
+                            return line + lineWrapper + optionsString + lineWrapper;
+                        }
+                        return line;
+                    })
+                    .collect(Collectors.toList());
+            Files.write(launcherPath, lines);
+        }
+
+        if (commandlineArgs != null) {
+            // Add options to launcher script
+            List<String> lines = Files.lines(launcherPath)
+                    .map(line -> {
+                        if (line.endsWith("$@")) {
+                            return line.replace("$@", commandlineArgs + " $@");
+                        }
+                        return line;
+                    })
+                    .collect(Collectors.toList());
+            Files.write(launcherPath, lines);
+        }
+    }
+
+    /**
+     * Finds the native libraries bundled in the JavaFX jars that the image won't load.
+     */
+    private Map<String, Map.Entry<String, Long>> findUnusedJarLibraries() throws MojoExecutionException {
+        Map<File, String> modules = new HashMap<>();
+        for (String element : modulepathElements) {
+            JavaModuleDescriptor descriptor = pathElements.get(element);
+            if (descriptor != null && descriptor.name() != null && descriptor.name().startsWith(JAVAFX_PREFIX)) {
+                modules.put(new File(element), descriptor.name());
+            }
+        }
+        return createNativeLibraryPruning().findUnusedJarLibraries(modules);
+    }
+
+    private void reportNativeLibraries(ExecutableInfo executableInfo, File image) throws MojoExecutionException {
+        List<Path> unstrippedJmods = stripNativeDebugSymbols ? Arrays.asList(linkedJmods,
+                executableInfo.getJdkHome() == null ? null : executableInfo.getJdkHome().resolve("jmods")) : null;
+        createNativeLibraryPruning().report(image, excludedLibraries, unstrippedJmods);
+    }
+
+    private NativeLibraryPruning createNativeLibraryPruning() {
+        return new NativeLibraryPruning(getLog(), getVmOptions(), pruneNativeLibraries);
+    }
+
+    /**
+     * @return the modules that provide the services the application uses, with these services, by module
+     */
+    private Map<String, Set<String>> findServiceProviders(ExecutableInfo executableInfo) throws MojoExecutionException {
+        if (serviceProviders != null) {
+            return serviceProviders;
+        }
+        Map<String, JavaModuleDescriptor> modules = new HashMap<>();
+        Map<String, String> paths = new HashMap<>();
+        pathElements.forEach((path, descriptor) -> {
+            if (descriptor != null && descriptor.name() != null && modulepathElements.contains(path)) {
+                modules.put(descriptor.name(), descriptor);
+                paths.put(descriptor.name(), path);
+            }
+        });
+        paths.put(moduleDescriptor.name(), project.getBuild().getOutputDirectory());
+        // the modules the application requires, which are linked whatever the services
+        Set<String> required = new HashSet<>();
+        Deque<JavaModuleDescriptor> queue = new ArrayDeque<>();
+        queue.add(moduleDescriptor);
+        while (!queue.isEmpty()) {
+            JavaModuleDescriptor descriptor = queue.poll();
+            if (!required.add(descriptor.name())) {
+                continue;
+            }
+            for (JavaModuleDescriptor.JavaRequires requires : descriptor.requires()) {
+                JavaModuleDescriptor dependency = modules.get(requires.name());
+                if (dependency != null && !requires.modifiers().contains(JavaModuleDescriptor.JavaRequires.JavaModifier.STATIC)) {
+                    queue.add(dependency);
+                }
+            }
+        }
+
+        Path jdkJmods = executableInfo.getJdkHome() == null ? null : executableInfo.getJdkHome().resolve("jmods");
+        if (jdkJmods == null || !Files.isDirectory(jdkJmods)) {
+            getLog().warn("The jmods of the JDK were not found, their service providers can't be linked");
+        }
+        try {
+            List<ServiceBindings.Module> application = new ArrayList<>();
+            List<ServiceBindings.Module> candidates = new ArrayList<>(ServiceBindings.scanJmods(jdkJmods, true));
+            candidates.addAll(ServiceBindings.scanJmods(linkedJmods, false));
+            for (Map.Entry<String, String> module : paths.entrySet()) {
+                ServiceBindings.Module scanned = ServiceBindings.scan(Paths.get(module.getValue()), module.getKey());
+                candidates.add(scanned);
+                if (required.contains(module.getKey())) {
+                    application.add(scanned);
+                }
+            }
+            serviceProviders = ServiceBindings.providers(application, candidates);
+            serviceProviders.forEach((module, services) ->
+                    getLog().info("Linking " + module + ", which provides " + String.join(", ", services)));
+            Set<String> unresolved = ServiceBindings.unresolvedServiceLoads(application);
+            if (!unresolved.isEmpty()) {
+                getLog().warn("The services loaded in " + String.join(", ", unresolved) + " are not known, "
+                        + "their providers are linked only if a module requires them, or with 'bindServices' "
+                        + "instead of 'minimizeServiceBindings'");
+            }
+            return serviceProviders;
+        } catch (IOException e) {
+            throw new MojoExecutionException("Error looking for the service providers", e);
+        }
+    }
+
+    /**
+     * @return the descriptors of the modules on the module path that are not JavaFX modules, by name
+     */
+    private Map<String, JavaModuleDescriptor> getThirdPartyModules() {
+        Map<String, JavaModuleDescriptor> modules = new HashMap<>();
+        getThirdPartyModuleFiles().values().forEach(descriptor -> modules.put(descriptor.name(), descriptor));
+        return modules;
+    }
+
+    /**
+     * @return the descriptors of the modules on the module path that are not JavaFX modules, by file, in the order
+     * of the module path
+     */
+    private Map<File, JavaModuleDescriptor> getThirdPartyModuleFiles() {
+        Map<File, JavaModuleDescriptor> modules = new LinkedHashMap<>();
+        File outputDirectory = new File(project.getBuild().getOutputDirectory());
+        for (String element : modulepathElements) {
+            JavaModuleDescriptor descriptor = pathElements.get(element);
+            File file = new File(element);
+            if (descriptor != null && descriptor.name() != null && !descriptor.name().startsWith(JAVAFX_PREFIX)
+                    && !file.equals(outputDirectory)) {
+                modules.put(file, descriptor);
+            }
+        }
+        return modules;
+    }
+
+    /**
+     * @return the locales to include, from <code>includeLocales</code> and the resource bundles of the project
+     */
+    private Set<String> resolveLocales() throws MojoExecutionException {
+        Set<String> locales = new LinkedHashSet<>();
+        if (includeLocales != null) {
+            Arrays.stream(includeLocales.split(","))
+                    .map(String::trim)
+                    .filter(locale -> !locale.isEmpty())
+                    .forEach(locales::add);
+        }
+        if (detectLocales && project != null) {
+            Path classes = Paths.get(project.getBuild().getOutputDirectory());
+            try {
+                Set<String> detected = ResourceBundleLocales.detect(classes);
+                getLog().info("Locales of the resource bundles: " + (detected.isEmpty() ? "none" : detected));
+                locales.addAll(detected);
+            } catch (IOException e) {
+                throw new MojoExecutionException("Error looking for the resource bundles in " + classes, e);
+            }
+        }
+        return locales;
+    }
+
+    private List<String> getVmOptions() {
+        return options == null ? new ArrayList<>() : options.stream()
+                .filter(Objects::nonNull)
+                .map(Object::toString)
+                .collect(Collectors.toList());
+    }
+
+    private List<String> createCommandArguments(ExecutableInfo executableInfo, File image, Collection<String> rootModules)
+            throws MojoExecutionException, MojoFailureException {
+        List<String> commandArguments = new ArrayList<>();
+        preparePaths(executableInfo.getJdkHome());
+        Set<String> locales = resolveLocales();
+        if (modulepathElements != null && !modulepathElements.isEmpty()) {
+            commandArguments.add(" --module-path");
+            String modulePath = StringUtils.join(modulepathElements.iterator(), File.pathSeparator);
+            linkedJmods = null;
+            if (jmodsPath != null && ! jmodsPath.isEmpty()) {
+                getLog().debug("Including jmods from local path: " + jmodsPath);
+                modulePath = jmodsPath + File.pathSeparator + modulePath;
+                linkedJmods = Paths.get(jmodsPath);
+            } else if (resolveJmods) {
+                linkedJmods = JavaFXJmods.resolve(modulepathElements.stream().map(Paths::get).collect(Collectors.toList()),
+                        jmodsDirectory == null ? null : jmodsDirectory.toPath(),
+                        localRepository == null ? null : localRepository.toPath(), jmodsCacheDirectory.toPath(), getLog());
+                if (linkedJmods != null) {
+                    modulePath = linkedJmods + File.pathSeparator + modulePath;
+                }
+            }
+            commandArguments.add(modulePath);
+
+            excludedLibraries = pruneNativeLibraries && linkedJmods == null ? findUnusedJarLibraries() : new TreeMap<>();
+            List<String> excludedResources = new ArrayList<>(excludedLibraries.keySet());
+            if (excludeResources != null) {
+                excludeResources.stream()
+                        .filter(Objects::nonNull)
+                        .map(String::trim)
+                        .filter(pattern -> !pattern.isEmpty())
+                        .forEach(excludedResources::add);
+            }
+            if (!excludedResources.isEmpty()) {
+                commandArguments.add(" --exclude-resources=" + String.join(",", excludedResources));
+            }
+
+            commandArguments.add(" --add-modules");
+            List<String> modules = new ArrayList<>();
+            if (rootModules != null) {
+                modules.addAll(rootModules);
+            } else if (moduleDescriptor != null) {
+                modules.add(moduleDescriptor.name());
+            } else {
+                throw new MojoExecutionException("jlink requires a module descriptor");
+            }
+            if (!locales.isEmpty()) {
+                modules.add(LOCALE_DATA_MODULE);
+            }
+            if (minimizeServiceBindings) {
+                Set<String> providers = new TreeSet<>(findServiceProviders(executableInfo).keySet());
+                if (rootModules != null) {
+                    // the third-party modules are on the module path, where the launcher binds their services
+                    providers.removeAll(getThirdPartyModules().keySet());
+                }
+                modules.addAll(providers);
+            }
+            commandArguments.add(" " + String.join(",", modules));
+        }
+
+        if (!locales.isEmpty()) {
+            commandArguments.add(" --include-locales=" + String.join(",", locales));
+        }
+        if (dedupLegalNotices) {
+            commandArguments.add(" --dedup-legal-notices=error-if-not-same-content");
+        }
+
+        commandArguments.add(" --output");
+        getLog().debug("image output: " + image.getAbsolutePath());
+        if (image.exists()) {
+            try {
+                Files.walk(image.toPath())
+                        .sorted(Comparator.reverseOrder())
+                        .map(Path::toFile)
+                        .forEach(File::delete);
+            } catch (IOException e) {
+                throw new MojoExecutionException("Image can't be removed " + image.getAbsolutePath(), e);
+            }
+        }
+        commandArguments.add(" " + image.getAbsolutePath());
+
+        if (stripDebug) {
+            commandArguments.add(" --strip-debug");
+        }
+        if (stripJavaDebugAttributes) {
+            commandArguments.add(" --strip-java-debug-attributes");
+        }
+        if (stripNativeDebugSymbols) {
+            commandArguments.add(" --strip-native-debug-symbols=exclude-debuginfo-files");
+        }
+        if (bindServices && minimizeServiceBindings) {
+            getLog().info("Linking only the service providers the application uses, instead of binding all of them");
+        } else if (bindServices) {
+            commandArguments.add(" --bind-services");
+        }
+        if (ignoreSigningInformation) {
+            commandArguments.add(" --ignore-signing-information");
+        }
+        if (compress != null) {
+            commandArguments.add(" --compress");
+            if (compress < 0 || compress > 2) {
+                throw new MojoFailureException("The given compress parameters " + compress + " is not in the valid value range from 0..2");
+            }
+            commandArguments.add(" " + compress);
+        }
+        if (noHeaderFiles) {
+            commandArguments.add(" --no-header-files");
+        }
+        if (noManPages) {
+            commandArguments.add(" --no-man-pages");
+        }
+        if (jlinkVerbose) {
+            commandArguments.add(" --verbose");
+        }
+
+        if (launcher != null && ! launcher.isEmpty() && rootModules == null) {
+            commandArguments.add(" --launcher");
+            String moduleMainClass;
+            if (mainClass.contains("/")) {
+                moduleMainClass = mainClass;
+            } else {
+                moduleMainClass = moduleDescriptor.name() + "/" + mainClass;
+            }
+            commandArguments.add(" " + launcher + "=" + moduleMainClass);
+        }
+        return commandArguments;
+    }
+
+    private File createZipArchiveFromImage() throws MojoExecutionException {
+        Archiver zipArchiver;
+        try {
+            zipArchiver = archiverManager.getArchiver("zip");
+        } catch (NoSuchArchiverException e) {
+            throw new MojoExecutionException("Zip archiver not available", e);
+        }
+        File imageArchive = new File(builddir, jlinkImageName);
+        zipArchiver.addFileSet(DefaultFileSet.fileSet(imageArchive));
+
+        File resultArchive = new File(builddir, jlinkZipName + ".zip");
+        zipArchiver.setDestFile(resultArchive);
+        try {
+            zipArchiver.createArchive();
+        } catch (ArchiverException | IOException e) {
+            throw new MojoExecutionException(e.getMessage(), e);
+        }
+        return resultArchive;
+    }
+
+    private File createReproducibleZipArchiveFromImage(long timestamp) throws MojoExecutionException {
+        File resultArchive = new File(builddir, jlinkZipName + ".zip");
+        try {
+            ReproducibleArchive.zip(new File(builddir, jlinkImageName).toPath(), resultArchive.toPath(), timestamp);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Error creating the zip of the runtime image " + resultArchive, e);
+        }
+        publishHash(resultArchive, "javafx.zipSha256");
+        return resultArchive;
+    }
+
+    private void createImagePatch() throws MojoExecutionException {
+        if (!previousImage.exists()) {
+            throw new MojoExecutionException("The previous image " + previousImage + " doesn't exist");
+        }
+        File patch = new File(builddir, patchName + ".zip");
+        try {
+            Path previous = previousImage.toPath();
+            if (previousImage.isFile()) {
+                previous = ImagePatch.extract(previous, builddir.toPath().resolve(PREVIOUS_IMAGE_DIRECTORY));
+            }
+            String summary = ImagePatch.create(previous, new File(builddir, jlinkImageName).toPath(), patch.toPath());
+            getLog().info(String.format("Patch from %s: %s, %s", previousImage.getName(), summary,
+                    NativeLibraryPruning.formatSize(patch.length())));
+        } catch (IOException e) {
+            throw new MojoExecutionException("Error creating the patch from " + previousImage, e);
+        }
+        publishHash(patch, "javafx.patchSha256");
+    }
+
+    /**
+     * Creates the runtime, dependencies and application layers, and the OCI image layout with them.
+     */
+    private void createContainerLayers(ExecutableInfo executableInfo, Map<String, String> enviro, long timestamp)
+            throws MojoExecutionException, MojoFailureException {
+        if (moduleDescriptor == null) {
+            throw new MojoExecutionException("The container layers require a module descriptor");
+        }
+        if (!OS.isFamilyUnix() || OS.isFamilyMac()) {
+            getLog().warn("The runtime of the container layers is linked for this platform, not Linux");
+        }
+        String launcherName = launcher != null && !launcher.isEmpty() ? launcher : moduleDescriptor.name();
+        String moduleMainClass = mainClass.contains("/") ? mainClass : moduleDescriptor.name() + "/" + mainClass;
+        try {
+            new ContainerLayers(getLog(), containerDirectory.toPath(), containerAppDirectory, timestamp).create(
+                    moduleDescriptor, new File(project.getBuild().getOutputDirectory()), getThirdPartyModuleFiles(),
+                    launcherName, moduleMainClass, String.join(" ", getVmOptions()),
+                    commandlineArgs == null ? "" : commandlineArgs.trim(), containerImageTag,
+                    (modules, runtime) -> {
+                        link(executableInfo, enviro, runtime, modules, new ArrayList<>());
+                        reportNativeLibraries(executableInfo, runtime);
+                    });
+        } catch (IOException e) {
+            throw new MojoExecutionException("Error creating the container layers in " + containerDirectory, e);
+        }
+    }
+
+    /**
+     * Writes the SHA-256 hash of the file or directory next to it, and sets it as a project property.
+     */
+    private void publishHash(File file, String property) throws MojoExecutionException {
+        try {
+            String hash = ReproducibleArchive.writeHash(file.toPath());
+            project.getProperties().setProperty(property, hash);
+            getLog().info("SHA-256 of " + file.getName() + ": " + hash);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Error hashing " + file, e);
+        }
+    }
+
+    private boolean isJLinkVersion13orHigher(ExecutableInfo jlink) {
+        String versionStr = jlink.getVersion();
+        if (versionStr == null) {
+            getLog().error("Unable to get JLink version of " + jlink);
+            return false;
+        }
+        return JLINK_VERSION_PATTERN.matcher(versionStr).lookingAt();
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2020, Gluon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openjfx;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Finds the JavaFX jmods bundle that matches the version and platform of the JavaFX jars of a project,
+ * and unpacks it into a cache directory. A bundle is either:
+ * <ul>
+ *     <li>the zip published by Gluon, <code>openjfx-17.0.2_linux-x64_bin-jmods.zip</code>, in a configured directory;</li>
+ *     <li>the same zip installed in a Maven repository as <code>org.openjfx:javafx-jmods:17.0.2:zip:linux</code>,
+ *     with the classifier of the JavaFX jars.</li>
+ * </ul>
+ */
+final class JavaFXJmods {
+
+    static final String DIRECTORY = "javafx-jmods";
+
+    private static final Map<String, String> PLATFORMS = new HashMap<>();
+    static {
+        PLATFORMS.put("linux", "linux-x64");
+        PLATFORMS.put("linux-aarch64", "linux-aarch64");
+        PLATFORMS.put("mac", "osx-x64");
+        PLATFORMS.put("mac-aarch64", "osx-aarch64");
+        PLATFORMS.put("win", "windows-x64");
+        PLATFORMS.put("win-x86", "windows-x86");
+    }
+
+    private JavaFXJmods() {
+    }
+
+    /**
+     * Finds the bundle for the JavaFX platform jars among the given jars, and unpacks it into the cache directory.
+     * @return the directory with the jmod files, or null if there are no JavaFX platform jars or no bundle for them
+     */
+    static Path resolve(List<Path> jars, Path directory, Path localRepository, Path cacheDirectory, Log log)
+            throws MojoExecutionException {
+        Optional<String[]> versionAndClassifier = versionAndClassifier(jars);
+        if (!versionAndClassifier.isPresent()) {
+            log.debug("No JavaFX platform jars on the module path, not resolving the JavaFX jmods");
+            return null;
+        }
+        String version = versionAndClassifier.get()[0];
+        String classifier = versionAndClassifier.get()[1];
+        Path bundle = find(version, classifier, directory, localRepository);
+        if (bundle == null) {
+            log.debug("No JavaFX jmods found for " + version + "-" + classifier + ", looked for "
+                    + bundleNames(version, classifier));
+            return null;
+        }
+        try {
+            Path jmods = unpack(bundle, cacheDirectory, version, classifier);
+            log.info("Linking the JavaFX jmods from " + bundle.getFileName());
+            log.debug("JavaFX jmods: " + jmods);
+            return jmods;
+        } catch (IOException e) {
+            throw new MojoExecutionException("Error unpacking the JavaFX jmods " + bundle, e);
+        }
+    }
+
+    /**
+     * @return the names a bundle for the given version and classifier may have
+     */
+    static List<String> bundleNames(String version, String classifier) {
+        Stream<String> names = Stream.of(DIRECTORY + "-" + version + "-" + classifier + ".zip");
+        String platform = PLATFORMS.get(classifier);
+        if (platform != null) {
+            names = Stream.concat(Stream.of("openjfx-" + version + "_" + platform + "_bin-jmods.zip"), names);
+        }
+        return names.collect(Collectors.toList());
+    }
+
+    /**
+     * @return the bundle in the given directory, then in the local repository, or null if there is none
+     */
+    static Path find(String version, String classifier, Path directory, Path localRepository) {
+        if (directory != null) {
+            for (String name : bundleNames(version, classifier)) {
+                if (Files.isRegularFile(directory.resolve(name))) {
+                    return directory.resolve(name);
+                }
+            }
+        }
+        if (localRepository != null) {
+            Path artifact = localRepository.resolve("org/openjfx/" + DIRECTORY + "/" + version + "/"
+                    + DIRECTORY + "-" + version + "-" + classifier + ".zip");
+            if (Files.isRegularFile(artifact)) {
+                return artifact;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Unpacks the bundle into <code>cacheDirectory/javafx-jmods/version-classifier</code>, unless a previous
+     * build did, safely when several builds do it at the same time.
+     * @return the directory with the jmod files
+     */
+    static Path unpack(Path bundle, Path cacheDirectory, String version, String classifier) throws IOException {
+        Path directory = Directories.createAtomically(cacheDirectory.resolve(DIRECTORY).resolve(version + "-" + classifier),
+                tmp -> unzipJmods(bundle, tmp));
+        try (Stream<Path> files = Files.list(directory)) {
+            if (files.noneMatch(path -> path.getFileName().toString().endsWith(".jmod"))) {
+                throw new IOException("No jmod files in " + bundle);
+            }
+        }
+        return directory;
+    }
+
+    /**
+     * Extracts the jmod files of the bundle, which are in a top level directory like <code>javafx-jmods-17.0.2</code>,
+     * into the given directory.
+     */
+    private static void unzipJmods(Path bundle, Path directory) throws IOException {
+        try (ZipFile zipFile = new ZipFile(bundle.toFile())) {
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                String name = entry.getName();
+                if (entry.isDirectory() || !name.endsWith(".jmod")) {
+                    continue;
+                }
+                Path target = directory.resolve(name.substring(name.lastIndexOf('/') + 1));
+                try (InputStream is = zipFile.getInputStream(entry)) {
+                    Files.copy(is, target);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the version and classifier of the JavaFX platform jars, from their file names like
+     * <code>javafx-graphics-17.0.2-linux.jar</code>
+     */
+    static Optional<String[]> versionAndClassifier(List<Path> jars) {
+        return jars.stream()
+                .map(path -> path.getFileName().toString())
+                .filter(name -> name.startsWith("javafx-graphics-") && name.endsWith(".jar"))
+                .map(name -> name.substring("javafx-graphics-".length(), name.length() - ".jar".length()))
+                .map(JavaFXJmods::splitVersion)
+                .filter(parts -> parts != null)
+                .findFirst();
+    }
+
+    private static String[] splitVersion(String versionAndClassifier) {
+        for (String classifier : new String[] {"linux-aarch64", "linux-arm32-monocle", "mac-aarch64", "win-x86",
+                "linux", "mac", "win"}) {
+            if (versionAndClassifier.endsWith("-" + classifier)) {
+                return new String[] {versionAndClassifier.substring(0, versionAndClassifier.length() - classifier.length() - 1),
+                        classifier};
+            }
+        }
+        return null;
+    }
+}
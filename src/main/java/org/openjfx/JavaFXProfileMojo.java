@@ -0,0 +1,197 @@
+/*
+ * Copyright 2020, Gluon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openjfx;
+
+import org.apache.commons.exec.CommandLine;
+import org.apache.commons.exec.ExecuteWatchdog;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Execute;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs the application like <code>javafx:run</code> does, with the JavaFX pulse logger enabled,
+ * and reports the frame times and the duration of the pulse phases. By default the application
+ * runs headless, with Monocle and the software pipeline, so it works on machines without a GPU.
+ */
+@Mojo(name = "profile", requiresDependencyResolution = ResolutionScope.RUNTIME, threadSafe = true)
+@Execute(phase = LifecyclePhase.PROCESS_CLASSES)
+public class JavaFXProfileMojo extends JavaFXRunMojo {
+
+    static final String REPORT_FILE = "report.json";
+    private static final String PULSE_LOG_FILE = "pulse.log";
+
+    static final List<String> HEADLESS_OPTIONS = Arrays.asList(
+            "-Dglass.platform=Monocle", "-Dmonocle.platform=Headless", "-Dprism.order=sw");
+
+    private static final List<String> PULSE_LOGGER_OPTIONS = Arrays.asList(
+            "-Djavafx.pulseLogger=true", "-Djavafx.pulseLogger.threshold=0");
+
+    /**
+     * Time in seconds the application is profiled before it is stopped, default 30.
+     * If set to 0, the application runs until it exits.
+     */
+    @Parameter(property = "javafx.profileDuration", defaultValue = "30")
+    private int profileDuration;
+
+    /**
+     * Runs the application with the headless Monocle platform and the software pipeline, default true.
+     * Monocle has to be available to the application, for instance as a project dependency.
+     */
+    @Parameter(property = "javafx.headless", defaultValue = "true")
+    private boolean headless;
+
+    /**
+     * The directory with the pulse log and the JSON report.
+     */
+    @Parameter(property = "javafx.profileDirectory", defaultValue = "${project.build.directory}/javafx-profile")
+    private File profileDirectory;
+
+    /**
+     * Fails the build if the 95th percentile of the frame time, in milliseconds, exceeds this value. Disabled if 0.
+     */
+    @Parameter(property = "javafx.frameTimeP95Budget", defaultValue = "0")
+    private double frameTimeP95Budget;
+
+    /**
+     * Fails the build if the 99th percentile of the frame time, in milliseconds, exceeds this value. Disabled if 0.
+     */
+    @Parameter(property = "javafx.frameTimeP99Budget", defaultValue = "0")
+    private double frameTimeP99Budget;
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        if (skip) {
+            getLog().info( "skipping execute as per configuration" );
+            return;
+        }
+
+        if (basedir == null) {
+            throw new IllegalStateException( "basedir is null. Should not be possible." );
+        }
+
+        warnIgnoredParameters("profile");
+
+        if (!profileDirectory.exists() && !profileDirectory.mkdirs()) {
+            throw new MojoExecutionException("Could not make profile directory: '" + profileDirectory + "'");
+        }
+        File pulseLog = new File(profileDirectory, PULSE_LOG_FILE);
+
+        handleWorkingDirectory();
+        Map<String, String> enviro = handleSystemEnvVariables();
+        ExecutableInfo executableInfo = getExecutableInfo(executable, enviro, workingDirectory);
+        CommandLine commandLine = getExecutablePath(executableInfo);
+
+        List<String> commandArguments = new ArrayList<>(PULSE_LOGGER_OPTIONS);
+        if (headless) {
+            commandArguments.addAll(HEADLESS_OPTIONS);
+        }
+        commandArguments.addAll(createCommandArguments(executableInfo));
+        commandLine.addArguments(commandArguments.toArray(new String[0]), false);
+        getLog().debug("Executing command line: " + commandLine);
+
+        ProcessTrackingExecutor exec = new ProcessTrackingExecutor();
+        exec.setWorkingDirectory(workingDirectory);
+        exec.setExitValues(null);
+        ExecuteWatchdog watchdog = new ExecuteWatchdog(profileDuration > 0 ? profileDuration * 1000L : ExecuteWatchdog.INFINITE_TIMEOUT);
+        exec.setWatchdog(watchdog);
+
+        getLog().info("Profiling the application" + (profileDuration > 0 ? " for " + profileDuration + " seconds" : ""));
+        int resultCode;
+        try (FileOutputStream outputStream = new FileOutputStream(pulseLog)) {
+            resultCode = executeCommandLine(exec, commandLine, enviro, outputStream);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Command execution failed.", e);
+        }
+
+        PulseStatistics statistics;
+        try (BufferedReader reader = Files.newBufferedReader(pulseLog.toPath(), StandardCharsets.UTF_8)) {
+            statistics = PulseStatistics.parse(reader);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Error reading the pulse log " + pulseLog, e);
+        }
+
+        if (!watchdog.killedProcess() && resultCode != 0) {
+            String message = "Result of " + commandLine.toString() + " execution is: '" + resultCode + "'. See " + pulseLog;
+            if (headless && statistics.getPulseCount() == 0) {
+                message += ". Headless profiling requires Monocle, or set 'headless' to false";
+            }
+            throw new MojoExecutionException(message);
+        }
+        if (statistics.getPulseCount() == 0) {
+            throw new MojoExecutionException("No pulses were logged, see " + pulseLog);
+        }
+
+        writeReport(statistics);
+        checkBudgets(statistics.getFrameTimes());
+    }
+
+    @Override
+    boolean isAsync() {
+        return false;
+    }
+
+    private void writeReport(PulseStatistics statistics) throws MojoExecutionException {
+        Statistics frameTimes = statistics.getFrameTimes();
+        getLog().info("Pulses: " + statistics.getPulseCount() + ", fps: " + statistics.toMap().get("fps"));
+        getLog().info(String.format("Frame time (ms): mean %.2f, p50 %.0f, p95 %.0f, p99 %.0f, max %.0f",
+                frameTimes.mean(), frameTimes.percentile(50), frameTimes.percentile(95), frameTimes.percentile(99),
+                frameTimes.max()));
+        statistics.getPhases().forEach((name, phase) ->
+                getLog().info(String.format("   %-32s total %8.0f ms, mean %6.2f ms, p95 %4.0f ms",
+                        name, phase.sum(), phase.mean(), phase.percentile(95))));
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("mainClass", mainClass);
+        report.put("headless", headless);
+        report.putAll(statistics.toMap());
+        File reportFile = new File(profileDirectory, REPORT_FILE);
+        try {
+            Files.write(reportFile.toPath(), Json.toJson(report).getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new MojoExecutionException("Error writing the profile report " + reportFile, e);
+        }
+        getLog().info("Profile report: " + reportFile);
+    }
+
+    private void checkBudgets(Statistics frameTimes) throws MojoFailureException {
+        List<String> exceeded = new ArrayList<>();
+        if (frameTimeP95Budget > 0 && frameTimes.percentile(95) > frameTimeP95Budget) {
+            exceeded.add("p95 frame time " + frameTimes.percentile(95) + " ms exceeds " + frameTimeP95Budget + " ms");
+        }
+        if (frameTimeP99Budget > 0 && frameTimes.percentile(99) > frameTimeP99Budget) {
+            exceeded.add("p99 frame time " + frameTimes.percentile(99) + " ms exceeds " + frameTimeP99Budget + " ms");
+        }
+        if (!exceeded.isEmpty()) {
+            throw new MojoFailureException("Frame time budget exceeded: " + String.join(", ", exceeded));
+        }
+    }
+}
@@ -0,0 +1,527 @@
+/*
+ * Copyright 2019, 2020, Gluon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openjfx;
+import static org.openjfx.model.RuntimePathOption.CLASSPATH;
+import static org.openjfx.model.RuntimePathOption.MODULEPATH;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.commons.exec.CommandLine;
+import org.apache.commons.exec.OS;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Component;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.toolchain.Toolchain;
+import org.apache.maven.toolchain.ToolchainManager;
+import org.codehaus.plexus.languages.java.jpms.JavaModuleDescriptor;
+import org.codehaus.plexus.languages.java.jpms.LocationManager;
+import org.codehaus.plexus.languages.java.jpms.ModuleNameSource;
+import org.codehaus.plexus.languages.java.jpms.ResolvePathsRequest;
+import org.codehaus.plexus.languages.java.jpms.ResolvePathsResult;
+import org.codehaus.plexus.util.StringUtils;
+import org.codehaus.plexus.util.cli.CommandLineUtils;
+import org.openjfx.model.RuntimePathOption;
+
+/**
+ * Base class of the goals that work on the project: it resolves the module and class paths of its dependencies
+ * and the executable to run a JVM with, but has no parameters to launch the application.
+ */
+abstract class JavaFXProjectMojo extends AbstractMojo {
+
+    static final String JAVAFX_PREFIX = "javafx";
+
+    @Parameter(defaultValue = "${project}", readonly = true)
+    MavenProject project;
+
+    @Parameter(defaultValue = "${session}", readonly = true)
+    private MavenSession session;
+
+    @Component
+    private LocationManager locationManager;
+
+    /**
+     * Skip the execution.
+     */
+    @Parameter(property = "javafx.skip", defaultValue = "false")
+    boolean skip;
+
+    @Parameter(readonly = true, required = true, defaultValue = "${basedir}")
+    File basedir;
+
+    @Parameter(readonly = true, required = true, defaultValue = "${project.build.directory}")
+    File builddir;
+
+    /**
+     * The current working directory. Optional. If not specified, basedir will be used.
+     */
+    @Parameter(property = "javafx.workingDirectory")
+    File workingDirectory;
+
+    @Parameter(defaultValue = "${project.compileClasspathElements}", readonly = true, required = true)
+    private List<String> compilePath;
+
+    /**
+     * If set to true, resolved executables and module paths are cached for as long as the plugin stays loaded,
+     * so builds in a long-lived Maven process reuse them while the files they come from don't change.
+     */
+    @Parameter(property = "javafx.useDaemonCache", defaultValue = "true")
+    private boolean useDaemonCache;
+
+    /**
+    *
+    */
+    @Component
+    private ToolchainManager toolchainManager;
+   
+    List<String> classpathElements;
+    List<String> modulepathElements;
+    Map<String, JavaModuleDescriptor> pathElements;
+    JavaModuleDescriptor moduleDescriptor;
+
+    static boolean isMavenUsingJava8() {
+        return System.getProperty("java.version").startsWith("1.8");
+    }
+
+    /**
+     * @return how the dependencies are put on the paths, or null to put them where the module descriptor needs them
+     */
+    RuntimePathOption getRuntimePathOption() {
+        return null;
+    }
+
+    /**
+     * @return true if the dependencies that can't be resolved as modules are added to the classpath
+     */
+    boolean isIncludePathExceptionsInClasspath() {
+        return false;
+    }
+
+    void preparePaths(Path jdkHome) throws MojoExecutionException {
+        if (project == null) {
+            return;
+        }
+
+        RuntimePathOption runtimePathOption = getRuntimePathOption();
+        boolean includePathExceptionsInClasspath = isIncludePathExceptionsInClasspath();
+
+        String outputDirectory = project.getBuild().getOutputDirectory();
+        if (outputDirectory == null || outputDirectory.isEmpty()) {
+            throw new MojoExecutionException("Error: Output directory doesn't exist");
+        }
+
+        File[] classes = new File(outputDirectory).listFiles();
+        if (classes == null || classes.length == 0) {
+            throw new MojoExecutionException("Error: Output directory is empty");
+        }
+
+        File moduleDescriptorPath = Stream
+                .of(classes)
+                .filter(file -> "module-info.class".equals(file.getName()))
+                .findFirst()
+                .orElse(null);
+
+        Collection<File> dependencyArtifacts = getCompileClasspathElements(project);
+        List<Object> resolutionKey = Arrays.asList(PathResolution.class.getName(), project.getId(), basedir, jdkHome,
+                runtimePathOption, includePathExceptionsInClasspath);
+        List<File> fingerprintFiles = new ArrayList<>(dependencyArtifacts);
+        fingerprintFiles.add(moduleDescriptorPath);
+        String fingerprint = PathResolution.fingerprint(fingerprintFiles);
+        SessionCache sessionCache = SessionCache.get(session);
+        PathResolution resolution = sessionCache.get(resolutionKey);
+        if ((resolution == null || !resolution.matches(fingerprint)) && useDaemonCache) {
+            resolution = DaemonCache.PATH_RESOLUTIONS.get(resolutionKey, r -> r.matches(fingerprint));
+            getLog().debug("Daemon cache of path resolutions: " + DaemonCache.PATH_RESOLUTIONS);
+        }
+        if (resolution != null && resolution.matches(fingerprint)) {
+            sessionCache.put(resolutionKey, resolution);
+            getLog().debug("Reusing the path resolution of a previous execution");
+            classpathElements = resolution.getClasspathElements();
+            modulepathElements = resolution.getModulepathElements();
+            pathElements = resolution.getPathElements();
+            moduleDescriptor = resolution.getModuleDescriptor();
+            logPaths();
+            return;
+        }
+
+        modulepathElements = new ArrayList<>(compilePath.size());
+        classpathElements = new ArrayList<>(compilePath.size());
+        pathElements = new LinkedHashMap<>(compilePath.size());
+
+        boolean resolved = false;
+        try {
+            getLog().debug("Total dependencyArtifacts: " + dependencyArtifacts.size());
+            ResolvePathsRequest<File> fileResolvePathsRequest = ResolvePathsRequest.ofFiles(dependencyArtifacts);
+
+            getLog().debug("module descriptor path: " + moduleDescriptorPath);
+            if (moduleDescriptorPath != null) {
+                fileResolvePathsRequest.setMainModuleDescriptor(moduleDescriptorPath);
+            }
+            if (jdkHome != null) {
+                fileResolvePathsRequest.setJdkHome(jdkHome.toFile());
+            }
+            ResolvePathsResult<File> resolvePathsResult = locationManager.resolvePaths(fileResolvePathsRequest);
+            resolvePathsResult.getPathElements().forEach((key, value) -> pathElements.put(key.getPath(), value));
+
+            if (!resolvePathsResult.getPathExceptions().isEmpty()) {
+                getLog().warn("There are " + resolvePathsResult.getPathExceptions().size() + " pathException(s). The related dependencies will be ignored.");
+                resolvePathsResult.getPathExceptions().forEach((key, value) -> {
+                    String message = "Dependency: " + key;
+                    if (value != null) {
+                        message += "\n   - exception: " + value.getMessage();
+                        Throwable t = value.getCause();
+                        if (t != null) {
+                            message += "\n   - cause: " + t.getMessage();
+                        }
+                    }
+                    getLog().warn(message);
+                });
+            }
+
+            if (runtimePathOption == MODULEPATH && moduleDescriptorPath == null) {
+                throw new MojoExecutionException("module-info.java file is required for MODULEPATH runtimePathOption");
+            }
+
+            if (moduleDescriptorPath != null) {
+                if (!resolvePathsResult.getPathExceptions().isEmpty() && !isMavenUsingJava8()) {
+                    // for each path exception, show a warning to plugin user...
+                    for (Map.Entry<File, Exception> pathException : resolvePathsResult.getPathExceptions().entrySet()) {
+                        Throwable cause = pathException.getValue();
+                        while (cause.getCause() != null) {
+                            cause = cause.getCause();
+                        }
+                        String fileName = pathException.getKey().getName();
+                        getLog().warn("Can't extract module name from " + fileName + ": " + cause.getMessage());
+                    }
+                    // ...if includePathExceptionsInClasspath is NOT enabled; provide configuration hint to plugin user
+                    if (!includePathExceptionsInClasspath) {
+                        getLog().warn("Some dependencies encountered issues while attempting to be resolved as modules" +
+                                " and will not be included in the classpath; you can change this behavior via the " +
+                                " 'includePathExceptionsInClasspath' configuration parameter.");
+                    }
+                }
+                moduleDescriptor = createModuleDescriptor(resolvePathsResult);
+                for (Map.Entry<File, ModuleNameSource> entry : resolvePathsResult.getModulepathElements().entrySet()) {
+                    if (ModuleNameSource.FILENAME.equals(entry.getValue())) {
+                        final String message = "Required filename-based automodules detected. "
+                                + "Please don't publish this project to a public artifact repository!";
+
+                        if (moduleDescriptor != null && moduleDescriptor.exports().isEmpty()) {
+                            // application
+                            getLog().info(message);
+                        } else {
+                            // library
+                            getLog().warn(message);
+                        }
+                        break;
+                    }
+                }
+                resolvePathsResult.getClasspathElements().forEach(file -> classpathElements.add(file.getPath()));
+                resolvePathsResult.getModulepathElements().keySet().forEach(file -> modulepathElements.add(file.getPath()));
+
+                if (includePathExceptionsInClasspath) {
+                    resolvePathsResult.getPathExceptions().keySet()
+                            .forEach(file -> classpathElements.add(file.getPath()));
+                }
+            } else {
+                // non-modular projects
+                pathElements.forEach((k, v) -> {
+                    if (v != null && v.name() != null && v.name().startsWith(JAVAFX_PREFIX)) {
+                        // only JavaFX jars are required in the module-path
+                        modulepathElements.add(k);
+                    } else {
+                        classpathElements.add(k);
+                    }
+                });
+            }
+            resolved = true;
+        } catch (Exception e) {
+            getLog().warn(e.getMessage());
+        }
+
+        if (runtimePathOption == MODULEPATH) {
+            getLog().debug(runtimePathOption + " runtimePathOption set by user. Moving all jars to modulepath.");
+            modulepathElements.addAll(classpathElements);
+            classpathElements.clear();
+        } else if (runtimePathOption == CLASSPATH) {
+            getLog().debug(runtimePathOption + " runtimePathOption set by user. Moving all jars to classpath.");
+            classpathElements.addAll(modulepathElements);
+            modulepathElements.clear();
+        }
+
+        if (resolved) {
+            resolution = new PathResolution(fingerprint, classpathElements, modulepathElements, pathElements,
+                    moduleDescriptor);
+            sessionCache.put(resolutionKey, resolution);
+            if (useDaemonCache) {
+                DaemonCache.PATH_RESOLUTIONS.put(resolutionKey, resolution);
+            }
+        }
+        logPaths();
+    }
+
+    private void logPaths() {
+        getLog().debug("Classpath:" + classpathElements.size());
+        classpathElements.forEach(s -> getLog().debug(" " + s));
+
+        getLog().debug("Modulepath: " + modulepathElements.size());
+        modulepathElements.forEach(s -> getLog().debug(" " + s));
+
+        getLog().debug("pathElements: " + pathElements.size());
+        pathElements.forEach((k, v) -> getLog().debug(" " + k + " :: " + (v != null && v.name() != null ? v.name() : v)));
+    }
+
+    private JavaModuleDescriptor createModuleDescriptor(ResolvePathsResult<File> resolvePathsResult) throws MojoExecutionException {
+        if (getRuntimePathOption() == CLASSPATH) {
+            getLog().info(CLASSPATH + " runtimePathOption set by user. module-info.java will be ignored.");
+            return null;
+        }
+        return resolvePathsResult.getMainModuleDescriptor();
+    }
+
+    private List<File> getCompileClasspathElements(MavenProject project) {
+        List<File> list = new ArrayList<>();
+        list.add(new File(project.getBuild().getOutputDirectory()));
+
+        // include systemPath dependencies
+        list.addAll(project.getDependencies().stream()
+                .filter(d -> d.getSystemPath() != null && ! d.getSystemPath().isEmpty())
+                .map(d -> new File(d.getSystemPath()))
+                .collect(Collectors.toList()));
+
+        list.addAll(project.getArtifacts().stream()
+                .sorted((a1, a2) -> {
+                    int compare = a1.compareTo(a2);
+                    if (compare == 0) {
+                        // give precedence to classifiers
+                        return a1.hasClassifier() ? 1 : (a2.hasClassifier() ? -1 : 0);
+                    }
+                    return compare;
+                })
+                .map(Artifact::getFile)
+                .collect(Collectors.toList()));
+        return list.stream()
+                .distinct()
+                .collect(Collectors.toList());
+    }
+
+    void handleWorkingDirectory() throws MojoExecutionException {
+        if (workingDirectory == null) {
+            workingDirectory = basedir;
+        }
+
+        if (!workingDirectory.exists()) {
+            getLog().debug("Making working directory '" + workingDirectory.getAbsolutePath() + "'.");
+            if (!workingDirectory.mkdirs()) {
+                throw new MojoExecutionException("Could not make working directory: '" + workingDirectory.getAbsolutePath() + "'");
+            }
+        }
+    }
+
+    Map<String, String> handleSystemEnvVariables() {
+        Map<String, String> enviro = new HashMap<>();
+        try {
+            Properties systemEnvVars = CommandLineUtils.getSystemEnvVars();
+            for (Map.Entry<?, ?> entry : systemEnvVars.entrySet()) {
+                enviro.put((String) entry.getKey(), (String) entry.getValue());
+            }
+        } catch (IOException x) {
+            getLog().error("Could not assign default system environment variables.", x);
+        }
+
+        return enviro;
+    }
+
+    CommandLine getExecutablePath(String executable, Map<String, String> enviro, File dir) {
+        return getExecutablePath(getExecutableInfo(executable, enviro, dir));
+    }
+
+    CommandLine getExecutablePath(ExecutableInfo executableInfo) {
+        String exec = executableInfo.getExecutable();
+        CommandLine toRet;
+        if (OS.isFamilyWindows() && !hasNativeExtension(exec) && hasExecutableExtension(exec) ) {
+            // run the windows batch script in isolation and exit at the end
+            final String comSpec = System.getenv( "ComSpec" );
+            toRet = new CommandLine( comSpec == null ? "cmd" : comSpec );
+            toRet.addArgument( "/c" );
+            toRet.addArgument( exec );
+        } else {
+            toRet = new CommandLine(exec);
+        }
+        getLog().debug("Executable " + toRet.toString());
+        return toRet;
+    }
+
+    /**
+     * Resolves the executable from the parameter, the toolchain, JAVA_HOME or the PATH. The result is cached
+     * for the whole session, since it is the same for all the executions with the same toolchain and environment.
+     */
+    ExecutableInfo getExecutableInfo(String executable, Map<String, String> enviro, File dir) {
+        File execFile = new File(executable);
+        if (execFile.isFile()) {
+            getLog().debug("'executable' parameter is set to " + executable);
+            return new ExecutableInfo(execFile.getAbsolutePath());
+        }
+
+        Toolchain toolchain = null;
+        if (toolchainManager != null) {
+            toolchain = toolchainManager.getToolchainFromBuildContext("jdk", session);
+            if (toolchain != null) {
+                getLog().info("Toolchain in javafx-maven-plugin " + toolchain);
+            }
+        }
+
+        final Toolchain jdkToolchain = toolchain;
+        List<String> key = Arrays.asList(ExecutableInfo.class.getName(), executable,
+                String.valueOf(toolchain), getJavaHomeEnv(enviro), enviro.get("PATH"),
+                OS.isFamilyWindows() ? dir.getAbsolutePath() : null);
+        return SessionCache.get(session).computeIfAbsent(key, k -> {
+            ExecutableInfo info = useDaemonCache ? DaemonCache.EXECUTABLES.get(k, ExecutableInfo::isUpToDate) : null;
+            if (info == null) {
+                info = new ExecutableInfo(findExecutable(executable, jdkToolchain, enviro, dir));
+                if (useDaemonCache) {
+                    DaemonCache.EXECUTABLES.put(k, info);
+                }
+            }
+            getLog().debug("Resolved executable " + executable + ": " + info);
+            return info;
+        });
+    }
+
+    private String findExecutable(String executable, Toolchain toolchain, Map<String, String> enviro, File dir) {
+        String exec = null;
+        if (toolchain != null) {
+            exec = toolchain.findTool("java");
+            getLog().debug("Tool in toolchain in javafx-maven-plugin " + exec);
+        }
+
+        if (exec == null) {
+            String javaHomeFromEnv = getJavaHomeEnv(enviro);
+            if (javaHomeFromEnv != null && ! javaHomeFromEnv.isEmpty()) {
+                exec = findExecutable(executable, Arrays.asList(javaHomeFromEnv.concat(File.separator).concat("bin")));
+            }
+        }
+
+        if (exec == null && OS.isFamilyWindows()) {
+            List<String> paths = this.getExecutablePaths(enviro);
+            paths.add(0, dir.getAbsolutePath());
+            exec = findExecutable(executable, paths);
+        }
+
+        if (exec == null) {
+            exec = executable;
+        }
+        return exec;
+    }
+
+    /**
+     * Returns the path of the parent directory.
+     * At the given depth if the path has no parent, the method returns null.
+     * @param path Path against which the parent needs to be evaluated
+     * @param depth Depth of the path relative to parent
+     * @return Path to the parent, if exists. Null, otherwise.
+     */
+    static Path getParent(Path path, int depth) {
+        if (path == null || !Files.exists(path) || depth > path.getNameCount()) {
+            return null;
+        }
+        return path.getRoot().resolve(path.subpath(0, path.getNameCount() - depth));
+    }
+
+    private static String findExecutable(final String executable, final List<String> paths) {
+        File f = null;
+        search: for (final String path : paths) {
+            f = new File(path, executable);
+            if (!OS.isFamilyWindows() && f.isFile()) {
+                break;
+            } else {
+                for (final String extension : getExecutableExtensions()) {
+                    f = new File(path, executable + extension);
+                    if (f.isFile()) {
+                        break search;
+                    }
+                }
+            }
+        }
+
+        if (f == null || !f.exists()) {
+            return null;
+        }
+        return f.getAbsolutePath();
+    }
+
+    private static boolean hasNativeExtension(final String exec) {
+        final String lowerCase = exec.toLowerCase();
+        return lowerCase.endsWith(".exe") || lowerCase.endsWith(".com");
+    }
+
+    private static boolean hasExecutableExtension(final String exec) {
+        final String lowerCase = exec.toLowerCase();
+        for (final String ext : getExecutableExtensions()) {
+            if (lowerCase.endsWith(ext)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<String> getExecutableExtensions() {
+        final String pathExt = System.getenv("PATHEXT");
+        return pathExt == null ? Arrays.asList(".bat", ".cmd")
+                : Arrays.asList(StringUtils.split(pathExt.toLowerCase(), File.pathSeparator));
+    }
+
+    private List<String> getExecutablePaths(Map<String, String> enviro) {
+        List<String> paths = new ArrayList<>();
+        paths.add("");
+
+        String path = enviro.get("PATH");
+        if (path != null) {
+            paths.addAll(Arrays.asList(StringUtils.split(path, File.pathSeparator)));
+        }
+        return paths;
+    }
+
+    private String getJavaHomeEnv(Map<String, String> enviro) {
+        String javahome = enviro.get("JAVA_HOME");
+        if (javahome == null || javahome.isEmpty()) {
+            return null;
+        }
+
+        int pathStartIndex = javahome.charAt(0) == '"' ? 1 : 0;
+        int pathEndIndex = javahome.charAt(javahome.length() - 1) == '"' ? javahome.length() - 1 : javahome.length();
+
+        return javahome.substring(pathStartIndex, pathEndIndex);
+    }
+
+}
@@ -0,0 +1,813 @@
+/*
+ * Copyright 2019, 2020, Gluon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openjfx;
+
+import org.apache.commons.exec.CommandLine;
+import org.apache.commons.exec.DefaultExecutor;
+import org.apache.commons.exec.ExecuteException;
+import org.apache.commons.exec.ExecuteWatchdog;
+import org.apache.commons.exec.PumpStreamHandler;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.codehaus.plexus.languages.java.jpms.JavaModuleDescriptor;
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.StringUtils;
+import org.openjfx.runtime.FlightRecordingSummary;
+import org.openjfx.runtime.JavaFXAgent;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.openjfx.model.RuntimePathOption.CLASSPATH;
+import static org.openjfx.model.RuntimePathOption.MODULEPATH;
+
+/**
+ * Same as the <code>run</code> goal, but it doesn't fork the lifecycle to compile the project first.
+ * Use it when the goal is bound to a phase after <code>process-classes</code>, or chained after
+ * other goals that already compiled the project in the same session.
+ */
+@Mojo(name = "run-no-fork", requiresDependencyResolution = ResolutionScope.RUNTIME, threadSafe = true)
+public class JavaFXRunNoForkMojo extends JavaFXBaseMojo {
+
+    private static final String INSTANCE_PLACEHOLDER = "{instance}";
+    private static final String INSTANCE_RECORDING_FILE = "recording.jfr";
+
+    /**
+     * <p>
+     * The executable. Can be a full path or the name of the executable. In the latter case, the executable must be in
+     * the PATH for the execution to work.
+     * </p>
+     */
+    @Parameter(property = "javafx.executable", defaultValue = "java")
+    String executable;
+
+    /**
+     * Identifies the asynchronous child process in the process registry, so it can be queried and stopped
+     * with the <code>status</code> and <code>stop</code> goals. Applies only to asynchronous processes.
+     * It can only contain letters, digits, '.', '_' and '-', and starts with a letter or a digit.
+     */
+    @Parameter(property = "javafx.instanceId", defaultValue = "default")
+    String instanceId;
+
+    /**
+     * If set to true and an asynchronous child process with the same <code>instanceId</code> is still running,
+     * it is reused instead of launching a new one. If set to false, the execution fails in that case.
+     */
+    @Parameter(property = "javafx.asyncReuseRunning", defaultValue = "false")
+    private boolean asyncReuseRunning;
+
+    /**
+     * Regular expression matched against the output of an asynchronous process. The build continues once
+     * a line matches it.
+     */
+    @Parameter(property = "javafx.readyLogPattern")
+    private String readyLogPattern;
+
+    /**
+     * TCP port that an asynchronous process opens when it is ready. The build continues once it accepts connections.
+     */
+    @Parameter(property = "javafx.readyPort", defaultValue = "0")
+    private int readyPort;
+
+    /**
+     * Host of the <code>readyPort</code>, default localhost.
+     */
+    @Parameter(property = "javafx.readyHost", defaultValue = "localhost")
+    private String readyHost;
+
+    /**
+     * File that an asynchronous process creates when it is ready. The build continues once it exists.
+     */
+    @Parameter(property = "javafx.readyFile")
+    private File readyFile;
+
+    /**
+     * If set to true, an agent is injected into an asynchronous process, and the build continues once
+     * the application shows its first window.
+     */
+    @Parameter(property = "javafx.readyOnStageShown", defaultValue = "false")
+    private boolean readyOnStageShown;
+
+    /**
+     * Time in seconds to wait for an asynchronous process to be ready, default 60.
+     */
+    @Parameter(property = "javafx.readyTimeout", defaultValue = "60")
+    private int readyTimeout;
+
+    /**
+     * Number of copies of the application to launch, default 1. When greater than 1, every instance runs in its own
+     * working directory under <code>instancesDirectory</code>, and the placeholder <code>{instance}</code> in
+     * <code>options</code>, <code>commandlineArgs</code> and <code>readyFile</code> is replaced with the instance
+     * number. The <code>readyFile</code> of several instances must contain the placeholder.
+     */
+    @Parameter(property = "javafx.instances", defaultValue = "1")
+    private int instances;
+
+    /**
+     * Delay in milliseconds between the start of consecutive instances, default 0.
+     */
+    @Parameter(property = "javafx.instanceStagger", defaultValue = "0")
+    private long instanceStagger;
+
+    /**
+     * Maximum number of instances running at the same time, default 0 (no limit).
+     */
+    @Parameter(property = "javafx.instanceConcurrency", defaultValue = "0")
+    private int instanceConcurrency;
+
+    /**
+     * The directory with the working directories and output of the instances.
+     */
+    @Parameter(property = "javafx.instancesDirectory", defaultValue = "${project.build.directory}/javafx-instances")
+    private File instancesDirectory;
+
+    /**
+     * If set to true, the application runs with a Java Flight Recorder recording, which is dumped to
+     * <code>flightRecorderFile</code> when the application exits and then summarized.
+     */
+    @Parameter(property = "javafx.flightRecorder", defaultValue = "false")
+    private boolean flightRecorder;
+
+    /**
+     * The Flight Recorder settings: <code>default</code>, <code>profile</code> (default) or the path of a
+     * <code>.jfc</code> file.
+     */
+    @Parameter(property = "javafx.flightRecorderSettings", defaultValue = "profile")
+    private String flightRecorderSettings;
+
+    /**
+     * The file the Flight Recorder recording is dumped to. With several instances, every instance
+     * dumps its own recording to its working directory instead.
+     */
+    @Parameter(property = "javafx.flightRecorderFile", defaultValue = "${project.build.directory}/javafx-run.jfr")
+    private File flightRecorderFile;
+
+    /**
+     * Number of entries in each table of the Flight Recorder summary, default 10. If set to 0, no summary is printed.
+     */
+    @Parameter(property = "javafx.flightRecorderSummary", defaultValue = "10")
+    private int flightRecorderSummary;
+
+    /**
+     * If set to true, an agent is injected into the application that watches the output directory, and applies
+     * the stylesheets that change to the running application without restarting it.
+     */
+    @Parameter(property = "javafx.liveReload", defaultValue = "false")
+    private boolean liveReload;
+
+    /**
+     * If set to true together with <code>liveReload</code>, an FXML file that changes replaces the root of the scenes
+     * loaded from it: the roots with the FXML URL in their properties under the key
+     * <code>javafx.fxml.location</code>, or with the name of the FXML file, without extension, as id.
+     */
+    @Parameter(property = "javafx.liveReloadFxml", defaultValue = "false")
+    private boolean liveReloadFxml;
+
+    /**
+     * If set to true, the native libraries of the JavaFX platform jars are extracted once into a directory named
+     * after a hash of their content, under <code>nativeLibrariesCacheDirectory</code>, and the application loads
+     * them from there through <code>java.library.path</code>, instead of extracting them into the user cache.
+     */
+    @Parameter(property = "javafx.extractNativeLibraries", defaultValue = "false")
+    private boolean extractNativeLibraries;
+
+    /**
+     * The directory where the native libraries are extracted to, under <code>javafx-natives</code>. The default
+     * is next to the local repository, so it is shared by all the projects and survives <code>mvn clean</code>.
+     */
+    @Parameter(property = "javafx.nativeLibrariesCacheDirectory", defaultValue = "${settings.localRepository}/.cache/javafx-maven-plugin")
+    private File nativeLibrariesCacheDirectory;
+
+    /**
+     * If set to true, a non-modular application runs with only the JavaFX modules that its classes, the classes of
+     * its dependencies and its FXML files reference, with the modules these require, instead of all the JavaFX
+     * modules of the dependencies. Classes that are only loaded by reflection are not taken into account.
+     */
+    @Parameter(property = "javafx.minimizeModules", defaultValue = "false")
+    private boolean minimizeModules;
+
+    /**
+     * If set to true, the application is first run for <code>classpathTrainingDuration</code> seconds, logging
+     * the class loading, to count the classes each element of the class path serves. These counts are written
+     * to <code>classpathOrderFile</code>, and the application runs with the most used elements first.
+     */
+    @Parameter(property = "javafx.classpathTraining", defaultValue = "false")
+    private boolean classpathTraining;
+
+    /**
+     * The duration of the training run in seconds, or 0 to wait until the application exits.
+     */
+    @Parameter(property = "javafx.classpathTrainingDuration", defaultValue = "10")
+    private int classpathTrainingDuration;
+
+    /**
+     * The file with the number of classes served by each element of the class path. When it exists, the class path
+     * is ordered by these numbers, without moving an element before another one that has classes or resources
+     * with the same names.
+     */
+    @Parameter(property = "javafx.classpathOrderFile", defaultValue = "${project.build.directory}/javafx-classpath-order.txt")
+    private File classpathOrderFile;
+
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        if (skip) {
+            getLog().info( "skipping execute as per configuration" );
+            return;
+        }
+
+        if (executable == null) {
+            throw new MojoExecutionException("The parameter 'executable' is missing or invalid");
+        }
+
+        if (basedir == null) {
+            throw new IllegalStateException( "basedir is null. Should not be possible." );
+        }
+
+        if (isAsyncInstanceRunning()) {
+            return;
+        }
+
+        try {
+            handleWorkingDirectory();
+
+            Map<String, String> enviro = handleSystemEnvVariables();
+            ExecutableInfo executableInfo = getExecutableInfo(executable, enviro, workingDirectory);
+            CommandLine commandLine = getExecutablePath(executableInfo);
+
+            boolean usingOldJDK = executableInfo.isJava8();
+
+            if (classpathTraining) {
+                trainClasspathOrder(executableInfo, enviro);
+            }
+            List<String> commandArguments = createCommandArguments(executableInfo);
+            boolean recordFlight = flightRecorder;
+            if (recordFlight && usingOldJDK) {
+                // Java 8 requires commercial features, or a recent update, for Flight Recorder
+                getLog().warn("Flight Recorder requires Java 11 or later, ignoring 'flightRecorder'");
+                recordFlight = false;
+            }
+            if (recordFlight) {
+                commandArguments.addAll(0, createFlightRecorderArguments());
+            }
+            if (extractNativeLibraries && !usingOldJDK) {
+                commandArguments.addAll(0, createNativeLibraryArguments());
+            }
+            if (instances > 1) {
+                launchInstances(commandLine, commandArguments, enviro);
+                return;
+            }
+
+            ReadinessProbe readinessProbe = createReadinessProbe(instanceId, 0);
+
+            commandLine.addArguments(createAgentArguments(instanceId).toArray(new String[0]), false);
+            String[] args = commandArguments.toArray(new String[commandArguments.size()]);
+            commandLine.addArguments(args, false);
+            getLog().debug("Executing command line: " + commandLine);
+
+            ProcessTrackingExecutor exec = new ProcessTrackingExecutor();
+            exec.setWorkingDirectory(workingDirectory);
+
+            try {
+                int resultCode;
+                if (outputFile != null) {
+                    if ( !outputFile.getParentFile().exists() && !outputFile.getParentFile().mkdirs()) {
+                        getLog().warn( "Could not create non existing parent directories for log file: " + outputFile );
+                    }
+
+                    FileOutputStream outputStream = null;
+                    try {
+                        outputStream = new FileOutputStream(outputFile);
+                        if (readinessProbe.hasLogPattern()) {
+                            OutputStream probeStream = readinessProbe.wrap(outputStream);
+                            resultCode = executeCommandLine(exec, commandLine, enviro, probeStream, probeStream);
+                        } else {
+                            resultCode = executeCommandLine(exec, commandLine, enviro, outputStream);
+                        }
+                        waitUntilReady(exec, readinessProbe);
+                    } finally {
+                        IOUtil.close(outputStream);
+                    }
+                } else {
+                    resultCode = executeCommandLine(exec, commandLine, enviro, readinessProbe.wrap(System.out), System.err);
+                    waitUntilReady(exec, readinessProbe);
+                }
+
+                if (resultCode != 0) {
+                    String message = "Result of " + commandLine.toString() + " execution is: '" + resultCode + "'.";
+                    getLog().error(message);
+                    throw new MojoExecutionException(message);
+                }
+            } catch (ExecuteException e) {
+                getLog().error("Command execution failed.", e);
+                e.printStackTrace();
+                throw new MojoExecutionException("Command execution failed.", e);
+            } catch (IOException e) {
+                getLog().error("Command execution failed.", e);
+                throw new MojoExecutionException("Command execution failed.", e);
+            } finally {
+                if (recordFlight && !async) {
+                    summarizeFlightRecording(enviro);
+                }
+            }
+        } catch (Exception e) {
+            throw new MojoExecutionException("Error", e);
+        }
+    }
+
+    @Override
+    String getAsyncInstanceId() {
+        return instanceId;
+    }
+
+    /**
+     * @throws MojoExecutionException if the instance id can't name a file of the process registry, or of the agent
+     */
+    void checkInstanceId() throws MojoExecutionException {
+        if (!ProcessRegistry.isValidInstanceId(instanceId)) {
+            throw new MojoExecutionException("Invalid 'instanceId' '" + instanceId
+                    + "', use only letters, digits, '.', '_' and '-', starting with a letter or a digit");
+        }
+    }
+
+    /**
+     * Warns about the parameters of this goal that the given goal, which launches the application synchronously
+     * and without the agent, ignores.
+     */
+    void warnIgnoredParameters(String goal) {
+        List<String> ignored = new ArrayList<>();
+        if (async) {
+            ignored.add("'async'");
+        }
+        if (instances > 1) {
+            ignored.add("'instances'");
+        }
+        if (flightRecorder) {
+            ignored.add("'flightRecorder'");
+        }
+        if (liveReload) {
+            ignored.add("'liveReload'");
+        }
+        if (classpathTraining) {
+            ignored.add("'classpathTraining'");
+        }
+        if (!ignored.isEmpty()) {
+            getLog().warn("The " + goal + " goal runs the application synchronously, ignoring " + String.join(", ", ignored));
+        }
+    }
+
+    /**
+     * Checks the process registry for an asynchronous child process with the same instance id.
+     * @return true if that process is running and should be reused, false if a new process can be launched
+     * @throws MojoExecutionException if that process is running and reusing it is not allowed
+     */
+    boolean isAsyncInstanceRunning() throws MojoExecutionException {
+        if (!async) {
+            return false;
+        }
+        checkInstanceId();
+        ProcessRegistry.Entry entry = getProcessRegistry().get(instanceId);
+        if (entry == null || !entry.isAlive()) {
+            return false;
+        }
+        if (!asyncReuseRunning) {
+            throw new MojoExecutionException("Instance '" + instanceId + "' is already running with pid " + entry.getPid()
+                    + ". Stop it with javafx:stop, set a different 'instanceId' or enable 'asyncReuseRunning'");
+        }
+        getLog().info("Reusing running instance '" + instanceId + "' with pid " + entry.getPid());
+        return true;
+    }
+
+    private void launchInstances(CommandLine executable, List<String> commandArguments, Map<String, String> enviro)
+            throws MojoExecutionException {
+        checkInstanceId();
+        if (async) {
+            for (int i = 1; i <= instances; i++) {
+                ProcessRegistry.Entry entry = getProcessRegistry().get(instanceId + "-" + i);
+                if (entry != null && entry.isAlive()) {
+                    throw new MojoExecutionException("Instance '" + entry.getInstanceId() + "' is already running with pid "
+                            + entry.getPid() + ". Stop it with javafx:stop or set a different 'instanceId'");
+                }
+            }
+        }
+
+        List<MultiInstanceLauncher.Instance> instanceList = new ArrayList<>();
+        for (int i = 1; i <= instances; i++) {
+            String id = instanceId + "-" + i;
+            String number = Integer.toString(i);
+            CommandLine commandLine = new CommandLine(executable);
+            commandLine.addArguments(createAgentArguments(id).toArray(new String[0]), false);
+            commandLine.addArguments(commandArguments.stream()
+                    .map(argument -> argument.replace(INSTANCE_PLACEHOLDER, number))
+                    .toArray(String[]::new), false);
+            instanceList.add(new MultiInstanceLauncher.Instance(i - 1, id, commandLine,
+                    new File(instancesDirectory, "instance-" + i), createReadinessProbe(id, i - 1)));
+        }
+
+        getLog().info("Launching " + instances + " instances" + (async ? " asynchronously" : ""));
+        MultiInstanceLauncher launcher = new MultiInstanceLauncher(getLog(), enviro, instanceConcurrency, instanceStagger,
+                readyTimeout, async ? getProcessRegistry() : null, async && asyncDestroyOnShutdown ? getProcessDestroyer() : null);
+        launcher.launch(instanceList, instancesDirectory);
+    }
+
+    private ReadinessProbe createReadinessProbe(String id, int index) throws MojoExecutionException {
+        if (!async && instances <= 1) {
+            return new ReadinessProbe(null, null, 0, null);
+        }
+        File stageShownFile = null;
+        if (readyOnStageShown) {
+            stageShownFile = getReadyFile(id);
+            try {
+                Files.deleteIfExists(stageShownFile.toPath());
+            } catch (IOException e) {
+                throw new MojoExecutionException("Error deleting " + stageShownFile, e);
+            }
+        }
+        File instanceReadyFile = readyFile;
+        if (readyFile != null && instances > 1) {
+            if (!readyFile.getPath().contains(INSTANCE_PLACEHOLDER)) {
+                throw new MojoExecutionException("The 'readyFile' of several instances must contain the placeholder "
+                        + INSTANCE_PLACEHOLDER + ", otherwise the first instance makes all of them ready");
+            }
+            instanceReadyFile = new File(readyFile.getPath().replace(INSTANCE_PLACEHOLDER,
+                    Integer.toString(index + 1)));
+        }
+        if (instanceReadyFile != null && instanceReadyFile.exists() && !instanceReadyFile.delete()) {
+            throw new MojoExecutionException("Error deleting " + instanceReadyFile);
+        }
+        ReadinessProbe readinessProbe = new ReadinessProbe(readyLogPattern, readyHost,
+                readyPort > 0 ? readyPort + index : 0, stageShownFile != null ? stageShownFile : instanceReadyFile);
+        if (readyFile != null && stageShownFile != null) {
+            getLog().warn("Both 'readyFile' and 'readyOnStageShown' are set, 'readyFile' will be ignored");
+        }
+        return readinessProbe;
+    }
+
+    private File getReadyFile(String id) {
+        return new File(new File(builddir, RuntimeJar.RUNTIME_DIRECTORY), id + ".ready");
+    }
+
+    private void waitUntilReady(ProcessTrackingExecutor exec, ReadinessProbe readinessProbe)
+            throws MojoExecutionException, InterruptedException {
+        if (!async || !readinessProbe.isEnabled()) {
+            return;
+        }
+        Process process = exec.awaitProcess(10, TimeUnit.SECONDS);
+        try {
+            long millis = readinessProbe.await(process, readyTimeout, TimeUnit.SECONDS);
+            getLog().info("Application ready after " + millis + " ms");
+        } catch (MojoExecutionException e) {
+            if (process != null && process.isAlive()) {
+                ProcessRegistry.destroy(ProcessRegistry.pidOf(process), 10, TimeUnit.SECONDS);
+            }
+            throw e;
+        }
+    }
+
+    private List<String> createNativeLibraryArguments() throws MojoExecutionException {
+        List<File> jars = Stream.concat(modulepathElements.stream(), classpathElements.stream())
+                .map(File::new)
+                .filter(file -> file.getName().startsWith("javafx-") && file.getName().endsWith(".jar"))
+                .collect(Collectors.toList());
+        Path directory;
+        try {
+            directory = NativeLibraries.extract(jars, nativeLibrariesCacheDirectory.toPath());
+        } catch (IOException e) {
+            throw new MojoExecutionException("Error extracting the JavaFX native libraries", e);
+        }
+        if (directory == null) {
+            getLog().debug("No JavaFX native libraries to extract");
+            return new ArrayList<>();
+        }
+        getLog().debug("JavaFX native libraries: " + directory);
+
+        List<String> arguments = new ArrayList<>();
+        // if JavaFX still extracts a library, it finds the same one in its cache directory and doesn't write it
+        arguments.add("-Djavafx.cachedir=" + directory);
+        boolean libraryPathOption = options != null && options.stream()
+                .anyMatch(option -> String.valueOf(option).trim().startsWith("-Djava.library.path="));
+        if (libraryPathOption) {
+            getLog().warn("java.library.path is set in 'options', the JavaFX native libraries are only used from "
+                    + "the JavaFX cache directory");
+        } else {
+            String libraryPath = System.getProperty("java.library.path", "");
+            arguments.add("-Djava.library.path=" + directory + (libraryPath.isEmpty() ? "" : File.pathSeparator + libraryPath));
+        }
+        return arguments;
+    }
+
+    private List<String> createFlightRecorderArguments() throws MojoExecutionException {
+        String filename;
+        if (instances > 1) {
+            filename = INSTANCE_RECORDING_FILE;
+            getLog().info("Every instance dumps its flight recording to " + INSTANCE_RECORDING_FILE + " in its directory");
+        } else {
+            File parent = flightRecorderFile.getAbsoluteFile().getParentFile();
+            if (!parent.exists() && !parent.mkdirs()) {
+                throw new MojoExecutionException("Could not make directory: '" + parent + "'");
+            }
+            if (flightRecorderFile.exists() && !flightRecorderFile.delete()) {
+                throw new MojoExecutionException("Error deleting " + flightRecorderFile);
+            }
+            filename = flightRecorderFile.getAbsolutePath();
+            if (async) {
+                getLog().info("The flight recording will be dumped to " + flightRecorderFile + " when the application exits");
+            }
+        }
+        return Collections.singletonList("-XX:StartFlightRecording=settings=" + flightRecorderSettings
+                + ",filename=" + filename + ",dumponexit=true");
+    }
+
+    /**
+     * Prints the summary of the recording, running {@link FlightRecordingSummary} with the
+     * executable of the application, since Maven may run on a JVM without Flight Recorder.
+     */
+    private void summarizeFlightRecording(Map<String, String> enviro) {
+        if (!flightRecorderFile.exists()) {
+            getLog().warn("No flight recording was dumped to " + flightRecorderFile);
+            return;
+        }
+        getLog().info("Flight recording: " + flightRecorderFile);
+        if (flightRecorderSummary <= 0) {
+            return;
+        }
+        try {
+            CommandLine commandLine = getExecutablePath(executable, enviro, workingDirectory);
+            commandLine.addArguments(new String[] { "-classpath", RuntimeJar.get(builddir).getAbsolutePath(),
+                    FlightRecordingSummary.class.getName(), flightRecorderFile.getAbsolutePath(),
+                    Integer.toString(flightRecorderSummary) }, false);
+            ByteArrayOutputStream summary = new ByteArrayOutputStream();
+            DefaultExecutor exec = new DefaultExecutor();
+            exec.setStreamHandler(new PumpStreamHandler(summary));
+            exec.execute(commandLine, enviro);
+            for (String line : summary.toString().split("\\R")) {
+                getLog().info(line);
+            }
+        } catch (IOException | MojoExecutionException e) {
+            getLog().warn("Unable to summarize the flight recording " + flightRecorderFile + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return the option that injects the agent into the given instance, if the agent is required
+     */
+    private List<String> createAgentArguments(String id) throws MojoExecutionException {
+        Properties agentOptions = new Properties();
+        if ((async || instances > 1) && readyOnStageShown) {
+            agentOptions.setProperty(JavaFXAgent.READY_FILE, getReadyFile(id).getAbsolutePath());
+        }
+        if (liveReload && project != null) {
+            agentOptions.setProperty(JavaFXAgent.LIVE_RELOAD_DIRECTORY,
+                    new File(project.getBuild().getOutputDirectory()).getAbsolutePath());
+            agentOptions.setProperty(JavaFXAgent.LIVE_RELOAD_FXML, Boolean.toString(liveReloadFxml));
+        }
+        if (agentOptions.isEmpty()) {
+            return Collections.emptyList();
+        }
+        checkInstanceId();
+        return Collections.singletonList(RuntimeJar.createAgentOption(builddir, "agent-" + id, agentOptions));
+    }
+
+    List<String> createCommandArguments(ExecutableInfo executableInfo) throws MojoExecutionException {
+        List<String> commandArguments = new ArrayList<>();
+        boolean oldJDK = executableInfo.isJava8();
+        preparePaths(executableInfo.getJdkHome());
+
+        if (options != null) {
+            options.stream()
+                    .filter(Objects::nonNull)
+                    .filter(String.class::isInstance)
+                    .map(String.class::cast)
+                    .map(this::splitComplexArgumentString)
+                    .flatMap(Collection::stream)
+                    .forEach(commandArguments::add);
+        }
+        if (!oldJDK) {
+            if (runtimePathOption == MODULEPATH || modulepathElements != null && !modulepathElements.isEmpty()) {
+                commandArguments.add("--module-path");
+                commandArguments.add(StringUtils.join(modulepathElements.iterator(), File.pathSeparator));
+                commandArguments.add("--add-modules");
+                commandArguments.add(createAddModulesString(moduleDescriptor, pathElements));
+            }
+        }
+
+        if (classpathElements != null && (oldJDK || !classpathElements.isEmpty())) {
+            commandArguments.add("-classpath");
+            String classpath = "";
+            if (oldJDK || runtimePathOption == CLASSPATH) {
+                classpath = project.getBuild().getOutputDirectory() + File.pathSeparator;
+            }
+            classpath += StringUtils.join(orderClasspath(classpathElements).iterator(), File.pathSeparator);
+            commandArguments.add(classpath);
+        }
+
+        if (mainClass != null) {
+            if (moduleDescriptor != null) {
+                commandArguments.add("--module");
+            }
+            commandArguments.add(createMainClassString(mainClass, moduleDescriptor, runtimePathOption));
+        }
+
+        if (commandlineArgs != null) {
+            splitComplexArgumentString(commandlineArgs)
+                    .forEach(commandArguments::add);
+        }
+        return commandArguments;
+    }
+
+    private String createAddModulesString(JavaModuleDescriptor moduleDescriptor, Map<String, JavaModuleDescriptor> pathElements) {
+        if (moduleDescriptor == null && minimizeModules) {
+            Set<String> requiredModules = findRequiredModules(pathElements);
+            if (requiredModules != null) {
+                String modules = String.join(",", requiredModules);
+                if (!modules.isEmpty()) {
+                    getLog().info("Adding the JavaFX modules the application uses: " + modules);
+                    return modules;
+                }
+                getLog().warn("No JavaFX package is referenced by the application, adding all the JavaFX modules");
+            }
+        }
+        if (moduleDescriptor == null) {
+            return pathElements.values().stream()
+                    .filter(Objects::nonNull)
+                    .map(JavaModuleDescriptor::name)
+                    .filter(Objects::nonNull)
+                    .filter(module -> module.startsWith(JAVAFX_PREFIX) && !module.endsWith("Empty"))
+                    .collect(Collectors.joining(","));
+        }
+        return moduleDescriptor.name();
+    }
+
+    /**
+     * Runs the application with the class loading logged, and writes the number of classes each element of the
+     * class path served to the order file.
+     */
+    private void trainClasspathOrder(ExecutableInfo executableInfo, Map<String, String> enviro)
+            throws MojoExecutionException {
+        CommandLine commandLine = getExecutablePath(executableInfo);
+        commandLine.addArgument(executableInfo.isJava8() ? "-verbose:class" : "-Xlog:class+load=info", false);
+        List<String> commandArguments = createCommandArguments(executableInfo);
+        if (classpathElements == null || classpathElements.isEmpty()) {
+            getLog().info("The application has no class path, skipping the class path training");
+            return;
+        }
+        commandLine.addArguments(commandArguments.toArray(new String[0]), false);
+        getLog().debug("Executing command line: " + commandLine);
+
+        ProcessTrackingExecutor exec = new ProcessTrackingExecutor();
+        exec.setWorkingDirectory(workingDirectory);
+        exec.setExitValues(null);
+        exec.setWatchdog(new ExecuteWatchdog(classpathTrainingDuration > 0 ?
+                classpathTrainingDuration * 1000L : ExecuteWatchdog.INFINITE_TIMEOUT));
+
+        File classLoadLog = new File(classpathOrderFile.getAbsoluteFile().getParentFile(), "javafx-class-load.log");
+        getLog().info("Training the class path order" + (classpathTrainingDuration > 0 ?
+                " for " + classpathTrainingDuration + " seconds" : ""));
+        try {
+            Files.createDirectories(classLoadLog.getParentFile().toPath());
+            try (FileOutputStream outputStream = new FileOutputStream(classLoadLog)) {
+                executeCommandLine(exec, commandLine, enviro, outputStream);
+            }
+            Map<String, Integer> hits = ClasspathOrder.parseHits(classLoadLog.toPath(), classpathElements);
+            if (hits.isEmpty()) {
+                throw new MojoExecutionException("The training run didn't load any class from the class path, see "
+                        + classLoadLog);
+            }
+            ClasspathOrder.write(classpathOrderFile.toPath(), hits);
+            getLog().info("Recorded the classes loaded from " + hits.size() + " of the " + classpathElements.size()
+                    + " class path elements in " + classpathOrderFile);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Error training the class path order", e);
+        }
+    }
+
+    /**
+     * @return the class path elements ordered by the order file, if there is one
+     */
+    private List<String> orderClasspath(List<String> classpathElements) {
+        if (classpathOrderFile == null || !classpathOrderFile.isFile() || classpathElements.size() < 2) {
+            return classpathElements;
+        }
+        try {
+            List<String> ordered = ClasspathOrder.reorder(classpathElements,
+                    ClasspathOrder.read(classpathOrderFile.toPath()));
+            getLog().debug("Class path ordered by " + classpathOrderFile);
+            return ordered;
+        } catch (IOException e) {
+            getLog().warn("Unable to order the class path with " + classpathOrderFile + ": " + e.getMessage());
+            return classpathElements;
+        }
+    }
+
+    /**
+     * @return the JavaFX modules of the module path that the classes and FXML files of the application and of its
+     * dependencies on the class path use, with their requirements, or null if its classes could not be read
+     */
+    private Set<String> findRequiredModules(Map<String, JavaModuleDescriptor> pathElements) {
+        List<JavaModuleDescriptor> modules = pathElements.values().stream()
+                .filter(Objects::nonNull)
+                .filter(descriptor -> descriptor.name() != null && descriptor.name().startsWith(JAVAFX_PREFIX)
+                        && !descriptor.name().endsWith("Empty"))
+                .collect(Collectors.toList());
+        Set<Path> paths = new LinkedHashSet<>();
+        paths.add(Paths.get(project.getBuild().getOutputDirectory()));
+        if (classpathElements != null) {
+            classpathElements.stream().map(Paths::get).forEach(paths::add);
+        }
+        try {
+            return ModuleUsage.requiredModules(ModuleUsage.referencedPackages(paths), modules);
+        } catch (IOException e) {
+            getLog().warn("Error reading the classes of the application, adding all the JavaFX modules: "
+                    + e.getMessage());
+            getLog().debug(e);
+            return null;
+        }
+    }
+
+    private List<String> splitComplexArgumentString(String argumentString) {
+        char[] strArr = argumentString.trim().toCharArray();
+
+        List<String> splitedArgs = new ArrayList<>();
+        StringBuilder sb = new StringBuilder();
+
+        char expectedSeparator = ' ';
+        for (int i = 0; i < strArr.length; i++) {
+            char item = strArr[i];
+
+            if (item == expectedSeparator
+                    || (expectedSeparator == ' ' && Pattern.matches("\\s", String.valueOf(item))) ) {
+
+                if (expectedSeparator == '"' || expectedSeparator == '\'') {
+                    sb.append(item);
+                    expectedSeparator = ' ';
+                } else if (expectedSeparator == ' ' && sb.length() > 0) {
+                    splitedArgs.add(sb.toString());
+                    sb.delete(0, sb.length());
+                }
+            } else {
+                if (expectedSeparator == ' ' && (item == '"' || item == '\'')) {
+                    expectedSeparator = item;
+                }
+
+                sb.append(item);
+            }
+
+            if (i == strArr.length - 1 && sb.length() > 0) {
+                splitedArgs.add(sb.toString());
+            }
+        }
+
+        return splitedArgs;
+    }
+
+    // for tests
+
+    void setExecutable(String executable) {
+        this.executable = executable;
+    }
+
+    void setBasedir(File basedir) {
+        this.basedir = basedir;
+    }
+
+    void setCommandlineArgs(String commandlineArgs) {
+        this.commandlineArgs = commandlineArgs;
+    }
+
+    List<String> splitComplexArgumentStringAdapter(String cliOptions) {
+        return splitComplexArgumentString(cliOptions);
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2020, Gluon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openjfx;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Reports the application instances launched asynchronously with <code>javafx:run</code>.
+ * Records of instances that are no longer running are removed from the process registry.
+ */
+@Mojo(name = "status", threadSafe = true)
+public class JavaFXStatusMojo extends AbstractMojo {
+
+    @Parameter(readonly = true, required = true, defaultValue = "${project.build.directory}")
+    File builddir;
+
+    /**
+     * The id of the instance to report. If not set, all the registered instances are reported.
+     */
+    @Parameter(property = "javafx.instanceId")
+    String instanceId;
+
+    /**
+     * If set to true, the execution fails when no matching instance is running, default false.
+     */
+    @Parameter(property = "javafx.failIfNotRunning", defaultValue = "false")
+    boolean failIfNotRunning;
+
+    /**
+     * Skip the execution.
+     */
+    @Parameter(property = "javafx.skip", defaultValue = "false")
+    boolean skip;
+
+    public void execute() throws MojoExecutionException {
+        if (skip) {
+            getLog().info( "skipping execute as per configuration" );
+            return;
+        }
+
+        ProcessRegistry registry = new ProcessRegistry(builddir);
+        List<ProcessRegistry.Entry> entries;
+        try {
+            entries = registry.list().stream()
+                    .filter(e -> instanceId == null || instanceId.isEmpty() || instanceId.equals(e.getInstanceId()))
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new MojoExecutionException("Error reading the process registry " + registry.getDirectory(), e);
+        }
+
+        int running = 0;
+        for (ProcessRegistry.Entry entry : entries) {
+            if (entry.isAlive()) {
+                running++;
+                getLog().info("Instance '" + entry.getInstanceId() + "' is running with pid " + entry.getPid()
+                        + ", started " + new Date(entry.getStarted()));
+                getLog().debug("   - command: " + entry.getCommand());
+            } else {
+                getLog().info("Instance '" + entry.getInstanceId() + "' with pid " + entry.getPid() + " is not running");
+                registry.remove(entry.getInstanceId(), entry.getPid());
+            }
+        }
+
+        if (running == 0) {
+            String message = "No running instances found" + (instanceId != null ? " for '" + instanceId + "'" : "");
+            if (failIfNotRunning) {
+                throw new MojoExecutionException(message);
+            }
+            getLog().info(message);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2020, Gluon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openjfx;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stops the application instances launched asynchronously with <code>javafx:run</code>.
+ */
+@Mojo(name = "stop", threadSafe = true)
+public class JavaFXStopMojo extends AbstractMojo {
+
+    @Parameter(readonly = true, required = true, defaultValue = "${project.build.directory}")
+    File builddir;
+
+    /**
+     * The id of the instance to stop. If not set, all the registered instances are stopped.
+     */
+    @Parameter(property = "javafx.instanceId")
+    String instanceId;
+
+    /**
+     * Time in seconds to wait for an instance to terminate before it is killed forcibly, default 10.
+     */
+    @Parameter(property = "javafx.stopTimeout", defaultValue = "10")
+    int stopTimeout;
+
+    /**
+     * Skip the execution.
+     */
+    @Parameter(property = "javafx.skip", defaultValue = "false")
+    boolean skip;
+
+    public void execute() throws MojoExecutionException {
+        if (skip) {
+            getLog().info( "skipping execute as per configuration" );
+            return;
+        }
+
+        ProcessRegistry registry = new ProcessRegistry(builddir);
+        List<ProcessRegistry.Entry> entries;
+        if (instanceId != null && !instanceId.isEmpty()) {
+            if (!ProcessRegistry.isValidInstanceId(instanceId)) {
+                throw new MojoExecutionException("Invalid 'instanceId' '" + instanceId + "'");
+            }
+            ProcessRegistry.Entry entry = registry.get(instanceId);
+            entries = entry == null ? Collections.emptyList() : Collections.singletonList(entry);
+        } else {
+            try {
+                entries = registry.list();
+            } catch (IOException e) {
+                throw new MojoExecutionException("Error reading the process registry " + registry.getDirectory(), e);
+            }
+        }
+
+        if (entries.isEmpty()) {
+            getLog().info("No running instances found" + (instanceId != null ? " for '" + instanceId + "'" : ""));
+            return;
+        }
+
+        List<String> failed = new ArrayList<>();
+        for (ProcessRegistry.Entry entry : entries) {
+            if (!ProcessRegistry.isAlive(entry.getPid())) {
+                getLog().debug("Instance '" + entry.getInstanceId() + "' with pid " + entry.getPid() + " is not running");
+            } else if (!entry.isRecordedProcess()) {
+                // after a reboot, the pid can belong to an unrelated process
+                getLog().warn("Unable to verify that pid " + entry.getPid() + " still belongs to instance '"
+                        + entry.getInstanceId() + "', removing its record without stopping it");
+            } else if (ProcessRegistry.destroy(entry.getPid(), stopTimeout, TimeUnit.SECONDS)) {
+                getLog().info("Stopped instance '" + entry.getInstanceId() + "' with pid " + entry.getPid());
+            } else {
+                failed.add(entry.getInstanceId());
+                continue;
+            }
+            registry.remove(entry.getInstanceId(), entry.getPid());
+        }
+
+        if (!failed.isEmpty()) {
+            throw new MojoExecutionException("Unable to stop instance(s): " + String.join(", ", failed));
+        }
+    }
+}
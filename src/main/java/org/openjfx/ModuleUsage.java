@@ -0,0 +1,148 @@
+/*
+ * Copyright 2020, Gluon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openjfx;
+
+import org.codehaus.plexus.languages.java.jpms.JavaModuleDescriptor;
+import org.codehaus.plexus.util.IOUtil;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Finds the modules a non-modular application uses, from the packages its classes reference and the classes
+ * its FXML files import, to resolve only these modules instead of all the JavaFX modules of the module path.
+ * Classes that are only loaded by reflection, or named in CSS or in strings, are not found.
+ */
+final class ModuleUsage {
+
+    private static final Pattern FXML_IMPORT = Pattern.compile("<\\?import\\s+([\\w.$]+?)(\\.\\*)?\\s*\\?>");
+    private static final Pattern FXML_ELEMENT = Pattern.compile("<((?:[a-z_]\\w*\\.)+)[A-Z][\\w$]*[\\s/>]");
+
+    private ModuleUsage() {
+    }
+
+    /**
+     * Reads the packages referenced by the classes and the FXML files of the directories and jars.
+     */
+    static Set<String> referencedPackages(Collection<Path> paths) throws IOException {
+        Set<String> packages = new HashSet<>();
+        for (Path path : paths) {
+            if (Files.isDirectory(path)) {
+                List<Path> files;
+                try (Stream<Path> walk = Files.walk(path)) {
+                    files = walk.filter(Files::isRegularFile).collect(Collectors.toList());
+                }
+                for (Path file : files) {
+                    String name = file.getFileName().toString();
+                    if (name.endsWith(".class") || name.endsWith(".fxml")) {
+                        addPackages(packages, name, Files.readAllBytes(file), file.toString());
+                    }
+                }
+            } else if (Files.isRegularFile(path) && path.getFileName().toString().endsWith(".jar")) {
+                try (ZipFile zipFile = new ZipFile(path.toFile())) {
+                    Enumeration<? extends ZipEntry> entries = zipFile.entries();
+                    while (entries.hasMoreElements()) {
+                        ZipEntry entry = entries.nextElement();
+                        String name = entry.getName();
+                        if (name.endsWith(".class") || name.endsWith(".fxml")) {
+                            try (InputStream is = zipFile.getInputStream(entry)) {
+                                addPackages(packages, name, IOUtil.toByteArray(is), path + "!/" + name);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return packages;
+    }
+
+    /**
+     * @param packages the packages the application references
+     * @param modules the modules that can be resolved
+     * @return the modules that export these packages, with the modules they require, transitively
+     */
+    static Set<String> requiredModules(Set<String> packages, Collection<JavaModuleDescriptor> modules) {
+        Map<String, JavaModuleDescriptor> modulesByName = new HashMap<>();
+        Set<String> required = new TreeSet<>();
+        Deque<JavaModuleDescriptor> queue = new ArrayDeque<>();
+        for (JavaModuleDescriptor module : modules) {
+            modulesByName.put(module.name(), module);
+            if (module.exports().stream().anyMatch(exports -> packages.contains(exports.source()))) {
+                queue.add(module);
+            }
+        }
+        while (!queue.isEmpty()) {
+            JavaModuleDescriptor module = queue.poll();
+            if (!required.add(module.name())) {
+                continue;
+            }
+            for (JavaModuleDescriptor.JavaRequires requires : module.requires()) {
+                JavaModuleDescriptor dependency = modulesByName.get(requires.name());
+                if (dependency != null && !requires.modifiers().contains(JavaModuleDescriptor.JavaRequires.JavaModifier.STATIC)) {
+                    queue.add(dependency);
+                }
+            }
+        }
+        return required;
+    }
+
+    private static void addPackages(Set<String> packages, String fileName, byte[] bytes, String name) throws IOException {
+        if (fileName.endsWith(".fxml")) {
+            String fxml = new String(bytes, StandardCharsets.UTF_8);
+            Matcher imports = FXML_IMPORT.matcher(fxml);
+            while (imports.find()) {
+                packages.add(imports.group(2) != null ? imports.group(1) : packageName(imports.group(1)));
+            }
+            Matcher elements = FXML_ELEMENT.matcher(fxml);
+            while (elements.find()) {
+                String prefix = elements.group(1);
+                packages.add(prefix.substring(0, prefix.length() - 1));
+            }
+        } else if (!fileName.endsWith("module-info.class")) {
+            ClassFileScanner scanner;
+            try {
+                scanner = new ClassFileScanner(bytes);
+            } catch (IOException | RuntimeException e) {
+                throw new IOException("Invalid class file " + name, e);
+            }
+            scanner.getReferencedClasses().forEach(type -> packages.add(packageName(type)));
+        }
+    }
+
+    private static String packageName(String className) {
+        int dot = className.lastIndexOf('.');
+        return dot > 0 ? className.substring(0, dot) : "";
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright 2020, Gluon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openjfx;
+
+import org.apache.commons.exec.CommandLine;
+import org.apache.commons.exec.DefaultExecuteResultHandler;
+import org.apache.commons.exec.ExecuteException;
+import org.apache.commons.exec.ProcessDestroyer;
+import org.apache.commons.exec.PumpStreamHandler;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.IOUtil;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.LongSummaryStatistics;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Launches several copies of the application at once, each one with its own working directory
+ * and output file, with a staggered start and a bounded number of concurrent instances.
+ * Synchronous instances are waited for until they exit; asynchronous instances are registered
+ * in the {@link ProcessRegistry} once they are ready.
+ */
+class MultiInstanceLauncher {
+
+    static final String SUMMARY_FILE = "summary.txt";
+    private static final String OUTPUT_FILE = "output.log";
+
+    private final Log log;
+    private final Map<String, String> enviro;
+    private final int concurrency;
+    private final long staggerMillis;
+    private final long readyTimeoutSeconds;
+    private final ProcessRegistry registry;
+    private final ProcessDestroyer processDestroyer;
+
+    /**
+     * @param registry the registry of asynchronous instances, or null to wait for the instances to exit
+     * @param processDestroyer destroys the asynchronous instances on shutdown, can be null
+     */
+    MultiInstanceLauncher(Log log, Map<String, String> enviro, int concurrency, long staggerMillis,
+                          long readyTimeoutSeconds, ProcessRegistry registry, ProcessDestroyer processDestroyer) {
+        this.log = log;
+        this.enviro = enviro;
+        this.concurrency = concurrency;
+        this.staggerMillis = staggerMillis;
+        this.readyTimeoutSeconds = readyTimeoutSeconds;
+        this.registry = registry;
+        this.processDestroyer = processDestroyer;
+    }
+
+    /**
+     * Launches the given instances and reports the results, also to a summary file in the given directory.
+     * @throws MojoExecutionException if any instance failed to start or exited with a non-zero code
+     */
+    void launch(List<Instance> instances, File directory) throws MojoExecutionException {
+        int threads = concurrency > 0 ? Math.min(concurrency, instances.size()) : instances.size();
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        long start = System.currentTimeMillis();
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (Instance instance : instances) {
+                futures.add(executorService.submit(() -> {
+                    run(instance, start + instance.index * staggerMillis);
+                    return null;
+                }));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    futures.get(i).get();
+                } catch (ExecutionException e) {
+                    instances.get(i).failure = e.getCause();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while running the instances", e);
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        List<String> report = createReport(instances);
+        report.forEach(log::info);
+        try {
+            Files.write(new File(directory, SUMMARY_FILE).toPath(), report, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            log.warn("Unable to write the instances summary: " + e.getMessage());
+        }
+
+        long failed = instances.stream().filter(Instance::isFailed).count();
+        if (failed > 0) {
+            throw new MojoExecutionException(failed + " of " + instances.size() + " instances failed");
+        }
+    }
+
+    private void run(Instance instance, long startAt) throws Exception {
+        long delay = startAt - System.currentTimeMillis();
+        if (delay > 0) {
+            Thread.sleep(delay);
+        }
+        if (!instance.directory.exists() && !instance.directory.mkdirs()) {
+            throw new IOException("Could not make working directory: '" + instance.directory + "'");
+        }
+
+        ProcessTrackingExecutor exec = new ProcessTrackingExecutor();
+        exec.setWorkingDirectory(instance.directory);
+        if (registry != null && processDestroyer != null) {
+            exec.setProcessDestroyer(processDestroyer);
+        }
+        OutputStream output = new FileOutputStream(instance.getOutputFile());
+        OutputStream probeStream = instance.probe.wrap(output);
+        PumpStreamHandler psh = new PumpStreamHandler(probeStream, probeStream);
+        exec.setStreamHandler(psh);
+        DefaultExecuteResultHandler resultHandler = new DefaultExecuteResultHandler() {
+            @Override
+            public void onProcessComplete(int exitValue) {
+                super.onProcessComplete(exitValue);
+                close();
+            }
+
+            @Override
+            public void onProcessFailed(ExecuteException e) {
+                super.onProcessFailed(e);
+                close();
+            }
+
+            private void close() {
+                // the instance can exit before its pid is known, run() removes the record then
+                if (registry != null && instance.pid >= 0) {
+                    registry.remove(instance.id, instance.pid);
+                }
+                IOUtil.close(output);
+            }
+        };
+
+        long launched = System.nanoTime();
+        log.debug("Launching instance " + instance.id + ": " + instance.commandLine);
+        try {
+            exec.execute(instance.commandLine, enviro, resultHandler);
+        } catch (IOException | RuntimeException e) {
+            IOUtil.close(output);
+            throw e;
+        }
+        Process process = exec.awaitProcess(10, TimeUnit.SECONDS);
+        if (process == null) {
+            resultHandler.waitFor();
+            throw new IOException("Instance " + instance.id + " could not be started", resultHandler.getException());
+        }
+        instance.pid = ProcessRegistry.pidOf(process);
+        if (registry != null && instance.pid >= 0) {
+            registry.register(instance.id, instance.pid, instance.commandLine.toString());
+            if (!process.isAlive()) {
+                // the instance exited before it was registered, its result handler may not have removed the record
+                registry.remove(instance.id, instance.pid);
+            }
+        }
+        if (instance.probe.isEnabled()) {
+            try {
+                instance.probe.await(process, readyTimeoutSeconds, TimeUnit.SECONDS);
+            } catch (MojoExecutionException e) {
+                ProcessRegistry.destroy(instance.pid, 10, TimeUnit.SECONDS);
+                throw e;
+            }
+        }
+        instance.startupMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - launched);
+
+        if (registry != null) {
+            return;
+        }
+
+        resultHandler.waitFor();
+        instance.durationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - launched);
+        instance.exitCode = resultHandler.getExitValue();
+    }
+
+    private List<String> createReport(List<Instance> instances) {
+        List<String> report = new ArrayList<>();
+        report.add(String.format("%-20s %8s %6s %12s %12s  %s", "Instance", "Pid", "Exit", "Startup(ms)", "Duration(ms)", "Output"));
+        LongSummaryStatistics startup = new LongSummaryStatistics();
+        for (Instance instance : instances) {
+            if (instance.failure == null) {
+                startup.accept(instance.startupMillis);
+            }
+            report.add(String.format("%-20s %8d %6s %12s %12s  %s", instance.id, instance.pid,
+                    instance.failure != null ? "error" : (registry != null ? "-" : Integer.toString(instance.exitCode)),
+                    instance.failure != null ? "-" : Long.toString(instance.startupMillis),
+                    instance.failure != null || registry != null ? "-" : Long.toString(instance.durationMillis),
+                    instance.getOutputFile()));
+            if (instance.failure != null) {
+                report.add("   - " + instance.failure.getMessage());
+            }
+        }
+        if (startup.getCount() > 0) {
+            report.add(String.format("Startup time (ms): min %d, mean %.1f, max %d", startup.getMin(), startup.getAverage(),
+                    startup.getMax()));
+        }
+        long failed = instances.stream().filter(Instance::isFailed).count();
+        report.add("Instances: " + instances.size() + ", failed: " + failed);
+        return report;
+    }
+
+    static final class Instance {
+        private final int index;
+        private final String id;
+        private final CommandLine commandLine;
+        private final File directory;
+        private final ReadinessProbe probe;
+
+        private volatile long pid = -1;
+        private volatile int exitCode;
+        private volatile long startupMillis;
+        private volatile long durationMillis;
+        private volatile Throwable failure;
+
+        /**
+         * @param index zero-based index of the instance, it determines its start delay
+         */
+        Instance(int index, String id, CommandLine commandLine, File directory, ReadinessProbe probe) {
+            this.index = index;
+            this.id = id;
+            this.commandLine = commandLine;
+            this.directory = directory;
+            this.probe = probe;
+        }
+
+        File getOutputFile() {
+            return new File(directory, OUTPUT_FILE);
+        }
+
+        boolean isFailed() {
+            return failure != null || exitCode != 0;
+        }
+    }
+}
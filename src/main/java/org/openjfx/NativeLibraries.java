@@ -0,0 +1,144 @@
+/*
+ * Copyright 2020, Gluon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openjfx;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Extracts the native libraries bundled in the JavaFX platform jars into a directory named after a hash
+ * of their content, so the application can load them from <code>java.library.path</code> instead of
+ * extracting them into the user cache every time it runs on a fresh machine.
+ */
+final class NativeLibraries {
+
+    static final String DIRECTORY = "javafx-natives";
+    private static final int HASH_LENGTH = 16;
+
+    private NativeLibraries() {
+    }
+
+    /**
+     * Returns the directory with the native libraries of the given jars, extracting them first if no
+     * previous execution did. The directory is named after the version and classifier of the JavaFX jars,
+     * like <code>17.0.2-linux-</code>, followed by the hash.
+     * @return the directory, or null if the jars have no native libraries
+     */
+    static Path extract(List<File> jars, Path cacheDirectory) throws IOException {
+        TreeMap<String, Library> libraries = findLibraries(jars);
+        if (libraries.isEmpty()) {
+            return null;
+        }
+        String name = JavaFXJmods.versionAndClassifier(jars.stream().map(File::toPath).collect(Collectors.toList()))
+                .map(versionAndClassifier -> versionAndClassifier[0] + "-" + versionAndClassifier[1] + "-")
+                .orElse("") + hash(libraries);
+        return Directories.createAtomically(cacheDirectory.resolve(DIRECTORY).resolve(name), tmp -> {
+            for (Library library : libraries.values()) {
+                try (ZipFile zipFile = new ZipFile(library.jar);
+                     InputStream is = zipFile.getInputStream(zipFile.getEntry(library.entry))) {
+                    Path target = tmp.resolve(library.entry);
+                    Files.copy(is, target);
+                    target.toFile().setExecutable(true);
+                }
+            }
+        });
+    }
+
+    /**
+     * @return the native libraries in the root of the jars, by name. If several jars have the same
+     * library, the first one wins, as it would when loading it from the module path.
+     */
+    static TreeMap<String, Library> findLibraries(List<File> jars) throws IOException {
+        TreeMap<String, Library> libraries = new TreeMap<>();
+        for (File jar : jars) {
+            if (!jar.isFile()) {
+                continue;
+            }
+            try (ZipFile zipFile = new ZipFile(jar)) {
+                Enumeration<? extends ZipEntry> entries = zipFile.entries();
+                while (entries.hasMoreElements()) {
+                    ZipEntry entry = entries.nextElement();
+                    if (!entry.isDirectory() && !entry.getName().contains("/") && isNativeLibrary(entry.getName())) {
+                        libraries.putIfAbsent(entry.getName(), new Library(jar, entry.getName(), entry.getCrc(), entry.getSize()));
+                    }
+                }
+            }
+        }
+        return libraries;
+    }
+
+    /**
+     * Hashes the names, sizes and checksums of the libraries, which the jars store, so nothing is decompressed.
+     */
+    static String hash(TreeMap<String, Library> libraries) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (Library library : libraries.values()) {
+                digest.update((library.entry + ":" + library.size + ":" + library.crc).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            StringBuilder sb = new StringBuilder();
+            for (byte b : digest.digest()) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.substring(0, HASH_LENGTH);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static boolean isNativeLibrary(String name) {
+        return name.endsWith(".so") || name.endsWith(".dll") || name.endsWith(".dylib") || name.endsWith(".jnilib");
+    }
+
+    static final class Library {
+        private final File jar;
+        private final String entry;
+        private final long crc;
+        private final long size;
+
+        Library(File jar, String entry, long crc, long size) {
+            this.jar = jar;
+            this.entry = entry;
+            this.crc = crc;
+            this.size = size;
+        }
+
+        File getJar() {
+            return jar;
+        }
+
+        String getEntry() {
+            return entry;
+        }
+
+        long getSize() {
+            return size;
+        }
+    }
+}
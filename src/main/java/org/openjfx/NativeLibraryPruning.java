@@ -0,0 +1,142 @@
+/*
+ * Copyright 2020, Gluon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openjfx;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Excludes, removes and reports the JavaFX native libraries of an image that {@link NativeLibraryUsage} finds
+ * it can't load, and reports the size saved by stripping the debug symbols of the others.
+ */
+class NativeLibraryPruning {
+
+    private final Log log;
+    private final List<String> vmOptions;
+    private final boolean prune;
+
+    /**
+     * @param vmOptions the options the application runs with
+     * @param prune true to remove the libraries that can't be loaded from the image, rather than only report them
+     */
+    NativeLibraryPruning(Log log, List<String> vmOptions, boolean prune) {
+        this.log = log;
+        this.vmOptions = vmOptions;
+        this.prune = prune;
+    }
+
+    /**
+     * Finds the native libraries bundled in the JavaFX jars that the image won't load, when it is linked from
+     * the jars rather than from jmods, so these libraries are resources of the modules.
+     * @param modules the JavaFX jars, with the name of their module
+     * @return why each library can't be loaded and its size, by resource path
+     */
+    Map<String, Map.Entry<String, Long>> findUnusedJarLibraries(Map<File, String> modules) throws MojoExecutionException {
+        Map<String, Map.Entry<String, Long>> unused = new TreeMap<>();
+        try {
+            for (NativeLibraries.Library library : NativeLibraries.findLibraries(new ArrayList<>(modules.keySet())).values()) {
+                String reason = NativeLibraryUsage.unusedReason(library.getEntry(), new HashSet<>(modules.values()),
+                        vmOptions);
+                if (reason != null) {
+                    unused.put("/" + modules.get(library.getJar()) + "/" + library.getEntry(),
+                            new AbstractMap.SimpleEntry<>(reason, library.getSize()));
+                }
+            }
+        } catch (IOException e) {
+            throw new MojoExecutionException("Error reading the native libraries of the JavaFX jars", e);
+        }
+        return unused;
+    }
+
+    /**
+     * Reports the native libraries that were excluded or can't be loaded, removing the latter if pruning,
+     * and the size saved by stripping their debug symbols.
+     * @param excluded the libraries excluded when linking the image, as found by {@link #findUnusedJarLibraries}
+     * @param unstrippedJmods the jmod directories with the libraries before they were stripped, or null if the
+     * image wasn't linked with <code>--strip-native-debug-symbols</code>
+     */
+    void report(File image, Map<String, Map.Entry<String, Long>> excluded, List<Path> unstrippedJmods)
+            throws MojoExecutionException {
+        long saved = 0;
+        for (Map.Entry<String, Map.Entry<String, Long>> library : excluded.entrySet()) {
+            log.info(String.format("Excluded %s, %s: %s", library.getKey(),
+                    formatSize(library.getValue().getValue()), library.getValue().getKey()));
+            saved += library.getValue().getValue();
+        }
+        try {
+            Set<String> linkedModules = NativeLibraryUsage.linkedModules(image.toPath());
+            Map<String, Path> libraries = NativeLibraryUsage.imageLibraries(image.toPath());
+            long unusedSize = 0;
+            for (Iterator<Map.Entry<String, Path>> iterator = libraries.entrySet().iterator(); iterator.hasNext(); ) {
+                Map.Entry<String, Path> library = iterator.next();
+                String reason = NativeLibraryUsage.unusedReason(library.getKey(), linkedModules, vmOptions);
+                if (reason == null) {
+                    continue;
+                }
+                long size = Files.size(library.getValue());
+                if (prune) {
+                    Files.delete(library.getValue());
+                    iterator.remove();
+                    log.info(String.format("Removed %s, %s: %s", library.getKey(), formatSize(size), reason));
+                    saved += size;
+                } else {
+                    log.debug(String.format("%s can't be loaded: %s", library.getKey(), reason));
+                    unusedSize += size;
+                }
+            }
+            if (unusedSize > 0) {
+                log.info("The image has " + formatSize(unusedSize) + " of native libraries it can't load, "
+                        + "set 'pruneNativeLibraries' to remove them");
+            }
+
+            if (unstrippedJmods != null) {
+                Map<String, Long> unstrippedSizes = NativeLibraryUsage.jmodLibrarySizes(unstrippedJmods);
+                for (Map.Entry<String, Path> library : libraries.entrySet()) {
+                    Long unstrippedSize = unstrippedSizes.get(library.getKey());
+                    long size = Files.size(library.getValue());
+                    if (unstrippedSize != null && unstrippedSize > size) {
+                        log.info(String.format("Stripped %s, %s to %s", library.getKey(), formatSize(unstrippedSize),
+                                formatSize(size)));
+                        saved += unstrippedSize - size;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new MojoExecutionException("Error reading the native libraries of " + image, e);
+        }
+        if (saved > 0) {
+            log.info("Native libraries: " + formatSize(saved) + " saved");
+        }
+    }
+
+    static String formatSize(long bytes) {
+        return bytes < 1024 * 1024 ? String.format("%.1f kB", bytes / 1024.0) :
+                String.format("%.1f MB", bytes / (1024.0 * 1024));
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2020, Gluon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openjfx;
+
+import org.openjfx.runtime.ImageHash;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Finds the JavaFX native libraries of an image that can't be loaded: the libraries of modules that are not
+ * linked, and the libraries of the glass and prism implementations that the options of the application
+ * exclude, with <code>-Djdk.gtk.version</code> and <code>-Dprism.order</code>. The other libraries, including
+ * the ones of the JDK, are always kept.
+ */
+final class NativeLibraryUsage {
+
+    private static final String GRAPHICS = "javafx.graphics";
+    private static final String MEDIA = "javafx.media";
+    private static final String WEB = "javafx.web";
+
+    private static final Map<String, String> MODULES = new HashMap<>();
+    static {
+        for (String library : Arrays.asList("glass", "glassgtk2", "glassgtk3", "prism_common", "prism_es2",
+                "prism_sw", "prism_d3d", "javafx_font", "javafx_font_freetype", "javafx_font_pango", "javafx_iio",
+                "decora_sse")) {
+            MODULES.put(library, GRAPHICS);
+        }
+        for (String library : Arrays.asList("gstreamer-lite", "glib-lite", "jfxmedia", "fxplugins",
+                "jfxmedia_avf", "jfxmedia_qtkit")) {
+            MODULES.put(library, MEDIA);
+        }
+        MODULES.put("jfxwebkit", WEB);
+    }
+
+    private NativeLibraryUsage() {
+    }
+
+    /**
+     * @param fileName the file name of the library, like <code>libglassgtk2.so</code>
+     * @param linkedModules the modules of the image
+     * @param vmOptions the options the application runs with
+     * @return why the library can't be loaded, or null if it may be
+     */
+    static String unusedReason(String fileName, Set<String> linkedModules, List<String> vmOptions) {
+        String library = libraryName(fileName);
+        String module = library.startsWith("avplugin") ? MEDIA : MODULES.get(library);
+        if (module == null) {
+            return null;
+        }
+        if (!linkedModules.contains(module)) {
+            return module + " is not linked";
+        }
+        String gtkVersion = systemProperty(vmOptions, "jdk.gtk.version");
+        if (gtkVersion != null && library.startsWith("glassgtk") && !library.equals("glassgtk" + gtkVersion)) {
+            return "-Djdk.gtk.version=" + gtkVersion;
+        }
+        String prismOrder = systemProperty(vmOptions, "prism.order");
+        if (prismOrder != null && library.startsWith("prism_") && !library.equals("prism_common")
+                && !Arrays.asList(prismOrder.split(",")).contains(library.substring("prism_".length()))) {
+            return "-Dprism.order=" + prismOrder;
+        }
+        return null;
+    }
+
+    /**
+     * @return the name of the library without its prefix and extension, like <code>glassgtk2</code>
+     */
+    static String libraryName(String fileName) {
+        String name = fileName.substring(fileName.lastIndexOf('/') + 1);
+        if (name.startsWith("lib") && !name.endsWith(".dll")) {
+            name = name.substring("lib".length());
+        }
+        int extension = name.lastIndexOf('.');
+        return extension > 0 ? name.substring(0, extension) : name;
+    }
+
+    /**
+     * @return the native libraries of the image, by path relative to the image
+     */
+    static Map<String, Path> imageLibraries(Path image) throws IOException {
+        Map<String, Path> libraries = new TreeMap<>();
+        for (Path path : ImageHash.sortedPaths(image)) {
+            String relativePath = ImageHash.relativePath(image, path);
+            if (Files.isRegularFile(path) && NativeLibraries.isNativeLibrary(relativePath)) {
+                libraries.put(relativePath, path);
+            }
+        }
+        return libraries;
+    }
+
+    /**
+     * Reads the sizes of the native libraries in the jmod files of the directories, as linked without stripping,
+     * by their path in an image, like <code>lib/libglass.so</code>.
+     */
+    static Map<String, Long> jmodLibrarySizes(Collection<Path> jmodDirectories) throws IOException {
+        Map<String, Long> sizes = new HashMap<>();
+        for (Path directory : jmodDirectories) {
+            if (directory == null || !Files.isDirectory(directory)) {
+                continue;
+            }
+            Path[] jmods;
+            try (Stream<Path> files = Files.list(directory)) {
+                jmods = files.filter(file -> file.getFileName().toString().endsWith(".jmod")).toArray(Path[]::new);
+            }
+            for (Path jmod : jmods) {
+                // the zip of a jmod is after a header, which ZipFile skips like the stub of a self-extracting zip
+                try (ZipFile zipFile = new ZipFile(jmod.toFile())) {
+                    Enumeration<? extends ZipEntry> entries = zipFile.entries();
+                    while (entries.hasMoreElements()) {
+                        ZipEntry entry = entries.nextElement();
+                        String name = entry.getName();
+                        if ((name.startsWith("lib/") || name.startsWith("bin/")) && NativeLibraries.isNativeLibrary(name)) {
+                            sizes.put(name, entry.getSize());
+                        }
+                    }
+                }
+            }
+        }
+        return sizes;
+    }
+
+    /**
+     * @return the modules of the image, from the <code>MODULES</code> line of its <code>release</code> file
+     */
+    static Set<String> linkedModules(Path image) throws IOException {
+        Set<String> modules = new HashSet<>();
+        File release = image.resolve("release").toFile();
+        if (!release.isFile()) {
+            return modules;
+        }
+        for (String line : Files.readAllLines(release.toPath(), StandardCharsets.UTF_8)) {
+            if (line.startsWith("MODULES=")) {
+                modules.addAll(Arrays.asList(line.substring("MODULES=".length()).replace("\"", "").trim().split("\\s+")));
+            }
+        }
+        return modules;
+    }
+
+    private static String systemProperty(List<String> vmOptions, String name) {
+        String value = null;
+        for (String option : vmOptions) {
+            if (option.startsWith("-D" + name + "=")) {
+                value = option.substring(name.length() + 3).trim();
+            }
+        }
+        return value;
+    }
+}
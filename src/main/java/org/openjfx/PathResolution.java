@@ -0,0 +1,127 @@
+/*
+ * Copyright 2020, Gluon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openjfx;
+
+import org.codehaus.plexus.languages.java.jpms.JavaModuleDescriptor;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The result of resolving the class path and module path of a project, so it can be reused by
+ * other executions for the same project. It is only valid while the fingerprint of the files it
+ * was resolved from doesn't change.
+ */
+final class PathResolution {
+
+    private final String fingerprint;
+    private final List<String> classpathElements;
+    private final List<String> modulepathElements;
+    private final Map<String, JavaModuleDescriptor> pathElements;
+    private final JavaModuleDescriptor moduleDescriptor;
+
+    PathResolution(String fingerprint, List<String> classpathElements, List<String> modulepathElements,
+                   Map<String, JavaModuleDescriptor> pathElements, JavaModuleDescriptor moduleDescriptor) {
+        this.fingerprint = fingerprint;
+        this.classpathElements = Collections.unmodifiableList(new ArrayList<>(classpathElements));
+        this.modulepathElements = Collections.unmodifiableList(new ArrayList<>(modulepathElements));
+        this.pathElements = Collections.unmodifiableMap(new LinkedHashMap<>(pathElements));
+        this.moduleDescriptor = moduleDescriptor;
+    }
+
+    /**
+     * Fingerprints the given files by their path, size and last modified time. The fingerprint of a directory, like
+     * the output directory, includes every file it contains, like its <code>module-info.class</code>, since its own
+     * last modified time doesn't change when a nested file does.
+     * Null files are allowed, so the absence of an optional file is fingerprinted too.
+     */
+    static String fingerprint(Collection<File> files) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (File file : files) {
+                if (file == null) {
+                    update(digest, "-");
+                } else if (file.isDirectory()) {
+                    update(digest, file.getAbsolutePath() + ":dir");
+                    updateDirectory(digest, file.toPath());
+                } else {
+                    update(digest, file.getAbsolutePath() + ":" + file.length() + ":" + file.lastModified());
+                }
+            }
+            StringBuilder sb = new StringBuilder();
+            for (byte b : digest.digest()) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void updateDirectory(MessageDigest digest, Path directory) {
+        List<Path> nested;
+        try (Stream<Path> walk = Files.walk(directory)) {
+            nested = walk.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+        } catch (IOException | UncheckedIOException e) {
+            // a directory that can't be read never matches, so its resolution is never reused
+            update(digest, "?" + System.nanoTime());
+            return;
+        }
+        for (Path path : nested) {
+            File file = path.toFile();
+            update(digest, directory.relativize(path) + ":" + file.length() + ":" + file.lastModified());
+        }
+    }
+
+    private static void update(MessageDigest digest, String entry) {
+        digest.update(entry.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    boolean matches(String fingerprint) {
+        return this.fingerprint.equals(fingerprint);
+    }
+
+    List<String> getClasspathElements() {
+        return new ArrayList<>(classpathElements);
+    }
+
+    List<String> getModulepathElements() {
+        return new ArrayList<>(modulepathElements);
+    }
+
+    Map<String, JavaModuleDescriptor> getPathElements() {
+        return new LinkedHashMap<>(pathElements);
+    }
+
+    JavaModuleDescriptor getModuleDescriptor() {
+        return moduleDescriptor;
+    }
+}
@@ -0,0 +1,466 @@
+/*
+ * Copyright 2020, Gluon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openjfx;
+
+import org.apache.commons.exec.OS;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Keeps track of the application processes launched asynchronously by the plugin.
+ * Every process is recorded as a PID file named after its instance id, under
+ * <code>${project.build.directory}/javafx-processes</code>, so later goals (even from
+ * a different Maven invocation) can query and stop it.
+ */
+class ProcessRegistry {
+
+    static final String REGISTRY_DIRECTORY = "javafx-processes";
+    private static final String PID_EXTENSION = ".pid";
+
+    private static final String PID_KEY = "pid";
+    private static final String COMMAND_KEY = "command";
+    private static final String STARTED_KEY = "started";
+    private static final String PROCESS_START_KEY = "processStart";
+    private static final String EXECUTABLE_KEY = "executable";
+
+    // a file name in the registry directory, never "." or ".." or a path
+    private static final Pattern INSTANCE_ID = Pattern.compile("[A-Za-z0-9][A-Za-z0-9._-]*");
+
+    private final Path directory;
+
+    ProcessRegistry(File builddir) {
+        this.directory = builddir.toPath().resolve(REGISTRY_DIRECTORY);
+    }
+
+    Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Records a running process. An existing record for the same instance is replaced.
+     * The start instant and the executable of the process are recorded when they are known, on Java 9 and later,
+     * so a later goal can tell whether the pid still belongs to this process.
+     */
+    void register(String instanceId, long pid, String command) throws IOException {
+        Path target = pidFile(instanceId);
+        Files.createDirectories(directory);
+        Properties properties = new Properties();
+        properties.setProperty(PID_KEY, Long.toString(pid));
+        properties.setProperty(COMMAND_KEY, command);
+        properties.setProperty(STARTED_KEY, Long.toString(System.currentTimeMillis()));
+        properties.setProperty(PROCESS_START_KEY, Long.toString(processStart(pid)));
+        String executable = executable(pid);
+        if (executable != null) {
+            properties.setProperty(EXECUTABLE_KEY, executable);
+        }
+
+        // write to a temporary file first, so readers never see a partial record
+        Path tmp = Files.createTempFile(directory, instanceId, ".tmp");
+        try (OutputStream os = Files.newOutputStream(tmp)) {
+            properties.store(os, "javafx-maven-plugin process " + instanceId);
+        }
+        try {
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * @return the record for the given instance, or null if there is none
+     */
+    Entry get(String instanceId) {
+        return read(pidFile(instanceId));
+    }
+
+    /**
+     * @return all the recorded processes, sorted by instance id
+     */
+    List<Entry> list() throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return entries;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + PID_EXTENSION)) {
+            for (Path path : stream) {
+                Entry entry = read(path);
+                if (entry != null) {
+                    entries.add(entry);
+                }
+            }
+        }
+        entries.sort(Comparator.comparing(Entry::getInstanceId));
+        return entries;
+    }
+
+    /**
+     * Removes the record of the given instance, but only if it still refers to the given pid.
+     * A negative pid removes the record unconditionally.
+     */
+    void remove(String instanceId, long pid) {
+        Entry entry = get(instanceId);
+        if (entry == null || (pid >= 0 && entry.getPid() != pid)) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(pidFile(instanceId));
+        } catch (IOException e) {
+            // best effort, stale records are pruned by the status goal
+        }
+    }
+
+    /**
+     * @return true if the instance id only has letters, digits, '.', '_' and '-', and starts with a letter or a digit
+     */
+    static boolean isValidInstanceId(String instanceId) {
+        return instanceId != null && INSTANCE_ID.matcher(instanceId).matches();
+    }
+
+    private Path pidFile(String instanceId) {
+        if (!isValidInstanceId(instanceId)) {
+            throw new IllegalArgumentException("Invalid instance id '" + instanceId + "'");
+        }
+        return directory.resolve(instanceId + PID_EXTENSION);
+    }
+
+    private static Entry read(Path path) {
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try (InputStream is = Files.newInputStream(path)) {
+            properties.load(is);
+            String fileName = path.getFileName().toString();
+            return new Entry(fileName.substring(0, fileName.length() - PID_EXTENSION.length()),
+                    Long.parseLong(properties.getProperty(PID_KEY, "-1")),
+                    properties.getProperty(COMMAND_KEY, ""),
+                    Long.parseLong(properties.getProperty(STARTED_KEY, "0")),
+                    Long.parseLong(properties.getProperty(PROCESS_START_KEY, "-1")),
+                    properties.getProperty(EXECUTABLE_KEY));
+        } catch (IOException | NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the pid of the given process, or -1 if it can't be determined.
+     */
+    static long pidOf(Process process) {
+        if (process == null) {
+            return -1;
+        }
+        try {
+            // Java 9+
+            Method pid = Process.class.getMethod("pid");
+            return (Long) pid.invoke(process);
+        } catch (ReflectiveOperationException e) {
+            // Java 8, UNIXProcess
+            try {
+                Field pid = process.getClass().getDeclaredField("pid");
+                pid.setAccessible(true);
+                return pid.getLong(process);
+            } catch (ReflectiveOperationException | RuntimeException ex) {
+                return -1;
+            }
+        }
+    }
+
+    static boolean isAlive(long pid) {
+        if (pid < 0) {
+            return false;
+        }
+        Optional<Object> handle = processHandle(pid);
+        if (handle != null) {
+            return handle.isPresent() && isHandleAlive(handle.get());
+        }
+        if (OS.isFamilyWindows()) {
+            String tasks = run("tasklist", "/FI", "PID eq " + pid, "/NH");
+            return tasks != null && tasks.contains(Long.toString(pid));
+        }
+        return run("kill", "-0", Long.toString(pid)) != null;
+    }
+
+    /**
+     * @return the start instant of the process in milliseconds since the epoch, or -1 if it can't be determined
+     */
+    static long processStart(long pid) {
+        Object startInstant = processInfo(pid, "startInstant");
+        return startInstant == null ? -1 : ((Instant) startInstant).toEpochMilli();
+    }
+
+    /**
+     * @return the executable of the process, or null if it can't be determined
+     */
+    static String executable(long pid) {
+        return (String) processInfo(pid, "command");
+    }
+
+    /**
+     * Reads a value of the <code>java.lang.ProcessHandle.Info</code> of the given pid.
+     * @return the value, or null if it is unknown or when running on Java 8
+     */
+    private static Object processInfo(long pid, String methodName) {
+        Optional<Object> handle = processHandle(pid);
+        if (handle == null || !handle.isPresent()) {
+            return null;
+        }
+        try {
+            Object info = invoke(handle.get(), "info");
+            Method method = Class.forName("java.lang.ProcessHandle$Info").getMethod(methodName);
+            return ((Optional<?>) method.invoke(info)).orElse(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Stops the process with the given pid and its descendants, forcibly if they don't terminate
+     * within the given timeout.
+     * @return true if neither the process nor any of its descendants is alive
+     */
+    static boolean destroy(long pid, long timeout, TimeUnit unit) {
+        if (!isAlive(pid)) {
+            return true;
+        }
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        long forciblyDeadline = deadline + TimeUnit.SECONDS.toNanos(1);
+        Optional<Object> handle = processHandle(pid);
+        if (handle != null) {
+            if (!handle.isPresent()) {
+                return true;
+            }
+            // the tree is listed first: once the parent exits, its children are no longer its descendants
+            @SuppressWarnings("unchecked")
+            Stream<Object> descendants = (Stream<Object>) invoke(handle.get(), "descendants");
+            List<Object> tree = descendants.collect(Collectors.toCollection(ArrayList::new));
+            tree.add(handle.get());
+            tree.forEach(process -> invoke(process, "destroy"));
+            if (waitFor(() -> tree.stream().noneMatch(ProcessRegistry::isHandleAlive), deadline)) {
+                return true;
+            }
+            tree.stream().filter(ProcessRegistry::isHandleAlive).forEach(process -> invoke(process, "destroyForcibly"));
+            return waitFor(() -> tree.stream().noneMatch(ProcessRegistry::isHandleAlive), forciblyDeadline);
+        } else if (OS.isFamilyWindows()) {
+            run("taskkill", "/PID", Long.toString(pid), "/T");
+            if (waitFor(() -> !isAlive(pid), deadline)) {
+                return true;
+            }
+            run("taskkill", "/PID", Long.toString(pid), "/T", "/F");
+            return waitFor(() -> !isAlive(pid), forciblyDeadline);
+        }
+        List<Long> tree = unixDescendantsOf(pid);
+        tree.add(pid);
+        kill("-TERM", tree);
+        if (waitFor(() -> tree.stream().noneMatch(ProcessRegistry::isAlive), deadline)) {
+            return true;
+        }
+        kill("-KILL", tree.stream().filter(ProcessRegistry::isAlive).collect(Collectors.toList()));
+        return waitFor(() -> tree.stream().noneMatch(ProcessRegistry::isAlive), forciblyDeadline);
+    }
+
+    /**
+     * @return true if the descendants of a process can be listed, on Java 9 and later
+     */
+    static boolean canListDescendants() {
+        return processHandle(0) != null;
+    }
+
+    /**
+     * @return the pids of the descendants of the process, empty if they can't be listed, like on Java 8
+     */
+    static List<Long> descendantsOf(long pid) {
+        List<Long> pids = new ArrayList<>();
+        Optional<Object> handle = processHandle(pid);
+        if (handle != null && handle.isPresent()) {
+            @SuppressWarnings("unchecked")
+            Stream<Object> descendants = (Stream<Object>) invoke(handle.get(), "descendants");
+            descendants.forEach(child -> pids.add((Long) invoke(child, "pid")));
+        }
+        return pids;
+    }
+
+    private static boolean waitFor(BooleanSupplier terminated, long deadline) {
+        while (!terminated.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return terminated.getAsBoolean();
+            }
+        }
+        return true;
+    }
+
+    private static boolean isHandleAlive(Object processHandle) {
+        return (Boolean) invoke(processHandle, "isAlive");
+    }
+
+    /**
+     * Lists the descendants of a process with <code>pgrep</code>, for Java 8 on Unix.
+     */
+    private static List<Long> unixDescendantsOf(long pid) {
+        List<Long> descendants = new ArrayList<>();
+        String children = run("pgrep", "-P", Long.toString(pid));
+        if (children != null) {
+            for (String child : children.trim().split("\\s+")) {
+                try {
+                    long childPid = Long.parseLong(child);
+                    descendants.add(childPid);
+                    descendants.addAll(unixDescendantsOf(childPid));
+                } catch (NumberFormatException e) {
+                    // not a pid
+                }
+            }
+        }
+        return descendants;
+    }
+
+    private static void kill(String signal, List<Long> pids) {
+        if (pids.isEmpty()) {
+            return;
+        }
+        List<String> command = new ArrayList<>();
+        command.add("kill");
+        command.add(signal);
+        pids.forEach(pid -> command.add(Long.toString(pid)));
+        run(command.toArray(new String[0]));
+    }
+
+    /**
+     * Looks up the <code>java.lang.ProcessHandle</code> of the given pid.
+     * @return the optional handle, or null when running on Java 8
+     */
+    @SuppressWarnings("unchecked")
+    private static Optional<Object> processHandle(long pid) {
+        try {
+            Class<?> processHandleClass = Class.forName("java.lang.ProcessHandle");
+            return (Optional<Object>) processHandleClass.getMethod("of", long.class).invoke(null, pid);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private static Object invoke(Object handle, String methodName) {
+        try {
+            Method method = Class.forName("java.lang.ProcessHandle").getMethod(methodName);
+            return method.invoke(handle);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Can't invoke ProcessHandle." + methodName, e);
+        }
+    }
+
+    /**
+     * Runs a short-lived system command.
+     * @return its output if it exited with 0, null otherwise
+     */
+    private static String run(String... command) {
+        try {
+            Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            try (InputStream is = process.getInputStream()) {
+                byte[] buffer = new byte[1024];
+                int read;
+                while ((read = is.read(buffer)) != -1) {
+                    baos.write(buffer, 0, read);
+                }
+            }
+            return process.waitFor() == 0 ? baos.toString() : null;
+        } catch (IOException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    static final class Entry {
+        private final String instanceId;
+        private final long pid;
+        private final String command;
+        private final long started;
+        private final long processStart;
+        private final String executable;
+
+        Entry(String instanceId, long pid, String command, long started, long processStart, String executable) {
+            this.instanceId = instanceId;
+            this.pid = pid;
+            this.command = command;
+            this.started = started;
+            this.processStart = processStart;
+            this.executable = executable;
+        }
+
+        String getInstanceId() {
+            return instanceId;
+        }
+
+        long getPid() {
+            return pid;
+        }
+
+        String getCommand() {
+            return command;
+        }
+
+        long getStarted() {
+            return started;
+        }
+
+        /**
+         * @return true if the pid is alive and still belongs to the recorded process
+         */
+        boolean isAlive() {
+            return ProcessRegistry.isAlive(pid) && isRecordedProcess();
+        }
+
+        /**
+         * Checks that the pid wasn't reused, after a reboot for instance, by comparing the start instant and the
+         * executable of the process with the recorded ones.
+         * @return true if they match, false if they differ or can't be checked, like on Java 8
+         */
+        boolean isRecordedProcess() {
+            if (processStart < 0 || processStart != processStart(pid)) {
+                return false;
+            }
+            return executable == null || executable.equals(executable(pid));
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2020, Gluon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openjfx;
+
+import org.apache.commons.exec.CommandLine;
+import org.apache.commons.exec.DefaultExecutor;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link DefaultExecutor} that keeps a reference to the launched {@link Process}.
+ * When the command line is executed asynchronously, the process is started from a
+ * separate thread, so callers have to wait for it with {@link #awaitProcess(long, TimeUnit)}.
+ */
+class ProcessTrackingExecutor extends DefaultExecutor {
+
+    private final CountDownLatch launched = new CountDownLatch(1);
+    private volatile Process process;
+
+    @Override
+    protected Process launch(CommandLine command, Map<String, String> env, File dir) throws IOException {
+        try {
+            process = super.launch(command, env, dir);
+            return process;
+        } finally {
+            launched.countDown();
+        }
+    }
+
+    /**
+     * Waits until the process has been launched.
+     * @param timeout the maximum time to wait
+     * @param unit the time unit of the timeout argument
+     * @return the launched process, or null if it couldn't be started in time
+     * @throws InterruptedException if the current thread is interrupted while waiting
+     */
+    Process awaitProcess(long timeout, TimeUnit unit) throws InterruptedException {
+        launched.await(timeout, unit);
+        return process;
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2020, Gluon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openjfx;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Frame statistics collected from the output of the JavaFX pulse logger,
+ * enabled with <code>-Djavafx.pulseLogger=true</code>. Each pulse is logged as:
+ * <pre>
+ * PULSE: 31 [15ms:29ms]
+ * T14 (0 +1ms): CSS Pass
+ * T14 (1 +2ms): Layout Pass
+ * T10 (5 +20ms): Painting
+ * Counters:
+ *     Nodes rendered: 12
+ * </pre>
+ * where the bracket holds the time since the previous pulse and the duration of the pulse.
+ */
+class PulseStatistics {
+
+    private static final Pattern PULSE_PATTERN = Pattern.compile("^\\s*PULSE: (\\d+) \\[(-?\\d+)ms:(-?\\d+)ms]");
+    private static final Pattern PHASE_PATTERN = Pattern.compile("^\\s*T\\d+ \\((-?\\d+) \\+(-?\\d+)ms\\): (.+?)\\s*$");
+    private static final Pattern COUNTER_PATTERN = Pattern.compile("^\\s+(.+?): (\\d+)\\s*$");
+
+    private final List<Long> frameTimes = new ArrayList<>();
+    private final List<Long> intervals = new ArrayList<>();
+    private final Map<String, List<Long>> phases = new LinkedHashMap<>();
+    private final Map<String, Long> counters = new LinkedHashMap<>();
+
+    static PulseStatistics parse(BufferedReader reader) throws IOException {
+        PulseStatistics statistics = new PulseStatistics();
+        boolean inPulse = false;
+        boolean inCounters = false;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            Matcher pulse = PULSE_PATTERN.matcher(line);
+            if (pulse.find()) {
+                inPulse = true;
+                inCounters = false;
+                long interval = Long.parseLong(pulse.group(2));
+                if (interval > 0 && !statistics.frameTimes.isEmpty()) {
+                    // the first interval is measured from an arbitrary origin
+                    statistics.intervals.add(interval);
+                }
+                statistics.frameTimes.add(Long.parseLong(pulse.group(3)));
+                continue;
+            }
+            if (!inPulse) {
+                continue;
+            }
+            if ("Counters:".equals(line.trim())) {
+                inCounters = true;
+                continue;
+            }
+            Matcher phase = PHASE_PATTERN.matcher(line);
+            if (phase.find()) {
+                statistics.phases.computeIfAbsent(phase.group(3), k -> new ArrayList<>())
+                        .add(Long.parseLong(phase.group(2)));
+                continue;
+            }
+            Matcher counter = COUNTER_PATTERN.matcher(line);
+            if (inCounters && counter.find()) {
+                statistics.counters.merge(counter.group(1), Long.parseLong(counter.group(2)), Long::sum);
+                continue;
+            }
+            // any other output of the application ends the current pulse
+            inPulse = false;
+            inCounters = false;
+        }
+        return statistics;
+    }
+
+    int getPulseCount() {
+        return frameTimes.size();
+    }
+
+    Statistics getFrameTimes() {
+        return new Statistics(frameTimes);
+    }
+
+    Statistics getIntervals() {
+        return new Statistics(intervals);
+    }
+
+    Map<String, Statistics> getPhases() {
+        Map<String, Statistics> map = new LinkedHashMap<>();
+        phases.forEach((name, durations) -> map.put(name, new Statistics(durations)));
+        return map;
+    }
+
+    Map<String, Long> getCounters() {
+        return counters;
+    }
+
+    Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("pulses", getPulseCount());
+        Statistics intervalStatistics = getIntervals();
+        map.put("fps", intervalStatistics.mean() > 0 ? Statistics.round(1000 / intervalStatistics.mean()) : 0);
+        map.put("frameTimeMillis", getFrameTimes().toMap());
+        map.put("pulseIntervalMillis", intervalStatistics.toMap());
+        Map<String, Object> phaseMap = new LinkedHashMap<>();
+        getPhases().forEach((name, statistics) -> {
+            Map<String, Object> phase = statistics.toMap();
+            phase.put("total", Statistics.round(statistics.sum()));
+            phaseMap.put(name, phase);
+        });
+        map.put("phasesMillis", phaseMap);
+        map.put("counters", counters);
+        return map;
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2020, Gluon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openjfx;
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Decides when an application launched asynchronously is ready, combining one or more probes:
+ * a regular expression on its output, a TCP port accepting connections and a file being created.
+ * All the configured probes have to succeed.
+ */
+class ReadinessProbe {
+
+    private static final long POLL_INTERVAL_MILLIS = 50;
+    private static final int MAX_LINE_LENGTH = 8192;
+
+    private final Pattern logPattern;
+    private final String host;
+    private final int port;
+    private final File file;
+
+    private volatile boolean logPatternMatched;
+    private volatile long logPatternMatchedNanos;
+
+    /**
+     * @param logPattern regular expression matched against each line of the output, or null
+     * @param host the host of the port probe
+     * @param port the port that has to accept connections, or 0
+     * @param file the file that has to exist, or null
+     */
+    ReadinessProbe(String logPattern, String host, int port, File file) {
+        this.logPattern = logPattern == null || logPattern.isEmpty() ? null : Pattern.compile(logPattern);
+        this.host = host == null || host.isEmpty() ? "localhost" : host;
+        this.port = port;
+        this.file = file;
+    }
+
+    boolean isEnabled() {
+        return logPattern != null || port > 0 || file != null;
+    }
+
+    boolean hasLogPattern() {
+        return logPattern != null;
+    }
+
+    /**
+     * @return the value of {@link System#nanoTime()} when a line matched the log pattern, or 0 if none did
+     */
+    long getLogPatternMatchedNanos() {
+        return logPatternMatched ? logPatternMatchedNanos : 0;
+    }
+
+    /**
+     * Wraps the output stream of the application, so its lines are matched against the log pattern.
+     */
+    OutputStream wrap(OutputStream out) {
+        if (logPattern == null) {
+            return out;
+        }
+        return new FilterOutputStream(out) {
+            private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+                scan(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+                for (int i = off; i < off + len; i++) {
+                    scan(b[i]);
+                }
+            }
+
+            private void scan(int b) {
+                if (logPatternMatched) {
+                    return;
+                }
+                if (b == '\n' || line.size() >= MAX_LINE_LENGTH) {
+                    if (logPattern.matcher(line.toString().trim()).find()) {
+                        logPatternMatchedNanos = System.nanoTime();
+                        logPatternMatched = true;
+                    }
+                    line.reset();
+                } else {
+                    line.write(b);
+                }
+            }
+        };
+    }
+
+    /**
+     * Blocks until all the probes succeed.
+     * @param process the application process, used to fail fast when it exits, can be null
+     * @param timeout the maximum time to wait
+     * @param unit the time unit of the timeout argument
+     * @return the time in milliseconds it took for the application to be ready
+     * @throws MojoExecutionException if the application exits or it is not ready in time
+     */
+    long await(Process process, long timeout, TimeUnit unit) throws MojoExecutionException {
+        long start = System.nanoTime();
+        long deadline = start + unit.toNanos(timeout);
+        while (true) {
+            List<String> pending = getPendingProbes();
+            if (pending.isEmpty()) {
+                return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            }
+            if (process != null && !process.isAlive()) {
+                throw new MojoExecutionException("The application exited with code " + process.exitValue()
+                        + " before it was ready");
+            }
+            if (System.nanoTime() > deadline) {
+                throw new MojoExecutionException("The application was not ready after " + unit.toSeconds(timeout)
+                        + " seconds, waiting for: " + String.join(", ", pending));
+            }
+            try {
+                Thread.sleep(POLL_INTERVAL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new MojoExecutionException("Interrupted while waiting for the application to be ready", e);
+            }
+        }
+    }
+
+    private List<String> getPendingProbes() {
+        List<String> pending = new ArrayList<>();
+        if (logPattern != null && !logPatternMatched) {
+            pending.add("output matching '" + logPattern.pattern() + "'");
+        }
+        if (port > 0 && !isPortOpen()) {
+            pending.add("port " + host + ":" + port);
+        }
+        if (file != null && !file.exists()) {
+            pending.add("file " + file);
+        }
+        return pending;
+    }
+
+    private boolean isPortOpen() {
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(host, port), 200);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
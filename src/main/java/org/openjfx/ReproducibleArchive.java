@@ -0,0 +1,170 @@
+/*
+ * Copyright 2020, Gluon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openjfx;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.archivers.tar.TarConstants;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.openjfx.runtime.ImageHash;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.OptionalLong;
+import java.util.TimeZone;
+
+/**
+ * Creates zip and tar archives of a directory that only depend on the content of its files: the entries are sorted by path,
+ * they all have the same timestamp, and their permissions are normalized to <code>755</code> for directories and
+ * executable files and <code>644</code> for the other files.
+ */
+final class ReproducibleArchive {
+
+    /**
+     * Timestamp of the entries when none is configured, the earliest that the zip format supports in every time zone.
+     */
+    static final long DEFAULT_TIMESTAMP = Instant.parse("1980-01-02T00:00:00Z").toEpochMilli();
+
+    private static final int DIRECTORY_MODE = 040755;
+    private static final int EXECUTABLE_MODE = 0100755;
+    private static final int FILE_MODE = 0100644;
+    private static final int LINK_MODE = 0120777;
+
+    private ReproducibleArchive() {
+    }
+
+    /**
+     * Zips the content of the directory, without the directory itself.
+     * @param timestamp the time of all the entries in milliseconds since the epoch
+     */
+    static void zip(Path directory, Path zip, long timestamp) throws IOException {
+        // zip entries store the local time, this makes them store the UTC time whatever the time zone of the build
+        long localTimestamp = timestamp - TimeZone.getDefault().getOffset(timestamp);
+        Path tmp = Files.createTempFile(zip.toAbsolutePath().getParent(), zip.getFileName().toString(), ".tmp");
+        try {
+            try (ZipArchiveOutputStream zos = new ZipArchiveOutputStream(tmp.toFile())) {
+                for (Path path : ImageHash.sortedPaths(directory)) {
+                    boolean isLink = Files.isSymbolicLink(path);
+                    boolean isDirectory = !isLink && Files.isDirectory(path);
+                    ZipArchiveEntry entry = new ZipArchiveEntry(ImageHash.relativePath(directory, path) + (isDirectory ? "/" : ""));
+                    entry.setTime(localTimestamp);
+                    entry.setUnixMode(isLink ? LINK_MODE : isDirectory ? DIRECTORY_MODE :
+                            Files.isExecutable(path) ? EXECUTABLE_MODE : FILE_MODE);
+                    zos.putArchiveEntry(entry);
+                    if (isLink) {
+                        zos.write(linkTarget(path).getBytes(StandardCharsets.UTF_8));
+                    } else if (!isDirectory) {
+                        Files.copy(path, zos);
+                    }
+                    zos.closeArchiveEntry();
+                }
+            }
+            Files.move(tmp, zip, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Tars the content of the directory, without the directory itself, with the entries owned by root.
+     * @param timestamp the time of all the entries in milliseconds since the epoch
+     */
+    static void tar(Path directory, Path tar, long timestamp) throws IOException {
+        Path tmp = tar.resolveSibling(tar.getFileName() + ".tmp");
+        try {
+            try (TarArchiveOutputStream tos = new TarArchiveOutputStream(Files.newOutputStream(tmp),
+                    StandardCharsets.UTF_8.name())) {
+                tos.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+                tos.setBigNumberMode(TarArchiveOutputStream.BIGNUMBER_POSIX);
+                for (Path path : ImageHash.sortedPaths(directory)) {
+                    boolean isLink = Files.isSymbolicLink(path);
+                    boolean isDirectory = !isLink && Files.isDirectory(path);
+                    String name = ImageHash.relativePath(directory, path) + (isDirectory ? "/" : "");
+                    TarArchiveEntry entry = isLink ? new TarArchiveEntry(name, TarConstants.LF_SYMLINK) :
+                            new TarArchiveEntry(name);
+                    entry.setModTime(timestamp);
+                    entry.setMode(isLink ? LINK_MODE : isDirectory ? DIRECTORY_MODE :
+                            Files.isExecutable(path) ? EXECUTABLE_MODE : FILE_MODE);
+                    entry.setIds(0, 0);
+                    entry.setNames("root", "root");
+                    if (isLink) {
+                        entry.setLinkName(linkTarget(path));
+                    } else if (!isDirectory) {
+                        entry.setSize(Files.size(path));
+                    }
+                    tos.putArchiveEntry(entry);
+                    if (!isLink && !isDirectory) {
+                        Files.copy(path, tos);
+                    }
+                    tos.closeArchiveEntry();
+                }
+            }
+            Files.move(tmp, tar, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Writes the SHA-256 hash of the file or directory to a <code>.sha256</code> file next to it, in the format
+     * of <code>sha256sum</code>.
+     * @return the hash
+     */
+    static String writeHash(Path path) throws IOException {
+        String hash = Files.isDirectory(path) ? ImageHash.hashDirectory(path) : ImageHash.hashFile(path);
+        Path hashFile = path.resolveSibling(path.getFileName() + ".sha256");
+        Files.write(hashFile, (hash + "  " + path.getFileName() + "\n").getBytes(StandardCharsets.UTF_8));
+        return hash;
+    }
+
+    /**
+     * @return the target of the symbolic link, which is archived as a link, like the ones jlink creates to share
+     * the legal notices between modules
+     */
+    private static String linkTarget(Path link) throws IOException {
+        return Files.readSymbolicLink(link).toString().replace('\\', '/');
+    }
+
+    /**
+     * Parses the value of <code>project.build.outputTimestamp</code>, either an ISO 8601 date with an offset
+     * or a number of seconds since the epoch.
+     * @return the timestamp in milliseconds, or empty if the value is not set, since values of one character
+     * are used to disable it
+     * @throws IllegalArgumentException if the value is not valid
+     */
+    static OptionalLong parseOutputTimestamp(String outputTimestamp) {
+        if (outputTimestamp == null || outputTimestamp.trim().length() < 2) {
+            return OptionalLong.empty();
+        }
+        String value = outputTimestamp.trim();
+        if (value.chars().allMatch(Character::isDigit)) {
+            return OptionalLong.of(Long.parseLong(value) * 1000);
+        }
+        try {
+            return OptionalLong.of(OffsetDateTime.parse(value).toInstant().toEpochMilli());
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid project.build.outputTimestamp '" + value
+                    + "', expected an ISO 8601 date like 2020-01-01T00:00:00Z or a number of seconds", e);
+        }
+    }
+}
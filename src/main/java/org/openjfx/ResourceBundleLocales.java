@@ -0,0 +1,80 @@
+/*
+ * Copyright 2020, Gluon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openjfx;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Finds the languages of the resource bundles of a project, from the names of their properties and class files,
+ * like <code>messages_fr.properties</code> or <code>Messages_de_CH.class</code>, to only include the locale data
+ * of these languages in an image.
+ */
+final class ResourceBundleLocales {
+
+    private static final Pattern LOCALE_SUFFIX = Pattern.compile("^(.+?)_([a-z]{2,3})(_[A-Z]{2}|_[0-9]{3})?(_\\w+)?$");
+    private static final Set<String> LANGUAGES = new HashSet<>(Arrays.asList(Locale.getISOLanguages()));
+
+    private ResourceBundleLocales() {
+    }
+
+    /**
+     * A file is taken as a bundle for a language if there is a file with the same base name without locale,
+     * or for another language, to leave out the names that only end like a locale.
+     * @return the languages of the resource bundles under the directory, sorted
+     */
+    static Set<String> detect(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return new TreeSet<>();
+        }
+        List<String> names;
+        try (Stream<Path> files = Files.walk(directory)) {
+            names = files.filter(Files::isRegularFile)
+                    .map(file -> directory.relativize(file).toString().replace('\\', '/'))
+                    .filter(name -> name.endsWith(".properties") || (name.endsWith(".class") && !name.contains("$")))
+                    .map(name -> name.substring(0, name.lastIndexOf('.')))
+                    .collect(Collectors.toList());
+        }
+        Set<String> all = new HashSet<>(names);
+        Map<String, Set<String>> languagesByBundle = new HashMap<>();
+        for (String name : names) {
+            Matcher matcher = LOCALE_SUFFIX.matcher(name);
+            if (matcher.matches() && LANGUAGES.contains(matcher.group(2))) {
+                languagesByBundle.computeIfAbsent(matcher.group(1), bundle -> new TreeSet<>()).add(matcher.group(2));
+            }
+        }
+        Set<String> languages = new TreeSet<>();
+        languagesByBundle.forEach((bundle, bundleLanguages) -> {
+            if (all.contains(bundle) || bundleLanguages.size() > 1) {
+                languages.addAll(bundleLanguages);
+            }
+        });
+        return languages;
+    }
+}
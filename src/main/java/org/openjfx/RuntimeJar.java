@@ -0,0 +1,183 @@
+/*
+ * Copyright 2020, Gluon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openjfx;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.codehaus.plexus.util.IOUtil;
+import org.openjfx.runtime.BinaryDelta;
+import org.openjfx.runtime.ImageHash;
+import org.openjfx.runtime.ImagePatcher;
+import org.openjfx.runtime.JavaFXAgent;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Packages the classes of the <code>org.openjfx.runtime</code> package, which run inside
+ * the application JVM, into a standalone jar that can be passed to <code>-javaagent</code>.
+ */
+class RuntimeJar {
+
+    static final String RUNTIME_DIRECTORY = "javafx-runtime";
+    private static final String JAR_NAME = "javafx-maven-plugin-runtime.jar";
+    private static final String RUNTIME_PACKAGE = "org/openjfx/runtime/";
+
+    private RuntimeJar() {
+    }
+
+    /**
+     * Returns the runtime jar under the given build directory, creating it if it doesn't exist
+     * or if it is older than the plugin classes.
+     */
+    static File get(File builddir) throws MojoExecutionException {
+        Path directory = builddir.toPath().resolve(RUNTIME_DIRECTORY);
+        Path jar = directory.resolve(JAR_NAME);
+        try {
+            Path source = Paths.get(JavaFXAgent.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+            if (Files.exists(jar) && Files.getLastModifiedTime(jar).compareTo(Files.getLastModifiedTime(source)) >= 0) {
+                return jar.toFile();
+            }
+            Files.createDirectories(directory);
+            Path tmp = Files.createTempFile(directory, JAR_NAME, ".tmp");
+            try (JarOutputStream jos = new JarOutputStream(Files.newOutputStream(tmp), createManifest())) {
+                for (Map.Entry<String, byte[]> entry : readRuntimeClasses(source).entrySet()) {
+                    jos.putNextEntry(new JarEntry(entry.getKey()));
+                    jos.write(entry.getValue());
+                    jos.closeEntry();
+                }
+            }
+            try {
+                Files.move(tmp, jar, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, jar, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return jar.toFile();
+        } catch (IOException | URISyntaxException e) {
+            throw new MojoExecutionException("Error creating the runtime jar " + jar, e);
+        }
+    }
+
+    /**
+     * Writes the agent options to a properties file.
+     * @return the <code>-javaagent</code> option that loads the runtime jar with these options
+     */
+    static String createAgentOption(File builddir, String name, Properties options) throws MojoExecutionException {
+        File jar = get(builddir);
+        File optionsFile = new File(jar.getParentFile(), name + ".properties");
+        try (OutputStream os = Files.newOutputStream(optionsFile.toPath())) {
+            options.store(os, "javafx-maven-plugin agent options");
+        } catch (IOException e) {
+            throw new MojoExecutionException("Error writing the agent options " + optionsFile, e);
+        }
+        return "-javaagent:" + jar.getAbsolutePath() + "=" + optionsFile.getAbsolutePath();
+    }
+
+    /**
+     * @return the classes of the runtime package that the {@link ImagePatcher} needs, by entry name
+     */
+    static Map<String, byte[]> readPatcherClasses() throws MojoExecutionException {
+        try {
+            Path source = Paths.get(JavaFXAgent.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+            Map<String, byte[]> classes = readRuntimeClasses(source);
+            classes.keySet().removeIf(name -> Stream.of(ImagePatcher.class, BinaryDelta.class, ImageHash.class)
+                    .noneMatch(c -> name.startsWith(RUNTIME_PACKAGE + c.getSimpleName() + ".")
+                            || name.startsWith(RUNTIME_PACKAGE + c.getSimpleName() + "$")));
+            return classes;
+        } catch (IOException | URISyntaxException e) {
+            throw new MojoExecutionException("Error reading the image patcher classes", e);
+        }
+    }
+
+    /**
+     * Writes an executable jar with the given classes. The entries have a fixed time, so the jar only depends
+     * on the classes.
+     */
+    static void write(OutputStream os, Map<String, byte[]> classes, String mainClass) throws IOException {
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().put(Attributes.Name.MAIN_CLASS, mainClass);
+        try (JarOutputStream jos = new JarOutputStream(os)) {
+            JarEntry manifestEntry = new JarEntry(JarFile.MANIFEST_NAME);
+            manifestEntry.setTime(ReproducibleArchive.DEFAULT_TIMESTAMP);
+            jos.putNextEntry(manifestEntry);
+            manifest.write(jos);
+            jos.closeEntry();
+            for (Map.Entry<String, byte[]> entry : new TreeMap<>(classes).entrySet()) {
+                JarEntry jarEntry = new JarEntry(entry.getKey());
+                jarEntry.setTime(ReproducibleArchive.DEFAULT_TIMESTAMP);
+                jos.putNextEntry(jarEntry);
+                jos.write(entry.getValue());
+                jos.closeEntry();
+            }
+        }
+    }
+
+    private static Manifest createManifest() {
+        Manifest manifest = new Manifest();
+        Attributes attributes = manifest.getMainAttributes();
+        attributes.put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        attributes.put(new Attributes.Name("Premain-Class"), JavaFXAgent.class.getName());
+        return manifest;
+    }
+
+    private static Map<String, byte[]> readRuntimeClasses(Path source) throws IOException {
+        Map<String, byte[]> classes = new TreeMap<>();
+        if (Files.isDirectory(source)) {
+            // plugin classes in a directory, i.e. running from the IDE or the tests
+            Path runtimeDirectory = source.resolve(RUNTIME_PACKAGE);
+            try (Stream<Path> files = Files.walk(runtimeDirectory)) {
+                List<Path> paths = files.filter(Files::isRegularFile).collect(Collectors.toList());
+                for (Path path : paths) {
+                    classes.put(RUNTIME_PACKAGE + runtimeDirectory.relativize(path).toString().replace(File.separatorChar, '/'),
+                            Files.readAllBytes(path));
+                }
+            }
+        } else {
+            try (JarFile jarFile = new JarFile(source.toFile())) {
+                Enumeration<JarEntry> entries = jarFile.entries();
+                while (entries.hasMoreElements()) {
+                    JarEntry entry = entries.nextElement();
+                    if (!entry.isDirectory() && entry.getName().startsWith(RUNTIME_PACKAGE)) {
+                        try (InputStream is = jarFile.getInputStream(entry)) {
+                            classes.put(entry.getName(), IOUtil.toByteArray(is));
+                        }
+                    }
+                }
+            }
+        }
+        return classes;
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright 2020, Gluon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openjfx;
+
+import org.codehaus.plexus.util.IOUtil;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Finds the modules that provide the services an application uses, to link only these instead of binding
+ * all the service providers with <code>--bind-services</code>. The services used are the ones declared with
+ * <code>uses</code> by the modules of the application and of its dependencies, and the ones loaded with
+ * <code>ServiceLoader.load(Service.class)</code> in their classes. The providers of these services are
+ * looked up in all the modules that can be linked, and the services the providers use, unless they are
+ * modules of the JDK, are followed as well.
+ */
+final class ServiceBindings {
+
+    private static final String MODULE_INFO = "module-info.class";
+    private static final String JMOD_MODULE_INFO = "classes/" + MODULE_INFO;
+
+    private ServiceBindings() {
+    }
+
+    /**
+     * The services a module uses and provides.
+     */
+    static final class Module {
+        private final String name;
+        private final boolean jdk;
+        private final Set<String> uses = new TreeSet<>();
+        private final Map<String, List<String>> provides = new TreeMap<>();
+        private final Set<String> unresolvedServiceLoads = new TreeSet<>();
+
+        Module(String name, boolean jdk) {
+            this.name = name;
+            this.jdk = jdk;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        Set<String> getUses() {
+            return uses;
+        }
+
+        Map<String, List<String>> getProvides() {
+            return provides;
+        }
+
+        Set<String> getUnresolvedServiceLoads() {
+            return unresolvedServiceLoads;
+        }
+
+        private void add(ClassFileScanner scanner) {
+            if (scanner.getModuleName() != null) {
+                uses.addAll(scanner.getModuleUses());
+                provides.putAll(scanner.getModuleProvides());
+            } else {
+                uses.addAll(scanner.getLoadedServices());
+                unresolvedServiceLoads.addAll(scanner.getUnresolvedServiceLoads());
+            }
+        }
+    }
+
+    /**
+     * Reads the module declaration of every jmod of the directory.
+     * @param jdk true if the directory has the jmods of the JDK
+     */
+    static List<Module> scanJmods(Path directory, boolean jdk) throws IOException {
+        List<Module> modules = new ArrayList<>();
+        if (directory == null || !Files.isDirectory(directory)) {
+            return modules;
+        }
+        List<Path> jmods;
+        try (Stream<Path> files = Files.list(directory)) {
+            jmods = files.filter(file -> file.getFileName().toString().endsWith(".jmod"))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+        for (Path jmod : jmods) {
+            try (ZipFile zipFile = new ZipFile(jmod.toFile())) {
+                ZipEntry entry = zipFile.getEntry(JMOD_MODULE_INFO);
+                if (entry == null) {
+                    continue;
+                }
+                ClassFileScanner scanner;
+                try (InputStream is = zipFile.getInputStream(entry)) {
+                    scanner = scanClass(is, jmod + "!/" + JMOD_MODULE_INFO);
+                }
+                Module module = new Module(scanner.getModuleName(), jdk);
+                module.add(scanner);
+                modules.add(module);
+            }
+        }
+        return modules;
+    }
+
+    /**
+     * Reads the module declaration and the service loads of the classes of a modular jar or directory.
+     * @param name the name of the module, for automatic modules that have no declaration
+     */
+    static Module scan(Path path, String name) throws IOException {
+        Module module = new Module(name, false);
+        if (Files.isDirectory(path)) {
+            List<Path> classes;
+            try (Stream<Path> files = Files.walk(path)) {
+                classes = files.filter(file -> file.getFileName().toString().endsWith(".class"))
+                        .sorted()
+                        .collect(Collectors.toList());
+            }
+            for (Path file : classes) {
+                module.add(scanClass(Files.readAllBytes(file), file.toString()));
+            }
+        } else if (Files.isRegularFile(path)) {
+            try (ZipFile zipFile = new ZipFile(path.toFile())) {
+                Enumeration<? extends ZipEntry> entries = zipFile.entries();
+                while (entries.hasMoreElements()) {
+                    ZipEntry entry = entries.nextElement();
+                    String entryName = entry.getName();
+                    // versioned module declarations are as relevant as the root one, other versioned classes duplicate
+                    if (!entryName.endsWith(".class") || (entryName.startsWith("META-INF/")
+                            && !entryName.endsWith("/" + MODULE_INFO))) {
+                        continue;
+                    }
+                    try (InputStream is = zipFile.getInputStream(entry)) {
+                        module.add(scanClass(is, path + "!/" + entryName));
+                    }
+                }
+            }
+        }
+        return module;
+    }
+
+    /**
+     * @param application the modules of the application and of its dependencies
+     * @param candidates all the modules that can be linked, including the JDK modules
+     * @return the services each module provides to the application, by module, without the modules
+     * of the application
+     */
+    static Map<String, Set<String>> providers(Collection<Module> application, Collection<Module> candidates) {
+        Set<String> applicationModules = application.stream().map(Module::getName).collect(Collectors.toSet());
+        Map<String, Set<String>> providers = new TreeMap<>();
+        Set<String> services = new HashSet<>();
+        Deque<String> queue = new ArrayDeque<>();
+        application.forEach(module -> queue.addAll(module.getUses()));
+        while (!queue.isEmpty()) {
+            String service = queue.poll();
+            if (!services.add(service)) {
+                continue;
+            }
+            for (Module candidate : candidates) {
+                if (!candidate.getProvides().containsKey(service) || applicationModules.contains(candidate.getName())) {
+                    continue;
+                }
+                if (!providers.containsKey(candidate.getName()) && !candidate.jdk) {
+                    queue.addAll(candidate.getUses());
+                }
+                providers.computeIfAbsent(candidate.getName(), name -> new TreeSet<>()).add(service);
+            }
+        }
+        return providers;
+    }
+
+    /**
+     * @return the methods of the application that load services with a class that isn't a constant
+     */
+    static Set<String> unresolvedServiceLoads(Collection<Module> application) {
+        Set<String> unresolved = new TreeSet<>();
+        application.forEach(module -> unresolved.addAll(module.getUnresolvedServiceLoads()));
+        return Collections.unmodifiableSet(unresolved);
+    }
+
+    private static ClassFileScanner scanClass(InputStream is, String name) throws IOException {
+        return scanClass(IOUtil.toByteArray(is), name);
+    }
+
+    private static ClassFileScanner scanClass(byte[] bytes, String name) throws IOException {
+        try {
+            return new ClassFileScanner(bytes);
+        } catch (IOException | RuntimeException e) {
+            throw new IOException("Invalid class file " + name, e);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2020, Gluon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openjfx;
+
+import org.apache.maven.execution.MavenSession;
+import org.eclipse.aether.SessionData;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * Values shared by all the plugin executions of a Maven session, i.e. by all the modules of a reactor build.
+ * The cache is kept in the data of the repository session, so it is discarded when the session ends.
+ */
+final class SessionCache {
+
+    // the class itself, so different versions of the plugin in the same session don't share the cache
+    private static final Object KEY = SessionCache.class;
+
+    private final ConcurrentMap<Object, Object> values = new ConcurrentHashMap<>();
+
+    private SessionCache() {
+    }
+
+    /**
+     * @return the cache of the given session, or a new empty cache if there is no session
+     */
+    static SessionCache get(MavenSession session) {
+        if (session == null || session.getRepositorySession() == null) {
+            return new SessionCache();
+        }
+        SessionData data = session.getRepositorySession().getData();
+        while (true) {
+            Object cache = data.get(KEY);
+            if (cache != null) {
+                return (SessionCache) cache;
+            }
+            SessionCache newCache = new SessionCache();
+            if (data.set(KEY, null, newCache)) {
+                return newCache;
+            }
+        }
+    }
+
+    /**
+     * Returns the value of the given key, computing it only once per session.
+     * The key has to identify the value, including its type.
+     */
+    @SuppressWarnings("unchecked")
+    <K, V> V computeIfAbsent(K key, Function<K, V> function) {
+        return (V) values.computeIfAbsent(key, k -> function.apply((K) k));
+    }
+
+    /**
+     * @return the value of the given key, or null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    <V> V get(Object key) {
+        return (V) values.get(key);
+    }
+
+    void put(Object key, Object value) {
+        values.put(key, value);
+    }
+
+    int size() {
+        return values.size();
+    }
+}
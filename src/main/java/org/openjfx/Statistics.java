@@ -0,0 +1,96 @@
+/*
+ * Copyright 2020, Gluon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openjfx;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Descriptive statistics of a sample of measurements.
+ */
+class Statistics {
+
+    private final double[] values;
+
+    Statistics(Collection<? extends Number> sample) {
+        values = sample.stream().mapToDouble(Number::doubleValue).sorted().toArray();
+    }
+
+    int count() {
+        return values.length;
+    }
+
+    double min() {
+        return values.length == 0 ? 0 : values[0];
+    }
+
+    double max() {
+        return values.length == 0 ? 0 : values[values.length - 1];
+    }
+
+    double sum() {
+        return Arrays.stream(values).sum();
+    }
+
+    double mean() {
+        return values.length == 0 ? 0 : sum() / values.length;
+    }
+
+    double stddev() {
+        if (values.length < 2) {
+            return 0;
+        }
+        double mean = mean();
+        double squares = Arrays.stream(values).map(v -> (v - mean) * (v - mean)).sum();
+        return Math.sqrt(squares / (values.length - 1));
+    }
+
+    /**
+     * Nearest-rank percentile.
+     * @param percentile a value in the range (0, 100]
+     */
+    double percentile(double percentile) {
+        if (values.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percentile / 100 * values.length);
+        return values[Math.max(0, Math.min(values.length, rank) - 1)];
+    }
+
+    /**
+     * @return the count, mean, min, max, stddev and the 50th, 90th, 95th and 99th percentiles,
+     * suitable for a JSON report
+     */
+    Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("count", count());
+        map.put("mean", round(mean()));
+        map.put("min", round(min()));
+        map.put("max", round(max()));
+        map.put("stddev", round(stddev()));
+        map.put("p50", round(percentile(50)));
+        map.put("p90", round(percentile(90)));
+        map.put("p95", round(percentile(95)));
+        map.put("p99", round(percentile(99)));
+        return map;
+    }
+
+    static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+}
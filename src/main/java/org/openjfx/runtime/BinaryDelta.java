@@ -0,0 +1,274 @@
+/*
+ * Copyright 2020, Gluon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openjfx.runtime;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Binary delta between two versions of a file, in the spirit of rsync: the blocks of the source are indexed by
+ * a rolling checksum, which is then computed at every offset of the target to find the blocks it shares with the
+ * source, even when they moved. The delta is a sequence of instructions that copy ranges of the source and insert
+ * the bytes of the target that were not found:
+ * <pre>
+ *     delta   = "JFXD" version:u1 targetLength:varint instruction* END
+ *     instruction = COPY offset:varint length:varint | INSERT length:varint bytes
+ * </pre>
+ * The delta isn't compressed, as it is stored in a zip.
+ */
+public final class BinaryDelta {
+
+    private static final byte[] MAGIC = {'J', 'F', 'X', 'D'};
+    private static final int VERSION = 1;
+    private static final int END = 0;
+    private static final int COPY = 1;
+    private static final int INSERT = 2;
+
+    private static final int MIN_BLOCK_SIZE = 32;
+    private static final int MAX_BLOCK_SIZE = 512;
+
+    private BinaryDelta() {
+    }
+
+    /**
+     * @return the delta that transforms the source into the target
+     */
+    public static byte[] diff(byte[] source, byte[] target) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.write(MAGIC);
+            out.writeByte(VERSION);
+            writeVarint(out, target.length);
+
+            int blockSize = blockSize(source.length);
+            BlockIndex index = new BlockIndex(source, blockSize);
+            int literal = 0;
+            int position = 0;
+            RollingChecksum checksum = target.length >= blockSize ? new RollingChecksum(target, 0, blockSize) : null;
+            while (position + blockSize <= target.length) {
+                int offset = index.find(checksum.value(), target, position);
+                if (offset >= 0) {
+                    // extend the match backwards over the pending literal bytes, and forwards
+                    int sourceStart = offset;
+                    int targetStart = position;
+                    while (targetStart > literal && sourceStart > 0 && source[sourceStart - 1] == target[targetStart - 1]) {
+                        sourceStart--;
+                        targetStart--;
+                    }
+                    int length = position - targetStart + blockSize;
+                    while (sourceStart + length < source.length && targetStart + length < target.length
+                            && source[sourceStart + length] == target[targetStart + length]) {
+                        length++;
+                    }
+                    writeInsert(out, target, literal, targetStart - literal);
+                    out.writeByte(COPY);
+                    writeVarint(out, sourceStart);
+                    writeVarint(out, length);
+
+                    position = targetStart + length;
+                    literal = position;
+                    if (position + blockSize <= target.length) {
+                        checksum = new RollingChecksum(target, position, blockSize);
+                    }
+                    continue;
+                }
+                if (position + blockSize < target.length) {
+                    checksum.roll(target[position], target[position + blockSize]);
+                }
+                position++;
+            }
+            writeInsert(out, target, literal, target.length - literal);
+            out.writeByte(END);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Writes the target of the delta, given its source.
+     * @throws IOException if the delta is not valid for the source
+     */
+    public static void apply(byte[] source, InputStream delta, OutputStream target) throws IOException {
+        DataInputStream in = new DataInputStream(delta);
+        byte[] magic = new byte[MAGIC.length];
+        in.readFully(magic);
+        if (!Arrays.equals(magic, MAGIC) || in.readUnsignedByte() != VERSION) {
+            throw new IOException("Not a binary delta");
+        }
+        long targetLength = readVarint(in);
+        long written = 0;
+        byte[] buffer = new byte[64 * 1024];
+        while (true) {
+            int instruction = in.readUnsignedByte();
+            if (instruction == END) {
+                break;
+            } else if (instruction == COPY) {
+                long offset = readVarint(in);
+                long length = readVarint(in);
+                if (offset + length > source.length) {
+                    throw new IOException("The delta copies bytes beyond the end of the source");
+                }
+                target.write(source, (int) offset, (int) length);
+                written += length;
+            } else if (instruction == INSERT) {
+                long length = readVarint(in);
+                for (long remaining = length; remaining > 0; ) {
+                    int count = (int) Math.min(buffer.length, remaining);
+                    in.readFully(buffer, 0, count);
+                    target.write(buffer, 0, count);
+                    remaining -= count;
+                }
+                written += length;
+            } else {
+                throw new IOException("Invalid instruction " + instruction + " in the delta");
+            }
+        }
+        if (written != targetLength) {
+            throw new IOException("The delta wrote " + written + " bytes instead of " + targetLength);
+        }
+    }
+
+    /**
+     * Larger files have larger blocks, so their index stays small, at the cost of missing shorter matches.
+     */
+    static int blockSize(int sourceLength) {
+        int size = Integer.highestOneBit(Math.max(1, (int) Math.sqrt(sourceLength) / 4));
+        return Math.max(MIN_BLOCK_SIZE, Math.min(MAX_BLOCK_SIZE, size));
+    }
+
+    private static void writeInsert(DataOutputStream out, byte[] target, int offset, int length) throws IOException {
+        if (length > 0) {
+            out.writeByte(INSERT);
+            writeVarint(out, length);
+            out.write(target, offset, length);
+        }
+    }
+
+    private static void writeVarint(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarint(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new EOFException("Invalid varint in the delta");
+    }
+
+    /**
+     * Adler-32 like checksum of a window of bytes, that can be moved by one byte in constant time.
+     */
+    private static final class RollingChecksum {
+        private final int size;
+        private int a;
+        private int b;
+
+        RollingChecksum(byte[] data, int offset, int size) {
+            this.size = size;
+            for (int i = 0; i < size; i++) {
+                int x = data[offset + i] & 0xFF;
+                a += x;
+                b += (size - i) * x;
+            }
+        }
+
+        void roll(byte out, byte in) {
+            int x = out & 0xFF;
+            a += (in & 0xFF) - x;
+            b += a - size * x;
+        }
+
+        int value() {
+            return (a & 0xFFFF) | (b << 16);
+        }
+    }
+
+    /**
+     * Open addressing table from the checksum of each block of the source to its offset, the first block wins.
+     */
+    private static final class BlockIndex {
+        private final byte[] source;
+        private final int blockSize;
+        private final int[] checksums;
+        private final int[] offsets;
+        private final int mask;
+        private final int shift;
+
+        BlockIndex(byte[] source, int blockSize) {
+            this.source = source;
+            this.blockSize = blockSize;
+            int blocks = source.length / blockSize;
+            int capacity = Integer.highestOneBit(Math.max(1, blocks) * 2) * 2;
+            checksums = new int[capacity];
+            offsets = new int[capacity];
+            Arrays.fill(offsets, -1);
+            mask = capacity - 1;
+            shift = Integer.numberOfLeadingZeros(mask);
+            for (int block = 0; block < blocks; block++) {
+                int offset = block * blockSize;
+                int checksum = new RollingChecksum(source, offset, blockSize).value();
+                int slot = slot(checksum);
+                while (offsets[slot] >= 0 && checksums[slot] != checksum) {
+                    slot = (slot + 1) & mask;
+                }
+                if (offsets[slot] < 0) {
+                    checksums[slot] = checksum;
+                    offsets[slot] = offset;
+                }
+            }
+        }
+
+        /**
+         * @return the offset of a block of the source equal to the target at the given position, or -1
+         */
+        int find(int checksum, byte[] target, int position) {
+            for (int slot = slot(checksum); offsets[slot] >= 0; slot = (slot + 1) & mask) {
+                if (checksums[slot] == checksum) {
+                    int offset = offsets[slot];
+                    for (int i = 0; i < blockSize; i++) {
+                        if (source[offset + i] != target[position + i]) {
+                            return -1;
+                        }
+                    }
+                    return offset;
+                }
+            }
+            return -1;
+        }
+
+        private int slot(int checksum) {
+            // the high bits of the product mix all the bits of the checksum
+            return (checksum * 0x9E3779B1) >>> shift & mask;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2020, Gluon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openjfx.runtime;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Converts stylesheets to the binary format with the <code>Css2Bin</code> tool of JavaFX, several files
+ * in the same JVM. The argument is a file with a line per stylesheet: the source and the target, separated
+ * by a tab. It requires access to the <code>com.sun.javafx.css.parser</code> package of <code>javafx.graphics</code>.
+ */
+public final class Css2Bss {
+
+    private static final String CSS2BIN_CLASS = "com.sun.javafx.css.parser.Css2Bin";
+
+    private Css2Bss() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 1) {
+            System.err.println("Usage: Css2Bss <file list>");
+            System.exit(2);
+        }
+        Method convertToBinary = Class.forName(CSS2BIN_CLASS).getMethod("convertToBinary", String.class, String.class);
+        List<String> lines = Files.readAllLines(Paths.get(args[0]), StandardCharsets.UTF_8);
+        int failed = 0;
+        for (String line : lines) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            String[] files = line.split("\t");
+            try {
+                convertToBinary.invoke(null, files[0], files[1]);
+            } catch (InvocationTargetException e) {
+                System.err.println("Error converting " + files[0] + ": " + e.getCause());
+                failed++;
+            }
+        }
+        System.exit(failed == 0 ? 0 : 1);
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2020, Gluon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openjfx.runtime;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reflective access to the JavaFX API from inside the application JVM.
+ * The runtime classes can't link against JavaFX, since they are loaded
+ * before the application and regardless of how JavaFX is resolved.
+ */
+final class FX {
+
+    static final String FX_THREAD_NAME = "JavaFX Application Thread";
+
+    private FX() {
+    }
+
+    static Class<?> type(String className) {
+        try {
+            return Class.forName(className, false, ClassLoader.getSystemClassLoader());
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("JavaFX class not found: " + className, e);
+        }
+    }
+
+    static Object invoke(Object target, String methodName, Object... args) {
+        if (target instanceof Class) {
+            return invokeOn((Class<?>) target, null, methodName, args);
+        }
+        return invokeOn(target.getClass(), target, methodName, args);
+    }
+
+    /**
+     * Invokes a method of the given public JavaFX type on an instance of one of its subtypes,
+     * which may not be accessible itself, e.g. a skin class in a non exported package.
+     */
+    static Object invokeAs(String typeName, Object target, String methodName, Object... args) {
+        return invokeOn(type(typeName), target, methodName, args);
+    }
+
+    private static Object invokeOn(Class<?> type, Object target, String methodName, Object... args) {
+        try {
+            for (Method method : type.getMethods()) {
+                if (method.getName().equals(methodName) && method.getParameterCount() == args.length) {
+                    return method.invoke(target, args);
+                }
+            }
+            throw new NoSuchMethodException(type.getName() + "." + methodName);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Error invoking " + methodName, e);
+        }
+    }
+
+    static boolean isToolkitRunning() {
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (FX_THREAD_NAME.equals(thread.getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static void runLater(Runnable runnable) {
+        invoke(type("javafx.application.Platform"), "runLater", runnable);
+    }
+
+    /**
+     * Must be called on the JavaFX Application Thread.
+     * @return a snapshot of the windows that are currently showing
+     */
+    static List<Object> showingWindows() {
+        Object windows = invoke(type("javafx.stage.Window"), "getWindows");
+        if (windows == null) {
+            return Collections.emptyList();
+        }
+        List<Object> showing = new ArrayList<>();
+        for (Object window : (List<?>) windows) {
+            if ((Boolean) invoke(window, "isShowing")) {
+                showing.add(window);
+            }
+        }
+        return showing;
+    }
+}
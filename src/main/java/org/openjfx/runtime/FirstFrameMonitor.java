@@ -0,0 +1,75 @@
+/*
+ * Copyright 2020, Gluon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openjfx.runtime;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Waits in a daemon thread until the first JavaFX window is showing, and then
+ * notifies the registered listeners on the JavaFX Application Thread.
+ */
+final class FirstFrameMonitor implements Runnable {
+
+    private static final long POLL_INTERVAL_MILLIS = 10;
+
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+
+    void addListener(Runnable listener) {
+        listeners.add(listener);
+    }
+
+    void start() {
+        Thread thread = new Thread(this, "javafx-maven-plugin first frame monitor");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (!FX.isToolkitRunning()) {
+                Thread.sleep(POLL_INTERVAL_MILLIS);
+            }
+            while (!isWindowShowing()) {
+                Thread.sleep(POLL_INTERVAL_MILLIS);
+            }
+            // the window has been shown, the listeners run once its first pulse has been processed
+            FX.runLater(() -> listeners.forEach(Runnable::run));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            System.err.println("javafx-maven-plugin agent: unable to detect the first frame: " + e);
+        }
+    }
+
+    private static boolean isWindowShowing() throws InterruptedException {
+        AtomicBoolean showing = new AtomicBoolean();
+        CountDownLatch done = new CountDownLatch(1);
+        FX.runLater(() -> {
+            try {
+                showing.set(!FX.showingWindows().isEmpty());
+            } finally {
+                done.countDown();
+            }
+        });
+        done.await(1, TimeUnit.SECONDS);
+        return showing.get();
+    }
+}
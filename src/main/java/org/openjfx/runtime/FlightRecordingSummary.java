@@ -0,0 +1,172 @@
+/*
+ * Copyright 2020, Gluon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openjfx.runtime;
+
+import java.io.PrintStream;
+import java.lang.reflect.Method;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.LongFunction;
+
+/**
+ * Prints a summary of a Flight Recorder recording: the top allocation sites, the hot methods,
+ * the garbage collection pauses and the time the JavaFX Application Thread spent blocked.
+ * <p>
+ * It runs with the <code>java</code> executable of the application, since the plugin itself may
+ * run on a JVM without <code>jdk.jfr</code>, and it uses reflection so it can be compiled for Java 8.
+ * <pre>
+ * java -cp javafx-maven-plugin-runtime.jar org.openjfx.runtime.FlightRecordingSummary recording.jfr [top]
+ * </pre>
+ */
+public final class FlightRecordingSummary {
+
+    private static final List<String> ALLOCATION_EVENTS = Arrays.asList(
+            "jdk.ObjectAllocationSample", "jdk.ObjectAllocationInNewTLAB", "jdk.ObjectAllocationOutsideTLAB");
+    private static final List<String> BLOCKING_EVENTS = Arrays.asList(
+            "jdk.JavaMonitorEnter", "jdk.JavaMonitorWait", "jdk.ThreadPark", "jdk.ThreadSleep",
+            "jdk.FileRead", "jdk.FileWrite", "jdk.SocketRead", "jdk.SocketWrite");
+
+    private final Map<String, Long> allocations = new HashMap<>();
+    private final Map<String, Long> executionSamples = new HashMap<>();
+    private final List<Long> gcPauses = new ArrayList<>();
+    private final Map<String, long[]> fxBlocking = new TreeMap<>();
+    private final Map<String, Long> fxBlockingSites = new HashMap<>();
+    private long executionSampleCount;
+
+    private FlightRecordingSummary() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: FlightRecordingSummary <recording.jfr> [top]");
+            System.exit(2);
+        }
+        int top = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        summarize(Paths.get(args[0]), top, System.out);
+    }
+
+    static void summarize(Path recording, int top, PrintStream out) throws Exception {
+        FlightRecordingSummary summary = new FlightRecordingSummary();
+        summary.read(recording);
+        summary.print(top, out);
+    }
+
+    private void read(Path recording) throws Exception {
+        Class<?> recordingFile = Class.forName("jdk.jfr.consumer.RecordingFile");
+        List<?> events = (List<?>) recordingFile.getMethod("readAllEvents", Path.class).invoke(null, recording);
+        for (Object event : events) {
+            String name = (String) invoke(invoke(event, "getEventType"), "getName");
+            if (ALLOCATION_EVENTS.contains(name)) {
+                String field = "jdk.ObjectAllocationSample".equals(name) ? "weight"
+                        : "jdk.ObjectAllocationInNewTLAB".equals(name) ? "tlabSize" : "allocationSize";
+                allocations.merge(topFrame(event), (Long) invoke(event, "getLong", field), Long::sum);
+            } else if ("jdk.ExecutionSample".equals(name)) {
+                executionSamples.merge(topFrame(event), 1L, Long::sum);
+                executionSampleCount++;
+            } else if ("jdk.GarbageCollection".equals(name)) {
+                Duration pause = (Duration) invoke(event, "getDuration", "sumOfPauses");
+                gcPauses.add(pause.toNanos());
+            } else if (BLOCKING_EVENTS.contains(name) && isFxThread(event)) {
+                long nanos = ((Duration) invoke(event, "getDuration")).toNanos();
+                long[] total = fxBlocking.computeIfAbsent(name, k -> new long[2]);
+                total[0]++;
+                total[1] += nanos;
+                fxBlockingSites.merge(topFrame(event), nanos, Long::sum);
+            }
+        }
+    }
+
+    private void print(int top, PrintStream out) {
+        out.println("Top allocation sites:");
+        printTop(out, allocations, top, bytes -> String.format("%10.1f MB", bytes / (1024.0 * 1024.0)));
+
+        out.println("Hot methods (" + executionSampleCount + " samples):");
+        printTop(out, executionSamples, top, count -> String.format("%9.1f %%", 100.0 * count / executionSampleCount));
+
+        out.println("GC pauses: " + gcPauses.size());
+        if (!gcPauses.isEmpty()) {
+            Collections.sort(gcPauses);
+            out.println(String.format("   p50 %.2f ms, p95 %.2f ms, p99 %.2f ms, max %.2f ms, total %.2f ms",
+                    millis(percentile(gcPauses, 50)), millis(percentile(gcPauses, 95)),
+                    millis(percentile(gcPauses, 99)), millis(gcPauses.get(gcPauses.size() - 1)),
+                    millis(gcPauses.stream().mapToLong(Long::longValue).sum())));
+        }
+
+        out.println("JavaFX Application Thread blocked:");
+        if (fxBlocking.isEmpty()) {
+            out.println("   no blocking events above the recording thresholds");
+        }
+        fxBlocking.forEach((name, total) ->
+                out.println(String.format("   %-24s %6d events, %10.2f ms", name, total[0], millis(total[1]))));
+        printTop(out, fxBlockingSites, top, nanos -> String.format("%10.2f ms", millis(nanos)));
+    }
+
+    private static void printTop(PrintStream out, Map<String, Long> values, int top, LongFunction<String> format) {
+        values.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .limit(top)
+                .forEach(e -> out.println("   " + format.apply(e.getValue()) + "  " + e.getKey()));
+    }
+
+    private static boolean isFxThread(Object event) throws Exception {
+        Object thread = invoke(event, "getThread");
+        return thread != null && FX.FX_THREAD_NAME.equals(invoke(thread, "getJavaName"));
+    }
+
+    /**
+     * @return the first frame of the event stack trace, as <code>class.method:line</code>
+     */
+    private static String topFrame(Object event) throws Exception {
+        Object stackTrace = invoke(event, "getStackTrace");
+        if (stackTrace == null) {
+            return "<no stack trace>";
+        }
+        List<?> frames = (List<?>) invoke(stackTrace, "getFrames");
+        if (frames.isEmpty()) {
+            return "<no stack trace>";
+        }
+        Object frame = frames.get(0);
+        Object method = invoke(frame, "getMethod");
+        String type = (String) invoke(invoke(method, "getType"), "getName");
+        return type + "." + invoke(method, "getName") + ":" + invoke(frame, "getLineNumber");
+    }
+
+    static long percentile(List<Long> sorted, double percentile) {
+        int rank = (int) Math.ceil(percentile / 100 * sorted.size());
+        return sorted.get(Math.max(0, Math.min(sorted.size(), rank) - 1));
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    private static Object invoke(Object target, String methodName, Object... args) throws Exception {
+        for (Method method : target.getClass().getMethods()) {
+            if (method.getName().equals(methodName) && method.getParameterCount() == args.length) {
+                return method.invoke(target, args);
+            }
+        }
+        throw new NoSuchMethodException(target.getClass().getName() + "." + methodName);
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2020, Gluon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openjfx.runtime;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * SHA-256 hashes of runtime images. Used by the plugin when it publishes the hash of an image or creates
+ * a patch, and by the {@link ImagePatcher} shipped in the image, so both compute the same hashes.
+ */
+public final class ImageHash {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private ImageHash() {
+    }
+
+    /**
+     * Hashes the paths, executable bits and content of the files of a directory, in path order.
+     * @return the SHA-256 hash in hexadecimal
+     */
+    public static String hashDirectory(Path directory) throws IOException {
+        MessageDigest digest = sha256();
+        for (Path path : sortedPaths(directory)) {
+            if (Files.isDirectory(path)) {
+                continue;
+            }
+            String header = relativePath(directory, path) + "\0" + (Files.isExecutable(path) ? "x" : "-") + "\0"
+                    + Files.size(path) + "\0" + hashFile(path) + "\n";
+            digest.update(header.getBytes(StandardCharsets.UTF_8));
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * @return the SHA-256 hash of the file in hexadecimal
+     */
+    public static String hashFile(Path file) throws IOException {
+        MessageDigest digest = sha256();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream is = Files.newInputStream(file)) {
+            int read;
+            while ((read = is.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * @return the files and directories under the directory, without it, sorted by their relative path
+     */
+    public static List<Path> sortedPaths(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            return paths.filter(path -> !path.equals(directory))
+                    .sorted((a, b) -> relativePath(directory, a).compareTo(relativePath(directory, b)))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * @return the path relative to the directory, with <code>/</code> as separator
+     */
+    public static String relativePath(Path directory, Path path) {
+        return directory.relativize(path).toString().replace('\\', '/');
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : bytes) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+}
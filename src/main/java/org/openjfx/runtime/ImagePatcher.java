@@ -0,0 +1,213 @@
+/*
+ * Copyright 2020, Gluon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openjfx.runtime;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Applies a patch created by the <code>jlink</code> goal to a runtime image, and verifies the hash of every
+ * patched file and of the resulting image. It is shipped in the image, in <code>lib/image-patcher.jar</code>,
+ * with the <code>bin/patch-image</code> scripts:
+ * <pre>
+ *     bin/patch-image image-patch.zip [output directory]
+ * </pre>
+ * Without an output directory, the image is patched in place, which Windows doesn't allow while the image
+ * runs, since its files are locked. With an output directory, the patched image is created there, and the
+ * original image is left untouched.
+ * <p>
+ * A patch is a zip with the list of operations in {@link #MANIFEST}, in this format:
+ * <pre>
+ *     image-patch 1
+ *     from &lt;hash of the original image&gt;
+ *     to &lt;hash of the patched image&gt;
+ *     delete &lt;path&gt;
+ *     add &lt;x|-&gt; &lt;hash&gt; &lt;path&gt;     the file is in the entry files/&lt;path&gt;
+ *     delta &lt;x|-&gt; &lt;hash&gt; &lt;path&gt;   the {@link BinaryDelta} from the original file is in the entry deltas/&lt;path&gt;
+ *     mode &lt;x|-&gt; &lt;path&gt;            only the executable bit changed
+ * </pre>
+ * The hashes are computed with {@link ImageHash}.
+ */
+public final class ImagePatcher {
+
+    public static final String MANIFEST = "META-INF/image-patch.txt";
+    public static final String HEADER = "image-patch 1";
+    public static final String FILES = "files/";
+    public static final String DELTAS = "deltas/";
+
+    private ImagePatcher() {
+    }
+
+    /**
+     * Arguments: the image, the patch and optionally the output directory.
+     */
+    public static void main(String[] args) {
+        if (args.length < 2 || args.length > 3) {
+            System.err.println("Usage: ImagePatcher <image> <patch> [<output directory>]");
+            System.exit(2);
+        }
+        try {
+            patch(Paths.get(args[0]).normalize(), Paths.get(args[1]), args.length == 3 ? Paths.get(args[2]) : null);
+            System.out.println("Patched " + (args.length == 3 ? args[2] : Paths.get(args[0]).normalize()));
+        } catch (IOException e) {
+            System.err.println("Error patching the image: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Patches the image, in place if the output directory is null.
+     * @throws IOException if the patch is not for this image, or the patched image has not the expected content
+     */
+    public static void patch(Path image, Path patch, Path output) throws IOException {
+        try (ZipFile zipFile = new ZipFile(patch.toFile())) {
+            ZipEntry manifestEntry = zipFile.getEntry(MANIFEST);
+            if (manifestEntry == null) {
+                throw new IOException(patch + " is not an image patch");
+            }
+            List<String> lines = new ArrayList<>();
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(zipFile.getInputStream(manifestEntry),
+                    StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.isEmpty()) {
+                        lines.add(line);
+                    }
+                }
+            }
+            if (lines.size() < 3 || !HEADER.equals(lines.get(0)) || !lines.get(1).startsWith("from ")
+                    || !lines.get(2).startsWith("to ")) {
+                throw new IOException("Unsupported image patch format in " + patch);
+            }
+            String from = lines.get(1).substring("from ".length());
+            String to = lines.get(2).substring("to ".length());
+            if (!from.equals(ImageHash.hashDirectory(image))) {
+                throw new IOException("The patch is not for the image " + image + ", or the image was modified");
+            }
+
+            Path target = image;
+            if (output != null) {
+                copyDirectory(image, output);
+                target = output;
+            }
+            for (String line : lines.subList(3, lines.size())) {
+                apply(zipFile, image, target, line);
+            }
+            if (!to.equals(ImageHash.hashDirectory(target))) {
+                throw new IOException("The patched image " + target + " has not the expected content");
+            }
+        }
+    }
+
+    private static void apply(ZipFile zipFile, Path image, Path target, String line) throws IOException {
+        String[] parts = line.split(" ", 2);
+        String operation = parts[0];
+        if ("delete".equals(operation)) {
+            Files.deleteIfExists(resolve(target, parts[1]));
+            return;
+        }
+        String[] arguments = parts[1].split(" ", "mode".equals(operation) ? 2 : 3);
+        boolean executable = "x".equals(arguments[0]);
+        if ("mode".equals(operation)) {
+            setExecutable(resolve(target, arguments[1]), executable);
+            return;
+        }
+        String hash = arguments[1];
+        String path = arguments[2];
+        Path file = resolve(target, path);
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        // not a temp file, which would be only readable by its owner
+        Path tmp = file.resolveSibling(file.getFileName() + ".patch-tmp");
+        try {
+            if ("add".equals(operation)) {
+                try (InputStream is = getEntry(zipFile, FILES + path)) {
+                    Files.copy(is, tmp, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } else if ("delta".equals(operation)) {
+                byte[] source = Files.readAllBytes(image.resolve(path));
+                try (InputStream is = getEntry(zipFile, DELTAS + path);
+                     OutputStream os = Files.newOutputStream(tmp)) {
+                    BinaryDelta.apply(source, is, os);
+                }
+            } else {
+                throw new IOException("Unknown operation in the image patch: " + line);
+            }
+            if (!hash.equals(ImageHash.hashFile(tmp))) {
+                throw new IOException("The patched file " + path + " has not the expected content");
+            }
+            setExecutable(tmp, executable);
+            try {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static Path resolve(Path directory, String path) throws IOException {
+        Path file = directory.resolve(path).normalize();
+        if (!file.startsWith(directory.normalize())) {
+            throw new IOException("Invalid path in the image patch: " + path);
+        }
+        return file;
+    }
+
+    private static InputStream getEntry(ZipFile zipFile, String name) throws IOException {
+        ZipEntry entry = zipFile.getEntry(name);
+        if (entry == null) {
+            throw new IOException("Missing entry " + name + " in the image patch");
+        }
+        return zipFile.getInputStream(entry);
+    }
+
+    private static void setExecutable(Path file, boolean executable) {
+        if (Files.isExecutable(file) != executable) {
+            file.toFile().setExecutable(executable, false);
+        }
+    }
+
+    private static void copyDirectory(Path source, Path target) throws IOException {
+        if (Files.exists(target)) {
+            throw new IOException("The output directory " + target + " already exists");
+        }
+        Files.createDirectories(target);
+        for (Path path : ImageHash.sortedPaths(source)) {
+            Path copy = target.resolve(ImageHash.relativePath(source, path));
+            if (Files.isDirectory(path)) {
+                Files.createDirectories(copy);
+            } else {
+                Files.copy(path, copy, StandardCopyOption.COPY_ATTRIBUTES);
+            }
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2020, Gluon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openjfx.runtime;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.instrument.Instrumentation;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * Java agent injected by the plugin into the application it launches.
+ * The agent argument is the path of a properties file with the options
+ * written by the plugin, see {@link #READY_FILE}, {@link #LIVE_RELOAD_DIRECTORY} and {@link #BENCHMARK_FILE}.
+ */
+public final class JavaFXAgent {
+
+    /**
+     * File created once the first JavaFX window has been shown
+     */
+    public static final String READY_FILE = "readyFile";
+
+    /**
+     * Directory watched for changes of stylesheets and FXML files to reload
+     */
+    public static final String LIVE_RELOAD_DIRECTORY = "liveReloadDirectory";
+
+    /**
+     * Whether changed FXML files replace the scene roots loaded from them, "true" or "false"
+     */
+    public static final String LIVE_RELOAD_FXML = "liveReloadFxml";
+
+    /**
+     * File written once the first JavaFX window has been shown, with the time and the peak resident set size
+     * of the process, see {@link #FIRST_FRAME_TIME} and {@link #PEAK_RSS}, after which the application exits
+     */
+    public static final String BENCHMARK_FILE = "benchmarkFile";
+
+    /**
+     * Key of the time of the first frame, in milliseconds since the epoch, in the benchmark file
+     */
+    public static final String FIRST_FRAME_TIME = "firstFrameTime";
+
+    /**
+     * Key of the peak resident set size of the process in kilobytes, in the benchmark file, or -1 if not available
+     */
+    public static final String PEAK_RSS = "peakRss";
+
+    private JavaFXAgent() {
+    }
+
+    public static void premain(String agentArgs, Instrumentation instrumentation) {
+        Properties options = loadOptions(agentArgs);
+
+        FirstFrameMonitor monitor = new FirstFrameMonitor();
+        String readyFile = options.getProperty(READY_FILE);
+        if (readyFile != null) {
+            monitor.addListener(() -> writeAtomically(Paths.get(readyFile),
+                    Long.toString(System.currentTimeMillis())));
+        }
+        String benchmarkFile = options.getProperty(BENCHMARK_FILE);
+        if (benchmarkFile != null) {
+            monitor.addListener(() -> {
+                long firstFrameTime = System.currentTimeMillis();
+                writeAtomically(Paths.get(benchmarkFile), FIRST_FRAME_TIME + "=" + firstFrameTime + "\n"
+                        + PEAK_RSS + "=" + ProcessMemory.peakResidentSetSize("self") + "\n");
+                System.exit(0);
+            });
+        }
+        monitor.start();
+
+        String liveReloadDirectory = options.getProperty(LIVE_RELOAD_DIRECTORY);
+        if (liveReloadDirectory != null) {
+            new LiveReloader(Paths.get(liveReloadDirectory),
+                    Boolean.parseBoolean(options.getProperty(LIVE_RELOAD_FXML))).start();
+        }
+    }
+
+    private static Properties loadOptions(String agentArgs) {
+        Properties options = new Properties();
+        if (agentArgs != null && !agentArgs.isEmpty()) {
+            try (InputStream is = Files.newInputStream(Paths.get(agentArgs))) {
+                options.load(is);
+            } catch (IOException e) {
+                System.err.println("javafx-maven-plugin agent: unable to read options " + agentArgs + ": " + e);
+            }
+        }
+        return options;
+    }
+
+    static void writeAtomically(Path path, String content) {
+        try {
+            Path tmp = Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName().toString(), ".tmp");
+            try (OutputStream os = Files.newOutputStream(tmp)) {
+                os.write(content.getBytes(StandardCharsets.UTF_8));
+            }
+            try {
+                Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            System.err.println("javafx-maven-plugin agent: unable to write " + path + ": " + e);
+        }
+    }
+}
@@ -0,0 +1,256 @@
+/*
+ * Copyright 2020, Gluon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openjfx.runtime;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URL;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the output directory of the project, and when stylesheets or FXML files change, applies
+ * them to the running application without restarting it:
+ * <ul>
+ *     <li>stylesheets are removed and added again to every scene, parent and the user agent stylesheet
+ *     that use them, so JavaFX parses them again;</li>
+ *     <li>optionally, the root of a scene is replaced by the new content of an FXML file, when the root
+ *     has the FXML URL in its properties under {@link #FXML_LOCATION_PROPERTY}, or when its id is the
+ *     name of the FXML file, without extension.</li>
+ * </ul>
+ */
+final class LiveReloader implements Runnable {
+
+    static final String FXML_LOCATION_PROPERTY = "javafx.fxml.location";
+
+    // changes are applied once no more changes arrive within this time, since editors and builds write in bursts
+    private static final long QUIET_PERIOD_MILLIS = 200;
+
+    private final Path directory;
+    private final boolean reloadFxml;
+
+    LiveReloader(Path directory, boolean reloadFxml) {
+        this.directory = directory.toAbsolutePath().normalize();
+        this.reloadFxml = reloadFxml;
+    }
+
+    void start() {
+        Thread thread = new Thread(this, "javafx-maven-plugin live reload");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void run() {
+        try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
+            registerAll(watchService, directory);
+            while (true) {
+                Set<Path> changed = new LinkedHashSet<>();
+                WatchKey key = watchService.take();
+                do {
+                    collect(watchService, key, changed);
+                    key = watchService.poll(QUIET_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+                } while (key != null);
+                if (!changed.isEmpty() && FX.isToolkitRunning()) {
+                    FX.runLater(() -> apply(changed));
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException | RuntimeException e) {
+            System.err.println("javafx-maven-plugin agent: live reload stopped: " + e);
+        }
+    }
+
+    private void collect(WatchService watchService, WatchKey key, Set<Path> changed) throws IOException {
+        Path dir = (Path) key.watchable();
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                continue;
+            }
+            Path path = dir.resolve((Path) event.context());
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path)) {
+                registerAll(watchService, path);
+            } else if (isStylesheet(path) || (reloadFxml && isFxml(path))) {
+                changed.add(path);
+            }
+        }
+        key.reset();
+    }
+
+    private static void registerAll(WatchService watchService, Path start) throws IOException {
+        Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Must be called on the JavaFX Application Thread.
+     */
+    private void apply(Set<Path> changed) {
+        for (Path path : changed) {
+            try {
+                if (isStylesheet(path)) {
+                    int count = reapplyStylesheet(path);
+                    System.err.println("javafx-maven-plugin agent: reloaded " + directory.relativize(path)
+                            + " in " + count + " place(s)");
+                } else {
+                    int count = reloadFxml(path);
+                    System.err.println("javafx-maven-plugin agent: reloaded " + directory.relativize(path)
+                            + " in " + count + " scene(s)");
+                }
+            } catch (RuntimeException e) {
+                System.err.println("javafx-maven-plugin agent: unable to reload " + path + ": " + e);
+            }
+        }
+    }
+
+    private int reapplyStylesheet(Path path) {
+        int count = 0;
+        Class<?> application = FX.type("javafx.application.Application");
+        String userAgentStylesheet = (String) FX.invoke(application, "getUserAgentStylesheet");
+        if (userAgentStylesheet != null && matches(userAgentStylesheet, path)) {
+            FX.invoke(application, "setUserAgentStylesheet", (Object) null);
+            FX.invoke(application, "setUserAgentStylesheet", userAgentStylesheet);
+            count++;
+        }
+        for (Object window : FX.showingWindows()) {
+            Object scene = FX.invokeAs("javafx.stage.Window", window, "getScene");
+            if (scene == null) {
+                continue;
+            }
+            count += reapply(FX.invokeAs("javafx.scene.Scene", scene, "getStylesheets"), path);
+            count += reapplyInParents(FX.invokeAs("javafx.scene.Scene", scene, "getRoot"), path);
+        }
+        return count;
+    }
+
+    private int reapplyInParents(Object node, Path path) {
+        Class<?> parentType = FX.type("javafx.scene.Parent");
+        if (node == null || !parentType.isInstance(node)) {
+            return 0;
+        }
+        int count = reapply(FX.invokeAs("javafx.scene.Parent", node, "getStylesheets"), path);
+        for (Object child : (List<?>) FX.invokeAs("javafx.scene.Parent", node, "getChildrenUnmodifiable")) {
+            count += reapplyInParents(child, path);
+        }
+        return count;
+    }
+
+    @SuppressWarnings("unchecked")
+    private int reapply(Object stylesheets, Path path) {
+        List<String> list = (List<String>) stylesheets;
+        int count = 0;
+        for (int i = 0; i < list.size(); i++) {
+            String stylesheet = list.get(i);
+            if (matches(stylesheet, path)) {
+                // removing the stylesheet from every user drops it from the style manager cache
+                list.remove(i);
+                list.add(i, stylesheet);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @SuppressWarnings("unchecked")
+    private int reloadFxml(Path path) {
+        String name = path.getFileName().toString();
+        String id = name.substring(0, name.length() - ".fxml".length());
+        int count = 0;
+        for (Object window : FX.showingWindows()) {
+            Object scene = FX.invokeAs("javafx.stage.Window", window, "getScene");
+            if (scene == null) {
+                continue;
+            }
+            Object root = FX.invokeAs("javafx.scene.Scene", scene, "getRoot");
+            Object location = ((Map<?, ?>) FX.invokeAs("javafx.scene.Node", root, "getProperties"))
+                    .get(FXML_LOCATION_PROPERTY);
+            boolean sameLocation = location != null && matches(location.toString(), path);
+            if (!sameLocation && !id.equals(FX.invokeAs("javafx.scene.Node", root, "getId"))) {
+                continue;
+            }
+            Object newRoot = loadFxml(path, root.getClass().getClassLoader());
+            if (location != null) {
+                ((Map<Object, Object>) FX.invokeAs("javafx.scene.Node", newRoot, "getProperties"))
+                        .put(FXML_LOCATION_PROPERTY, location);
+            }
+            FX.invokeAs("javafx.scene.Scene", scene, "setRoot", newRoot);
+            count++;
+        }
+        return count;
+    }
+
+    private static Object loadFxml(Path path, ClassLoader classLoader) {
+        try {
+            Object loader = FX.type("javafx.fxml.FXMLLoader").getConstructor(URL.class).newInstance(path.toUri().toURL());
+            if (classLoader != null) {
+                FX.invokeAs("javafx.fxml.FXMLLoader", loader, "setClassLoader", classLoader);
+            }
+            return FX.invokeAs("javafx.fxml.FXMLLoader", loader, "load");
+        } catch (ReflectiveOperationException | IOException e) {
+            throw new IllegalStateException("Error loading " + path, e);
+        }
+    }
+
+    /**
+     * @param url a stylesheet or FXML location, either a URL or a path relative to the class path
+     * @return true if it refers to the given file in the watched directory
+     */
+    boolean matches(String url, Path path) {
+        try {
+            URI uri = new URI(url);
+            if ("file".equals(uri.getScheme())) {
+                return Paths.get(uri).toAbsolutePath().normalize().equals(path);
+            }
+            if (uri.getScheme() == null) {
+                String relative = directory.relativize(path).toString().replace('\\', '/');
+                return relative.equals(url.startsWith("/") ? url.substring(1) : url);
+            }
+        } catch (Exception e) {
+            // not a URL that refers to a file
+        }
+        return false;
+    }
+
+    private static boolean isStylesheet(Path path) {
+        String name = path.getFileName().toString();
+        return name.endsWith(".css") || name.endsWith(".bss");
+    }
+
+    private static boolean isFxml(Path path) {
+        return path.getFileName().toString().endsWith(".fxml");
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2020, Gluon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openjfx.runtime;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Reads the memory usage of a process from the <code>/proc</code> file system, only available on Linux.
+ * Used both by the agent, for its own process, and by the plugin, for the processes it launches.
+ */
+public final class ProcessMemory {
+
+    private static final String PEAK_RSS = "VmHWM:";
+
+    private ProcessMemory() {
+    }
+
+    /**
+     * @param pid the process id, or "self"
+     * @return the peak resident set size of the process in kilobytes, or -1 if it is not available
+     */
+    public static long peakResidentSetSize(String pid) {
+        return peakResidentSetSize(Paths.get("/proc", pid, "status"));
+    }
+
+    /**
+     * @param status a file with the format of <code>/proc/&lt;pid&gt;/status</code>
+     * @return the value of <code>VmHWM</code> in kilobytes, or -1 if it is not available
+     */
+    public static long peakResidentSetSize(Path status) {
+        if (!Files.isReadable(status)) {
+            return -1;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(status, StandardCharsets.ISO_8859_1)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(PEAK_RSS)) {
+                    // VmHWM:	  123456 kB
+                    return Long.parseLong(line.substring(PEAK_RSS.length()).replace("kB", "").trim());
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // not available
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2020, Gluon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openjfx;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+public class ClasspathOrderTest {
+
+    @Test
+    public void hitsOfClassLoadLog() throws IOException {
+        Path directory = Files.createTempDirectory("classpath");
+        Path classes = Files.createDirectories(directory.resolve("classes"));
+        Path lib = jar(directory.resolve("lib-1.0.jar"), "org/lib/Lib.class");
+        Path log = directory.resolve("class-load.log");
+        Files.write(log, Arrays.asList(
+                "[0.010s][info][class,load] java.lang.Object source: shared objects file",
+                "[0.100s][info][class,load] org.app.Main source: " + classes.toUri(),
+                "[0.110s][info][class,load] org.lib.Lib source: " + lib.toUri(),
+                "[Loaded org.lib.Util from " + lib.toUri() + "]",
+                "[Loaded java.lang.String from /usr/lib/jvm/jre/lib/rt.jar]"), StandardCharsets.UTF_8);
+
+        Map<String, Integer> hits = ClasspathOrder.parseHits(log, Arrays.asList(classes.toString(), lib.toString()));
+        Map<String, Integer> expected = new HashMap<>();
+        expected.put("classes", 1);
+        expected.put("lib-1.0.jar", 2);
+        Assert.assertEquals(expected, hits);
+
+        Path orderFile = directory.resolve("order.txt");
+        ClasspathOrder.write(orderFile, hits);
+        Assert.assertEquals(Arrays.asList("2\tlib-1.0.jar", "1\tclasses"), Files.readAllLines(orderFile));
+        Assert.assertEquals(expected, ClasspathOrder.read(orderFile));
+    }
+
+    @Test
+    public void reorderKeepsShadowing() throws IOException {
+        Path directory = Files.createTempDirectory("classpath");
+        String cold = jar(directory.resolve("cold.jar"), "org/cold/Cold.class", "META-INF/MANIFEST.MF").toString();
+        String shadowing = jar(directory.resolve("shadowing.jar"), "org/lib/Shadowed.class").toString();
+        String hot = jar(directory.resolve("hot.jar"), "org/hot/Hot.class", "org/lib/Shadowed.class",
+                "META-INF/MANIFEST.MF").toString();
+        String warm = jar(directory.resolve("warm.jar"), "org/warm/Warm.class").toString();
+        Map<String, Integer> hits = new HashMap<>();
+        hits.put("hot.jar", 50);
+        hits.put("warm.jar", 10);
+
+        List<String> ordered = ClasspathOrder.reorder(Arrays.asList(cold, shadowing, hot, warm), hits);
+        Assert.assertEquals(Arrays.asList(shadowing, hot, warm, cold), ordered);
+    }
+
+    @Test
+    public void reorderKeepsServiceProviders() throws IOException {
+        Path directory = Files.createTempDirectory("classpath");
+        String services = "META-INF/services/org.lib.Service";
+        String cold = jar(directory.resolve("cold.jar"), "org/cold/Cold.class", services,
+                "META-INF/MANIFEST.MF", "META-INF/COLD.SF", "META-INF/COLD.RSA").toString();
+        String hot = jar(directory.resolve("hot.jar"), "org/hot/Hot.class", services,
+                "META-INF/MANIFEST.MF", "META-INF/COLD.SF", "META-INF/COLD.RSA").toString();
+        String signed = jar(directory.resolve("signed.jar"), "org/signed/Signed.class",
+                "META-INF/MANIFEST.MF", "META-INF/COLD.SF", "META-INF/COLD.RSA").toString();
+        Map<String, Integer> hits = new HashMap<>();
+        hits.put("hot.jar", 50);
+        hits.put("signed.jar", 80);
+
+        // the provider files keep cold before hot, the manifest and the signature files do not constrain signed
+        List<String> ordered = ClasspathOrder.reorder(Arrays.asList(cold, hot, signed), hits);
+        Assert.assertEquals(Arrays.asList(signed, cold, hot), ordered);
+    }
+
+    private static Path jar(Path jar, String... entries) throws IOException {
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(jar))) {
+            for (String entry : entries) {
+                zip.putNextEntry(new ZipEntry(entry));
+                zip.write(entry.getBytes(StandardCharsets.UTF_8));
+                zip.closeEntry();
+            }
+        }
+        return jar;
+    }
+}
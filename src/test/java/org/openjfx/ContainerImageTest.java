@@ -0,0 +1,86 @@
+/*
+ * Copyright 2020, Gluon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openjfx;
+
+import org.codehaus.plexus.languages.java.jpms.JavaModuleDescriptor;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
+public class ContainerImageTest {
+
+    @Test
+    public void runtimeModules() {
+        Map<String, JavaModuleDescriptor> dependencies = new HashMap<>();
+        dependencies.put("org.library", JavaModuleDescriptor.newModule("org.library")
+                .requires("java.sql")
+                .requires(EnumSet.of(JavaModuleDescriptor.JavaRequires.JavaModifier.STATIC), "java.compiler")
+                .build());
+        JavaModuleDescriptor application = JavaModuleDescriptor.newModule("org.app")
+                .requires("javafx.controls")
+                .requires("org.library")
+                .build();
+        Assert.assertEquals(new TreeSet<>(Arrays.asList("java.sql", "javafx.controls")),
+                ContainerImage.runtimeModules(application, dependencies));
+
+        dependencies.put("org.automatic", JavaModuleDescriptor.newAutomaticModule("org.automatic").build());
+        application = JavaModuleDescriptor.newModule("org.app")
+                .requires("javafx.controls")
+                .requires("org.automatic")
+                .build();
+        Assert.assertEquals(new TreeSet<>(Arrays.asList("java.se", "javafx.controls")),
+                ContainerImage.runtimeModules(application, dependencies));
+    }
+
+    @Test
+    public void identicalLayouts() throws IOException {
+        Path directory = Files.createTempDirectory("layers");
+        Path runtime = directory.resolve("runtime.tar");
+        Path application = directory.resolve("application.tar");
+        Files.write(runtime, "runtime".getBytes(StandardCharsets.UTF_8));
+        Files.write(application, "application".getBytes(StandardCharsets.UTF_8));
+        List<Path> layers = Arrays.asList(runtime, application);
+        List<String> entrypoint = Collections.singletonList("/opt/app/bin/app");
+
+        Path first = directory.resolve("first");
+        String digest = ContainerImage.writeLayout(first, layers, entrypoint, "amd64", "1.0", 0);
+        Assert.assertEquals(digest, ContainerImage.writeLayout(directory.resolve("second"), layers, entrypoint,
+                "amd64", "1.0", 0));
+
+        Assert.assertTrue(Files.exists(first.resolve("oci-layout")));
+        String index = new String(Files.readAllBytes(first.resolve("index.json")), StandardCharsets.UTF_8);
+        Assert.assertTrue(index.contains(digest));
+        Assert.assertTrue(index.contains("\"org.opencontainers.image.ref.name\": \"1.0\""));
+        String manifest = new String(Files.readAllBytes(first.resolve("blobs/sha256/" + digest.substring(7))),
+                StandardCharsets.UTF_8);
+        Assert.assertTrue(manifest.contains(ContainerImage.LAYER_MEDIA_TYPE));
+        try (Stream<Path> blobs = Files.list(first.resolve("blobs/sha256"))) {
+            Assert.assertEquals(4, blobs.count());
+        }
+    }
+}
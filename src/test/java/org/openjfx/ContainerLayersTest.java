@@ -0,0 +1,76 @@
+/*
+ * Copyright 2020, Gluon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openjfx;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.codehaus.plexus.languages.java.jpms.JavaModuleDescriptor;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+public class ContainerLayersTest {
+
+    @Test
+    public void identicalBuilds() throws IOException, MojoExecutionException, MojoFailureException {
+        Path classes = Files.createTempDirectory("classes");
+        Files.write(classes.resolve("module-info.class"), new byte[] {1, 2, 3});
+        Path library = Files.createTempDirectory("library");
+        Files.write(library.resolve("Library.class"), new byte[] {4, 5, 6});
+        JavaModuleDescriptor application = JavaModuleDescriptor.newModule("org.app")
+                .requires("javafx.controls")
+                .requires("org.library")
+                .build();
+        Map<File, JavaModuleDescriptor> dependencies = Collections.singletonMap(library.toFile(),
+                JavaModuleDescriptor.newModule("org.library").requires("java.sql").build());
+
+        Set<String> linkedModules = new TreeSet<>();
+        ContainerLayers.RuntimeLinker linker = (modules, runtime) -> {
+            linkedModules.addAll(modules);
+            try {
+                Files.createDirectories(runtime.toPath().resolve("lib"));
+                Files.write(runtime.toPath().resolve("lib/modules"), String.join(",", modules).getBytes(StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                throw new MojoExecutionException("Error linking", e);
+            }
+        };
+
+        Path first = Files.createTempDirectory("container");
+        String digest = new ContainerLayers(new SystemStreamLog(), first, "/opt/app/", 0).create(application,
+                classes.toFile(), dependencies, "app", "org.app/org.app.Main", "-Xmx64m", "", "1.0", linker);
+        Assert.assertEquals(new TreeSet<>(Arrays.asList("java.sql", "javafx.controls")), linkedModules);
+        for (String layer : ContainerImage.LAYERS) {
+            Assert.assertTrue(Files.isRegularFile(first.resolve("layers/" + layer + ".tar")));
+        }
+        Assert.assertTrue(Files.isRegularFile(first.resolve("staging/dependencies/opt/app/lib/org.library.jar")));
+        Assert.assertTrue(Files.isRegularFile(first.resolve("staging/application/opt/app/bin/app")));
+
+        Path second = Files.createTempDirectory("container");
+        Assert.assertEquals(digest, new ContainerLayers(new SystemStreamLog(), second, "opt/app", 0).create(application,
+                classes.toFile(), dependencies, "app", "org.app/org.app.Main", "-Xmx64m", "", "1.0", linker));
+    }
+}
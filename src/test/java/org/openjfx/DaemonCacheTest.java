@@ -0,0 +1,89 @@
+/*
+ * Copyright 2020, Gluon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openjfx;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class DaemonCacheTest {
+
+    @Test
+    public void leastRecentlyUsedIsEvicted() {
+        DaemonCache<String, String> cache = new DaemonCache<>(2);
+        cache.put("a", "1");
+        cache.put("b", "2");
+        Assert.assertEquals("1", cache.get("a", v -> true));
+
+        cache.put("c", "3");
+        Assert.assertEquals(2, cache.size());
+        Assert.assertNull(cache.get("b", v -> true));
+        Assert.assertEquals("1", cache.get("a", v -> true));
+        Assert.assertEquals("3", cache.get("c", v -> true));
+    }
+
+    @Test
+    public void invalidValueIsRemoved() {
+        DaemonCache<String, String> cache = new DaemonCache<>(2);
+        cache.put("a", "1");
+        Assert.assertNull(cache.get("a", v -> false));
+        Assert.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void executableChanged() throws IOException {
+        Path java = Files.createDirectories(Files.createTempDirectory("jdk").resolve("bin")).resolve("java");
+        Files.createFile(java);
+        ExecutableInfo info = new ExecutableInfo(java.toString());
+        Assert.assertTrue(info.isUpToDate());
+
+        Files.write(java, new byte[] { 1 });
+        Assert.assertFalse(info.isUpToDate());
+    }
+
+    @Test
+    public void concurrentAccess() throws Exception {
+        DaemonCache<Integer, Integer> cache = new DaemonCache<>(100);
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < 1000; i++) {
+                int key = i % 150;
+                futures.add(executorService.submit(() -> {
+                    Integer value = cache.get(key, v -> true);
+                    if (value != null) {
+                        Assert.assertEquals(Integer.valueOf(key), value);
+                    }
+                    cache.put(key, key);
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+        Assert.assertEquals(100, cache.size());
+    }
+}
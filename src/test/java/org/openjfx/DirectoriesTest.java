@@ -0,0 +1,49 @@
+/*
+ * Copyright 2020, Gluon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openjfx;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+public class DirectoriesTest {
+
+    @Test
+    public void createdConcurrently() throws IOException {
+        Path parent = Files.createTempDirectory("cache");
+        Path directory = parent.resolve("libraries");
+        Directories.createAtomically(directory, tmp -> {
+            Files.write(tmp.resolve("mine"), new byte[] {1});
+            // another build moves its complete directory in place first
+            Files.createDirectories(directory);
+            Files.write(directory.resolve("theirs"), new byte[] {2});
+        });
+        Assert.assertEquals(Arrays.asList("theirs"), Arrays.asList(directory.toFile().list()));
+        Assert.assertEquals("no temporary directory left", Arrays.asList("libraries"), Arrays.asList(parent.toFile().list()));
+    }
+
+    @Test(expected = IOException.class)
+    public void failedFill() throws IOException {
+        Path directory = Files.createTempDirectory("cache").resolve("libraries");
+        Directories.createAtomically(directory, tmp -> {
+            throw new IOException("no space left");
+        });
+    }
+}
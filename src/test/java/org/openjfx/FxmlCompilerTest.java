@@ -0,0 +1,328 @@
+/*
+ * Copyright 2020, Gluon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openjfx;
+
+import com.sun.javafx.beans.IDProperty;
+import javafx.beans.DefaultProperty;
+import javafx.beans.NamedArg;
+import javafx.event.ActionEvent;
+import javafx.event.EventHandler;
+import javafx.scene.Group;
+import javafx.scene.shape.Rectangle;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+public class FxmlCompilerTest {
+
+    private static final String FXML = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+            "<?import org.openjfx.FxmlCompilerTest.*?>\n" +
+            "<Box xmlns:fx=\"http://javafx.com/fxml/1\" fx:controller=\"CONTROLLER\" fx:id=\"root\"\n" +
+            "     spacing=\"4.5\" alignment=\"centerLeft\" styleClass=\"a, b\" stylesheets=\"@style.css\">\n" +
+            "    <Item fx:id=\"button\" text=\"Click\" onAction=\"#handle\">\n" +
+            "        <Box.margin><Margin top=\"2\"/></Box.margin>\n" +
+            "    </Item>\n" +
+            "    <Item fx:id=\"hidden\" text=\"Second\" Box.grow=\"true\"/>\n" +
+            "    <Item>\n" +
+            "        <text>Inner</text>\n" +
+            "        <tags><String fx:value=\"x\"/></tags>\n" +
+            "    </Item>\n" +
+            "</Box>\n";
+
+    @Test
+    public void compiledWithDirectAccess() throws Exception {
+        Object fxml = compileAndCreate(FXML.replace("CONTROLLER", Controller.class.getName()));
+        Box root = load(fxml);
+        Controller controller = getController(fxml);
+        assertGraph(root);
+
+        Assert.assertSame(root, controller.root);
+        Assert.assertSame(root.getChildren().get(0), controller.button);
+        Assert.assertNull("not public nor annotated", controller.hidden);
+        Assert.assertTrue(controller.initialized);
+        ((Item) root.getChildren().get(0)).fire();
+        Assert.assertEquals(Collections.singletonList("Click"), controller.events);
+    }
+
+    @Test
+    public void compiledWithReflection() throws Exception {
+        Object fxml = compileAndCreate(FXML.replace("CONTROLLER", HiddenController.class.getName()));
+        Box root = load(fxml);
+        HiddenController controller = getController(fxml);
+        assertGraph(root);
+
+        Assert.assertSame(root.getChildren().get(0), controller.button);
+        Assert.assertTrue(controller.initialized);
+        ((Item) root.getChildren().get(0)).fire();
+        ((Item) root.getChildren().get(0)).fire();
+        Assert.assertEquals(2, controller.events);
+    }
+
+    @Test
+    public void idOfNodes() throws Exception {
+        Object fxml = compileAndCreate("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                "<?import javafx.scene.Group?>\n" +
+                "<?import javafx.scene.shape.Rectangle?>\n" +
+                "<Group xmlns:fx=\"http://javafx.com/fxml/1\" fx:id=\"root\">\n" +
+                "    <Rectangle fx:id=\"box\" width=\"10\" height=\"5\"/>\n" +
+                "</Group>\n");
+        Group root = load(fxml);
+        Rectangle box = (Rectangle) root.getChildren().get(0);
+        Assert.assertEquals("root", root.getId());
+        Assert.assertEquals("box", box.getId());
+        Assert.assertSame(box, root.lookup("#box"));
+    }
+
+    @Test
+    public void givenController() throws Exception {
+        Object fxml = compileAndCreate(FXML.replace("CONTROLLER", Controller.class.getName()));
+        Controller controller = new Controller();
+        fxml.getClass().getMethod("setController", Object.class).invoke(fxml, controller);
+        Box root = load(fxml);
+        Assert.assertSame(root, controller.root);
+    }
+
+    @Test
+    public void unsupported() throws IOException {
+        for (String construct : Arrays.asList(
+                "<Box xmlns:fx=\"http://javafx.com/fxml/1\"><fx:include source=\"other.fxml\"/></Box>",
+                "<Box xmlns:fx=\"http://javafx.com/fxml/1\"><Item text=\"%key\"/></Box>",
+                "<Box xmlns:fx=\"http://javafx.com/fxml/1\"><Item text=\"${other.text}\"/></Box>",
+                "<Box xmlns:fx=\"http://javafx.com/fxml/1\"><Item onAction=\"java.lang.System.exit(0)\"/></Box>",
+                "<Box xmlns:fx=\"http://javafx.com/fxml/1\"><Unknown/></Box>")) {
+            try {
+                generate("<?import org.openjfx.FxmlCompilerTest.*?>" + construct);
+                Assert.fail("Compiled " + construct);
+            } catch (FxmlCompiler.UnsupportedFxmlException e) {
+                // loaded at runtime
+            }
+        }
+        String fallback = FxmlCompiler.generateFallback("fxmltest", "MainFxml", "main.fxml");
+        Assert.assertTrue(fallback.contains("new javafx.fxml.FXMLLoader(MainFxml.class.getResource(FXML))"));
+    }
+
+    @Test
+    public void names() {
+        Assert.assertEquals("MainViewFxml", FxmlCompiler.toClassName("main-view.fxml"));
+        Assert.assertEquals("LoginFxml", FxmlCompiler.toClassName("login.fxml"));
+        Assert.assertNull(FxmlCompiler.toClassName("1st.fxml"));
+        Assert.assertEquals("org.example", FxmlCompiler.packageName(new File("org/example").toPath()));
+        Assert.assertNull(FxmlCompiler.packageName(new File("org/my-views").toPath()));
+    }
+
+    private static void assertGraph(Box root) {
+        Assert.assertEquals("root", root.getId());
+        Assert.assertEquals(4.5, root.getSpacing(), 0);
+        Assert.assertEquals(Align.CENTER_LEFT, root.getAlignment());
+        Assert.assertEquals(Arrays.asList("a", "b"), root.getStyleClass());
+        Assert.assertTrue(root.getStylesheets().get(0).endsWith("fxmltest/style.css"));
+        Assert.assertEquals(3, root.getChildren().size());
+
+        Item button = (Item) root.getChildren().get(0);
+        Assert.assertEquals("button", button.getId());
+        Assert.assertEquals("Click", button.getText());
+        Assert.assertEquals(2, button.margin.top, 0);
+        Assert.assertEquals("default value of the named argument", 1, button.margin.left, 0);
+        Assert.assertTrue(((Item) root.getChildren().get(1)).grow);
+        Item inner = (Item) root.getChildren().get(2);
+        Assert.assertEquals("Inner", inner.getText());
+        Assert.assertEquals(Collections.singletonList("x"), inner.getTags());
+    }
+
+    private String generate(String fxml) throws FxmlCompiler.UnsupportedFxmlException, IOException {
+        return new FxmlCompiler(getClass().getClassLoader()).generate("fxmltest", "MainFxml", "main.fxml",
+                new ByteArrayInputStream(fxml.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private Object compileAndCreate(String fxml) throws Exception {
+        Path directory = Files.createTempDirectory("fxml2java");
+        Path source = directory.resolve("src/fxmltest/MainFxml.java");
+        Files.createDirectories(source.getParent());
+        Files.write(source, generate(fxml).getBytes(StandardCharsets.UTF_8));
+        Path classes = Files.createDirectories(directory.resolve("classes/fxmltest"));
+        Files.write(classes.resolve("main.fxml"), fxml.getBytes(StandardCharsets.UTF_8));
+
+        String classpath = System.getProperty("surefire.test.class.path", System.getProperty("java.class.path"));
+        Map<File, String> errors = FxmlCompiler.compile(Collections.singletonList(source.toFile()),
+                Arrays.asList(classpath.split(File.pathSeparator)), classes.getParent().toFile(), Collections.emptyList());
+        Assert.assertEquals(Collections.emptyMap(), errors);
+
+        URLClassLoader loader = new URLClassLoader(new URL[] {classes.getParent().toUri().toURL()}, getClass().getClassLoader());
+        return loader.loadClass("fxmltest.MainFxml").getConstructor().newInstance();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T load(Object fxml) throws ReflectiveOperationException {
+        return (T) fxml.getClass().getMethod("load").invoke(fxml);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T getController(Object fxml) throws ReflectiveOperationException {
+        return (T) fxml.getClass().getMethod("getController").invoke(fxml);
+    }
+
+    public enum Align { CENTER, CENTER_LEFT }
+
+    @DefaultProperty("children")
+    @IDProperty("id")
+    public static class Box {
+        private final List<Object> children = new ArrayList<>();
+        private final List<String> styleClass = new ArrayList<>();
+        private final List<String> stylesheets = new ArrayList<>();
+        private String id;
+        private double spacing;
+        private Align alignment;
+
+        public List<Object> getChildren() {
+            return children;
+        }
+
+        public List<String> getStyleClass() {
+            return styleClass;
+        }
+
+        public List<String> getStylesheets() {
+            return stylesheets;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public void setId(String id) {
+            this.id = id;
+        }
+
+        public double getSpacing() {
+            return spacing;
+        }
+
+        public void setSpacing(double spacing) {
+            this.spacing = spacing;
+        }
+
+        public Align getAlignment() {
+            return alignment;
+        }
+
+        public void setAlignment(Align alignment) {
+            this.alignment = alignment;
+        }
+
+        public static void setMargin(Item item, Margin margin) {
+            item.margin = margin;
+        }
+
+        public static void setGrow(Item item, boolean grow) {
+            item.grow = grow;
+        }
+    }
+
+    @IDProperty("id")
+    public static class Item {
+        private final List<String> tags = new ArrayList<>();
+        private String id;
+        private String text;
+        private EventHandler<ActionEvent> onAction;
+        private Margin margin;
+        private boolean grow;
+
+        public String getId() {
+            return id;
+        }
+
+        public void setId(String id) {
+            this.id = id;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public void setText(String text) {
+            this.text = text;
+        }
+
+        public List<String> getTags() {
+            return tags;
+        }
+
+        public EventHandler<ActionEvent> getOnAction() {
+            return onAction;
+        }
+
+        public void setOnAction(EventHandler<ActionEvent> onAction) {
+            this.onAction = onAction;
+        }
+
+        void fire() {
+            onAction.handle(new ActionEvent());
+        }
+    }
+
+    public static class Margin {
+        private final double top;
+        private final double left;
+
+        public Margin(@NamedArg("top") double top, @NamedArg(value = "left", defaultValue = "1") double left) {
+            this.top = top;
+            this.left = left;
+        }
+    }
+
+    public static class Controller {
+        public Box root;
+        public Item button;
+        Item hidden;
+        public boolean initialized;
+        public final List<String> events = new ArrayList<>();
+
+        public void initialize() {
+            initialized = true;
+        }
+
+        public void handle(ActionEvent event) {
+            events.add(button.getText());
+        }
+    }
+
+    static class HiddenController {
+        public Item button;
+        private boolean initialized;
+        private int events;
+
+        public void initialize() {
+            initialized = true;
+        }
+
+        public void handle() {
+            events++;
+        }
+    }
+}
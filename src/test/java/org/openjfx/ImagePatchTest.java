@@ -0,0 +1,101 @@
+/*
+ * Copyright 2020, Gluon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openjfx;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openjfx.runtime.ImageHash;
+import org.openjfx.runtime.ImagePatcher;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+
+public class ImagePatchTest {
+
+    @Test
+    public void patchImage() throws IOException {
+        byte[] modules = new byte[256 * 1024];
+        new Random(1).nextBytes(modules);
+        Path previous = createImage(modules, "previous");
+        modules[1000] ^= 1;
+        Path current = createImage(modules, "current");
+        write(current, "lib/added.properties", "added");
+        Files.delete(current.resolve("conf/removed.properties"));
+        Path patch = Files.createTempDirectory("patch").resolve("image-patch.zip");
+
+        String summary = ImagePatch.create(previous, current, patch);
+        Assert.assertEquals("2 files changed (1 as binary deltas), 1 added, 1 deleted", summary);
+        Assert.assertTrue(Files.size(patch) < modules.length / 4);
+
+        Path output = Files.createTempDirectory("output").resolve("image");
+        ImagePatcher.patch(previous, patch, output);
+        Assert.assertEquals(ImageHash.hashDirectory(current), ImageHash.hashDirectory(output));
+        Assert.assertTrue(Files.isExecutable(output.resolve("bin/java")));
+
+        ImagePatcher.patch(previous, patch, null);
+        Assert.assertEquals(ImageHash.hashDirectory(current), ImageHash.hashDirectory(previous));
+    }
+
+    @Test
+    public void otherImageRejected() throws IOException {
+        Path previous = createImage(new byte[1024], "previous");
+        Path current = createImage(new byte[2048], "current");
+        Path patch = Files.createTempDirectory("patch").resolve("image-patch.zip");
+        ImagePatch.create(previous, current, patch);
+        try {
+            ImagePatcher.patch(current, patch, null);
+            Assert.fail();
+        } catch (IOException e) {
+            Assert.assertTrue(e.getMessage().contains("not for the image"));
+        }
+    }
+
+    @Test
+    public void extractedZipOfImage() throws IOException {
+        Path image = createImage(new byte[1024], "previous");
+        write(image, "legal/java.base/LICENSE", "license");
+        Files.createDirectories(image.resolve("legal/javafx.base"));
+        Files.createSymbolicLink(image.resolve("legal/javafx.base/LICENSE"), Paths.get("../java.base/LICENSE"));
+        Path zip = Files.createTempDirectory("zip").resolve("image.zip");
+        ReproducibleArchive.zip(image, zip, ReproducibleArchive.DEFAULT_TIMESTAMP);
+
+        Path extracted = ImagePatch.extract(zip, Files.createTempDirectory("extracted").resolve("image"));
+        Assert.assertTrue(Files.isSymbolicLink(extracted.resolve("legal/javafx.base/LICENSE")));
+        Assert.assertTrue(Files.isExecutable(extracted.resolve("bin/java")));
+        Assert.assertEquals(ImageHash.hashDirectory(image), ImageHash.hashDirectory(extracted));
+    }
+
+    private static Path createImage(byte[] modules, String release) throws IOException {
+        Path image = Files.createTempDirectory("image");
+        write(image, "release", release);
+        write(image, "bin/java", "java");
+        image.resolve("bin/java").toFile().setExecutable(true);
+        write(image, "conf/removed.properties", "removed");
+        Files.createDirectories(image.resolve("lib"));
+        Files.write(image.resolve("lib/modules"), modules);
+        return image;
+    }
+
+    private static void write(Path image, String name, String content) throws IOException {
+        Path file = image.resolve(name);
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+}
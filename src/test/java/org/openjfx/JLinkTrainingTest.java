@@ -0,0 +1,88 @@
+/*
+ * Copyright 2020, Gluon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openjfx;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+public class JLinkTrainingTest {
+
+    @Test
+    public void classLoadOrder() throws IOException {
+        File log = write(
+                "[0.005s][info][class,load] java.lang.Object source: jrt:/java.base",
+                "[0.120s][info][class,load] javafx.application.Application source: jrt:/javafx.graphics",
+                "[0.121s][info][class,load] org.example.App$1 source: jrt:/org.example",
+                "[0.122s][info][class,load] org.example.App$$Lambda$14/0x0000000800c0b000 source: org.example.App",
+                "[0.123s][info][class,load] java.lang.invoke.LambdaForm$MH/0x0000000800c0c400 source: __JVM_LookupDefineClass__",
+                "[0.124s][info][class,load] java.util.ArrayList source: shared objects file",
+                "[0.125s][info][class,load] java.lang.Object source: jrt:/java.base");
+        Assert.assertEquals(Arrays.asList("/java.base/java/lang/Object", "/javafx.graphics/javafx/application/Application",
+                "/org.example/org/example/App$1"), JLinkTraining.parseClassLoadOrder(log));
+    }
+
+    @Test
+    public void jliTrace() throws IOException {
+        File output = write(
+                "[LF_RESOLVE] java.lang.invoke.DirectMethodHandle$Holder invokeStatic L7_L (success)",
+                "Application started",
+                "[SPECIES_RESOLVE] java.lang.invoke.BoundMethodHandle$Species_LL (success)",
+                "[LF_RESOLVE] java.lang.invoke.DirectMethodHandle$Holder invokeStatic L7_L (success)");
+        List<String> trace = JLinkTraining.parseJliTrace(output);
+        Assert.assertEquals(Arrays.asList(
+                "[LF_RESOLVE] java.lang.invoke.DirectMethodHandle$Holder invokeStatic L7_L (success)",
+                "[SPECIES_RESOLVE] java.lang.invoke.BoundMethodHandle$Species_LL (success)"), trace);
+    }
+
+    @Test
+    public void startupMillis() throws IOException {
+        File log = write(
+                "[41ms] java.lang.Object source: jrt:/java.base",
+                "[398ms] com.sun.javafx.tk.quantum.ViewPainterFactory source: jrt:/javafx.graphics",
+                "[412ms] com.sun.javafx.tk.quantum.ViewPainter source: jrt:/javafx.graphics");
+        Assert.assertEquals(412, JLinkTraining.parseStartupMillis(log, "com.sun.javafx.tk.quantum.ViewPainter"));
+        try {
+            JLinkTraining.parseStartupMillis(log, "org.example.Missing");
+            Assert.fail();
+        } catch (IOException e) {
+            Assert.assertTrue(e.getMessage().contains("org.example.Missing"));
+        }
+    }
+
+    @Test
+    public void launchError() throws IOException {
+        Assert.assertNull(JLinkTraining.findLaunchError(write("Application started", "Loading messages_fr")));
+        Assert.assertEquals("Caused by: java.util.MissingResourceException: Can't find bundle for base name messages",
+                JLinkTraining.findLaunchError(write("Application started",
+                        "  Caused by: java.util.MissingResourceException: Can't find bundle for base name messages")));
+        Assert.assertEquals("Error: Could not find or load main class org.example.App",
+                JLinkTraining.findLaunchError(write("Error: Could not find or load main class org.example.App")));
+    }
+
+    private static File write(String... lines) throws IOException {
+        File file = File.createTempFile("training", ".log");
+        file.deleteOnExit();
+        Files.write(file.toPath(), Arrays.asList(lines), StandardCharsets.UTF_8);
+        return file;
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2020, Gluon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openjfx;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openjfx.runtime.ProcessMemory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+public class JavaFXBenchMojoTest {
+
+    @Test
+    public void jdkJavaOptions() {
+        Assert.assertEquals("-Dprism.order=sw \"-javaagent:/my dir/agent.jar=/my dir/agent.properties\" -Xmx1g",
+                JavaFXBenchMojo.createJdkJavaOptions(Arrays.asList("-Dprism.order=sw",
+                        "-javaagent:/my dir/agent.jar=/my dir/agent.properties"), " -Xmx1g"));
+        Assert.assertEquals("-javaagent:/agent.jar",
+                JavaFXBenchMojo.createJdkJavaOptions(Arrays.asList("-javaagent:/agent.jar"), null));
+    }
+
+    @Test
+    public void peakResidentSetSize() throws IOException {
+        Path status = Files.createTempFile("status", "");
+        Files.write(status, Arrays.asList("Name:\tjava", "VmPeak:\t 9876543 kB", "VmHWM:\t  123456 kB",
+                "VmRSS:\t  120000 kB"), StandardCharsets.UTF_8);
+        Assert.assertEquals(123456, ProcessMemory.peakResidentSetSize(status));
+        Assert.assertEquals(-1, ProcessMemory.peakResidentSetSize(status.resolveSibling("missing")));
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2020, Gluon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openjfx;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.List;
+
+public class JavaFXCss2BssMojoTest {
+
+    @Test
+    public void staleStylesheets() throws IOException {
+        Path directory = Files.createTempDirectory("css2bss");
+        Path css = write(directory.resolve("org/example/style.css"), ".root {}");
+        Assert.assertEquals(Arrays.asList(css), JavaFXCss2BssMojo.findStylesheets(directory));
+        Assert.assertTrue(JavaFXCss2BssMojo.isStale(css));
+
+        Path bss = write(directory.resolve("org/example/style.bss"), "");
+        Assert.assertEquals(bss, JavaFXCss2BssMojo.toBss(css));
+        Files.setLastModifiedTime(bss, FileTime.fromMillis(Files.getLastModifiedTime(css).toMillis() + 1000));
+        Assert.assertFalse(JavaFXCss2BssMojo.isStale(css));
+
+        Files.setLastModifiedTime(css, FileTime.fromMillis(Files.getLastModifiedTime(bss).toMillis() + 1000));
+        Assert.assertTrue(JavaFXCss2BssMojo.isStale(css));
+    }
+
+    @Test
+    public void split() {
+        List<Path> stylesheets = Arrays.asList(Paths.get("a.css"), Paths.get("b.css"), Paths.get("c.css"));
+        Assert.assertEquals(1, JavaFXCss2BssMojo.split(stylesheets, 1).size());
+        Assert.assertEquals(Arrays.asList(Paths.get("a.css"), Paths.get("c.css")),
+                JavaFXCss2BssMojo.split(stylesheets, 2).get(0));
+        Assert.assertEquals(3, JavaFXCss2BssMojo.split(stylesheets, 8).size());
+
+        Assert.assertEquals(1, JavaFXCss2BssMojo.defaultForks(3, 8));
+        Assert.assertEquals(4, JavaFXCss2BssMojo.defaultForks(4 * JavaFXCss2BssMojo.MIN_STYLESHEETS_PER_FORK, 8));
+        Assert.assertEquals(8, JavaFXCss2BssMojo.defaultForks(100 * JavaFXCss2BssMojo.MIN_STYLESHEETS_PER_FORK, 8));
+    }
+
+    @Test
+    public void rewriteFxmlReferences() throws IOException {
+        Path directory = Files.createTempDirectory("css2bss");
+        write(directory.resolve("org/example/style.bss"), "");
+        write(directory.resolve("shared.bss"), "");
+        Path fxml = write(directory.resolve("org/example/main.fxml"),
+                "<VBox stylesheets=\"@style.css\">\n" +
+                "  <stylesheets><URL value=\"@/shared.css\"/><URL value=\"@missing.css\"/></stylesheets>\n" +
+                "</VBox>\n");
+
+        Assert.assertEquals(1, JavaFXCss2BssMojo.rewriteFxmlReferences(directory));
+        Assert.assertEquals(
+                "<VBox stylesheets=\"@style.bss\">\n" +
+                "  <stylesheets><URL value=\"@/shared.bss\"/><URL value=\"@missing.css\"/></stylesheets>\n" +
+                "</VBox>\n",
+                new String(Files.readAllBytes(fxml), StandardCharsets.UTF_8));
+
+        Assert.assertEquals(0, JavaFXCss2BssMojo.rewriteFxmlReferences(directory));
+    }
+
+    private static Path write(Path path, String content) throws IOException {
+        Files.createDirectories(path.getParent());
+        return Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+    }
+}
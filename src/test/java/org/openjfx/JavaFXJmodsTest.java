@@ -0,0 +1,101 @@
+/*
+ * Copyright 2020, Gluon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openjfx;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+public class JavaFXJmodsTest {
+
+    @Test
+    public void versionAndClassifier() {
+        String[] parts = JavaFXJmods.versionAndClassifier(Arrays.asList(Paths.get("/repo/javafx-base-17.0.2-linux.jar"),
+                Paths.get("/repo/javafx-graphics-17.0.2-mac-aarch64.jar"))).get();
+        Assert.assertEquals("17.0.2", parts[0]);
+        Assert.assertEquals("mac-aarch64", parts[1]);
+        Assert.assertFalse(JavaFXJmods.versionAndClassifier(Arrays.asList(Paths.get("javafx-graphics-17.0.2.jar")))
+                .isPresent());
+    }
+
+    @Test
+    public void find() throws IOException {
+        Path directory = Files.createTempDirectory("jmods");
+        Path repository = Files.createTempDirectory("repository");
+        Assert.assertNull(JavaFXJmods.find("17.0.2", "linux", directory, repository));
+
+        Path artifact = createBundle(repository.resolve("org/openjfx/javafx-jmods/17.0.2/javafx-jmods-17.0.2-linux.zip"));
+        Assert.assertEquals(artifact, JavaFXJmods.find("17.0.2", "linux", directory, repository));
+
+        Path gluonBundle = createBundle(directory.resolve("openjfx-17.0.2_linux-x64_bin-jmods.zip"));
+        Assert.assertEquals(gluonBundle, JavaFXJmods.find("17.0.2", "linux", directory, repository));
+        Assert.assertNull(JavaFXJmods.find("17.0.2", "win", directory, repository));
+    }
+
+    @Test
+    public void unpackedOnceConcurrently() throws Exception {
+        Path bundle = createBundle(Files.createTempDirectory("jmods").resolve("openjfx-17.0.2_linux-x64_bin-jmods.zip"));
+        Path cache = Files.createTempDirectory("cache");
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+        List<Future<Path>> futures = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            futures.add(executorService.submit(() -> JavaFXJmods.unpack(bundle, cache, "17.0.2", "linux")));
+        }
+        Path expected = cache.resolve(JavaFXJmods.DIRECTORY).resolve("17.0.2-linux");
+        for (Future<Path> future : futures) {
+            Assert.assertEquals(expected, future.get());
+        }
+        executorService.shutdown();
+
+        Assert.assertEquals(Arrays.asList("javafx.base.jmod", "javafx.graphics.jmod"), list(expected));
+        Assert.assertEquals("no temporary directories left", Arrays.asList("17.0.2-linux"),
+                list(cache.resolve(JavaFXJmods.DIRECTORY)));
+    }
+
+    private static List<String> list(Path directory) {
+        List<String> names = new ArrayList<>(Arrays.asList(directory.toFile().list()));
+        names.sort(null);
+        return names;
+    }
+
+    private static Path createBundle(Path path) throws IOException {
+        Files.createDirectories(path.getParent());
+        try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(path))) {
+            for (String name : new String[] {"javafx-jmods-17.0.2/", "javafx-jmods-17.0.2/javafx.base.jmod",
+                    "javafx-jmods-17.0.2/javafx.graphics.jmod"}) {
+                zos.putNextEntry(new ZipEntry(name));
+                if (!name.endsWith("/")) {
+                    zos.write(name.getBytes(StandardCharsets.UTF_8));
+                }
+                zos.closeEntry();
+            }
+        }
+        return path;
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2020, Gluon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openjfx;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs many executions of the run goal at the same time, like a parallel reactor build does,
+ * and checks that every execution launches its own command line with its own output.
+ */
+public class JavaFXRunMojoConcurrencyTest {
+
+    private static final int EXECUTIONS = 24;
+    private static final int THREADS = 8;
+
+    @Test
+    public void parallelExecutions() throws Exception {
+        Path root = Files.createTempDirectory("javafx-concurrency");
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        String classpath = System.getProperty("java.class.path");
+
+        ExecutorService executorService = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < EXECUTIONS; i++) {
+            String id = "module-" + i;
+            futures.add(executorService.submit(() -> {
+                JavaFXRunMojo mojo = createMojo(root.resolve(id).toFile(), java, classpath, id);
+                start.await();
+                mojo.execute();
+                return null;
+            }));
+        }
+        start.countDown();
+        try {
+            for (Future<?> future : futures) {
+                future.get(2, TimeUnit.MINUTES);
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        for (int i = 0; i < EXECUTIONS; i++) {
+            Path module = root.resolve("module-" + i);
+            List<String> output = Files.readAllLines(module.resolve("output.log"), StandardCharsets.UTF_8);
+            Assert.assertEquals(Arrays.asList("module-" + i, module.toFile().getCanonicalPath()), output);
+        }
+    }
+
+    @Test
+    public void asyncExecutionsThatExitAtOnce() throws Exception {
+        Path root = Files.createTempDirectory("javafx-async");
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        String classpath = System.getProperty("java.class.path");
+        File builddir = root.resolve("target").toFile();
+
+        for (int i = 0; i < THREADS; i++) {
+            String id = "async-" + i;
+            JavaFXRunMojo mojo = createMojo(root.resolve(id).toFile(), java, classpath, id);
+            mojo.builddir = builddir;
+            mojo.async = true;
+            mojo.instanceId = id;
+            mojo.execute();
+        }
+
+        // every process completed, whether before or after it was registered, so no record is left
+        ProcessRegistry registry = new ProcessRegistry(builddir);
+        long deadline = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(1);
+        while (!registry.list().isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+        }
+        Assert.assertTrue(registry.list().isEmpty());
+    }
+
+    private static JavaFXRunMojo createMojo(File basedir, String java, String classpath, String id) throws IOException {
+        Files.createDirectories(basedir.toPath());
+        JavaFXRunMojo mojo = new JavaFXRunMojo();
+        mojo.setExecutable(java);
+        mojo.setBasedir(basedir);
+        mojo.builddir = new File(basedir, "target");
+        mojo.workingDirectory = basedir;
+        mojo.outputFile = new File(basedir, "output.log");
+        mojo.options = Arrays.asList("-classpath", classpath);
+        mojo.mainClass = Echo.class.getName();
+        mojo.setCommandlineArgs(id);
+        return mojo;
+    }
+
+    public static class Echo {
+        public static void main(String[] args) throws IOException {
+            System.out.println(args[0]);
+            System.out.println(new File(".").getCanonicalPath());
+        }
+    }
+}
@@ -101,7 +101,7 @@ public class JavaFXRunMojoTestCase extends AbstractMojoTestCase {
         mojo.setBasedir(File.createTempFile("mvn-temp", "txt").getParentFile());
     }
 
-    public void testRunOK() throws MojoExecutionException {
+    public void testRunOK() throws MojoExecutionException, MojoFailureException {
         mojo.execute();
         checkMojo(SOME_EXECUTABLE + " --version");
     }
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2020, Gluon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openjfx;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class JavaFXRunNoForkMojoTest {
+
+    @Test
+    public void instanceIdOutsideRegistry() throws IOException {
+        Path builddir = Files.createTempDirectory("javafx-builddir");
+        JavaFXRunNoForkMojo mojo = new JavaFXRunNoForkMojo();
+        mojo.builddir = builddir.resolve("target").toFile();
+        mojo.async = true;
+        mojo.instanceId = "../outside";
+        try {
+            mojo.isAsyncInstanceRunning();
+            Assert.fail("An instance id with a path is rejected");
+        } catch (MojoExecutionException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("'../outside'"));
+        }
+        Assert.assertFalse(Files.exists(builddir.resolve("target").resolve("outside.pid")));
+    }
+}
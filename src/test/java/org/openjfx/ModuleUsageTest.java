@@ -0,0 +1,100 @@
+/*
+ * Copyright 2020, Gluon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openjfx;
+
+import org.codehaus.plexus.languages.java.jpms.JavaModuleDescriptor;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.CRC32;
+
+public class ModuleUsageTest {
+
+    static class Checksum {
+
+        long checksum(byte[] bytes) {
+            CRC32 crc = new CRC32();
+            crc.update(bytes);
+            return crc.getValue();
+        }
+    }
+
+    @Test
+    public void packagesOfClassesAndFxml() throws IOException {
+        Path classes = Files.createTempDirectory("classes");
+        String name = Checksum.class.getName().replace('.', '/') + ".class";
+        Path file = classes.resolve(name);
+        Files.createDirectories(file.getParent());
+        Files.copy(Paths.get(getClass().getClassLoader().getResource(name).getPath()), file);
+        Files.write(classes.resolve("view.fxml"), Arrays.asList(
+                "<?xml version=\"1.0\" encoding=\"UTF-8\"?>",
+                "<?import javafx.scene.control.*?>",
+                "<?import javafx.scene.layout.VBox?>",
+                "<VBox xmlns:fx=\"http://javafx.com/fxml\">",
+                "    <Label text=\"Help\"/>",
+                "    <javafx.scene.web.WebView/>",
+                "</VBox>"), StandardCharsets.UTF_8);
+
+        Set<String> packages = ModuleUsage.referencedPackages(Collections.singletonList(classes));
+        Assert.assertTrue(packages.containsAll(Arrays.asList("java.util.zip", "javafx.scene.control",
+                "javafx.scene.layout", "javafx.scene.web")));
+        Assert.assertFalse(packages.contains("javafx.scene.media"));
+    }
+
+    @Test
+    public void invalidClassFile() throws IOException {
+        Path classes = Files.createTempDirectory("classes");
+        Path file = classes.resolve("Broken.class");
+        Files.write(file, new byte[] { (byte) 0xCA, (byte) 0xFE, (byte) 0xBA, (byte) 0xBE, 0, 0 });
+        try {
+            ModuleUsage.referencedPackages(Collections.singletonList(classes));
+            Assert.fail("An invalid class file is reported");
+        } catch (IOException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains(file.toString()));
+        }
+    }
+
+    @Test
+    public void modulesOfPackages() {
+        List<JavaModuleDescriptor> modules = Arrays.asList(
+                JavaModuleDescriptor.newModule("javafx.base").exports("javafx.beans").build(),
+                JavaModuleDescriptor.newModule("javafx.graphics").requires("javafx.base").exports("javafx.scene").build(),
+                JavaModuleDescriptor.newModule("javafx.controls").requires("javafx.graphics")
+                        .exports("javafx.scene.control").build(),
+                JavaModuleDescriptor.newModule("javafx.media").requires("javafx.graphics")
+                        .exports("javafx.scene.media").build(),
+                JavaModuleDescriptor.newModule("javafx.swing")
+                        .requires(Collections.singleton(JavaModuleDescriptor.JavaRequires.JavaModifier.STATIC), "javafx.web")
+                        .requires("javafx.graphics").exports("javafx.embed.swing").build(),
+                JavaModuleDescriptor.newModule("javafx.web").requires("javafx.controls").exports("javafx.scene.web").build());
+
+        Assert.assertEquals(new TreeSet<>(Arrays.asList("javafx.base", "javafx.graphics", "javafx.controls")),
+                ModuleUsage.requiredModules(new TreeSet<>(Arrays.asList("java.util", "javafx.scene.control")), modules));
+        Assert.assertEquals(new TreeSet<>(Arrays.asList("javafx.base", "javafx.graphics", "javafx.swing")),
+                ModuleUsage.requiredModules(Collections.singleton("javafx.embed.swing"), modules));
+        Assert.assertTrue(ModuleUsage.requiredModules(Collections.singleton("java.util"), modules).isEmpty());
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2020, Gluon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openjfx;
+
+import org.apache.commons.exec.CommandLine;
+import org.apache.commons.exec.OS;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class MultiInstanceLauncherTest {
+
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        // the instances are shell scripts that write the time in milliseconds with GNU date
+        Assume.assumeTrue(OS.isFamilyUnix() && !OS.isFamilyMac());
+        directory = Files.createTempDirectory("instances").toFile();
+    }
+
+    @Test
+    public void staggeredStart() throws Exception {
+        launch(3, 0, 600, "date +%s%3N > started", null);
+        for (int i = 1; i < 3; i++) {
+            // the shells take a variable time to start, the stagger is between their launches
+            Assert.assertTrue("instance " + (i + 1) + " started 600 ms after the previous one",
+                    read(i, "started") - read(i - 1, "started") >= 400);
+        }
+    }
+
+    @Test
+    public void boundedConcurrency() throws Exception {
+        launch(3, 1, 0, "date +%s%3N > started; sleep 0.3; date +%s%3N > ended", null);
+        for (int i = 1; i < 3; i++) {
+            Assert.assertTrue("instance " + (i + 1) + " started after the previous one ended",
+                    read(i, "started") >= read(i - 1, "ended"));
+        }
+    }
+
+    @Test
+    public void startupUntilReady() throws Exception {
+        launch(2, 0, 0, "sleep 0.5; echo ready; sleep 0.2", "ready");
+        List<String> summary = Files.readAllLines(new File(directory, MultiInstanceLauncher.SUMMARY_FILE).toPath());
+        for (int i = 1; i <= 2; i++) {
+            String[] columns = summary.get(i).trim().split("\\s+");
+            Assert.assertEquals("0", columns[2]);
+            Assert.assertTrue("startup time measured until the instance is ready", Long.parseLong(columns[3]) >= 500);
+            Assert.assertTrue("duration measured until the instance exits",
+                    Long.parseLong(columns[4]) >= Long.parseLong(columns[3]) + 150);
+        }
+    }
+
+    @Test
+    public void exitedBeforeReady() {
+        try {
+            launch(2, 0, 0, "test {instance} = 1 && echo ready; sleep 0.2", "ready");
+            Assert.fail();
+        } catch (MojoExecutionException e) {
+            Assert.assertEquals("1 of 2 instances failed", e.getMessage());
+        }
+    }
+
+    @Test
+    public void asyncInstancesThatExitAtOnce() throws Exception {
+        ProcessRegistry registry = new ProcessRegistry(new File(directory, "target"));
+        launch(4, 0, 0, "true", null, registry);
+
+        // every instance completed, whether before or after it was registered, so no record is left
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!registry.list().isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+        }
+        Assert.assertTrue(registry.list().isEmpty());
+    }
+
+    private void launch(int count, int concurrency, long stagger, String script, String readyPattern)
+            throws MojoExecutionException {
+        launch(count, concurrency, stagger, script, readyPattern, null);
+    }
+
+    private void launch(int count, int concurrency, long stagger, String script, String readyPattern,
+                        ProcessRegistry registry) throws MojoExecutionException {
+        List<MultiInstanceLauncher.Instance> instances = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            CommandLine commandLine = new CommandLine("sh").addArgument("-c")
+                    .addArgument(script.replace("{instance}", Integer.toString(i + 1)), false);
+            instances.add(new MultiInstanceLauncher.Instance(i, "app-" + (i + 1), commandLine,
+                    new File(directory, "instance-" + (i + 1)), new ReadinessProbe(readyPattern, null, 0, null)));
+        }
+        new MultiInstanceLauncher(new SystemStreamLog(), Collections.emptyMap(), concurrency, stagger, 10, registry, null)
+                .launch(instances, directory);
+    }
+
+    private long read(int index, String name) throws IOException {
+        File file = new File(directory, "instance-" + (index + 1) + "/" + name);
+        return Long.parseLong(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8).trim());
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2020, Gluon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openjfx;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+public class NativeLibrariesTest {
+
+    @Test
+    public void extractedOnce() throws IOException {
+        Path directory = Files.createTempDirectory("natives");
+        File graphics = createJar(directory.resolve("javafx-graphics-12-linux.jar"), "libglass.so", "glass",
+                "com/sun/glass/Class.class", "class", "META-INF/libignored.so", "ignored");
+        File media = createJar(directory.resolve("javafx-media-12-linux.jar"), "libjfxmedia.so", "media");
+
+        Path cache = directory.resolve("cache");
+        Path extracted = NativeLibraries.extract(Arrays.asList(graphics, media), cache);
+        Assert.assertEquals(cache.resolve(NativeLibraries.DIRECTORY), extracted.getParent());
+        Assert.assertTrue(extracted.getFileName().toString().startsWith("12-linux-"));
+        Assert.assertEquals("glass", new String(Files.readAllBytes(extracted.resolve("libglass.so")), StandardCharsets.UTF_8));
+        Assert.assertTrue(Files.exists(extracted.resolve("libjfxmedia.so")));
+        Assert.assertFalse(Files.exists(extracted.resolve("libignored.so")));
+        Assert.assertEquals(2, extracted.toFile().list().length);
+
+        Files.delete(extracted.resolve("libjfxmedia.so"));
+        Assert.assertEquals("reused", extracted, NativeLibraries.extract(Arrays.asList(graphics, media), cache));
+        Assert.assertFalse(Files.exists(extracted.resolve("libjfxmedia.so")));
+
+        File newGraphics = createJar(directory.resolve("javafx-graphics-13-linux.jar"), "libglass.so", "glass 13");
+        Path updated = NativeLibraries.extract(Arrays.asList(newGraphics, media), cache);
+        Assert.assertNotEquals(extracted, updated);
+        Assert.assertEquals("glass 13", new String(Files.readAllBytes(updated.resolve("libglass.so")), StandardCharsets.UTF_8));
+        Assert.assertEquals("no temporary directories left", 2, cache.resolve(NativeLibraries.DIRECTORY).toFile().list().length);
+    }
+
+    @Test
+    public void noNativeLibraries() throws IOException {
+        Path directory = Files.createTempDirectory("natives");
+        File base = createJar(directory.resolve("javafx-base-12.jar"), "javafx/beans/Class.class", "class");
+        Assert.assertNull(NativeLibraries.extract(Collections.singletonList(base), directory.resolve("cache")));
+        Assert.assertFalse(Files.exists(directory.resolve("cache")));
+    }
+
+    private static File createJar(Path path, String... entries) throws IOException {
+        try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(path))) {
+            for (int i = 0; i < entries.length; i += 2) {
+                zos.putNextEntry(new ZipEntry(entries[i]));
+                zos.write(entries[i + 1].getBytes(StandardCharsets.UTF_8));
+                zos.closeEntry();
+            }
+        }
+        return path.toFile();
+    }
+}
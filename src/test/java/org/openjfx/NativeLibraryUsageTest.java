@@ -0,0 +1,70 @@
+/*
+ * Copyright 2020, Gluon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openjfx;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class NativeLibraryUsageTest {
+
+    private final Set<String> modules = new HashSet<>(Arrays.asList("java.base", "javafx.base", "javafx.graphics"));
+
+    @Test
+    public void libraryName() {
+        Assert.assertEquals("glassgtk3", NativeLibraryUsage.libraryName("lib/libglassgtk3.so"));
+        Assert.assertEquals("prism_d3d", NativeLibraryUsage.libraryName("bin/prism_d3d.dll"));
+        Assert.assertEquals("avplugin-ffmpeg-56", NativeLibraryUsage.libraryName("libavplugin-ffmpeg-56.so"));
+    }
+
+    @Test
+    public void modulesNotLinked() {
+        List<String> options = Collections.emptyList();
+        Assert.assertNull(NativeLibraryUsage.unusedReason("lib/libglass.so", modules, options));
+        Assert.assertNull(NativeLibraryUsage.unusedReason("lib/libjava.so", modules, options));
+        Assert.assertEquals("javafx.media is not linked",
+                NativeLibraryUsage.unusedReason("lib/libavplugin-57.so", modules, options));
+        Assert.assertEquals("javafx.web is not linked", NativeLibraryUsage.unusedReason("bin/jfxwebkit.dll", modules, options));
+    }
+
+    @Test
+    public void systemProperties() {
+        List<String> options = Arrays.asList("-Xmx1g", "-Djdk.gtk.version=3", "-Dprism.order=es2,sw");
+        Assert.assertEquals("-Djdk.gtk.version=3", NativeLibraryUsage.unusedReason("libglassgtk2.so", modules, options));
+        Assert.assertNull(NativeLibraryUsage.unusedReason("libglassgtk3.so", modules, options));
+        Assert.assertNull(NativeLibraryUsage.unusedReason("libprism_sw.so", modules, options));
+        Assert.assertNull(NativeLibraryUsage.unusedReason("libprism_common.so", modules, options));
+        Assert.assertEquals("-Dprism.order=es2,sw", NativeLibraryUsage.unusedReason("prism_d3d.dll", modules, options));
+        Assert.assertNull(NativeLibraryUsage.unusedReason("libglassgtk2.so", modules, Collections.emptyList()));
+    }
+
+    @Test
+    public void linkedModules() throws IOException {
+        Path image = Files.createTempDirectory("image");
+        Files.write(image.resolve("release"), Arrays.asList("JAVA_VERSION=\"17.0.2\"",
+                "MODULES=\"java.base javafx.base javafx.graphics\""), StandardCharsets.UTF_8);
+        Assert.assertEquals(modules, NativeLibraryUsage.linkedModules(image));
+    }
+}
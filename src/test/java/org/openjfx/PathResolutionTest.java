@@ -0,0 +1,70 @@
+/*
+ * Copyright 2020, Gluon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openjfx;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class PathResolutionTest {
+
+    @Test
+    public void fingerprintOfFiles() throws IOException {
+        Path jar = Files.createTempFile("dependency", ".jar");
+        List<File> files = new ArrayList<>(Arrays.asList(jar.toFile(), null));
+        String fingerprint = PathResolution.fingerprint(files);
+        PathResolution resolution = new PathResolution(fingerprint, Collections.singletonList(jar.toString()),
+                Collections.emptyList(), Collections.emptyMap(), null);
+        Assert.assertTrue(resolution.matches(PathResolution.fingerprint(files)));
+
+        resolution.getClasspathElements().clear();
+        Assert.assertEquals(1, resolution.getClasspathElements().size());
+
+        Files.write(jar, new byte[] { 1, 2, 3 });
+        Assert.assertFalse(resolution.matches(PathResolution.fingerprint(files)));
+
+        files.set(1, jar.toFile());
+        Assert.assertNotEquals(fingerprint, PathResolution.fingerprint(files));
+    }
+
+    @Test
+    public void fingerprintOfNestedFiles() throws IOException {
+        Path classes = Files.createTempDirectory("classes");
+        Path nested = Files.createDirectories(classes.resolve("org/app"));
+        Path mainClass = Files.write(nested.resolve("Main.class"), new byte[] { 1 });
+        List<File> files = Collections.singletonList(classes.toFile());
+        long directoryModified = classes.toFile().lastModified();
+
+        String fingerprint = PathResolution.fingerprint(files);
+        Assert.assertEquals(fingerprint, PathResolution.fingerprint(files));
+
+        Files.write(mainClass, new byte[] { 1, 2 });
+        String changedClass = PathResolution.fingerprint(files);
+        Assert.assertNotEquals(fingerprint, changedClass);
+
+        Files.write(classes.resolve("module-info.class"), new byte[] { 1 });
+        Assert.assertTrue(classes.toFile().setLastModified(directoryModified));
+        Assert.assertNotEquals(changedClass, PathResolution.fingerprint(files));
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2020, Gluon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openjfx;
+
+import org.apache.commons.exec.OS;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+public class ProcessRegistryTest {
+
+    private Path builddir;
+    private ProcessRegistry registry;
+
+    @Before
+    public void create() throws IOException {
+        builddir = Files.createTempDirectory("javafx-registry");
+        registry = new ProcessRegistry(builddir.toFile());
+    }
+
+    @Test
+    public void registerAndGet() throws IOException {
+        registry.register("app", 1234, "java -m app/app.Main");
+
+        ProcessRegistry.Entry entry = registry.get("app");
+        Assert.assertNotNull(entry);
+        Assert.assertEquals("app", entry.getInstanceId());
+        Assert.assertEquals(1234, entry.getPid());
+        Assert.assertEquals("java -m app/app.Main", entry.getCommand());
+        Assert.assertNull(registry.get("other"));
+    }
+
+    @Test
+    public void listIsSorted() throws IOException {
+        registry.register("b", 2, "b");
+        registry.register("a", 1, "a");
+
+        List<ProcessRegistry.Entry> entries = registry.list();
+        Assert.assertEquals(2, entries.size());
+        Assert.assertEquals("a", entries.get(0).getInstanceId());
+        Assert.assertEquals("b", entries.get(1).getInstanceId());
+    }
+
+    @Test
+    public void removeOnlyMatchingPid() throws IOException {
+        registry.register("app", 1234, "java");
+
+        registry.remove("app", 42);
+        Assert.assertNotNull(registry.get("app"));
+
+        registry.remove("app", 1234);
+        Assert.assertNull(registry.get("app"));
+    }
+
+    @Test
+    public void invalidInstanceIds() throws IOException {
+        Assert.assertTrue(ProcessRegistry.isValidInstanceId("app-1.2_b"));
+        for (String instanceId : new String[] { null, "", ".", "..", "../app", "a/b", "a\\b", ".hidden", "-app" }) {
+            Assert.assertFalse(instanceId, ProcessRegistry.isValidInstanceId(instanceId));
+            try {
+                registry.register(instanceId, 1234, "java");
+                Assert.fail("The instance id '" + instanceId + "' is rejected");
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+        Assert.assertFalse(Files.exists(builddir.resolve("app.pid")));
+        Assert.assertTrue(registry.list().isEmpty());
+    }
+
+    @Test
+    public void currentProcessIsAlive() {
+        String name = ManagementFactory.getRuntimeMXBean().getName();
+        long pid = Long.parseLong(name.substring(0, name.indexOf('@')));
+        Assert.assertTrue(ProcessRegistry.isAlive(pid));
+        Assert.assertFalse(ProcessRegistry.isAlive(-1));
+    }
+
+    @Test
+    public void recordedProcess() throws Exception {
+        Assume.assumeTrue(ProcessRegistry.canListDescendants() && !OS.isFamilyWindows());
+        Process sleep = new ProcessBuilder("sleep", "60").start();
+        try {
+            long pid = ProcessRegistry.pidOf(sleep);
+            registry.register("app", pid, "sleep 60");
+            Assert.assertTrue(registry.get("app").isRecordedProcess());
+            Assert.assertTrue(registry.get("app").isAlive());
+
+            // the same pid, started at another instant, is another process
+            Path pidFile = registry.getDirectory().resolve("app.pid");
+            Properties properties = new Properties();
+            try (InputStream is = Files.newInputStream(pidFile)) {
+                properties.load(is);
+            }
+            properties.setProperty("processStart", Long.toString(ProcessRegistry.processStart(pid) - 60_000));
+            try (OutputStream os = Files.newOutputStream(pidFile)) {
+                properties.store(os, null);
+            }
+            Assert.assertFalse(registry.get("app").isRecordedProcess());
+            Assert.assertFalse(registry.get("app").isAlive());
+
+            // without a start instant, the process can't be checked
+            properties.remove("processStart");
+            try (OutputStream os = Files.newOutputStream(pidFile)) {
+                properties.store(os, null);
+            }
+            Assert.assertFalse(registry.get("app").isRecordedProcess());
+        } finally {
+            sleep.destroyForcibly();
+        }
+    }
+
+    @Test
+    public void destroyScriptWithChild() throws Exception {
+        Assume.assumeTrue(ProcessRegistry.canListDescendants() && !OS.isFamilyWindows());
+        // like the launcher of an image, the shell doesn't exec its last command
+        Process script = new ProcessBuilder("sh", "-c", "sleep 60; true").start();
+        long pid = ProcessRegistry.pidOf(script);
+        List<Long> descendants = ProcessRegistry.descendantsOf(pid);
+        for (int i = 0; i < 50 && descendants.isEmpty(); i++) {
+            Thread.sleep(100);
+            descendants = ProcessRegistry.descendantsOf(pid);
+        }
+        Assert.assertEquals(1, descendants.size());
+
+        Assert.assertTrue(ProcessRegistry.destroy(pid, 10, TimeUnit.SECONDS));
+        Assert.assertFalse(ProcessRegistry.isAlive(descendants.get(0)));
+    }
+
+    @Test
+    public void destroyChildIgnoringTerm() throws Exception {
+        Assume.assumeTrue(ProcessRegistry.canListDescendants() && !OS.isFamilyWindows());
+        // the ignored signal is inherited by the child, that has to be killed forcibly
+        Process script = new ProcessBuilder("sh", "-c", "trap '' TERM; sleep 60; true").start();
+        long pid = ProcessRegistry.pidOf(script);
+        List<Long> descendants = ProcessRegistry.descendantsOf(pid);
+        for (int i = 0; i < 50 && descendants.isEmpty(); i++) {
+            Thread.sleep(100);
+            descendants = ProcessRegistry.descendantsOf(pid);
+        }
+        Assert.assertEquals(1, descendants.size());
+
+        Assert.assertTrue(ProcessRegistry.destroy(pid, 1, TimeUnit.SECONDS));
+        Assert.assertFalse(ProcessRegistry.isAlive(pid));
+        Assert.assertFalse(ProcessRegistry.isAlive(descendants.get(0)));
+    }
+
+    @After
+    public void destroy() throws IOException {
+        Files.walk(builddir)
+                .sorted(Comparator.reverseOrder())
+                .map(Path::toFile)
+                .forEach(File::delete);
+    }
+}
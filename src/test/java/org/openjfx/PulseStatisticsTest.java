@@ -0,0 +1,99 @@
+/*
+ * Copyright 2020, Gluon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openjfx;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class PulseStatisticsTest {
+
+    private static final String PULSE_LOG = String.join("\n",
+            "Application started",
+            "PULSE: 1 [163ms:40ms]",
+            "T14 (0 +3ms): CSS Pass",
+            "T14 (3 +5ms): Layout Pass",
+            "T10 (10 +30ms): Painting",
+            "Counters:",
+            "    Nodes rendered: 10",
+            "    Nodes visited during render: 12",
+            "PULSE: 2 [16ms:10ms]",
+            "T14 (0 +1ms): CSS Pass",
+            "T10 (2 +8ms): Painting",
+            "Counters:",
+            "    Nodes rendered: 10",
+            "some application output",
+            "    indented application output: 3",
+            "PULSE: 3 [18ms:20ms]",
+            "T10 (0 +20ms): Painting",
+            "");
+
+    @Test
+    public void parsePulses() throws IOException {
+        PulseStatistics statistics = PulseStatistics.parse(new BufferedReader(new StringReader(PULSE_LOG)));
+
+        Assert.assertEquals(3, statistics.getPulseCount());
+        Assert.assertEquals(40, statistics.getFrameTimes().max(), 0);
+        Assert.assertEquals(20, statistics.getFrameTimes().percentile(50), 0);
+        // the interval of the first pulse is ignored
+        Assert.assertEquals(2, statistics.getIntervals().count());
+        Assert.assertEquals(17, statistics.getIntervals().mean(), 0);
+
+        Map<String, Statistics> phases = statistics.getPhases();
+        Assert.assertEquals(Arrays.asList("CSS Pass", "Layout Pass", "Painting"), Arrays.asList(phases.keySet().toArray()));
+        Assert.assertEquals(58, phases.get("Painting").sum(), 0);
+        Assert.assertEquals(2, phases.get("CSS Pass").count());
+
+        Assert.assertEquals(Long.valueOf(20), statistics.getCounters().get("Nodes rendered"));
+        Assert.assertEquals(Long.valueOf(12), statistics.getCounters().get("Nodes visited during render"));
+        Assert.assertFalse(statistics.getCounters().containsKey("indented application output"));
+    }
+
+    @Test
+    public void emptyLog() throws IOException {
+        PulseStatistics statistics = PulseStatistics.parse(new BufferedReader(new StringReader("no pulses\n")));
+
+        Assert.assertEquals(0, statistics.getPulseCount());
+        Assert.assertEquals(0, (Double) statistics.toMap().get("fps"), 0);
+    }
+
+    @Test
+    public void percentiles() {
+        Statistics statistics = new Statistics(Arrays.asList(5, 1, 4, 2, 3, 6, 7, 8, 9, 10));
+
+        Assert.assertEquals(1, statistics.min(), 0);
+        Assert.assertEquals(5, statistics.percentile(50), 0);
+        Assert.assertEquals(10, statistics.percentile(95), 0);
+        Assert.assertEquals(5.5, statistics.mean(), 0);
+        Assert.assertEquals(0, new Statistics(Collections.<Integer>emptyList()).percentile(99), 0);
+    }
+
+    @Test
+    public void json() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("name", "a \"quoted\"\nvalue");
+        map.put("values", Arrays.asList(1, 2.5, true));
+        Assert.assertEquals("{\n  \"name\": \"a \\\"quoted\\\"\\nvalue\",\n  \"values\": [\n    1,\n    2.5,\n    true\n  ]\n}\n",
+                Json.toJson(map));
+    }
+}
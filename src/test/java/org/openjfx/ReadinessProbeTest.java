@@ -0,0 +1,111 @@
+/*
+ * Copyright 2020, Gluon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openjfx;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+public class ReadinessProbeTest {
+
+    @Test
+    public void logPattern() throws Exception {
+        ReadinessProbe probe = new ReadinessProbe("Started in \\d+ ms", null, 0, null);
+        Assert.assertTrue(probe.isEnabled());
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        OutputStream stream = probe.wrap(output);
+
+        stream.write("Starting\nStarted in ".getBytes(StandardCharsets.UTF_8));
+        assertNotReady(probe);
+        stream.write("42 ms\n".getBytes(StandardCharsets.UTF_8));
+        Assert.assertEquals(0, probe.await(null, 1, TimeUnit.SECONDS), 50);
+        Assert.assertTrue(probe.getLogPatternMatchedNanos() > 0);
+        Assert.assertEquals("the output is still written", "Starting\nStarted in 42 ms\n",
+                new String(output.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void port() throws Exception {
+        int port;
+        try (ServerSocket serverSocket = new ServerSocket(0)) {
+            port = serverSocket.getLocalPort();
+            Assert.assertEquals(0, new ReadinessProbe(null, null, port, null).await(null, 1, TimeUnit.SECONDS), 500);
+        }
+        assertNotReady(new ReadinessProbe(null, "localhost", port, null));
+    }
+
+    @Test
+    public void file() throws Exception {
+        File file = Files.createTempDirectory("probe").resolve("app.ready").toFile();
+        ReadinessProbe probe = new ReadinessProbe(null, null, 0, file);
+        assertNotReady(probe);
+        Assert.assertTrue(file.createNewFile());
+        probe.await(null, 1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void allProbes() throws Exception {
+        File file = Files.createTempDirectory("probe").resolve("app.ready").toFile();
+        ReadinessProbe probe = new ReadinessProbe("ready", null, 0, file);
+        probe.wrap(new ByteArrayOutputStream()).write("ready\n".getBytes(StandardCharsets.UTF_8));
+        try {
+            probe.await(null, 0, TimeUnit.SECONDS);
+            Assert.fail();
+        } catch (MojoExecutionException e) {
+            Assert.assertTrue(e.getMessage().contains("file " + file));
+            Assert.assertFalse(e.getMessage().contains("output matching"));
+        }
+    }
+
+    @Test
+    public void disabled() throws IOException {
+        ReadinessProbe probe = new ReadinessProbe("", null, 0, null);
+        Assert.assertFalse(probe.isEnabled());
+        OutputStream output = new ByteArrayOutputStream();
+        Assert.assertSame(output, probe.wrap(output));
+    }
+
+    @Test
+    public void exitedProcess() throws Exception {
+        Process process = new ProcessBuilder(new File(System.getProperty("java.home"), "bin/java").getPath(),
+                "-version").start();
+        process.waitFor();
+        try {
+            new ReadinessProbe("never", null, 0, null).await(process, 10, TimeUnit.SECONDS);
+            Assert.fail();
+        } catch (MojoExecutionException e) {
+            Assert.assertTrue(e.getMessage().contains("exited with code 0"));
+        }
+    }
+
+    private static void assertNotReady(ReadinessProbe probe) {
+        try {
+            probe.await(null, 0, TimeUnit.SECONDS);
+            Assert.fail();
+        } catch (MojoExecutionException e) {
+            Assert.assertTrue(e.getMessage().contains("not ready"));
+        }
+    }
+}
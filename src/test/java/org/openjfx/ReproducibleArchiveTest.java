@@ -0,0 +1,132 @@
+/*
+ * Copyright 2020, Gluon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openjfx;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openjfx.runtime.ImageHash;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.TimeZone;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+public class ReproducibleArchiveTest {
+
+    private static final long TIMESTAMP = Instant.parse("2020-06-01T12:00:00Z").toEpochMilli();
+
+    @Test
+    public void identicalZips() throws IOException {
+        Path first = createImage(false, 1000);
+        Path second = createImage(true, 5000000);
+        Path firstZip = Files.createTempDirectory("zip").resolve("image.zip");
+        Path secondZip = Files.createTempDirectory("zip").resolve("image.zip");
+
+        ReproducibleArchive.zip(first, firstZip, TIMESTAMP);
+        TimeZone timeZone = TimeZone.getDefault();
+        try {
+            TimeZone.setDefault(TimeZone.getTimeZone("Asia/Tokyo"));
+            ReproducibleArchive.zip(second, secondZip, TIMESTAMP);
+        } finally {
+            TimeZone.setDefault(timeZone);
+        }
+
+        Assert.assertArrayEquals(Files.readAllBytes(firstZip), Files.readAllBytes(secondZip));
+        Assert.assertEquals(ImageHash.hashDirectory(first), ImageHash.hashDirectory(second));
+        try (ZipFile zipFile = new ZipFile(firstZip.toFile())) {
+            List<String> names = new ArrayList<>();
+            for (ZipEntry entry : Collections.list(zipFile.entries())) {
+                names.add(entry.getName());
+            }
+            List<String> sorted = new ArrayList<>(names);
+            Collections.sort(sorted);
+            Assert.assertEquals(sorted, names);
+            Assert.assertTrue(names.contains("bin/"));
+        }
+    }
+
+    @Test
+    public void identicalTars() throws IOException {
+        Path firstTar = Files.createTempDirectory("tar").resolve("image.tar");
+        Path secondTar = Files.createTempDirectory("tar").resolve("image.tar");
+        ReproducibleArchive.tar(createImage(false, 1000), firstTar, TIMESTAMP);
+        ReproducibleArchive.tar(createImage(true, 5000000), secondTar, TIMESTAMP);
+        Assert.assertArrayEquals(Files.readAllBytes(firstTar), Files.readAllBytes(secondTar));
+    }
+
+    @Test
+    public void contentChangesHash() throws IOException {
+        Path image = createImage(false, 1000);
+        String hash = ImageHash.hashDirectory(image);
+        Files.write(image.resolve("lib/modules"), "changed".getBytes(StandardCharsets.UTF_8));
+        Assert.assertNotEquals(hash, ImageHash.hashDirectory(image));
+    }
+
+    @Test
+    public void outputTimestamp() {
+        Assert.assertFalse(ReproducibleArchive.parseOutputTimestamp(null).isPresent());
+        Assert.assertFalse(ReproducibleArchive.parseOutputTimestamp("a").isPresent());
+        Assert.assertEquals(OptionalLong.of(TIMESTAMP), ReproducibleArchive.parseOutputTimestamp("2020-06-01T12:00:00Z"));
+        Assert.assertEquals(OptionalLong.of(TIMESTAMP), ReproducibleArchive.parseOutputTimestamp("2020-06-01T14:00:00+02:00"));
+        Assert.assertEquals(OptionalLong.of(TIMESTAMP), ReproducibleArchive.parseOutputTimestamp(Long.toString(TIMESTAMP / 1000)));
+        try {
+            ReproducibleArchive.parseOutputTimestamp("yesterday");
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Creates the files of an image, in the given order and with the given modification time.
+     */
+    @Test
+    public void writeHash() throws IOException {
+        Path image = createImage(false, 1000);
+        String hash = ReproducibleArchive.writeHash(image);
+        Assert.assertEquals(ImageHash.hashDirectory(image), hash);
+        Assert.assertEquals(hash + "  " + image.getFileName() + "\n", new String(Files.readAllBytes(
+                image.resolveSibling(image.getFileName() + ".sha256")), StandardCharsets.UTF_8));
+    }
+
+    private static Path createImage(boolean reverseOrder, long lastModified) throws IOException {
+        Path image = Files.createTempDirectory("image");
+        List<String> files = new ArrayList<>(Arrays.asList("release", "lib/modules", "bin/java", "conf/net.properties"));
+        if (reverseOrder) {
+            Collections.reverse(files);
+        }
+        for (String name : files) {
+            Path file = image.resolve(name);
+            Files.createDirectories(file.getParent());
+            Files.write(file, name.getBytes(StandardCharsets.UTF_8));
+            Files.setLastModifiedTime(file, FileTime.fromMillis(lastModified));
+            if (name.startsWith("bin/")) {
+                file.toFile().setExecutable(true);
+            }
+        }
+        return image;
+    }
+}
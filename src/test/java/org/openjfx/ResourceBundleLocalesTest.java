@@ -0,0 +1,42 @@
+/*
+ * Copyright 2020, Gluon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openjfx;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.TreeSet;
+
+public class ResourceBundleLocalesTest {
+
+    @Test
+    public void languagesOfBundles() throws IOException {
+        Path classes = Files.createTempDirectory("classes");
+        for (String name : Arrays.asList("org/app/messages.properties", "org/app/messages_fr.properties",
+                "org/app/messages_de_CH.properties", "org/app/Labels_es.class", "org/app/Labels_it.class",
+                "org/app/Parser_as.class", "module-info.class")) {
+            Path file = classes.resolve(name);
+            Files.createDirectories(file.getParent());
+            Files.createFile(file);
+        }
+        Assert.assertEquals(new TreeSet<>(Arrays.asList("de", "es", "fr", "it")), ResourceBundleLocales.detect(classes));
+        Assert.assertTrue(ResourceBundleLocales.detect(classes.resolve("missing")).isEmpty());
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2020, Gluon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openjfx;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.TreeSet;
+
+public class ServiceBindingsTest {
+
+    static class Loader {
+
+        void loadConstant() {
+            ServiceLoader.load(Runnable.class).iterator();
+        }
+
+        void loadVariable(Class<?> service) {
+            ServiceLoader.load(service).iterator();
+        }
+    }
+
+    @Test
+    public void serviceLoadsOfClasses() throws IOException {
+        Path classes = Files.createTempDirectory("classes");
+        String name = Loader.class.getName().replace('.', '/') + ".class";
+        Path file = classes.resolve(name);
+        Files.createDirectories(file.getParent());
+        Files.copy(Paths.get(getClass().getClassLoader().getResource(name).getPath()), file);
+
+        ServiceBindings.Module module = ServiceBindings.scan(classes, "app");
+        Assert.assertEquals(Collections.singleton(Runnable.class.getName()), module.getUses());
+        Assert.assertEquals(Collections.singleton(Loader.class.getName() + ".loadVariable"),
+                ServiceBindings.unresolvedServiceLoads(Collections.singletonList(module)));
+    }
+
+    @Test
+    public void providersOfUsedServices() {
+        ServiceBindings.Module app = module("app", false, Collections.singletonList("org.lib.Codec"), null);
+        ServiceBindings.Module codecs = module("org.codecs", false, Collections.singletonList("org.lib.Compressor"),
+                "org.lib.Codec");
+        ServiceBindings.Module zip = module("org.zip", false, Collections.emptyList(), "org.lib.Compressor");
+        ServiceBindings.Module unused = module("org.unused", false, Collections.emptyList(), "org.lib.Parser");
+        ServiceBindings.Module jdk = module("jdk.codecs", true, Collections.singletonList("java.lang.Runnable"),
+                "org.lib.Codec");
+        ServiceBindings.Module runnable = module("jdk.runnable", true, Collections.emptyList(), "java.lang.Runnable");
+
+        Map<String, Set<String>> expected = new HashMap<>();
+        expected.put("org.codecs", Collections.singleton("org.lib.Codec"));
+        expected.put("org.zip", Collections.singleton("org.lib.Compressor"));
+        expected.put("jdk.codecs", Collections.singleton("org.lib.Codec"));
+        Assert.assertEquals(expected, ServiceBindings.providers(Collections.singletonList(app),
+                Arrays.asList(app, codecs, zip, unused, jdk, runnable)));
+    }
+
+    private static ServiceBindings.Module module(String name, boolean jdk, List<String> uses, String provides) {
+        ServiceBindings.Module module = new ServiceBindings.Module(name, jdk);
+        module.getUses().addAll(new TreeSet<>(uses));
+        if (provides != null) {
+            module.getProvides().put(provides, Collections.singletonList(name + ".Provider"));
+        }
+        return module;
+    }
+}
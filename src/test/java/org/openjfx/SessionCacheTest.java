@@ -0,0 +1,105 @@
+/*
+ * Copyright 2020, Gluon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openjfx;
+
+import org.apache.maven.execution.MavenSession;
+import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SessionCacheTest {
+
+    @Test
+    public void sharedBySession() {
+        MavenSession session = createSession();
+        AtomicInteger computed = new AtomicInteger();
+
+        String first = SessionCache.get(session).computeIfAbsent("key", k -> k + computed.incrementAndGet());
+        String second = SessionCache.get(session).computeIfAbsent("key", k -> k + computed.incrementAndGet());
+        Assert.assertEquals("key1", first);
+        Assert.assertEquals("key1", second);
+        Assert.assertEquals(1, computed.get());
+
+        String other = SessionCache.get(createSession()).computeIfAbsent("key", k -> k + computed.incrementAndGet());
+        Assert.assertEquals("key2", other);
+    }
+
+    @Test
+    public void computedOnceConcurrently() throws Exception {
+        MavenSession session = createSession();
+        AtomicInteger computed = new AtomicInteger();
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+        List<Future<Integer>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < 200; i++) {
+                futures.add(executorService.submit(() -> SessionCache.get(session)
+                        .computeIfAbsent("key", k -> computed.incrementAndGet())));
+            }
+            for (Future<Integer> future : futures) {
+                Assert.assertEquals(Integer.valueOf(1), future.get());
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+        Assert.assertEquals(1, computed.get());
+    }
+
+    @Test
+    public void noSession() {
+        SessionCache.get(null).computeIfAbsent("key", k -> "value");
+        Assert.assertEquals(0, SessionCache.get(null).size());
+    }
+
+    @Test
+    public void java8Executable() throws IOException {
+        Path jdk = Files.createTempDirectory("jdk8");
+        Path java = Files.createDirectories(jdk.resolve("bin")).resolve("java");
+        Files.createFile(java);
+        Assert.assertFalse(new ExecutableInfo(java.toString()).isJava8());
+
+        Files.createFile(Files.createDirectories(jdk.resolve("jre/lib")).resolve("rt.jar"));
+        ExecutableInfo info = new ExecutableInfo(java.toString());
+        Assert.assertTrue(info.isJava8());
+        Assert.assertEquals(jdk, info.getJdkHome());
+    }
+
+    @Test
+    public void unresolvedExecutable() {
+        ExecutableInfo info = new ExecutableInfo("java-that-does-not-exist");
+        Assert.assertFalse(info.isJava8());
+        Assert.assertNull(info.getJdkHome());
+        Assert.assertNull(info.getVersion());
+    }
+
+    private static MavenSession createSession() {
+        MavenSession session = mock(MavenSession.class);
+        when(session.getRepositorySession()).thenReturn(new DefaultRepositorySystemSession());
+        return session;
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2020, Gluon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openjfx.runtime;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+public class BinaryDeltaTest {
+
+    private final Random random = new Random(42);
+
+    @Test
+    public void smallDeltaOfEditedData() throws IOException {
+        byte[] source = new byte[1 << 20];
+        random.nextBytes(source);
+        ByteArrayOutputStream edited = new ByteArrayOutputStream();
+        edited.write(source, 0, 1000);
+        edited.write(randomBytes(300), 0, 300);
+        edited.write(source, 5000, 400000);
+        edited.write(source, 600000, source.length - 600000);
+        byte[] target = edited.toByteArray();
+        target[700000] ^= 1;
+
+        byte[] delta = BinaryDelta.diff(source, target);
+        Assert.assertTrue("delta of " + delta.length + " bytes", delta.length < 8 * 1024);
+        Assert.assertArrayEquals(target, apply(source, delta));
+    }
+
+    @Test
+    public void emptyData() throws IOException {
+        byte[] data = randomBytes(100);
+        Assert.assertArrayEquals(data, apply(new byte[0], BinaryDelta.diff(new byte[0], data)));
+        Assert.assertArrayEquals(new byte[0], apply(data, BinaryDelta.diff(data, new byte[0])));
+    }
+
+    @Test(expected = IOException.class)
+    public void invalidDelta() throws IOException {
+        byte[] delta = BinaryDelta.diff(randomBytes(1000), randomBytes(1000));
+        apply(new byte[0], Arrays.copyOf(delta, delta.length / 2));
+    }
+
+    private byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    private static byte[] apply(byte[] source, byte[] delta) throws IOException {
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+        BinaryDelta.apply(source, new ByteArrayInputStream(delta), target);
+        return target.toByteArray();
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2020, Gluon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openjfx.runtime;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class FlightRecordingSummaryTest {
+
+    /**
+     * Allocates, collects and blocks its JavaFX Application Thread, in a JVM that records it.
+     */
+    public static class RecordedApplication {
+
+        public static void main(String[] args) throws InterruptedException {
+            Thread fxThread = new Thread(() -> {
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, "JavaFX Application Thread");
+            fxThread.start();
+            List<byte[]> garbage = new ArrayList<>();
+            for (int i = 0; i < 2000; i++) {
+                garbage.add(new byte[64 * 1024]);
+                if (garbage.size() > 100) {
+                    garbage.clear();
+                }
+            }
+            System.gc();
+            fxThread.join();
+        }
+    }
+
+    @Test
+    public void percentiles() {
+        List<Long> sorted = Arrays.asList(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L);
+        Assert.assertEquals(5, FlightRecordingSummary.percentile(sorted, 50));
+        Assert.assertEquals(10, FlightRecordingSummary.percentile(sorted, 95));
+        Assert.assertEquals(1, FlightRecordingSummary.percentile(sorted, 0));
+        Assert.assertEquals(7, FlightRecordingSummary.percentile(Arrays.asList(7L), 99));
+    }
+
+    @Test
+    public void summary() throws Exception {
+        try {
+            Class.forName("jdk.jfr.consumer.RecordingFile");
+        } catch (ClassNotFoundException e) {
+            Assume.assumeNoException("Flight Recorder is not available", e);
+        }
+        Path recording = Files.createTempDirectory("jfr").resolve("recording.jfr");
+        String classpath = System.getProperty("surefire.test.class.path", System.getProperty("java.class.path"));
+        Process process = new ProcessBuilder(new File(System.getProperty("java.home"), "bin/java").getPath(),
+                "-XX:StartFlightRecording=settings=profile,filename=" + recording + ",dumponexit=true",
+                "-cp", classpath, RecordedApplication.class.getName())
+                .redirectErrorStream(true)
+                .redirectOutput(recording.resolveSibling("output.log").toFile())
+                .start();
+        Assert.assertEquals(0, process.waitFor());
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        FlightRecordingSummary.summarize(recording, 5, new PrintStream(output, true, "UTF-8"));
+        String summary = new String(output.toByteArray(), StandardCharsets.UTF_8);
+        Assert.assertTrue(summary, summary.contains("Top allocation sites:"));
+        Assert.assertTrue(summary, summary.contains(RecordedApplication.class.getName() + ".main:"));
+        Assert.assertTrue(summary, summary.matches("(?s).*GC pauses: [1-9].*"));
+        Assert.assertTrue(summary, summary.contains("jdk.ThreadSleep"));
+    }
+}
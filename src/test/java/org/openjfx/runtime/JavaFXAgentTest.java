@@ -0,0 +1,40 @@
+/*
+ * Copyright 2020, Gluon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openjfx.runtime;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+
+public class JavaFXAgentTest {
+
+    @Test
+    public void writeAtomically() throws IOException {
+        Path directory = Files.createTempDirectory("agent");
+        Path file = directory.resolve("app.ready");
+        JavaFXAgent.writeAtomically(file, "first");
+        JavaFXAgent.writeAtomically(file, "second");
+        Assert.assertEquals("second", new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+        Assert.assertEquals("no temporary file left", Collections.singletonList("app.ready"),
+                Arrays.asList(directory.toFile().list()));
+    }
+}
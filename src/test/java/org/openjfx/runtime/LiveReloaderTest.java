@@ -0,0 +1,48 @@
+/*
+ * Copyright 2020, Gluon
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openjfx.runtime;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+public class LiveReloaderTest {
+
+    private final Path classes = Paths.get("target", "classes").toAbsolutePath();
+    private final Path stylesheet = classes.resolve("org/openjfx/styles.css");
+    private final LiveReloader reloader = new LiveReloader(classes, false);
+
+    @Test
+    public void fileUrl() {
+        Assert.assertTrue(reloader.matches(stylesheet.toUri().toString(), stylesheet));
+        Assert.assertFalse(reloader.matches(classes.resolve("other.css").toUri().toString(), stylesheet));
+    }
+
+    @Test
+    public void classpathRelativePath() {
+        Assert.assertTrue(reloader.matches("org/openjfx/styles.css", stylesheet));
+        Assert.assertTrue(reloader.matches("/org/openjfx/styles.css", stylesheet));
+        Assert.assertFalse(reloader.matches("styles.css", stylesheet));
+    }
+
+    @Test
+    public void otherUrls() {
+        Assert.assertFalse(reloader.matches("jar:file:/app.jar!/org/openjfx/styles.css", stylesheet));
+        Assert.assertFalse(reloader.matches("not a url", stylesheet));
+    }
+}